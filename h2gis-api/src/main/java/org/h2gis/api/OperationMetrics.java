@@ -0,0 +1,155 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.api;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Throughput and timing metrics of the drivers and of the table functions.
+ *
+ * An operation calls {@link #start(String)} and reports its rows, bytes and phase times into the returned
+ * {@link OperationRecorder}. The runs are cumulated by operation name into {@link OperationStatistics}, which are
+ * exported over JMX under the domain {@value #JMX_DOMAIN}.
+ *
+ * The metrics are disabled by default, set the system property {@value #ENABLED_PROPERTY} to true or call
+ * {@link #setEnabled(boolean)}. When disabled, an operation only reads a volatile field.
+ */
+public final class OperationMetrics {
+    /** System property that enables the metrics on startup */
+    public static final String ENABLED_PROPERTY = "h2gis.metrics";
+    public static final String JMX_DOMAIN = "org.h2gis";
+    private static volatile boolean enabled = false;
+    private static boolean jmxRegistered = false;
+    private static final Map<String, OperationStatistics> STATISTICS = new TreeMap<String, OperationStatistics>();
+
+    static {
+        if (Boolean.getBoolean(ENABLED_PROPERTY)) {
+            setEnabled(true);
+        }
+    }
+
+    private OperationMetrics() {
+    }
+
+    /**
+     * @return True if the metrics are recorded
+     */
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * @param enabled True to record the metrics of the next operations. The JMX beans are registered on the first
+     * activation.
+     */
+    public static synchronized void setEnabled(boolean enabled) {
+        OperationMetrics.enabled = enabled;
+        if (enabled && !jmxRegistered) {
+            jmxRegistered = true;
+            registerMBean(new Control(), "type=OperationMetrics");
+            for (OperationStatistics statistics : STATISTICS.values()) {
+                registerMBean(statistics, getStatisticsName(statistics.getName()));
+            }
+        }
+    }
+
+    /**
+     * Start a run of an operation.
+     * @param operation Name of the operation, ex: "SHP import"
+     * @return The recorder of this run, the caller must close it at the end of the run
+     */
+    public static OperationRecorder start(String operation) {
+        if (!enabled) {
+            return OperationRecorder.DISABLED;
+        }
+        return new OperationRecorder(getStatistics(operation));
+    }
+
+    /**
+     * @return The statistics of all the operations ordered by name
+     */
+    public static synchronized List<OperationStatistics> getStatistics() {
+        return new ArrayList<OperationStatistics>(STATISTICS.values());
+    }
+
+    /**
+     * Clear the statistics of all the operations.
+     */
+    public static synchronized void reset() {
+        for (OperationStatistics statistics : STATISTICS.values()) {
+            statistics.reset();
+        }
+    }
+
+    private static synchronized OperationStatistics getStatistics(String operation) {
+        OperationStatistics statistics = STATISTICS.get(operation);
+        if (statistics == null) {
+            statistics = new OperationStatistics(operation);
+            STATISTICS.put(operation, statistics);
+            if (jmxRegistered) {
+                registerMBean(statistics, getStatisticsName(operation));
+            }
+        }
+        return statistics;
+    }
+
+    private static String getStatisticsName(String operation) {
+        return "type=OperationStatistics,name=" + ObjectName.quote(operation);
+    }
+
+    private static void registerMBean(Object bean, String properties) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(JMX_DOMAIN + ":" + properties);
+            if (!server.isRegistered(name)) {
+                server.registerMBean(bean, name);
+            }
+        } catch (JMException ex) {
+            // The metrics are still available through getStatistics
+        } catch (SecurityException ex) {
+            // The metrics are still available through getStatistics
+        }
+    }
+
+    private static class Control implements OperationMetricsMXBean {
+        @Override
+        public boolean isEnabled() {
+            return OperationMetrics.isEnabled();
+        }
+
+        @Override
+        public void setEnabled(boolean enabled) {
+            OperationMetrics.setEnabled(enabled);
+        }
+
+        @Override
+        public void reset() {
+            OperationMetrics.reset();
+        }
+    }
+}
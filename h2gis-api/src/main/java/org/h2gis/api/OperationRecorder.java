@@ -0,0 +1,193 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.api;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Record the metrics of one run of an operation, ex: the import of a file. The recorder may be used by several
+ * threads, the metrics are added to the statistics of the operation on {@link #close()}.
+ *
+ * When the metrics are disabled, {@link OperationMetrics#start(String)} returns a recorder that ignores all the
+ * calls and does not read the clock.
+ */
+public class OperationRecorder {
+    /**
+     * Phases of an operation
+     */
+    public enum Phase {
+        /** Reading and parsing of the source rows, without the geometry building */
+        READ,
+        /** Building of the geometries */
+        GEOMETRY,
+        /** Insertion of the rows through JDBC or writing of the rows in a file */
+        WRITE
+    }
+
+    /** Recorder that ignores all the calls */
+    public static final OperationRecorder DISABLED = new OperationRecorder(null);
+    /** Statistics of the operation, null if the metrics are disabled */
+    private final OperationStatistics statistics;
+    private final long startTime;
+    private final AtomicLong rowCount = new AtomicLong();
+    private final AtomicLong bytesRead = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLongArray phaseTimes = new AtomicLongArray(Phase.values().length);
+    private final AtomicLong flushCount = new AtomicLong();
+    private final AtomicLong flushTime = new AtomicLong();
+    private final AtomicLong maxFlushTime = new AtomicLong();
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    OperationRecorder(OperationStatistics statistics) {
+        this.statistics = statistics;
+        this.startTime = statistics == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * @return True if the metrics are recorded
+     */
+    public boolean isEnabled() {
+        return statistics != null;
+    }
+
+    /**
+     * @param count Number of rows read or written
+     */
+    public void addRows(long count) {
+        if (statistics != null) {
+            rowCount.addAndGet(count);
+        }
+    }
+
+    /**
+     * @param count Number of bytes read
+     */
+    public void addBytesRead(long count) {
+        if (statistics != null) {
+            bytesRead.addAndGet(count);
+        }
+    }
+
+    /**
+     * @param count Number of bytes written
+     */
+    public void addBytesWritten(long count) {
+        if (statistics != null) {
+            bytesWritten.addAndGet(count);
+        }
+    }
+
+    /**
+     * @return The start time of a phase for {@link #stopTimer(Phase, long)}, 0 if the metrics are disabled
+     */
+    public long startTimer() {
+        return statistics == null ? 0 : System.nanoTime();
+    }
+
+    /**
+     * Add the time elapsed since the start of a phase.
+     * @param phase Phase of the operation
+     * @param startTime Value returned by {@link #startTimer()}
+     */
+    public void stopTimer(Phase phase, long startTime) {
+        if (statistics != null) {
+            phaseTimes.addAndGet(phase.ordinal(), System.nanoTime() - startTime);
+        }
+    }
+
+    /**
+     * Add the time elapsed since the start of a batch flush, this time is also added to the {@link Phase#WRITE}
+     * phase.
+     * @param startTime Value returned by {@link #startTimer()}
+     */
+    public void stopFlushTimer(long startTime) {
+        if (statistics != null) {
+            long time = System.nanoTime() - startTime;
+            phaseTimes.addAndGet(Phase.WRITE.ordinal(), time);
+            flushCount.incrementAndGet();
+            flushTime.addAndGet(time);
+            long max = maxFlushTime.get();
+            while (time > max && !maxFlushTime.compareAndSet(max, time)) {
+                max = maxFlushTime.get();
+            }
+        }
+    }
+
+    /**
+     * @param phase Phase of the operation
+     * @param time Time in nanoseconds spent in this phase
+     */
+    public void addTime(Phase phase, long time) {
+        if (statistics != null) {
+            phaseTimes.addAndGet(phase.ordinal(), time);
+        }
+    }
+
+    /**
+     * @param phase Phase of the operation
+     * @return Time in nanoseconds recorded for this phase
+     */
+    public long getTime(Phase phase) {
+        return phaseTimes.get(phase.ordinal());
+    }
+
+    /**
+     * @return Time in nanoseconds since the start of the operation, 0 if the metrics are disabled
+     */
+    public long getElapsedTime() {
+        return statistics == null ? 0 : System.nanoTime() - startTime;
+    }
+
+    long getRowCount() {
+        return rowCount.get();
+    }
+
+    long getBytesRead() {
+        return bytesRead.get();
+    }
+
+    long getBytesWritten() {
+        return bytesWritten.get();
+    }
+
+    long getFlushCount() {
+        return flushCount.get();
+    }
+
+    long getFlushTime() {
+        return flushTime.get();
+    }
+
+    long getMaxFlushTime() {
+        return maxFlushTime.get();
+    }
+
+    /**
+     * Add the metrics of this run to the statistics of the operation. The next calls are ignored.
+     */
+    public void close() {
+        if (statistics != null && closed.compareAndSet(false, true)) {
+            statistics.add(this);
+        }
+    }
+}
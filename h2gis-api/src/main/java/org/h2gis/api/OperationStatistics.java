@@ -0,0 +1,136 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.api;
+
+/**
+ * Cumulated metrics of all the runs of an operation.
+ */
+public class OperationStatistics implements OperationStatisticsMXBean {
+    private static final double NANOS_BY_MILLI = 1e6;
+    private final String name;
+    private long runCount;
+    private long rowCount;
+    private long bytesRead;
+    private long bytesWritten;
+    private long elapsedTime;
+    private final long[] phaseTimes = new long[OperationRecorder.Phase.values().length];
+    private long flushCount;
+    private long flushTime;
+    private long maxFlushTime;
+
+    OperationStatistics(String name) {
+        this.name = name;
+    }
+
+    synchronized void add(OperationRecorder recorder) {
+        runCount++;
+        rowCount += recorder.getRowCount();
+        bytesRead += recorder.getBytesRead();
+        bytesWritten += recorder.getBytesWritten();
+        elapsedTime += recorder.getElapsedTime();
+        for (OperationRecorder.Phase phase : OperationRecorder.Phase.values()) {
+            phaseTimes[phase.ordinal()] += recorder.getTime(phase);
+        }
+        flushCount += recorder.getFlushCount();
+        flushTime += recorder.getFlushTime();
+        maxFlushTime = Math.max(maxFlushTime, recorder.getMaxFlushTime());
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public synchronized long getRunCount() {
+        return runCount;
+    }
+
+    @Override
+    public synchronized long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public synchronized double getRowsPerSecond() {
+        return elapsedTime == 0 ? 0 : rowCount / (elapsedTime / 1e9);
+    }
+
+    @Override
+    public synchronized long getBytesRead() {
+        return bytesRead;
+    }
+
+    @Override
+    public synchronized long getBytesWritten() {
+        return bytesWritten;
+    }
+
+    @Override
+    public synchronized double getElapsedTime() {
+        return elapsedTime / NANOS_BY_MILLI;
+    }
+
+    @Override
+    public synchronized double getReadTime() {
+        return phaseTimes[OperationRecorder.Phase.READ.ordinal()] / NANOS_BY_MILLI;
+    }
+
+    @Override
+    public synchronized double getGeometryTime() {
+        return phaseTimes[OperationRecorder.Phase.GEOMETRY.ordinal()] / NANOS_BY_MILLI;
+    }
+
+    @Override
+    public synchronized double getWriteTime() {
+        return phaseTimes[OperationRecorder.Phase.WRITE.ordinal()] / NANOS_BY_MILLI;
+    }
+
+    @Override
+    public synchronized long getFlushCount() {
+        return flushCount;
+    }
+
+    @Override
+    public synchronized double getFlushTime() {
+        return flushTime / NANOS_BY_MILLI;
+    }
+
+    @Override
+    public synchronized double getMaxFlushTime() {
+        return maxFlushTime / NANOS_BY_MILLI;
+    }
+
+    @Override
+    public synchronized void reset() {
+        runCount = 0;
+        rowCount = 0;
+        bytesRead = 0;
+        bytesWritten = 0;
+        elapsedTime = 0;
+        for (int i = 0; i < phaseTimes.length; i++) {
+            phaseTimes[i] = 0;
+        }
+        flushCount = 0;
+        flushTime = 0;
+        maxFlushTime = 0;
+    }
+}
@@ -0,0 +1,96 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.api;
+
+/**
+ * JMX view of the statistics of an operation.
+ */
+public interface OperationStatisticsMXBean {
+    /**
+     * @return Name of the operation
+     */
+    String getName();
+
+    /**
+     * @return Number of completed runs
+     */
+    long getRunCount();
+
+    /**
+     * @return Number of rows read or written by all the runs
+     */
+    long getRowCount();
+
+    /**
+     * @return Number of rows by second of elapsed time
+     */
+    double getRowsPerSecond();
+
+    /**
+     * @return Number of bytes read by all the runs
+     */
+    long getBytesRead();
+
+    /**
+     * @return Number of bytes written by all the runs
+     */
+    long getBytesWritten();
+
+    /**
+     * @return Elapsed time of all the runs in milliseconds
+     */
+    double getElapsedTime();
+
+    /**
+     * @return Time spent reading and parsing the source rows in milliseconds
+     */
+    double getReadTime();
+
+    /**
+     * @return Time spent building the geometries in milliseconds
+     */
+    double getGeometryTime();
+
+    /**
+     * @return Time spent inserting or writing the rows in milliseconds
+     */
+    double getWriteTime();
+
+    /**
+     * @return Number of batch flushes
+     */
+    long getFlushCount();
+
+    /**
+     * @return Time spent flushing the batches in milliseconds
+     */
+    double getFlushTime();
+
+    /**
+     * @return Latency of the slowest batch flush in milliseconds
+     */
+    double getMaxFlushTime();
+
+    /**
+     * Clear the statistics of this operation.
+     */
+    void reset();
+}
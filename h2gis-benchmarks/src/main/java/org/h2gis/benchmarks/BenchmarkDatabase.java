@@ -0,0 +1,92 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+
+package org.h2gis.benchmarks;
+
+import org.h2gis.ext.CreateSpatialExtension;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+
+/**
+ * Create the databases and the working directories of the benchmarks.
+ */
+public final class BenchmarkDatabase {
+    private static final String URL_PREFIX = "jdbc:h2:mem:";
+    /**
+     * H2 reuses the parsed queries and the results of the deterministic queries on unmodified tables, these caches
+     * are disabled to run the queries on each invocation
+     */
+    private static final String URL_PARAMETERS = ";OPTIMIZE_REUSE_RESULTS=0;QUERY_CACHE_SIZE=0";
+
+    private BenchmarkDatabase() {
+    }
+
+    /**
+     * Create an empty in-memory database with all the H2GIS functions. The database is removed when the connection
+     * is closed.
+     * @param name Name of the database, must be unique in the JVM
+     * @return Connection on the new database
+     * @throws SQLException
+     */
+    public static Connection create(String name) throws SQLException {
+        org.h2.Driver.load();
+        Connection connection = DriverManager.getConnection(URL_PREFIX + name + URL_PARAMETERS, "sa", "");
+        CreateSpatialExtension.initSpatialExtension(connection);
+        return connection;
+    }
+
+    /**
+     * @param prefix Prefix of the directory name
+     * @return A new empty directory in the temporary directory
+     * @throws IOException If the directory cannot be created
+     */
+    public static File createWorkingDirectory(String prefix) throws IOException {
+        File directory = File.createTempFile(prefix, "");
+        if (!directory.delete() || !directory.mkdir()) {
+            throw new IOException("Cannot create the directory " + directory.getAbsolutePath());
+        }
+        return directory;
+    }
+
+    /**
+     * Delete a working directory and its content.
+     * @param directory Directory created by {@link #createWorkingDirectory(String)}
+     */
+    public static void deleteWorkingDirectory(File directory) {
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.isDirectory()) {
+                    deleteWorkingDirectory(file);
+                } else if (!file.delete()) {
+                    file.deleteOnExit();
+                }
+            }
+        }
+        if (!directory.delete()) {
+            directory.deleteOnExit();
+        }
+    }
+}
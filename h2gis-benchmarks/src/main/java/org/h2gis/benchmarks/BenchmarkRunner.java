@@ -0,0 +1,83 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+
+package org.h2gis.benchmarks;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+
+/**
+ * Run the H2GIS benchmarks. The command line accepts the JMH options (-h to list them, -l to list the
+ * benchmarks). By default all the benchmarks are run and the results are written in JSON to
+ * h2gis-benchmarks.json, then the results of two releases can be compared.
+ */
+public class BenchmarkRunner {
+    /** Default file of the results */
+    public static final String RESULT_FILE = "h2gis-benchmarks.json";
+
+    private BenchmarkRunner() {
+    }
+
+    public static void main(String[] args) throws RunnerException, IOException {
+        CommandLineOptions commandLine;
+        try {
+            commandLine = new CommandLineOptions(args);
+        } catch (CommandLineOptionException ex) {
+            System.err.println("Error parsing command line:");
+            System.err.println(" " + ex.getMessage());
+            System.exit(1);
+            return;
+        }
+        if (commandLine.shouldHelp()) {
+            commandLine.showHelp();
+            return;
+        }
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLine);
+        if (commandLine.getIncludes().isEmpty()) {
+            options.include(BenchmarkRunner.class.getPackage().getName() + ".*");
+        }
+        if (!commandLine.getResult().hasValue()) {
+            options.result(RESULT_FILE);
+        }
+        if (!commandLine.getResultFormat().hasValue()) {
+            options.resultFormat(ResultFormatType.JSON);
+        }
+        Runner runner = new Runner(options.build());
+        if (commandLine.shouldList()) {
+            runner.list();
+        } else if (commandLine.shouldListWithParams()) {
+            runner.listWithParams(commandLine);
+        } else if (commandLine.shouldListProfilers()) {
+            commandLine.listProfilers();
+        } else if (commandLine.shouldListResultFormats()) {
+            commandLine.listResultFormats();
+        } else {
+            runner.run();
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+
+package org.h2gis.benchmarks;
+
+import org.h2gis.api.EmptyProgressVisitor;
+import org.h2gis.drivers.dbf.DBFDriverFunction;
+import org.h2gis.drivers.geojson.GeoJsonReaderDriver;
+import org.h2gis.drivers.osm.OSMParser;
+import org.h2gis.drivers.shp.SHPDriverFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Import and export of files by the drivers. Each operation reads or writes the entire data set.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class DriverBenchmark {
+    private static final String SOURCE_TABLE = "SOURCE";
+    private static final String IMPORT_TABLE = "IMPORTED";
+    private static final String OSM_SCHEMA = "OSM";
+
+    @Param({"50000"})
+    public int rowCount;
+
+    private Connection connection;
+    private File directory;
+    private File shpFile;
+    private File dbfFile;
+    private File exportShpFile;
+    private File exportDbfFile;
+    private File geoJsonFile;
+    private File osmFile;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException, IOException {
+        connection = BenchmarkDatabase.create("DriverBenchmark");
+        directory = BenchmarkDatabase.createWorkingDirectory("h2gis-driver-benchmark");
+        SyntheticData.createPolygonTable(connection, SOURCE_TABLE, rowCount, 50, false);
+        shpFile = new File(directory, "source.shp");
+        dbfFile = new File(directory, "source.dbf");
+        exportShpFile = new File(directory, "export.shp");
+        exportDbfFile = new File(directory, "export.dbf");
+        new SHPDriverFunction().exportTable(connection, SOURCE_TABLE, shpFile, new EmptyProgressVisitor());
+        geoJsonFile = new File(directory, "source.geojson");
+        SyntheticData.writeGeoJson(geoJsonFile, rowCount);
+        osmFile = new File(directory, "source.osm");
+        SyntheticData.writeOsm(osmFile, rowCount / 5);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+        BenchmarkDatabase.deleteWorkingDirectory(directory);
+    }
+
+    @Benchmark
+    public void shpExport() throws SQLException, IOException {
+        new SHPDriverFunction().exportTable(connection, SOURCE_TABLE, exportShpFile, new EmptyProgressVisitor());
+    }
+
+    @Benchmark
+    public void shpExportParallel() throws SQLException, IOException {
+        SHPDriverFunction driverFunction = new SHPDriverFunction();
+        driverFunction.setThreadCount(Runtime.getRuntime().availableProcessors());
+        driverFunction.exportTable(connection, SOURCE_TABLE, exportShpFile, new EmptyProgressVisitor());
+    }
+
+    @Benchmark
+    public void shpImport() throws SQLException, IOException {
+        dropTable(IMPORT_TABLE);
+        new SHPDriverFunction().importFile(connection, IMPORT_TABLE, shpFile, new EmptyProgressVisitor());
+    }
+
+    @Benchmark
+    public void dbfExport() throws SQLException, IOException {
+        new DBFDriverFunction().exportTable(connection, SOURCE_TABLE, exportDbfFile, new EmptyProgressVisitor());
+    }
+
+    @Benchmark
+    public void dbfImport() throws SQLException, IOException {
+        dropTable(IMPORT_TABLE);
+        new DBFDriverFunction().importFile(connection, IMPORT_TABLE, dbfFile, new EmptyProgressVisitor());
+    }
+
+    @Benchmark
+    public void geoJsonRead() throws SQLException, IOException {
+        dropTable(IMPORT_TABLE);
+        new GeoJsonReaderDriver(connection, geoJsonFile).read(new EmptyProgressVisitor(), IMPORT_TABLE);
+    }
+
+    @Benchmark
+    public boolean osmRead() throws SQLException {
+        Statement st = connection.createStatement();
+        try {
+            // Remove the tables of the previous import
+            st.execute("DROP SCHEMA IF EXISTS " + OSM_SCHEMA);
+            st.execute("CREATE SCHEMA " + OSM_SCHEMA);
+        } finally {
+            st.close();
+        }
+        return new OSMParser().read(connection, OSM_SCHEMA + ".BENCH", osmFile, new EmptyProgressVisitor());
+    }
+
+    private void dropTable(String tableName) throws SQLException {
+        Statement st = connection.createStatement();
+        try {
+            st.execute("DROP TABLE IF EXISTS " + tableName);
+        } finally {
+            st.close();
+        }
+    }
+}
@@ -0,0 +1,126 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+
+package org.h2gis.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Reprojection and spatial predicates evaluated by SQL queries.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class PredicateBenchmark {
+    @Param({"5000"})
+    public int polygonCount;
+
+    @Param({"20000"})
+    public int pointCount;
+
+    private Connection connection;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = BenchmarkDatabase.create("PredicateBenchmark");
+        SyntheticData.createPolygonTable(connection, "POLYGONS", polygonCount, 200, true);
+        SyntheticData.createPointTable(connection, "POINTS", pointCount, SyntheticData.EXTENT, 2154, true);
+        SyntheticData.createPointTable(connection, "WGS84_POINTS", pointCount, SyntheticData.GEOGRAPHIC_EXTENT,
+                4326, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public void transform(Blackhole blackhole) throws SQLException {
+        Statement st = connection.createStatement();
+        try {
+            ResultSet rs = st.executeQuery("SELECT ST_Transform(THE_GEOM, 2154) FROM WGS84_POINTS");
+            try {
+                while (rs.next()) {
+                    blackhole.consume(rs.getObject(1));
+                }
+            } finally {
+                rs.close();
+            }
+        } finally {
+            st.close();
+        }
+    }
+
+    @Benchmark
+    public long intersects() throws SQLException {
+        return count("SELECT COUNT(*) FROM POLYGONS P, POINTS T WHERE P.THE_GEOM && T.THE_GEOM" +
+                " AND ST_Intersects(P.THE_GEOM, T.THE_GEOM)");
+    }
+
+    @Benchmark
+    public long contains() throws SQLException {
+        return count("SELECT COUNT(*) FROM POLYGONS P, POINTS T WHERE P.THE_GEOM && T.THE_GEOM" +
+                " AND ST_Contains(P.THE_GEOM, T.THE_GEOM)");
+    }
+
+    @Benchmark
+    public long polygonIntersects() throws SQLException {
+        return count("SELECT COUNT(*) FROM POLYGONS A, POLYGONS B WHERE A.THE_GEOM && B.THE_GEOM" +
+                " AND A.ID < B.ID AND ST_Intersects(A.THE_GEOM, B.THE_GEOM)");
+    }
+
+    private long count(String query) throws SQLException {
+        Statement st = connection.createStatement();
+        try {
+            ResultSet rs = st.executeQuery(query);
+            try {
+                rs.next();
+                return rs.getLong(1);
+            } finally {
+                rs.close();
+            }
+        } finally {
+            st.close();
+        }
+    }
+}
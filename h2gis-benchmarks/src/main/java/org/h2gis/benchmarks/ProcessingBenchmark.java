@@ -0,0 +1,110 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+
+package org.h2gis.benchmarks;
+
+import com.vividsolutions.jts.geom.Geometry;
+import org.h2gis.ext.functions.spatial.mesh.ST_Delaunay;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Triangulation, iso contouring and grid creation.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+@State(Scope.Benchmark)
+public class ProcessingBenchmark {
+    @Param({"20000"})
+    public int delaunayPointCount;
+
+    @Param({"100"})
+    public int terrainSide;
+
+    @Param({"50"})
+    public double gridCellSize;
+
+    private Connection connection;
+    private Geometry delaunayPoints;
+
+    @Setup(Level.Trial)
+    public void setUp() throws SQLException {
+        connection = BenchmarkDatabase.create("ProcessingBenchmark");
+        delaunayPoints = SyntheticData.createMultiPoint(delaunayPointCount);
+        SyntheticData.createTinTable(connection, "TIN", terrainSide);
+        SyntheticData.createPolygonTable(connection, "POLYGONS", 1000, 200, false);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws SQLException {
+        connection.close();
+    }
+
+    @Benchmark
+    public Geometry delaunay() throws SQLException {
+        return ST_Delaunay.createDT(delaunayPoints);
+    }
+
+    @Benchmark
+    public long triangleContouring() throws SQLException {
+        return count("SELECT COUNT(*) FROM ST_TriangleContouring('TIN', 60, 80, 100, 120, 140)");
+    }
+
+    @Benchmark
+    public long makeGrid() throws SQLException {
+        return count("SELECT COUNT(*) FROM ST_MakeGrid('POLYGONS', " + gridCellSize + ", " + gridCellSize + ")");
+    }
+
+    private long count(String query) throws SQLException {
+        Statement st = connection.createStatement();
+        try {
+            ResultSet rs = st.executeQuery(query);
+            try {
+                rs.next();
+                return rs.getLong(1);
+            } finally {
+                rs.close();
+            }
+        } finally {
+            st.close();
+        }
+    }
+}
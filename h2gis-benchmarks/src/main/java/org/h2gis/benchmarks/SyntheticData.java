@@ -0,0 +1,301 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+
+package org.h2gis.benchmarks;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import org.h2gis.utilities.TableLocation;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Locale;
+import java.util.Random;
+
+/**
+ * Generate the data sets of the benchmarks. The data are random but the seed is constant, then all the runs use the
+ * same data.
+ */
+public final class SyntheticData {
+    /** Extent of the projected data sets */
+    public static final Envelope EXTENT = new Envelope(0, 10000, 0, 10000);
+    /** Extent of the geographic data sets, in EPSG:4326 */
+    public static final Envelope GEOGRAPHIC_EXTENT = new Envelope(-4, 7, 43, 50);
+    private static final long SEED = 42;
+    private static final int BATCH_SIZE = 1000;
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+    private static final String[] LAND_USES = new String[]{"residential", "industrial", "farmland", "forest",
+            "meadow", "commercial"};
+
+    private SyntheticData() {
+    }
+
+    /**
+     * Create a table of random polygons: ID INT, NAME VARCHAR, VALUE DOUBLE, THE_GEOM POLYGON.
+     * @param connection Active connection
+     * @param tableName Name of the new table
+     * @param count Number of rows
+     * @param maxSize Maximal size of a polygon
+     * @param spatialIndex True to create a spatial index
+     * @throws SQLException
+     */
+    public static void createPolygonTable(Connection connection, String tableName, int count, double maxSize,
+                                          boolean spatialIndex) throws SQLException {
+        Random random = new Random(SEED);
+        String table = TableLocation.parse(tableName, true).toString();
+        Statement st = connection.createStatement();
+        try {
+            st.execute("DROP TABLE IF EXISTS " + table);
+            st.execute("CREATE TABLE " + table + "(ID INT PRIMARY KEY, NAME VARCHAR, VALUE DOUBLE, " +
+                    "THE_GEOM POLYGON CHECK ST_SRID(THE_GEOM) = 2154)");
+            PreparedStatement pst = connection.prepareStatement("INSERT INTO " + table + " VALUES (?, ?, ?, ?)");
+            try {
+                for (int i = 0; i < count; i++) {
+                    Geometry polygon = createPolygon(random, EXTENT, maxSize);
+                    polygon.setSRID(2154);
+                    pst.setInt(1, i + 1);
+                    pst.setString(2, LAND_USES[random.nextInt(LAND_USES.length)] + " " + i);
+                    pst.setDouble(3, random.nextDouble() * 1000);
+                    pst.setObject(4, polygon);
+                    pst.addBatch();
+                    if ((i + 1) % BATCH_SIZE == 0) {
+                        pst.executeBatch();
+                    }
+                }
+                pst.executeBatch();
+            } finally {
+                pst.close();
+            }
+            if (spatialIndex) {
+                st.execute("CREATE SPATIAL INDEX ON " + table + "(THE_GEOM)");
+            }
+        } finally {
+            st.close();
+        }
+    }
+
+    /**
+     * Create a table of random points: ID INT, THE_GEOM POINT.
+     * @param connection Active connection
+     * @param tableName Name of the new table
+     * @param count Number of rows
+     * @param extent Extent of the points
+     * @param srid SRID of the points
+     * @param spatialIndex True to create a spatial index
+     * @throws SQLException
+     */
+    public static void createPointTable(Connection connection, String tableName, int count, Envelope extent,
+                                        int srid, boolean spatialIndex) throws SQLException {
+        Random random = new Random(SEED);
+        String table = TableLocation.parse(tableName, true).toString();
+        Statement st = connection.createStatement();
+        try {
+            st.execute("DROP TABLE IF EXISTS " + table);
+            st.execute("CREATE TABLE " + table + "(ID INT PRIMARY KEY, THE_GEOM POINT CHECK ST_SRID(THE_GEOM) = " +
+                    srid + ")");
+            PreparedStatement pst = connection.prepareStatement("INSERT INTO " + table + " VALUES (?, ?)");
+            try {
+                for (int i = 0; i < count; i++) {
+                    Geometry point = GEOMETRY_FACTORY.createPoint(randomCoordinate(random, extent));
+                    point.setSRID(srid);
+                    pst.setInt(1, i + 1);
+                    pst.setObject(2, point);
+                    pst.addBatch();
+                    if ((i + 1) % BATCH_SIZE == 0) {
+                        pst.executeBatch();
+                    }
+                }
+                pst.executeBatch();
+            } finally {
+                pst.close();
+            }
+            if (spatialIndex) {
+                st.execute("CREATE SPATIAL INDEX ON " + table + "(THE_GEOM)");
+            }
+        } finally {
+            st.close();
+        }
+    }
+
+    /**
+     * Create a triangulated terrain on a regular grid: ID INT, THE_GEOM POLYGON Z.
+     * @param connection Active connection
+     * @param tableName Name of the new table
+     * @param side Number of cells along each side of the grid, the table contains 2 * side * side triangles
+     * @throws SQLException
+     */
+    public static void createTinTable(Connection connection, String tableName, int side) throws SQLException {
+        String table = TableLocation.parse(tableName, true).toString();
+        double cellSize = EXTENT.getWidth() / side;
+        Statement st = connection.createStatement();
+        try {
+            st.execute("DROP TABLE IF EXISTS " + table);
+            st.execute("CREATE TABLE " + table + "(ID INT PRIMARY KEY, THE_GEOM POLYGON)");
+            PreparedStatement pst = connection.prepareStatement("INSERT INTO " + table + " VALUES (?, ?)");
+            try {
+                int id = 0;
+                for (int i = 0; i < side; i++) {
+                    for (int j = 0; j < side; j++) {
+                        Coordinate a = terrainCoordinate(i * cellSize, j * cellSize);
+                        Coordinate b = terrainCoordinate((i + 1) * cellSize, j * cellSize);
+                        Coordinate c = terrainCoordinate((i + 1) * cellSize, (j + 1) * cellSize);
+                        Coordinate d = terrainCoordinate(i * cellSize, (j + 1) * cellSize);
+                        for (Coordinate[] triangle : new Coordinate[][]{{a, b, c, a}, {a, c, d, a}}) {
+                            pst.setInt(1, ++id);
+                            pst.setObject(2, GEOMETRY_FACTORY.createPolygon(triangle));
+                            pst.addBatch();
+                        }
+                    }
+                    pst.executeBatch();
+                }
+            } finally {
+                pst.close();
+            }
+        } finally {
+            st.close();
+        }
+    }
+
+    /**
+     * @param count Number of points
+     * @return A multi point of random points with a Z value
+     */
+    public static Geometry createMultiPoint(int count) {
+        Random random = new Random(SEED);
+        Coordinate[] coordinates = new Coordinate[count];
+        for (int i = 0; i < count; i++) {
+            Coordinate coordinate = randomCoordinate(random, EXTENT);
+            coordinates[i] = terrainCoordinate(coordinate.x, coordinate.y);
+        }
+        return GEOMETRY_FACTORY.createMultiPoint(coordinates);
+    }
+
+    /**
+     * Write a GeoJSON file of random polygons, in EPSG:4326.
+     * @param file File to write
+     * @param count Number of features
+     * @throws IOException
+     */
+    public static void writeGeoJson(File file, int count) throws IOException {
+        Random random = new Random(SEED);
+        double maxSize = GEOGRAPHIC_EXTENT.getWidth() / 1000;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            writer.write("{\"type\":\"FeatureCollection\",\"features\":[\n");
+            for (int i = 0; i < count; i++) {
+                if (i > 0) {
+                    writer.write(",\n");
+                }
+                writer.write("{\"type\":\"Feature\",\"geometry\":{\"type\":\"Polygon\",\"coordinates\":[[");
+                Coordinate[] coordinates = createPolygon(random, GEOGRAPHIC_EXTENT, maxSize).getCoordinates();
+                for (int j = 0; j < coordinates.length; j++) {
+                    writer.write(String.format(Locale.ROOT, "%s[%.7f,%.7f]", j > 0 ? "," : "",
+                            coordinates[j].x, coordinates[j].y));
+                }
+                writer.write(String.format(Locale.ROOT,
+                        "]]},\"properties\":{\"id\":%d,\"name\":\"%s\",\"value\":%.3f}}", i + 1,
+                        LAND_USES[random.nextInt(LAND_USES.length)], random.nextDouble() * 1000));
+            }
+            writer.write("\n]}\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * Write an OSM XML file of random closed ways, with 5 nodes by way.
+     * @param file File to write, the extension must be .osm
+     * @param wayCount Number of ways
+     * @throws IOException
+     */
+    public static void writeOsm(File file, int wayCount) throws IOException {
+        Random random = new Random(SEED);
+        double maxSize = GEOGRAPHIC_EXTENT.getWidth() / 1000;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
+        try {
+            writer.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n");
+            writer.write("<osm version=\"0.6\" generator=\"h2gis-benchmarks\">\n");
+            StringBuilder ways = new StringBuilder();
+            long nodeId = 0;
+            for (int i = 1; i <= wayCount; i++) {
+                Coordinate[] coordinates = createPolygon(random, GEOGRAPHIC_EXTENT, maxSize).getCoordinates();
+                ways.append(String.format(Locale.ROOT, " <way id=\"%d\" version=\"1\" timestamp=" +
+                        "\"2015-01-01T00:00:00Z\" uid=\"1\" user=\"bench\" changeset=\"1\">\n", i));
+                long firstNode = nodeId + 1;
+                // The last coordinate closes the ring
+                for (int j = 0; j < coordinates.length - 1; j++) {
+                    nodeId++;
+                    writer.write(String.format(Locale.ROOT, " <node id=\"%d\" version=\"1\" timestamp=" +
+                                    "\"2015-01-01T00:00:00Z\" uid=\"1\" user=\"bench\" changeset=\"1\" " +
+                                    "lat=\"%.7f\" lon=\"%.7f\"/>\n", nodeId, coordinates[j].y, coordinates[j].x));
+                    ways.append("  <nd ref=\"").append(nodeId).append("\"/>\n");
+                }
+                ways.append("  <nd ref=\"").append(firstNode).append("\"/>\n");
+                ways.append("  <tag k=\"landuse\" v=\"").append(LAND_USES[random.nextInt(LAND_USES.length)])
+                        .append("\"/>\n");
+                ways.append(" </way>\n");
+            }
+            writer.write(ways.toString());
+            writer.write("</osm>\n");
+        } finally {
+            writer.close();
+        }
+    }
+
+    /**
+     * @return A random convex polygon of 5 vertices
+     */
+    private static Geometry createPolygon(Random random, Envelope extent, double maxSize) {
+        Coordinate center = randomCoordinate(random, extent);
+        double radius = maxSize / 2 * (0.2 + 0.8 * random.nextDouble());
+        Coordinate[] ring = new Coordinate[6];
+        double angle = random.nextDouble() * Math.PI * 2;
+        for (int i = 0; i < 5; i++) {
+            ring[i] = new Coordinate(center.x + radius * Math.cos(angle), center.y + radius * Math.sin(angle));
+            angle += Math.PI * 2 / 5;
+        }
+        ring[5] = ring[0];
+        return GEOMETRY_FACTORY.createPolygon(ring);
+    }
+
+    private static Coordinate randomCoordinate(Random random, Envelope extent) {
+        return new Coordinate(extent.getMinX() + random.nextDouble() * extent.getWidth(),
+                extent.getMinY() + random.nextDouble() * extent.getHeight());
+    }
+
+    /**
+     * @return A coordinate whose Z is the altitude of a smooth synthetic terrain
+     */
+    private static Coordinate terrainCoordinate(double x, double y) {
+        double z = 100 + 50 * Math.sin(x / 700) * Math.cos(y / 900) + 20 * Math.sin((x + y) / 250);
+        return new Coordinate(x, y, z);
+    }
+}
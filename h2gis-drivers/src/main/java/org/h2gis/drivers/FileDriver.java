@@ -46,12 +46,26 @@ public interface FileDriver {
      */
     void close() throws IOException;
 
+    /**
+     * @return Number of fields in a row
+     */
+    int getFieldCount();
+
     /**
      * @param rowId Row index [0-getRowCount()[
      * @return The row content
      * @throws java.io.IOException Read error
      */
     public Object[] getRow(long rowId) throws IOException;
+
+    /**
+     * Read only some fields of a row, the other fields are not decoded.
+     * @param rowId Row index [0-getRowCount()[
+     * @param fields Field index [0-getFieldCount()[ to read
+     * @return The row content, of length getFieldCount(). Fields that are not requested are null.
+     * @throws java.io.IOException Read error
+     */
+    public Object[] getRow(long rowId, int[] fields) throws IOException;
    
     /**
      * Insert values to the current row
@@ -0,0 +1,52 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.drivers;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+import java.io.IOException;
+
+/**
+ * A {@link FileDriver} that is able to maintain a persistent spatial index of its geometry field.
+ * The {@link org.h2gis.drivers.file_table.H2Table} use this index instead of building an in memory
+ * {@link org.h2.index.SpatialTreeIndex} when a spatial index is created on the linked table.
+ */
+public interface SpatialFileDriver extends FileDriver {
+
+    /**
+     * @return The geometry field index in getRow() array.
+     */
+    int getGeometryFieldIndex();
+
+    /**
+     * Open the spatial index, build it if it does not exists or if it is outdated.
+     * @throws IOException Unable to read or write the index
+     */
+    void openSpatialIndex() throws IOException;
+
+    /**
+     * @param envelope Search envelope
+     * @return Row index [0-getRowCount()[ of the rows having an envelope that intersects the provided envelope,
+     * in ascending order. {@link #openSpatialIndex()} must be called first.
+     * @throws IOException Read error
+     */
+    long[] queryIndex(Envelope envelope) throws IOException;
+}
@@ -35,7 +35,10 @@ import java.sql.Statement;
 import org.h2.tools.Csv;
 import org.h2gis.drivers.utility.FileUtil;
 import org.h2gis.api.DriverFunction;
+import org.h2gis.api.OperationMetrics;
+import org.h2gis.api.OperationRecorder;
 import org.h2gis.api.ProgressVisitor;
+import org.h2gis.drivers.file_table.BulkLoader;
 import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.TableLocation;
 
@@ -86,7 +89,14 @@ public class CSVDriverFunction implements DriverFunction{
         Statement st = null;
         try {
             st = connection.createStatement();
-            new Csv().write(fileName.getPath(), st.executeQuery("SELECT * FROM " + location.toString()), null);
+            OperationRecorder recorder = OperationMetrics.start("CSV export");
+            // The rows are read while they are written
+            long writeTime = recorder.startTimer();
+            int rowCount = new Csv().write(fileName.getPath(), st.executeQuery("SELECT * FROM " + location.toString()), null);
+            recorder.stopTimer(OperationRecorder.Phase.WRITE, writeTime);
+            recorder.addRows(rowCount);
+            recorder.addBytesWritten(fileName.length());
+            recorder.close();
         } finally {
             if (st != null) {
                 st.close();
@@ -105,14 +115,10 @@ public class CSVDriverFunction implements DriverFunction{
             final boolean isH2 = JDBCUtilities.isH2DataBase(connection.getMetaData());
             TableLocation requestedTable = TableLocation.parse(tableReference, isH2);
             String table = requestedTable.getTable();
-            int AVERAGE_NODE_SIZE = 500;
+            OperationRecorder recorder = OperationMetrics.start("CSV import");
             FileInputStream fis = new FileInputStream(fileName);
             FileChannel fc = fis.getChannel();
-            long fileSize = fc.size();
-            // Given the file size and an average node file size.
-            // Skip how many nodes in order to update progression at a step of 1%
-            long readFileSizeEachNode = Math.max(1, (fileSize / AVERAGE_NODE_SIZE) / 100);            
-            int average_row_size = 0;
+            recorder.addBytesRead(fc.size());
             ResultSet reader = new Csv().read(new BufferedReader(new InputStreamReader(fis)), null);
             ResultSetMetaData metadata = reader.getMetaData();
             int columnCount = metadata.getColumnCount();
@@ -138,40 +144,55 @@ public class CSVDriverFunction implements DriverFunction{
             stmt.execute(createTable.toString());
             stmt.close();
 
-            PreparedStatement pst = connection.prepareStatement(insertTable.toString());
-            long batchSize = 0;
+            CSVRowSource rows = new CSVRowSource(reader, fc, progress);
             try {
-                while (reader.next()) {
-                    if (progress.isCanceled()) {
-                        throw new SQLException("Canceled by user");
-                    }
-                    
-                    for (int i = 0; i < columnCount; i++) {
-                        pst.setString(i + 1, reader.getString(i + 1));
-                    }
-                    pst.addBatch();
-                    batchSize++;
-                    if (batchSize >= BATCH_MAX_SIZE) {
-                        pst.executeBatch();
-                        pst.clearBatch();
-                        batchSize = 0;
-                    }
-                    if (average_row_size++ % readFileSizeEachNode == 0) {
-                        // Update Progress
-                        try {
-                            progress.setStep((int) (((double) fc.position() / fileSize) * 100));
-                        } catch (IOException ex) {
-                            // Ignore
-                        }
-                    }
+                if (BulkLoader.isSupported(connection)) {
+                    BulkLoader.copyRows(connection, rows, table, progress, recorder);
+                } else {
+                    insertRows(connection, insertTable.toString(), rows, recorder);
                 }
-                if (batchSize > 0) {
-                    pst.executeBatch();
-                }                
-
+                // The file is parsed while the rows are inserted
+                recorder.addTime(OperationRecorder.Phase.READ, recorder.getElapsedTime()
+                        - recorder.getTime(OperationRecorder.Phase.WRITE)
+                        - recorder.getTime(OperationRecorder.Phase.READ));
+                recorder.close();
             } finally {
-                pst.close();
+                reader.close();
             }
         }
     }    
+
+    /**
+     * Insert the rows with a batch of prepared statements, used when the bulk load is not available.
+     */
+    private static void insertRows(Connection connection, String insertTable, CSVRowSource rows,
+                                   OperationRecorder recorder) throws SQLException {
+        PreparedStatement pst = connection.prepareStatement(insertTable);
+        try {
+            long batchSize = 0;
+            Object[] row;
+            while ((row = rows.nextRow()) != null) {
+                for (int i = 0; i < row.length; i++) {
+                    pst.setObject(i + 1, row[i]);
+                }
+                pst.addBatch();
+                recorder.addRows(1);
+                batchSize++;
+                if (batchSize >= BATCH_MAX_SIZE) {
+                    long flushTime = recorder.startTimer();
+                    pst.executeBatch();
+                    pst.clearBatch();
+                    recorder.stopFlushTimer(flushTime);
+                    batchSize = 0;
+                }
+            }
+            if (batchSize > 0) {
+                long flushTime = recorder.startTimer();
+                pst.executeBatch();
+                recorder.stopFlushTimer(flushTime);
+            }
+        } finally {
+            pst.close();
+        }
+    }
 }
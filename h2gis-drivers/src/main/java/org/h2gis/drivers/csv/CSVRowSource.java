@@ -0,0 +1,93 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+
+package org.h2gis.drivers.csv;
+
+import org.h2gis.api.ProgressVisitor;
+import org.h2gis.drivers.file_table.BulkLoader;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+/**
+ * Rows of a delimited text file read by {@link org.h2.tools.Csv}. Used by the CSV and TSV drivers to insert the
+ * rows with {@link BulkLoader} or with a batch of prepared statements.
+ */
+public class CSVRowSource implements BulkLoader.RowSource {
+    // For progression information return
+    private static final int AVERAGE_NODE_SIZE = 500;
+    private final ResultSet reader;
+    private final int columnCount;
+    private final FileChannel fc;
+    private final long fileSize;
+    private final ProgressVisitor progress;
+    private final long readFileSizeEachNode;
+    private long readRows = 0;
+
+    /**
+     * @param reader Result set returned by {@link org.h2.tools.Csv#read(java.io.Reader, String[])}
+     * @param fc Channel of the file, used to report the progression
+     * @param progress Progress updated with the position in the file
+     * @throws SQLException Unable to read the header
+     * @throws IOException Unable to read the file size
+     */
+    public CSVRowSource(ResultSet reader, FileChannel fc, ProgressVisitor progress) throws SQLException,
+            IOException {
+        this.reader = reader;
+        this.columnCount = reader.getMetaData().getColumnCount();
+        this.fc = fc;
+        this.fileSize = fc.size();
+        this.progress = progress;
+        // Given the file size and an average node file size.
+        // Skip how many nodes in order to update progression at a step of 1%
+        this.readFileSizeEachNode = Math.max(1, (fileSize / AVERAGE_NODE_SIZE) / 100);
+    }
+
+    @Override
+    public int getFieldCount() {
+        return columnCount;
+    }
+
+    @Override
+    public Object[] nextRow() throws SQLException {
+        if (progress.isCanceled()) {
+            throw new SQLException("Canceled by user");
+        }
+        if (!reader.next()) {
+            return null;
+        }
+        Object[] row = new Object[columnCount];
+        for (int i = 0; i < columnCount; i++) {
+            row[i] = reader.getString(i + 1);
+        }
+        if (readRows++ % readFileSizeEachNode == 0) {
+            // Update Progress
+            try {
+                progress.setStep((int) (((double) fc.position() / fileSize) * 100));
+            } catch (IOException ex) {
+                // Ignore
+            }
+        }
+        return row;
+    }
+}
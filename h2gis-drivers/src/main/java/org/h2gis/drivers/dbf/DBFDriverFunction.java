@@ -24,10 +24,13 @@ import org.h2.table.Column;
 import org.h2gis.drivers.dbf.internal.DBFDriver;
 import org.h2gis.drivers.dbf.internal.DbaseFileException;
 import org.h2gis.drivers.dbf.internal.DbaseFileHeader;
+import org.h2gis.drivers.file_table.BulkLoader;
 import org.h2gis.drivers.file_table.FileEngine;
 import org.h2gis.drivers.file_table.H2TableIndex;
 import org.h2gis.api.DriverFunction;
 import org.h2gis.api.EmptyProgressVisitor;
+import org.h2gis.api.OperationMetrics;
+import org.h2gis.api.OperationRecorder;
 import org.h2gis.api.ProgressVisitor;
 import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.TableLocation;
@@ -86,17 +89,26 @@ public class DBFDriverFunction implements DriverFunction {
                     DBFDriver dbfDriver = new DBFDriver();
                     dbfDriver.initDriver(fileName, header);
                     Object[] row = new Object[header.getNumFields()];
+                    OperationRecorder recorder = OperationMetrics.start("DBF export");
+                    long readTime = recorder.startTimer();
                     while (rs.next()) {
                         int i = 0;
                         for (Integer index : columnIndexes) {
                             row[i++] = rs.getObject(index);
                         }
+                        recorder.stopTimer(OperationRecorder.Phase.READ, readTime);
+                        long writeTime = recorder.startTimer();
                         dbfDriver.insertRow(row);
+                        recorder.stopTimer(OperationRecorder.Phase.WRITE, writeTime);
+                        recorder.addRows(1);
                         if (lineProgress != null) {
                             lineProgress.endStep();
                         }
+                        readTime = recorder.startTimer();
                     }
                     dbfDriver.close();
+                    recorder.addBytesWritten(fileName.length());
+                    recorder.close();
                 } finally {
                     rs.close();
                 }
@@ -155,6 +167,7 @@ public class DBFDriverFunction implements DriverFunction {
         if (FileUtil.isFileImportable(fileName, "dbf")) {
             DBFDriver dbfDriver = new DBFDriver();
             dbfDriver.initDriverFromFile(fileName, forceFileEncoding);
+            OperationRecorder recorder = OperationMetrics.start("DBF import");
             final boolean isH2 = JDBCUtilities.isH2DataBase(connection.getMetaData());
             String parsedTable = TableLocation.parse(tableReference, isH2).toString(isH2);
             DbaseFileHeader dbfHeader = dbfDriver.getDbaseFileHeader();
@@ -171,32 +184,48 @@ public class DBFDriverFunction implements DriverFunction {
                         getSQLColumnTypes(dbfHeader, isH2)));
                 st.close();
                 try {
-                    PreparedStatement preparedStatement = connection.prepareStatement(
-                            String.format("INSERT INTO %s VALUES ( %s )", parsedTable,
-                                    getQuestionMark(dbfHeader.getNumFields()+1)));
-                    try {
-                        long batchSize = 0;
-                        for (int rowId = 0; rowId < dbfDriver.getRowCount(); rowId++) {
-                            preparedStatement.setObject(1, rowId+1);
-                            Object[] values = dbfDriver.getRow(rowId);
-                            for (int columnId = 0; columnId < values.length; columnId++) {
-                                preparedStatement.setObject(columnId + 2, values[columnId]);
+                    if (BulkLoader.isSupported(connection)) {
+                        // Copy the rows without binding the values
+                        BulkLoader.copyRows(connection, dbfDriver, parsedTable, copyProgress, recorder);
+                    } else {
+                        PreparedStatement preparedStatement = connection.prepareStatement(
+                                String.format("INSERT INTO %s VALUES ( %s )", parsedTable,
+                                        getQuestionMark(dbfHeader.getNumFields()+1)));
+                        try {
+                            long batchSize = 0;
+                            for (int rowId = 0; rowId < dbfDriver.getRowCount(); rowId++) {
+                                long readTime = recorder.startTimer();
+                                Object[] values = dbfDriver.getRow(rowId);
+                                recorder.stopTimer(OperationRecorder.Phase.READ, readTime);
+                                long writeTime = recorder.startTimer();
+                                preparedStatement.setObject(1, rowId+1);
+                                for (int columnId = 0; columnId < values.length; columnId++) {
+                                    preparedStatement.setObject(columnId + 2, values[columnId]);
+                                }
+                                preparedStatement.addBatch();
+                                recorder.stopTimer(OperationRecorder.Phase.WRITE, writeTime);
+                                recorder.addRows(1);
+                                batchSize++;
+                                if (batchSize >= BATCH_MAX_SIZE) {
+                                    long flushTime = recorder.startTimer();
+                                    preparedStatement.executeBatch();
+                                    preparedStatement.clearBatch();
+                                    recorder.stopFlushTimer(flushTime);
+                                    batchSize = 0;
+                                    copyProgress.endStep();
+                                }
                             }
-                            preparedStatement.addBatch();
-                            batchSize++;
-                            if (batchSize >= BATCH_MAX_SIZE) {
+                            if (batchSize > 0) {
+                                long flushTime = recorder.startTimer();
                                 preparedStatement.executeBatch();
-                                preparedStatement.clearBatch();
-                                batchSize = 0;
-                                copyProgress.endStep();
+                                recorder.stopFlushTimer(flushTime);
                             }
+                        } finally {
+                            preparedStatement.close();
                         }
-                        if (batchSize > 0) {
-                            preparedStatement.executeBatch();
-                        }
-                    } finally {
-                        preparedStatement.close();
-                    }                 
+                    }
+                    recorder.addBytesRead(fileName.length());
+                    recorder.close();
                 } catch (Exception ex) {
                     connection.createStatement().execute("DROP TABLE IF EXISTS " + parsedTable);
                     throw new SQLException(ex.getLocalizedMessage(), ex);
@@ -39,6 +39,8 @@ public class DBFEngine extends FileEngine<DBFDriver> {
     @Override
     protected DBFDriver createDriver(File filePath, List<String> args) throws IOException {
         DBFDriver driver = new DBFDriver();
+        // Linked tables are read using random access, mapping the file avoids a copy on each read
+        driver.setMemoryMapped(isMemoryMapped());
         driver.initDriverFromFile(filePath,  args.size() > 1 ? args.get(1) : null);
         return driver;
     }
@@ -35,6 +35,15 @@ public class DBFDriver implements FileDriver {
     private File dbfFile;
     private DbaseFileReader dbaseFileReader;
     private DbaseFileWriter dbaseFileWriter;
+    private boolean memoryMapped = false;
+
+    /**
+     * @param memoryMapped True to map the file in memory when it is opened in read mode. Random row access is
+     * faster, must be called before {@link #initDriverFromFile(java.io.File, String)}
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
 
     /**
      * Init file header for DBF File
@@ -55,7 +64,7 @@ public class DBFDriver implements FileDriver {
         // Read columns from files metadata
         this.dbfFile = dbfFile;
         FileInputStream fis = new FileInputStream(dbfFile);
-        dbaseFileReader = new DbaseFileReader(fis.getChannel(), forceEncoding);
+        dbaseFileReader = new DbaseFileReader(fis.getChannel(), forceEncoding, memoryMapped);
     }
 
     public void initDriver(File dbfFile, DbaseFileHeader dbaseHeader) throws IOException {
@@ -131,6 +140,7 @@ public class DBFDriver implements FileDriver {
     /**
      * @return Column count
      */
+    @Override
     public int getFieldCount() {
         return getDbaseFileHeader().getNumFields();
     }
@@ -144,4 +154,13 @@ public class DBFDriver implements FileDriver {
         }
         return values;
     }
+
+    @Override
+    public Object[] getRow(long rowId, int[] fields) throws IOException {
+        Object[] values = new Object[dbaseFileReader.getFieldCount()];
+        for(int fieldId : fields) {
+            values[fieldId] = dbaseFileReader.getFieldValue((int)rowId, fieldId);
+        }
+        return values;
+    }
 }
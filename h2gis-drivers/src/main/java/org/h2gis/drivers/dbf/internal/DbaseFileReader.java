@@ -63,6 +63,14 @@ import java.util.Calendar;
  */
 public class DbaseFileReader {
 
+        /** Powers of ten that are exactly represented by a double */
+        private static final double[] EXACT_POWERS_OF_TEN = new double[]{1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7,
+                1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22};
+        /** Greatest integer that is exactly represented by a double */
+        private static final long MAX_EXACT_MANTISSA = 1L << 53;
+        /** Maximum number of digits that cannot overflow a long */
+        private static final int MAX_LONG_DIGITS = 18;
+        private static final Charset ASCII = Charset.forName("US-ASCII");
         private DbaseFileHeader header;
         private ReadBufferManager buffer;
         private FileChannel channel;
@@ -70,6 +78,12 @@ public class DbaseFileReader {
         private CharsetDecoder decoder;
         private char[] fieldTypes;
         private int[] fieldLengths;
+        /** Offset of each field from the start of a record, including the deletion flag */
+        private int[] fieldOffsets;
+        /** Bytes of the field being read, shared by all the fields */
+        private byte[] fieldBytes;
+        private ByteBuffer fieldBuffer;
+        private boolean memoryMapped;
     private static final Logger LOG = LoggerFactory.getLogger(DbaseFileReader.class);
 
         /**
@@ -81,8 +95,26 @@ public class DbaseFileReader {
          *             If an error occurs while initializing.
          */
         public DbaseFileReader(FileChannel channel,String forceEncoding)
+                throws IOException {
+                this(channel, forceEncoding, false);
+        }
+
+        /**
+         * Creates a new instance of DBaseFileReader
+         *
+         * @param channel
+         *            The readable channel to use.
+         * @param forceEncoding
+         *            If defined use this encoding instead of the one defined in dbf header.
+         * @param memoryMapped
+         *            True to map the file in memory instead of reading it through a buffer.
+         * @throws java.io.IOException
+         *             If an error occurs while initializing.
+         */
+        public DbaseFileReader(FileChannel channel, String forceEncoding, boolean memoryMapped)
                 throws IOException {
                 this.channel = channel;
+                this.memoryMapped = memoryMapped;
 
                 header = new DbaseFileHeader();
                 header.readHeader(channel, forceEncoding);
@@ -91,7 +123,7 @@ public class DbaseFileReader {
         }
 
         private void init() throws IOException {
-                buffer = new ReadBufferManager(channel);
+                buffer = memoryMapped ? ReadBufferManager.map(channel) : new ReadBufferManager(channel);
 
                 // The entire file is in little endian
                 buffer.order(ByteOrder.LITTLE_ENDIAN);
@@ -99,10 +131,19 @@ public class DbaseFileReader {
                 // Set up some buffers and lookups for efficiency
                 fieldTypes = new char[header.getNumFields()];
                 fieldLengths = new int[header.getNumFields()];
+                fieldOffsets = new int[header.getNumFields()];
+                // Skip the deletion flag
+                int fieldOffset = 1;
+                int maxFieldLength = 0;
                 for (int i = 0, ii = header.getNumFields(); i < ii; i++) {
                         fieldTypes[i] = header.getFieldType(i);
                         fieldLengths[i] = header.getFieldLength(i);
+                        fieldOffsets[i] = fieldOffset;
+                        fieldOffset += fieldLengths[i];
+                        maxFieldLength = Math.max(maxFieldLength, fieldLengths[i]);
                 }
+                fieldBytes = new byte[maxFieldLength];
+                fieldBuffer = ByteBuffer.wrap(fieldBytes);
 
                 charBuffer = CharBuffer.allocate(header.getRecordLength() - 1);
                 Charset chars = Charset.forName(header.getFileEncoding());
@@ -127,6 +168,9 @@ public class DbaseFileReader {
          *             If an error occurs.
          */
         public void close() throws IOException {
+                if (buffer != null) {
+                        buffer.close();
+                }
                 if (channel != null && channel.isOpen()) {
                         channel.close();
                 }
@@ -136,222 +180,290 @@ public class DbaseFileReader {
                 charBuffer = null;
                 decoder = null;
                 header = null;
-        }
-
-        /**
-         * @param pos Pos index in the buffer
-         * @param length Array length to extract
-         * @return byte array extracted from the buffer
-         * @throws IOException
-         */
-        private byte[] getBytes(int pos, int length) throws IOException {
-                byte[] bytes = new byte[length];
-                buffer.get(pos, bytes);
-                return bytes;
+                fieldBytes = null;
+                fieldBuffer = null;
         }
 
         public Object getFieldValue(int row, int column) throws IOException {
-                int fieldPosition = getPositionFor(row, column);
-                int fieldLength = getLengthFor(column);
-                byte[] fieldBytes = getBytes(fieldPosition, fieldLength);
-                ByteBuffer field = ByteBuffer.wrap(fieldBytes);
-
-                charBuffer.clear();
-                decoder.decode(field, charBuffer, true);
-                charBuffer.flip();
-
-                return readObject(0, column);
-
-        }
-
-        private int getLengthFor(int column) {
-                return header.getFieldLength(column);
-        }
-
-        private int getPositionFor(int row, int column) {
-                int recordOffset = header.getHeaderLength() + row
-                        * header.getRecordLength() + 1;
-                int fieldOffset = 0;
-                for (int i = 0; i < column; i++) {
-                        fieldOffset += header.getFieldLength(i);
+                final int fieldLen = fieldLengths[column];
+                if (fieldLen <= 0) {
+                        return null;
                 }
+                // Read the field into the shared array
+                buffer.get(getPositionFor(row, column), fieldBytes, 0, fieldLen);
+                return readObject(fieldBytes, fieldLen, column);
+        }
 
-                return fieldOffset + recordOffset;
+        /**
+         * @return Position of the field in the file, the records beyond 2GB are supported
+         */
+        private long getPositionFor(int row, int column) {
+                return header.getHeaderLength() + (long) row * header.getRecordLength() + fieldOffsets[column];
         }
 
-        private Object readObject(final int fieldOffset, final int fieldNum) throws IOException {
+        private Object readObject(final byte[] bytes, final int fieldLen, final int fieldNum) throws IOException {
                 final char type = fieldTypes[fieldNum];
-                final int fieldLen = fieldLengths[fieldNum];
                 Object object = null;
-
-                if (fieldLen > 0) {
-                        switch (type) {
-                                // (L)logical (T,t,F,f,Y,y,N,n)
-                                case 'l':
-                                case 'L':
-                                        switch (charBuffer.charAt(fieldOffset)) {
-
-                                                case 't':
-                                                case 'T':
-                                                case 'Y':
-                                                case 'y':
-                                                        object = true;
-                                                        break;
-                                                case 'f':
-                                                case 'F':
-                                                case 'N':
-                                                case 'n':
-                                                        object = false;
-                                                        break;
-                                                default:
-
-                                                        throw new IOException("Unknown logical value : '"
-                                                                + charBuffer.charAt(fieldOffset) + "'");
-                                        }
-                                        break;
-                                // (C)character (String)
-                                case 'c':
-                                case 'C':
-                                        // oh, this seems like a lot of work to parse strings...but,
-                                        // For some reason if zero characters ( (int) char == 0 ) are
-                                        // allowed
-                                        // in these strings, they do not compare correctly later on down
-                                        // the
-                                        // line....
-                                        int start = fieldOffset;
-                                        int end = Math.min(fieldOffset + fieldLen - 1, charBuffer.length() - 1);
-                                        // trim off whitespace and 'zero' chars
-                                        while (start < end) {
-                                                char c = charBuffer.get(start);
-                                                if (c == 0 || Character.isWhitespace(c)) {
-                                                        start++;
-                                                } else {
-                                                        break;
-                                                }
-                                        }
-                                        while (end > start) {
-                                                try {
-                                                    char c = charBuffer.get(end);
-                                                    if (c == 0 || Character.isWhitespace(c)) {
-                                                        end--;
-                                                    } else {
-                                                        break;
-                                                    }
-                                                } catch (IndexOutOfBoundsException ex) {
-                                                    throw new IndexOutOfBoundsException();
-                                                }
+                switch (type) {
+                        // (L)logical (T,t,F,f,Y,y,N,n)
+                        case 'l':
+                        case 'L':
+                                switch (bytes[0]) {
+
+                                        case 't':
+                                        case 'T':
+                                        case 'Y':
+                                        case 'y':
+                                                object = true;
+                                                break;
+                                        case 'f':
+                                        case 'F':
+                                        case 'N':
+                                        case 'n':
+                                                object = false;
+                                                break;
+                                        default:
+
+                                                throw new IOException("Unknown logical value : '"
+                                                        + (char) (bytes[0] & 0xFF) + "'");
+                                }
+                                break;
+                        // (C)character (String)
+                        case 'c':
+                        case 'C':
+                                // Only the character fields depend on the encoding of the file
+                                fieldBuffer.clear();
+                                fieldBuffer.limit(fieldLen);
+                                charBuffer.clear();
+                                decoder.reset();
+                                decoder.decode(fieldBuffer, charBuffer, true);
+                                charBuffer.flip();
+                                // oh, this seems like a lot of work to parse strings...but,
+                                // For some reason if zero characters ( (int) char == 0 ) are
+                                // allowed
+                                // in these strings, they do not compare correctly later on down
+                                // the
+                                // line....
+                                int start = 0;
+                                int end = Math.min(fieldLen - 1, charBuffer.length() - 1);
+                                // trim off whitespace and 'zero' chars
+                                while (start < end) {
+                                        char c = charBuffer.get(start);
+                                        if (c == 0 || Character.isWhitespace(c)) {
+                                                start++;
+                                        } else {
+                                                break;
                                         }
-                                        // set up the new indexes for start and end
-
-                                        // this prevents one array copy (the one made by String)
-                                        object  = new String(charBuffer.array(), start, end + 1 - start);
-                                        break;
-                                // (D)date (Date)
-                                case 'd':
-                                case 'D':
-                                        if (charBuffer.toString().equals("00000000")) {
-                                                object = null;
+                                }
+                                while (end > start) {
+                                        char c = charBuffer.get(end);
+                                        if (c == 0 || Character.isWhitespace(c)) {
+                                                end--;
                                         } else {
-                                                try {
-                                                        String tempString = charBuffer.subSequence(fieldOffset,
-                                                                fieldOffset + 4).toString();
-                                                        if(!tempString.trim().isEmpty()) {
-                                                            int tempYear = Integer.parseInt(tempString);
-                                                            tempString = charBuffer.subSequence(fieldOffset + 4,
-                                                                    fieldOffset + 6).toString();
-                                                            int tempMonth = Integer.parseInt(tempString) - 1;
-                                                            tempString = charBuffer.subSequence(fieldOffset + 6,
-                                                                    fieldOffset + 8).toString();
-                                                            int tempDay = Integer.parseInt(tempString);
-                                                            Calendar cal = Calendar.getInstance();
-                                                            cal.clear();
-                                                            cal.set(Calendar.YEAR, tempYear);
-                                                            cal.set(Calendar.MONTH, tempMonth);
-                                                            cal.set(Calendar.DAY_OF_MONTH, tempDay);
-                                                            object = cal.getTime();
-                                                        } else {
-                                                            object = null;
-                                                        }
-                                                } catch (NumberFormatException nfe) {
-                                                        // todo: use progresslistener, this isn't a grave error.
-                                                        LOG.warn("There was an error parsing a date. Ignoring it.", nfe);
-                                                }
+                                                break;
                                         }
-                                        break;
-                                case 'n':
-                                case 'N':
-                                        try {
-                                                if (header.getFieldDecimalCount(fieldNum) == 0) {
-
-                                                    String numberString = extractNumberString(charBuffer, fieldOffset,
-                                                            fieldLen);
-                                                        object = Integer.parseInt(numberString);
-                                                        // parsing successful --> exit
-                                                        break;
-                                                }
-                                                // else will fall through to the floating point number
-                                        } catch (NumberFormatException e) {
-
+                                }
+                                // set up the new indexes for start and end
+
+                                // this prevents one array copy (the one made by String)
+                                object  = new String(charBuffer.array(), start, end + 1 - start);
+                                break;
+                        // (D)date (Date)
+                        case 'd':
+                        case 'D':
+                                if (fieldLen >= 8 && !isDateNull(bytes)) {
+                                        int tempYear = parseDigits(bytes, 0, 4);
+                                        int tempMonth = parseDigits(bytes, 4, 6);
+                                        int tempDay = parseDigits(bytes, 6, 8);
+                                        if (tempYear >= 0 && tempMonth >= 0 && tempDay >= 0) {
+                                                Calendar cal = Calendar.getInstance();
+                                                cal.clear();
+                                                cal.set(Calendar.YEAR, tempYear);
+                                                cal.set(Calendar.MONTH, tempMonth - 1);
+                                                cal.set(Calendar.DAY_OF_MONTH, tempDay);
+                                                object = cal.getTime();
+                                        } else {
                                                 // todo: use progresslistener, this isn't a grave error.
-
-                                                // don't do this!!! the Double parse will be attemted as we
-                                                // fall
-                                                // through, so no need to create a new Object. -IanS
-                                                // object = new Integer(0);
-
-                                                // Lets try parsing a long instead...
-                                                try {
-
-                                                    String numberString = extractNumberString(charBuffer, fieldOffset,
-                                                            fieldLen);
-                                                        object = Long.parseLong(numberString);
-                                                        // parsing successful --> exit
-                                                        break;
-                                                } catch (NumberFormatException e2) {
-                                                        // it is not a long either
-                                                        // so we do nothing.
-                                                        // this whole method screams for refactoring...
-                                                }
+                                                LOG.warn("There was an error parsing a date. Ignoring it : '" +
+                                                        new String(bytes, 0, fieldLen, ASCII) + "'");
                                         }
-                                        // no break!!
-                                        // this case falls through the following one if there is decimal count
-                                        // I know, this is ugly...
-
-                                case 'f':
-                                case 'F': // floating point number
-
-                                    String numberString = extractNumberString(charBuffer, fieldOffset,
-                                            fieldLen);
-                                        try {
-                                                if(!numberString.trim().isEmpty()) {
-                                                    object = Double.parseDouble(numberString);
-                                                } else {
-                                                    object = null;
-                                                }
-                                        } catch (NumberFormatException e) {
-                                            // May be the decimal operator is exotic
-                                            if(numberString.contains(",")) {
-                                                object = Double.parseDouble(numberString.replace(",","."));
-                                            }
+                                }
+                                break;
+                        case 'n':
+                        case 'N':
+                                if (header.getFieldDecimalCount(fieldNum) == 0) {
+                                        object = parseInteger(bytes, fieldLen);
+                                        if (object != null) {
+                                                // parsing successful --> exit
+                                                break;
                                         }
-                                        break;
-                                default:
-                                        throw new IOException("Invalid field type : " + type);
+                                }
+                                // no break!!
+                                // this case falls through the following one if there is decimal count
+                                // or if the value is not an integer
+
+                        case 'f':
+                        case 'F': // floating point number
+                                object = parseDouble(bytes, fieldLen);
+                                break;
+                        default:
+                                throw new IOException("Invalid field type : " + type);
+                }
+                return object;
+        }
+
+        /**
+         * @return True if the date is blank or 00000000
+         */
+        private static boolean isDateNull(byte[] bytes) {
+                boolean zeros = true;
+                boolean blank = true;
+                for (int i = 0; i < 8; i++) {
+                        zeros &= bytes[i] == '0';
+                        if (i < 4) {
+                                blank &= isBlank(bytes[i]);
                         }
+                }
+                return zeros || blank;
+        }
 
+        /**
+         * @return The positive integer written in ASCII digits between start and end, -1 if a byte is not a digit
+         */
+        private static int parseDigits(byte[] bytes, int start, int end) {
+                int value = 0;
+                for (int i = start; i < end; i++) {
+                        int digit = bytes[i] - '0';
+                        if (digit < 0 || digit > 9) {
+                                return -1;
+                        }
+                        value = value * 10 + digit;
+                }
+                return value;
+        }
+
+        /**
+         * Parse an integer from the ASCII bytes of a numeric field.
+         * @return An Integer or a Long, null if the field is blank or is not an integer
+         */
+        private static Number parseInteger(byte[] bytes, int fieldLen) {
+                int start = 0;
+                int end = fieldLen;
+                while (start < end && isBlank(bytes[start])) {
+                        start++;
+                }
+                while (end > start && isBlank(bytes[end - 1])) {
+                        end--;
+                }
+                boolean negative = false;
+                if (start < end && (bytes[start] == '-' || bytes[start] == '+')) {
+                        negative = bytes[start] == '-';
+                        start++;
+                }
+                if (start == end || end - start > MAX_LONG_DIGITS) {
+                        return end - start > MAX_LONG_DIGITS ? parseIntegerString(bytes, fieldLen) : null;
+                }
+                long value = 0;
+                for (int i = start; i < end; i++) {
+                        int digit = bytes[i] - '0';
+                        if (digit < 0 || digit > 9) {
+                                return null;
+                        }
+                        value = value * 10 + digit;
+                }
+                if (negative) {
+                        value = -value;
+                }
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                        return (int) value;
+                }
+                return value;
+        }
+
+        /**
+         * Parse the integers that have too many digits to be accumulated in a long without overflow.
+         */
+        private static Number parseIntegerString(byte[] bytes, int fieldLen) {
+                try {
+                        return Long.parseLong(new String(bytes, 0, fieldLen, ASCII).trim());
+                } catch (NumberFormatException e) {
+                        // it is not a long
+                        return null;
+                }
+        }
+
+        /**
+         * Parse a decimal number from the ASCII bytes of a numeric field. The numbers that have an exponent, or too
+         * many digits to be computed exactly, are parsed by {@link Double#parseDouble(String)}.
+         * @return The number, null if the field is blank or is not a number
+         */
+        private static Double parseDouble(byte[] bytes, int fieldLen) {
+                int start = 0;
+                int end = fieldLen;
+                while (start < end && isBlank(bytes[start])) {
+                        start++;
+                }
+                while (end > start && isBlank(bytes[end - 1])) {
+                        end--;
+                }
+                if (start == end) {
+                        return null;
+                }
+                boolean negative = false;
+                if (bytes[start] == '-' || bytes[start] == '+') {
+                        negative = bytes[start] == '-';
+                        start++;
+                }
+                long mantissa = 0;
+                int decimals = -1;
+                int digits = 0;
+                for (int i = start; i < end; i++) {
+                        byte b = bytes[i];
+                        if (b >= '0' && b <= '9') {
+                                if (++digits > MAX_LONG_DIGITS) {
+                                        return parseDoubleString(bytes, fieldLen);
+                                }
+                                mantissa = mantissa * 10 + (b - '0');
+                                if (decimals >= 0) {
+                                        decimals++;
+                                }
+                        } else if ((b == '.' || b == ',') && decimals < 0) {
+                                // May be the decimal operator is exotic
+                                decimals = 0;
+                        } else {
+                                return parseDoubleString(bytes, fieldLen);
+                        }
+                }
+                if (digits == 0 || mantissa > MAX_EXACT_MANTISSA || decimals >= EXACT_POWERS_OF_TEN.length) {
+                        return parseDoubleString(bytes, fieldLen);
+                }
+                // The division of two exact values is correctly rounded, as Double.parseDouble
+                double value = decimals > 0 ? mantissa / EXACT_POWERS_OF_TEN[decimals] : mantissa;
+                return negative ? -value : value;
+        }
+
+        private static Double parseDoubleString(byte[] bytes, int fieldLen) {
+                String numberString = new String(bytes, 0, fieldLen, ASCII).trim();
+                try {
+                        return numberString.isEmpty() ? null : Double.parseDouble(numberString);
+                } catch (NumberFormatException e) {
+                        // May be the decimal operator is exotic
+                        if (numberString.contains(",")) {
+                                try {
+                                        return Double.parseDouble(numberString.replace(",", "."));
+                                } catch (NumberFormatException e2) {
+                                        return null;
+                                }
+                        }
+                        return null;
                 }
-                return object;
         }
 
         /**
-         * @param charBuffer2
-         * @param fieldOffset
-         * @param fieldLen
+         * @return True for the bytes removed by {@link String#trim()}
          */
-        private String extractNumberString(final CharBuffer charBuffer2,
-                final int fieldOffset, final int fieldLen) {
-            return charBuffer2.subSequence(fieldOffset,
-                    fieldOffset + fieldLen).toString().trim();
+        private static boolean isBlank(byte b) {
+                return (b & 0xFF) <= ' ';
         }
 
         public int getRecordCount() {
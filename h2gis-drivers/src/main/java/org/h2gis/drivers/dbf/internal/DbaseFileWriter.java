@@ -105,6 +105,21 @@ public class DbaseFileWriter {
 		init();
 	}
 
+	/**
+	 * Create a DbaseFileWriter that only formats the records, see
+	 * {@link #write(Object[], java.nio.ByteBuffer)}. The header is not
+	 * written. A writer is not thread safe, use one writer by thread.
+	 *
+	 * @param header
+	 *            The DbaseFileHeader of the records.
+	 */
+	public DbaseFileWriter(DbaseFileHeader header) {
+		this.header = header;
+		String encoding = header.getFileEncoding();
+		this.charset = encoding == null ? Charset.forName(DbaseFileHeader.DEFAULT_ENCODING) : Charset.forName(encoding);
+		this.formatter = new DbaseFileWriter.FieldFormatter(this.charset);
+	}
+
 	private void init() throws IOException {
 		buffer = ByteBuffer.allocateDirect(header.getRecordLength());
 	}
@@ -128,29 +143,45 @@ public class DbaseFileWriter {
 	 *             If the entry doesn't comply to the header.
 	 */
 	public void write(Object[] record) throws IOException, DbaseFileException {
+		buffer.position(0);
+		write(record, buffer);
+		write();
+	}
+
+	/**
+	 * Format a single dbase record at the position of the buffer. The
+	 * position of the buffer is moved to the end of the record.
+	 *
+	 * @param record
+	 *            The entries to write.
+	 * @param out
+	 *            Buffer with at least {@link DbaseFileHeader#getRecordLength()}
+	 *            remaining bytes.
+	 * @throws DbaseFileException
+	 *             If the entry doesn't comply to the header.
+	 */
+	public void write(Object[] record, ByteBuffer out) throws DbaseFileException {
 
 		if (record.length != header.getNumFields()) {
 			throw new DbaseFileException("Wrong number of fields "
 					+ record.length + " expected " + header.getNumFields());
 		}
 
-		buffer.position(0);
-
 		// put the 'not-deleted' marker
-		buffer.put((byte) ' ');
+		out.put((byte) ' ');
 
 		for (int i = 0; i < header.getNumFields(); i++) {
-			String fieldString = fieldString(record[i], i);
-			if (header.getFieldLength(i) != fieldString
-					.getBytes(charset.name()).length) {
-				buffer.put(new byte[header.getFieldLength(i)]);
+			byte[] fieldBytes = fieldString(record[i], i).getBytes(charset);
+			int fieldLength = header.getFieldLength(i);
+			if (fieldLength != fieldBytes.length) {
+				for (int j = 0; j < fieldLength; j++) {
+					out.put((byte) 0);
+				}
 			} else {
-				buffer.put(fieldString.getBytes(charset.name()));
+				out.put(fieldBytes);
 			}
 
 		}
-
-		write();
 	}
 
 	private String fieldString(Object obj, final int col) {
@@ -0,0 +1,75 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.drivers.file_table;
+
+import org.h2.api.ErrorCode;
+import org.h2.api.TableEngine;
+import org.h2.command.ddl.CreateTableData;
+import org.h2.message.DbException;
+import org.h2.table.Table;
+import org.h2gis.drivers.FileDriver;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Table engine used by {@link BulkLoader}. It links a temporary table with a {@link FileDriver} instance
+ * registered in this JVM, the engine parameter is the registration key.
+ */
+public class BulkLoadEngine implements TableEngine {
+    private static final Map<String, FileDriver> DRIVERS = new ConcurrentHashMap<String, FileDriver>();
+
+    /**
+     * @param key Unique key, given as engine parameter in the create table request
+     * @param driver Driver instance
+     */
+    static void register(String key, FileDriver driver) {
+        DRIVERS.put(key, driver);
+    }
+
+    /**
+     * @param key Registration key
+     */
+    static void unregister(String key) {
+        DRIVERS.remove(key);
+    }
+
+    @Override
+    public Table createTable(CreateTableData data) {
+        FileDriver driver = data.tableEngineParams.isEmpty() ? null : DRIVERS.get(data.tableEngineParams.get(0));
+        if (driver == null) {
+            // The source is registered in another JVM (remote session) or is not registered anymore
+            throw DbException.get(ErrorCode.GENERAL_ERROR_1, "The bulk load source of the table " + data.tableName +
+                    " is not registered in the database JVM");
+        }
+        if (data.columns.size() != driver.getFieldCount() + 1) {
+            throw DbException.get(ErrorCode.COLUMN_COUNT_DOES_NOT_MATCH);
+        }
+        try {
+            H2Table table = new H2Table(driver, data);
+            table.init(data.session);
+            return table;
+        } catch (IOException ex) {
+            throw DbException.get(ErrorCode.IO_EXCEPTION_1, ex);
+        }
+    }
+}
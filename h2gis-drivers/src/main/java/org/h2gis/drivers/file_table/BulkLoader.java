@@ -0,0 +1,373 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.drivers.file_table;
+
+import org.h2.engine.Session;
+import org.h2.jdbc.JdbcConnection;
+import org.h2.table.Column;
+import org.h2gis.api.OperationRecorder;
+import org.h2gis.api.ProgressVisitor;
+import org.h2gis.drivers.FileDriver;
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.TableLocation;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Copy the rows of a {@link FileDriver} into an existing H2 table without binding each value with a
+ * {@link java.sql.PreparedStatement}. The driver is linked to a local temporary table through
+ * {@link BulkLoadEngine}, then a single INSERT INTO ... SELECT request copies the rows inside the database engine.
+ * Driver values are converted once into H2 values, geometries are not serialized into WKB and parsed back.
+ * Files that can only be read once, in order (CSV, GeoJSON...) are copied through a {@link RowSource}.
+ */
+public final class BulkLoader {
+    private static final String TEMP_TABLE_PREFIX = "H2GIS_BULK_LOAD_";
+    private static final AtomicLong SOURCE_COUNTER = new AtomicLong();
+    // Rows of a sequential source copied by a single request, the MVStore slows down with large transactions
+    private static final long SEQUENTIAL_COPY_ROWS = 1000;
+
+    private BulkLoader() {
+    }
+
+    /**
+     * The source drivers are registered in this JVM, then the bulk load is only available with an embedded H2
+     * database. A remote session would not find the driver.
+     * @param connection Active connection
+     * @return True if {@link #copyRows(Connection, FileDriver, String, ProgressVisitor)} can be used with this
+     * connection
+     * @throws SQLException Unable to read the database metadata
+     */
+    public static boolean isSupported(Connection connection) throws SQLException {
+        if (!JDBCUtilities.isH2DataBase(connection.getMetaData()) || !connection.isWrapperFor(JdbcConnection.class)) {
+            return false;
+        }
+        return connection.unwrap(JdbcConnection.class).getSession() instanceof Session;
+    }
+
+    /**
+     * Copy all the rows of the driver into an existing table. The driver fields are inserted into the last
+     * driver.getFieldCount() columns of the table, the first columns receive their default value (ex: SERIAL
+     * primary key).
+     * @param connection Active embedded H2 connection, see {@link #isSupported(Connection)}. Do not close this
+     * connection.
+     * @param driver Opened driver, it is not closed by this method.
+     * @param tableReference [[catalog.]schema.]table reference of the destination table
+     * @param progress Progress, a step is done every getRowCount() / getStepCount() rows
+     * @throws SQLException Copy error or canceled by user
+     */
+    public static void copyRows(Connection connection, FileDriver driver, String tableReference,
+                                ProgressVisitor progress) throws SQLException {
+        copyRows(connection, driver, tableReference, progress, OperationRecorder.DISABLED);
+    }
+
+    /**
+     * Copy all the rows of the driver into an existing table, see
+     * {@link #copyRows(Connection, FileDriver, String, ProgressVisitor)}.
+     * @param connection Active embedded H2 connection, see {@link #isSupported(Connection)}. Do not close this
+     * connection.
+     * @param driver Opened driver, it is not closed by this method.
+     * @param tableReference [[catalog.]schema.]table reference of the destination table
+     * @param progress Progress, a step is done every getRowCount() / getStepCount() rows
+     * @param recorder Recorder of the copied rows, of the time spent reading the driver rows and of the time spent
+     * inserting them
+     * @throws SQLException Copy error or canceled by user
+     */
+    public static void copyRows(Connection connection, FileDriver driver, String tableReference,
+                                ProgressVisitor progress, OperationRecorder recorder) throws SQLException {
+        long rowsByStep = progress.getStepCount() > 0 ?
+                Math.max(1, driver.getRowCount() / progress.getStepCount()) : Long.MAX_VALUE;
+        copyRows(connection, new ProgressDriver(driver, progress, recorder, rowsByStep), null, tableReference,
+                recorder);
+    }
+
+    /**
+     * Copy all the rows of a sequential source into an existing table. The rows are pulled one by one while
+     * the database inserts them, the number of rows does not have to be known. The source fields are inserted into
+     * the last source.getFieldCount() columns of the table. Large sources are copied by several requests, each one is
+     * committed in auto-commit mode.
+     * @param connection Active embedded H2 connection, see {@link #isSupported(Connection)}. Do not close this
+     * connection.
+     * @param source Opened source, it is not closed by this method. Rows that are not read when an error
+     * occurs stay in the source.
+     * @param tableReference [[catalog.]schema.]table reference of the destination table
+     * @param progress Only used to stop the copy, the source reports its own progression as the number of rows is
+     * unknown.
+     * @param recorder Recorder of the copied rows, of the time spent reading the source rows and of the time spent
+     * inserting them
+     * @throws SQLException Copy error or canceled by user
+     * @throws IOException Error while reading the first row
+     */
+    public static void copyRows(Connection connection, RowSource source, String tableReference,
+                                ProgressVisitor progress, OperationRecorder recorder)
+            throws SQLException, IOException {
+        // The next row is read in advance in order to know if the scan is done
+        long startTime = recorder.startTimer();
+        Object[] nextRow = source.nextRow();
+        recorder.stopTimer(OperationRecorder.Phase.READ, startTime);
+        if (nextRow != null) {
+            SequentialDriver driver = new SequentialDriver(source, nextRow, SEQUENTIAL_COPY_ROWS);
+            copyRows(connection, new ProgressDriver(driver, progress, recorder, Long.MAX_VALUE), driver,
+                    tableReference, recorder);
+        }
+    }
+
+    /**
+     * @param segments Sequential source copied by several requests, null if all the rows are copied by a single
+     * request
+     */
+    private static void copyRows(Connection connection, ProgressDriver driver, SequentialDriver segments,
+                                 String tableReference, OperationRecorder recorder) throws SQLException {
+        String table = TableLocation.parse(tableReference, true).toString(true);
+        Statement st = connection.createStatement();
+        try {
+            // Read destination columns
+            List<Column> otherCols = new ArrayList<Column>();
+            List<String> columnNames = new ArrayList<String>();
+            List<String> columnTypes = new ArrayList<String>();
+            ResultSet rs = st.executeQuery(String.format("SELECT * FROM %s LIMIT 0", table));
+            try {
+                ResultSetMetaData meta = rs.getMetaData();
+                int firstColumn = meta.getColumnCount() - driver.getFieldCount() + 1;
+                if (firstColumn < 1) {
+                    throw new SQLException(String.format("The table %s has less columns than the source", table));
+                }
+                for (int columnId = firstColumn; columnId <= meta.getColumnCount(); columnId++) {
+                    otherCols.add(new Column(meta.getColumnName(columnId), 0));
+                    columnNames.add(TableLocation.quoteIdentifier(meta.getColumnName(columnId)));
+                    columnTypes.add(meta.getColumnTypeName(columnId));
+                }
+            } finally {
+                rs.close();
+            }
+            // The first column of the linked table is the row number
+            StringBuilder sourceColumns = new StringBuilder(
+                    FileEngine.getUniqueColumnName(H2TableIndex.PK_COLUMN_NAME, otherCols) + " BIGINT");
+            StringBuilder insertColumns = new StringBuilder();
+            for (int i = 0; i < columnNames.size(); i++) {
+                sourceColumns.append(", ").append(columnNames.get(i)).append(" ").append(columnTypes.get(i));
+                if (i > 0) {
+                    insertColumns.append(", ");
+                }
+                insertColumns.append(columnNames.get(i));
+            }
+            long sourceId = SOURCE_COUNTER.incrementAndGet();
+            String key = Long.toString(sourceId);
+            String sourceTable = TEMP_TABLE_PREFIX + sourceId;
+            BulkLoadEngine.register(key, driver);
+            try {
+                st.execute(String.format("CREATE LOCAL TEMPORARY TABLE %s (%s) ENGINE \"%s\" WITH \"%s\"",
+                        sourceTable, sourceColumns, BulkLoadEngine.class.getName(), key));
+                try {
+                    long startTime = recorder.startTimer();
+                    long sourceTime = getSourceTime(recorder);
+                    String insert = String.format("INSERT INTO %s(%s) DIRECT SELECT %s FROM %s", table,
+                            insertColumns, insertColumns, sourceTable);
+                    st.execute(insert);
+                    while (segments != null && segments.nextSegment()) {
+                        st.execute(insert);
+                    }
+                    // The driver rows are read while they are inserted
+                    recorder.stopTimer(OperationRecorder.Phase.WRITE,
+                            startTime + getSourceTime(recorder) - sourceTime);
+                } finally {
+                    st.execute("DROP TABLE IF EXISTS " + sourceTable);
+                }
+            } finally {
+                BulkLoadEngine.unregister(key);
+            }
+        } finally {
+            st.close();
+        }
+    }
+
+    /**
+     * Rows of a file that can only be read once, in order. Ex: a text file read by a pull parser.
+     */
+    public interface RowSource {
+        /**
+         * @return Number of values in a row
+         */
+        int getFieldCount();
+
+        /**
+         * @return The values of the next row, null if there is no more rows to copy
+         * @throws SQLException Malformed row
+         * @throws IOException Read error
+         */
+        Object[] nextRow() throws SQLException, IOException;
+    }
+
+    /**
+     * @return The time spent reading the driver rows and building their geometries
+     */
+    private static long getSourceTime(OperationRecorder recorder) {
+        return recorder.getTime(OperationRecorder.Phase.READ) + recorder.getTime(OperationRecorder.Phase.GEOMETRY);
+    }
+
+    /**
+     * Report the progression of the rows read by the database, stop the copy if the progress is canceled.
+     */
+    private static class ProgressDriver implements FileDriver {
+        private final FileDriver driver;
+        private final ProgressVisitor progress;
+        private final OperationRecorder recorder;
+        private final long rowsByStep;
+        private long readRows = 0;
+
+        private ProgressDriver(FileDriver driver, ProgressVisitor progress, OperationRecorder recorder,
+                               long rowsByStep) {
+            this.driver = driver;
+            this.progress = progress;
+            this.recorder = recorder;
+            this.rowsByStep = rowsByStep;
+        }
+
+        @Override
+        public long getRowCount() {
+            return driver.getRowCount();
+        }
+
+        @Override
+        public void close() throws IOException {
+            // The source driver is closed by its owner
+        }
+
+        @Override
+        public int getFieldCount() {
+            return driver.getFieldCount();
+        }
+
+        private void onRowRead() throws IOException {
+            if (progress.isCanceled()) {
+                throw new IOException("Canceled by user");
+            }
+            recorder.addRows(1);
+            if (++readRows % rowsByStep == 0) {
+                progress.endStep();
+            }
+        }
+
+        @Override
+        public Object[] getRow(long rowId) throws IOException {
+            onRowRead();
+            long startTime = recorder.startTimer();
+            long geometryTime = recorder.getTime(OperationRecorder.Phase.GEOMETRY);
+            Object[] row = driver.getRow(rowId);
+            // The geometry building time recorded by the driver is not a part of the read time
+            recorder.stopTimer(OperationRecorder.Phase.READ,
+                    startTime + recorder.getTime(OperationRecorder.Phase.GEOMETRY) - geometryTime);
+            return row;
+        }
+
+        @Override
+        public Object[] getRow(long rowId, int[] fields) throws IOException {
+            onRowRead();
+            long startTime = recorder.startTimer();
+            long geometryTime = recorder.getTime(OperationRecorder.Phase.GEOMETRY);
+            Object[] row = driver.getRow(rowId, fields);
+            recorder.stopTimer(OperationRecorder.Phase.READ,
+                    startTime + recorder.getTime(OperationRecorder.Phase.GEOMETRY) - geometryTime);
+            return row;
+        }
+
+        @Override
+        public void insertRow(Object[] values) throws IOException {
+            throw new IOException("The bulk load source is read only");
+        }
+    }
+
+    /**
+     * Expose a sequential source as a driver. The linked table scan reads the rows in order and stops when
+     * getRowCount() is reached, then the next row is always read in advance. The source is split into segments of
+     * consecutive rows, each scan of the linked table reads the rows of the current segment.
+     */
+    private static class SequentialDriver implements FileDriver {
+        private final RowSource source;
+        private final long segmentRows;
+        private Object[] nextRow;
+        private long segmentStart = 0;
+        private long readRows = 0;
+
+        private SequentialDriver(RowSource source, Object[] firstRow, long segmentRows) {
+            this.source = source;
+            this.nextRow = firstRow;
+            this.segmentRows = segmentRows;
+        }
+
+        /**
+         * Move to the next segment, the row identifiers start again at 0.
+         * @return False if all the rows have been read
+         */
+        private boolean nextSegment() {
+            segmentStart = readRows;
+            return nextRow != null;
+        }
+
+        @Override
+        public long getRowCount() {
+            long segmentReadRows = readRows - segmentStart;
+            return nextRow == null || segmentReadRows >= segmentRows ? segmentReadRows : segmentReadRows + 1;
+        }
+
+        @Override
+        public int getFieldCount() {
+            return source.getFieldCount();
+        }
+
+        @Override
+        public Object[] getRow(long rowId) throws IOException {
+            if (rowId != readRows - segmentStart || rowId >= getRowCount()) {
+                throw new IOException("The rows of a sequential source can only be read once, in order");
+            }
+            Object[] row = nextRow;
+            readRows++;
+            try {
+                nextRow = source.nextRow();
+            } catch (SQLException ex) {
+                throw new IOException(ex);
+            }
+            return row;
+        }
+
+        @Override
+        public Object[] getRow(long rowId, int[] fields) throws IOException {
+            return getRow(rowId);
+        }
+
+        @Override
+        public void insertRow(Object[] values) throws IOException {
+            throw new IOException("The bulk load source is read only");
+        }
+
+        @Override
+        public void close() throws IOException {
+            // The source is closed by its owner
+        }
+    }
+}
@@ -43,6 +43,11 @@ import java.util.List;
  * @param <Driver> file driver
  */
 public abstract class FileEngine<Driver extends FileDriver> implements TableEngine {
+    /**
+     * System property, set it to true in order to map the files of the linked tables in memory. The mapped files
+     * are released when the linked table is closed.
+     */
+    public static final String MEMORY_MAPPED_PROPERTY = "h2gis.fileTable.memoryMapped";
     private Logger LOGGER = LoggerFactory.getLogger(FileEngine.class);
 
     @Override
@@ -75,6 +80,13 @@ public abstract class FileEngine<Driver extends FileDriver> implements TableEngi
         }
     }
 
+    /**
+     * @return True if the files of the linked tables are mapped in memory, see {@link #MEMORY_MAPPED_PROPERTY}
+     */
+    protected static boolean isMemoryMapped() {
+        return Boolean.getBoolean(MEMORY_MAPPED_PROPERTY);
+    }
+
     /**
      * Compute unique column name among the other columns
      * @param base Returned name if there is no duplicate
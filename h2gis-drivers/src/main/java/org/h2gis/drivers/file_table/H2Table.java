@@ -38,6 +38,7 @@ import org.h2.util.MathUtils;
 import org.h2.util.New;
 import org.h2.value.Value;
 import org.h2gis.drivers.FileDriver;
+import org.h2gis.drivers.SpatialFileDriver;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -104,20 +105,23 @@ public class H2Table extends TableBase {
         if (!isSessionTemporary) {
             database.lockMeta(session);
         }
-        Index index;
-        if (isPersistIndexes() && indexType.isPersistent()) {
-            if (indexType.isSpatial()) {
-                index = new SpatialTreeIndex(this, indexId, indexName, cols,
-                        indexType, true, create, session);
-            } else {
-                throw DbException.getUnsupportedException("VIEW");
-            }
-        } else {
-            if (indexType.isSpatial()) {
-                index = new SpatialTreeIndex(this, indexId, indexName, cols,
-                        indexType, false, true, session);
+        // Use the file spatial index if the driver provides one
+        Index index = indexType.isSpatial() ? createFileSpatialIndex(indexName, indexId, cols, indexType) : null;
+        if (index == null) {
+            if (isPersistIndexes() && indexType.isPersistent()) {
+                if (indexType.isSpatial()) {
+                    index = new SpatialTreeIndex(this, indexId, indexName, cols,
+                            indexType, true, create, session);
+                } else {
+                    throw DbException.getUnsupportedException("VIEW");
+                }
             } else {
-                throw DbException.getUnsupportedException("VIEW");
+                if (indexType.isSpatial()) {
+                    index = new SpatialTreeIndex(this, indexId, indexName, cols,
+                            indexType, false, true, session);
+                } else {
+                    throw DbException.getUnsupportedException("VIEW");
+                }
             }
         }
         if (index.needRebuild() && getRowCount(session) > 0) {
@@ -174,6 +178,29 @@ public class H2Table extends TableBase {
         return index;
     }
 
+    /**
+     * Create a spatial index using the persistent index of the driver.
+     * @return The index or null if the driver does not provide a spatial index on the requested column
+     */
+    private Index createFileSpatialIndex(String indexName, int indexId, IndexColumn[] cols,
+                                         IndexType indexType) {
+        if (!(driver instanceof SpatialFileDriver) || cols.length != 1) {
+            return null;
+        }
+        SpatialFileDriver spatialDriver = (SpatialFileDriver) driver;
+        // First column is the primary key
+        if (cols[0].column.getColumnId() != spatialDriver.getGeometryFieldIndex() + 1) {
+            return null;
+        }
+        try {
+            spatialDriver.openSpatialIndex();
+        } catch (IOException ex) {
+            LOG.warn("Unable to use the spatial index file, the index will be built in memory", ex);
+            return null;
+        }
+        return new H2TableSpatialIndex(spatialDriver, this, indexId, indexName, cols, indexType);
+    }
+
     private static void addRowsToIndex(Session session, ArrayList<Row> list,
                                        Index index) {
         final Index idx = index;
@@ -21,7 +21,9 @@
 package org.h2gis.drivers.file_table;
 
 import org.h2.api.ErrorCode;
+import org.h2.command.dml.Select;
 import org.h2.engine.Session;
+import org.h2.expression.ExpressionVisitor;
 import org.h2.index.BaseIndex;
 import org.h2.index.Cursor;
 import org.h2.index.IndexCondition;
@@ -40,6 +42,8 @@ import org.h2.value.ValueLong;
 import org.h2gis.drivers.FileDriver;
 
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
 
 /**
  * ScanIndex of {@link org.h2gis.drivers.FileDriver}, the key is the row index [1-n].
@@ -50,6 +54,8 @@ public class H2TableIndex extends BaseIndex {
 
     private FileDriver driver;
     private final boolean isScanIndex;
+    /** Fields read for the last table filter, nested loop joins call find with the same filter for each row */
+    private volatile FilterFields lastFilterFields;
 
     /**
      * Constructor for scan index. Hidden column _ROWID_.
@@ -95,8 +101,19 @@ public class H2TableIndex extends BaseIndex {
 
     @Override
     public Row getRow(Session session, long key) {
+        return getRow(session, key, null);
+    }
+
+    /**
+     * Read a row, only the provided fields are decoded.
+     * @param session Database session
+     * @param key Row key [1-n]
+     * @param fields Driver field index [0-n[ to read, null to read all fields. The other columns are NULL.
+     * @return Row instance
+     */
+    public Row getRow(Session session, long key, int[] fields) {
         try {
-            Object[] driverRow = driver.getRow(key - 1);
+            Object[] driverRow = fields == null ? driver.getRow(key - 1) : driver.getRow(key - 1, fields);
             Value[] values = new Value[driverRow.length + 1];
             Column[] columns = table.getColumns();
             values[0] = ValueLong.get(key);
@@ -127,8 +144,77 @@ public class H2TableIndex extends BaseIndex {
         throw DbException.get(ErrorCode.FEATURE_NOT_SUPPORTED_1,"remove in Shape files");
     }
 
+    @Override
+    public Cursor find(TableFilter filter, SearchRow first, SearchRow last) {
+        return find(filter.getSession(), first, last, getFilterFields(filter));
+    }
+
+    /**
+     * @param filter Table filter
+     * @return Driver field index [0-n[ used by the query of the table filter, null if all fields must be read
+     */
+    int[] getFilterFields(TableFilter filter) {
+        FilterFields filterFields = lastFilterFields;
+        if (filterFields == null || filterFields.filter != filter) {
+            filterFields = new FilterFields(filter, getRequiredFields(filter));
+            lastFilterFields = filterFields;
+        }
+        return filterFields.fields;
+    }
+
     @Override
     public Cursor find(Session session, SearchRow first, SearchRow last) {
+        return find(session, first, last, null);
+    }
+
+    /**
+     * Compute the driver fields used by the query of the table filter.
+     * @param filter Table filter
+     * @return Driver field index [0-n[ or null if all fields must be read
+     */
+    public static int[] getRequiredFields(TableFilter filter) {
+        Select select = filter.getSelect();
+        if (select == null) {
+            return null;
+        }
+        final HashSet<Column> columns = new HashSet<Column>();
+        final ExpressionVisitor visitor = ExpressionVisitor.getColumnsVisitor(columns);
+        // The visit stops on the first expression that returns false, then the columns set is not complete
+        if (!select.isEverything(visitor)) {
+            return null;
+        }
+        // Outer join conditions are not part of the select condition
+        final boolean[] complete = new boolean[]{true};
+        for (TableFilter topFilter : select.getTopFilters()) {
+            topFilter.visit(new TableFilter.TableFilterVisitor() {
+                @Override
+                public void accept(TableFilter f) {
+                    if (f.getJoinCondition() != null && !f.getJoinCondition().isEverything(visitor)) {
+                        complete[0] = false;
+                    }
+                    if (f.getFilterCondition() != null && !f.getFilterCondition().isEverything(visitor)) {
+                        complete[0] = false;
+                    }
+                }
+            });
+        }
+        if (!complete[0]) {
+            return null;
+        }
+        Table table = filter.getTable();
+        Column[] tableColumns = table.getColumns();
+        int[] fields = new int[tableColumns.length];
+        int fieldCount = 0;
+        // First column is the primary key, it is not read from the driver
+        for (int columnId = 1; columnId < tableColumns.length; columnId++) {
+            if (columns.contains(tableColumns[columnId])) {
+                fields[fieldCount++] = columnId - 1;
+            }
+        }
+        return Arrays.copyOf(fields, fieldCount);
+    }
+
+    private Cursor find(Session session, SearchRow first, SearchRow last, int[] fields) {
         if (!isScanIndex) {
             Row remakefirst = new Row(null, 0);
             if(first != null) {
@@ -145,7 +231,7 @@ public class H2TableIndex extends BaseIndex {
             first = remakefirst;
             last = remakeLast;
         }
-        return new SHPCursor(this, first, last, session);
+        return new SHPCursor(this, first, last, session, fields);
     }
 
     @Override
@@ -221,11 +307,22 @@ public class H2TableIndex extends BaseIndex {
         return isScanIndex;
     }
 
+    private static class FilterFields {
+        private final TableFilter filter;
+        private final int[] fields;
+
+        private FilterFields(TableFilter filter, int[] fields) {
+            this.filter = filter;
+            this.fields = fields;
+        }
+    }
+
     private static class SHPCursor implements Cursor {
         private H2TableIndex tIndex;
         private long rowIndex;
         private Session session;
         private SearchRow begin, end;
+        private int[] fields;
 
         private SHPCursor(H2TableIndex tIndex, long rowIndex, Session session) {
             this.tIndex = tIndex;
@@ -233,17 +330,18 @@ public class H2TableIndex extends BaseIndex {
             this.session = session;
         }
 
-        private SHPCursor(H2TableIndex tIndex, SearchRow begin, SearchRow end, Session session) {
+        private SHPCursor(H2TableIndex tIndex, SearchRow begin, SearchRow end, Session session, int[] fields) {
             this.tIndex = tIndex;
             this.session = session;
             this.begin = begin;
             this.end = end;
+            this.fields = fields;
             this.rowIndex = begin == null ? 0 : begin.getKey() - 1;
         }
 
         @Override
         public Row get() {
-            return tIndex.getRow(session, rowIndex);
+            return tIndex.getRow(session, rowIndex, fields);
         }
 
         @Override
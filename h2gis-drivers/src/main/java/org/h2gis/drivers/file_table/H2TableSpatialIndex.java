@@ -0,0 +1,252 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.drivers.file_table;
+
+import com.vividsolutions.jts.geom.Envelope;
+import org.h2.api.ErrorCode;
+import org.h2.engine.Session;
+import org.h2.index.BaseIndex;
+import org.h2.index.Cursor;
+import org.h2.index.IndexType;
+import org.h2.index.SpatialIndex;
+import org.h2.index.SpatialTreeIndex;
+import org.h2.message.DbException;
+import org.h2.result.Row;
+import org.h2.result.SearchRow;
+import org.h2.result.SortOrder;
+import org.h2.table.IndexColumn;
+import org.h2.table.Table;
+import org.h2.table.TableFilter;
+import org.h2.value.Value;
+import org.h2.value.ValueGeometry;
+import org.h2.value.ValueNull;
+import org.h2gis.drivers.SpatialFileDriver;
+
+import java.io.IOException;
+
+/**
+ * Spatial index of a {@link org.h2gis.drivers.file_table.H2Table} backed by the persistent index of a
+ * {@link org.h2gis.drivers.SpatialFileDriver}. Only the rows returned by the file index are decoded.
+ */
+public class H2TableSpatialIndex extends BaseIndex implements SpatialIndex {
+    private final SpatialFileDriver driver;
+
+    /**
+     * Constructor.
+     * @param driver Linked file driver, the spatial index must be already opened
+     * @param table Linked table
+     * @param id Index identifier
+     * @param indexName Index name
+     * @param columns Indexed geometry column
+     * @param indexType Index type
+     */
+    public H2TableSpatialIndex(SpatialFileDriver driver, Table table, int id, String indexName,
+                               IndexColumn[] columns, IndexType indexType) {
+        this.driver = driver;
+        initBaseIndex(table, id, indexName, columns, indexType);
+    }
+
+    @Override
+    public void checkRename() {
+        // Nothing to check
+    }
+
+    @Override
+    public void close(Session session) {
+        // The index file is closed with the driver
+    }
+
+    @Override
+    public void add(Session session, Row row) {
+        // Rows are only added when the index is built, the file index is already up to date
+    }
+
+    @Override
+    public void remove(Session session, Row row) {
+        throw DbException.get(ErrorCode.FEATURE_NOT_SUPPORTED_1,"remove in Shape files");
+    }
+
+    @Override
+    public Cursor find(TableFilter filter, SearchRow first, SearchRow last) {
+        H2TableIndex scanIndex = getScanIndex(filter.getSession());
+        return new ScanCursor(scanIndex, filter.getSession(), getRowCount(filter.getSession()),
+                scanIndex.getFilterFields(filter));
+    }
+
+    @Override
+    public Cursor find(Session session, SearchRow first, SearchRow last) {
+        return new ScanCursor(getScanIndex(session), session, getRowCount(session), null);
+    }
+
+    private H2TableIndex getScanIndex(Session session) {
+        return (H2TableIndex) table.getScanIndex(session);
+    }
+
+    @Override
+    public Cursor findByGeometry(TableFilter filter, SearchRow intersection) {
+        if (intersection == null) {
+            return find(filter, null, null);
+        }
+        Value v = intersection.getValue(columnIds[0]);
+        if (v == null || v == ValueNull.INSTANCE) {
+            return find(filter, null, null);
+        }
+        Envelope envelope = ((ValueGeometry) v.convertTo(Value.GEOMETRY)).getGeometryNoCopy().getEnvelopeInternal();
+        try {
+            H2TableIndex scanIndex = getScanIndex(filter.getSession());
+            return new RowIdCursor(scanIndex, filter.getSession(), driver.queryIndex(envelope),
+                    scanIndex.getFilterFields(filter));
+        } catch (IOException ex) {
+            throw DbException.get(ErrorCode.IO_EXCEPTION_1, ex);
+        }
+    }
+
+    @Override
+    public double getCost(Session session, int[] masks, TableFilter filter, SortOrder sortOrder) {
+        return SpatialTreeIndex.getCostRangeIndex(masks, table.getRowCountApproximation(), columns);
+    }
+
+    @Override
+    public void remove(Session session) {
+        // Keep the index file, it may be used when the file will be linked again
+    }
+
+    @Override
+    public void truncate(Session session) {
+        throw DbException.get(ErrorCode.FEATURE_NOT_SUPPORTED_1,"truncate in Shape files");
+    }
+
+    @Override
+    public boolean canGetFirstOrLast() {
+        return false;
+    }
+
+    @Override
+    public Cursor findFirstOrLast(Session session, boolean first) {
+        throw DbException.getUnsupportedException("SPATIAL INDEX findFirstOrLast");
+    }
+
+    @Override
+    public boolean needRebuild() {
+        return false;
+    }
+
+    @Override
+    public long getRowCount(Session session) {
+        return driver.getRowCount();
+    }
+
+    @Override
+    public long getRowCountApproximation() {
+        return driver.getRowCount();
+    }
+
+    @Override
+    public long getDiskSpaceUsed() {
+        return 0;
+    }
+
+    /**
+     * Iterate over the row identifiers returned by the file index
+     */
+    private static class RowIdCursor implements Cursor {
+        private final H2TableIndex scanIndex;
+        private final Session session;
+        private final long[] rowIds;
+        private final int[] fields;
+        private int position = -1;
+        private Row current;
+
+        private RowIdCursor(H2TableIndex scanIndex, Session session, long[] rowIds, int[] fields) {
+            this.scanIndex = scanIndex;
+            this.session = session;
+            this.rowIds = rowIds;
+            this.fields = fields;
+        }
+
+        @Override
+        public Row get() {
+            if (current == null) {
+                current = scanIndex.getRow(session, rowIds[position] + 1, fields);
+            }
+            return current;
+        }
+
+        @Override
+        public SearchRow getSearchRow() {
+            return get();
+        }
+
+        @Override
+        public boolean next() {
+            current = null;
+            return ++position < rowIds.length;
+        }
+
+        @Override
+        public boolean previous() {
+            throw DbException.throwInternalError();
+        }
+    }
+
+    /**
+     * Iterate over all rows
+     */
+    private static class ScanCursor implements Cursor {
+        private final H2TableIndex scanIndex;
+        private final Session session;
+        private final long rowCount;
+        private final int[] fields;
+        private long key = 0;
+        private Row current;
+
+        private ScanCursor(H2TableIndex scanIndex, Session session, long rowCount, int[] fields) {
+            this.scanIndex = scanIndex;
+            this.session = session;
+            this.rowCount = rowCount;
+            this.fields = fields;
+        }
+
+        @Override
+        public Row get() {
+            if (current == null) {
+                current = scanIndex.getRow(session, key, fields);
+            }
+            return current;
+        }
+
+        @Override
+        public SearchRow getSearchRow() {
+            return get();
+        }
+
+        @Override
+        public boolean next() {
+            current = null;
+            return ++key <= rowCount;
+        }
+
+        @Override
+        public boolean previous() {
+            throw DbException.throwInternalError();
+        }
+    }
+}
@@ -22,7 +22,6 @@ package org.h2gis.drivers.geojson;
 
 import org.h2gis.api.DriverFunction;
 import org.h2gis.api.ProgressVisitor;
-import org.h2gis.utilities.JDBCUtilities;
 
 import java.io.File;
 import java.io.IOException;
@@ -44,18 +43,22 @@ public class GeoJsonDriverFunction implements DriverFunction {
 
     @Override
     public String[] getImportFormats() {
-        return new String[]{"geojson"};
+        return new String[]{"geojson", "geojsonl", "geojsons"};
     }
 
     @Override
     public String[] getExportFormats() {
-        return new String[]{"geojson"};
+        return new String[]{"geojson", "geojsonl", "geojsons"};
     }
 
     @Override
     public String getFormatDescription(String format) {
         if (format.equalsIgnoreCase("geojson")) {
             return "GeoJSON 1.0";
+        } else if (format.equalsIgnoreCase("geojsonl")) {
+            return "Newline delimited GeoJSON";
+        } else if (format.equalsIgnoreCase("geojsons")) {
+            return "GeoJSON text sequence (RFC 8142)";
         } else {
             return "";
         }
@@ -63,15 +66,13 @@ public class GeoJsonDriverFunction implements DriverFunction {
 
     @Override
     public boolean isSpatialFormat(String extension) {
-        return extension.equals("geojson");
+        return extension.equals("geojson") || extension.equals("geojsonl") || extension.equals("geojsons");
     }
 
     @Override
     public void exportTable(Connection connection, String tableReference, File fileName, ProgressVisitor progress) throws SQLException, IOException {
-        int recordCount = JDBCUtilities.getRowCount(connection, tableReference);
-        ProgressVisitor copyProgress = progress.subProcess(recordCount);       
         GeoJsonWriteDriver geoJsonDriver = new GeoJsonWriteDriver(connection, tableReference, fileName);
-        geoJsonDriver.write(copyProgress);
+        geoJsonDriver.write(progress);
     }
 
     @Override
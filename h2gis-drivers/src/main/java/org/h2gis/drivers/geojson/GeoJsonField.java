@@ -28,6 +28,7 @@ package org.h2gis.drivers.geojson;
 public class GeoJsonField {
     
     static String NAME="name";
+    static String TYPE="type";
     static String CRS ="crs";
     static String FEATURES="features";
     static String FEATURECOLLECTION="featurecollection";
@@ -23,7 +23,7 @@ package org.h2gis.drivers.geojson;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
-import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.CoordinateSequence;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryCollection;
 import com.vividsolutions.jts.geom.GeometryFactory;
@@ -35,18 +35,36 @@ import com.vividsolutions.jts.geom.MultiPolygon;
 import com.vividsolutions.jts.geom.Point;
 import com.vividsolutions.jts.geom.Polygon;
 import com.vividsolutions.jts.geom.PrecisionModel;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequence;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequenceFactory;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.nio.channels.FileChannel;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import org.h2gis.drivers.file_table.BulkLoader;
 import org.h2gis.drivers.utility.FileUtil;
 import org.h2gis.api.EmptyProgressVisitor;
+import org.h2gis.api.OperationMetrics;
+import org.h2gis.api.OperationRecorder;
 import org.h2gis.api.ProgressVisitor;
 import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.SFSUtilities;
@@ -59,23 +77,43 @@ import org.slf4j.LoggerFactory;
  *
  * Supported geometries are POINT, LINESTRING, POLYGON and GEOMETRYCOLLECTION.
  *
- * The driver requires all Feature objects in a collection to have the same
- * schema of properties. To build the table schema the first feature of the
- * FeatureCollection is parsed. If the GeoJSON format does not contain any
- * properties, a default primary key is added.
+ * The file is read in a single pass. The table schema is built from the
+ * properties of the first features of the FeatureCollection (see
+ * {@link #setSchemaSampleSize(int)}), these features are kept in memory until
+ * the table is created. Properties that appear later are added to the table and
+ * column types are widened (INT, BIGINT, FLOAT8 then VARCHAR) when a value does
+ * not fit. If the features do not contain any properties, a default primary key
+ * is added.
+ *
+ * GeoJSON text sequences (RFC 8142, .geojsons) and newline delimited GeoJSON
+ * (.geojsonl) files contain one feature by record. The records of a .geojsons
+ * file are split on the record separator character, a record may span several
+ * lines. The records of a .geojsonl file are split on the line feed character.
+ * Chunks of records are parsed by several threads and inserted in the file
+ * order.
+ *
+ * With an embedded H2 database the features are inserted through
+ * {@link BulkLoader}, a feature that requires a table update ends the current
+ * copy, the copy resumes once the table is updated.
  *
  * @author Erwan Bocher
  */
 public class GeoJsonReaderDriver {
     private final static ArrayList<String> geomTypes;
+    private static final int BATCH_MAX_SIZE = 100;
+    private static final String ID_COLUMN = "ID";
+    /** Number of records of a GeoJSON sequence parsed by a single task */
+    private static final int SEQUENCE_CHUNK_SIZE = 1000;
+    private static final byte RECORD_SEPARATOR = 0x1E;
+    private static final byte LINE_FEED = '\n';
 
     
     private final File fileName;
     private final Connection connection;
-    private static GeometryFactory GF ;
+    private GeometryFactory geometryFactory;
     private PreparedStatement preparedStatement = null;
+    private int batchSize = 0;
     private JsonFactory jsFactory;
-    private boolean hasProperties = false;
     private int featureCounter = 1;
     private ProgressVisitor progress = new EmptyProgressVisitor();
     private FileChannel fc;
@@ -84,12 +122,22 @@ public class GeoJsonReaderDriver {
     private long nodeCountProgress = 0;
     // For progression information return
     private static final int AVERAGE_NODE_SIZE = 500;
-    boolean hasGeometryField = false;
-    int fieldIndex = 0;
     private static final Logger log = LoggerFactory.getLogger(GeoJsonReaderDriver.class);
     private int parsedSRID =0;
     private boolean isH2;
     private TableLocation tableLocation;
+    private int schemaSampleSize = 100;
+    // Features read before the table creation
+    private List<Feature> sample = new ArrayList<Feature>();
+    // Property columns by column name
+    private final Map<String, PropertyColumn> columns = new LinkedHashMap<String, PropertyColumn>();
+    // Property columns in the table order, null for the geometry and ID columns
+    private final List<PropertyColumn> tableColumns = new ArrayList<PropertyColumn>();
+    private int geometryColumnIndex = 0;
+    private boolean hasIdColumn = false;
+    // x, y, z coordinates of the sequence being parsed
+    private double[] coordinateBuffer = new double[3 * 64];
+    private OperationRecorder recorder = OperationRecorder.DISABLED;
     
     static {
         geomTypes = new ArrayList<String>();
@@ -115,6 +163,17 @@ public class GeoJsonReaderDriver {
         this.fileName = fileName;
     }
 
+    /**
+     * @param schemaSampleSize Number of features read to build the table
+     * schema. Properties found after these features widen the table.
+     */
+    public void setSchemaSampleSize(int schemaSampleSize) {
+        if (schemaSampleSize < 1) {
+            throw new IllegalArgumentException("The schema sample size must be greater than zero");
+        }
+        this.schemaSampleSize = schemaSampleSize;
+    }
+
     /**
      * Read the GeoJSON file.
      *
@@ -124,10 +183,28 @@ public class GeoJsonReaderDriver {
      * @throws java.io.IOException
      */
     public void read(ProgressVisitor progress,String tableReference) throws SQLException, IOException {
-        if (FileUtil.isFileImportable(fileName, "geojson")) {            
+        String extension = "geojson";
+        if (FileUtil.isExtensionWellFormated(fileName, "geojsonl")) {
+            extension = "geojsonl";
+        } else if (FileUtil.isExtensionWellFormated(fileName, "geojsons")) {
+            extension = "geojsons";
+        }
+        if (FileUtil.isFileImportable(fileName, extension)) {
             this.isH2 =JDBCUtilities.isH2DataBase(connection.getMetaData()); 
             this.tableLocation = TableLocation.parse(tableReference, isH2);
-            parseGeoJson(progress);
+            recorder = OperationMetrics.start("GeoJSON import");
+            recorder.addBytesRead(fileName.length());
+            if (!extension.equals("geojson")) {
+                // RFC 8142 records may span several lines
+                parseGeoJsonSequence(progress, extension.equals("geojsons") ? RECORD_SEPARATOR : LINE_FEED);
+            } else {
+                parseGeoJson(progress);
+            }
+            // The file is parsed while the features are inserted
+            recorder.addTime(OperationRecorder.Phase.READ, recorder.getElapsedTime()
+                    - recorder.getTime(OperationRecorder.Phase.WRITE)
+                    - recorder.getTime(OperationRecorder.Phase.READ));
+            recorder.close();
         } 
     }
 
@@ -159,255 +236,136 @@ public class GeoJsonReaderDriver {
     private void parseGeoJson(ProgressVisitor progress) throws SQLException, IOException {
         this.progress = progress.subProcess(100);
         init();
-        if (parseMetadata()) {
-            GF = new GeometryFactory(new PrecisionModel(), parsedSRID);
-            parseData();
-            setGeometryTypeConstraints();
-        } else {
-            throw new SQLException("Cannot create the table " + tableLocation + " to import the GeoJSON data");
-        }
-    }
-
-    /**
-     * Parses the first GeoJSON feature to create the PreparedStatement.
-     *
-     * @throws SQLException
-     * @throws IOException
-     */
-    private boolean parseMetadata() throws SQLException, IOException {
-        FileInputStream fis = null;
-        StringBuilder metadataBuilder = new StringBuilder();
+        FileInputStream fis = new FileInputStream(fileName);
         try {
-            fis = new FileInputStream(fileName);
             this.fc = fis.getChannel();
             this.fileSize = fc.size();
             // Given the file size and an average node file size.
             // Skip how many nodes in order to update progression at a step of 1%
             readFileSizeEachNode = Math.max(1, (this.fileSize / AVERAGE_NODE_SIZE) / 100);
             nodeCountProgress = 0;
-            
             JsonParser jp = jsFactory.createParser(fis);
-            metadataBuilder.append("CREATE TABLE ");
-            metadataBuilder.append(tableLocation);
-            metadataBuilder.append(" (");
-
-            jp.nextToken();//START_OBJECT
-            jp.nextToken(); // field_name (type)
-            jp.nextToken(); // value_string (FeatureCollection)
-            String geomType = jp.getText();
-            
-            if (geomType.equalsIgnoreCase(GeoJsonField.FEATURECOLLECTION)) {
-                jp.nextToken(); // FIELD_NAME features
-                String firstParam = jp.getText();
-                //Read the CRS
-                if (firstParam.equalsIgnoreCase(GeoJsonField.CRS)) {
-                    parsedSRID = readCRS(jp);
-                    readFeatures(jp, geomType, metadataBuilder);
-                } else if (firstParam.equalsIgnoreCase(GeoJsonField.FEATURES)) {
-                    readFeatures(jp, geomType, metadataBuilder);
+            try {
+                jp.nextToken();//START_OBJECT
+                jp.nextToken(); // field_name (type)
+                jp.nextToken(); // value_string (FeatureCollection)
+                String geomType = jp.getText();
+                if (geomType.equalsIgnoreCase(GeoJsonField.FEATURECOLLECTION)) {
+                    jp.nextToken(); // FIELD_NAME features
+                    String firstParam = jp.getText();
+                    //Read the CRS
+                    if (firstParam.equalsIgnoreCase(GeoJsonField.CRS)) {
+                        parsedSRID = readCRS(jp);
+                        firstParam = jp.getText();
+                    }
+                    if (firstParam.equalsIgnoreCase(GeoJsonField.FEATURES)) {
+                        geometryFactory = new GeometryFactory(new PrecisionModel(), parsedSRID,
+                                PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+                        readFeatures(new CollectionReader(jp));
+                    } else {
+                        throw new SQLException("Malformed GeoJSON file. Expected 'features', found '" + firstParam + "'");
+                    }
                 } else {
-                    throw new SQLException("Malformed GeoJSON file. Expected 'features', found '" + firstParam + "'");
+                    throw new SQLException("Malformed GeoJSON file. Expected 'FeatureCollection', found '" + geomType + "'");
                 }
-            } else {
-                throw new SQLException("Malformed GeoJSON file. Expected 'FeatureCollection', found '" + geomType + "'");
+            } finally {
+                jp.close();
             }
-            jp.close();
-        } catch (FileNotFoundException ex) {
-            throw new SQLException(ex);
-
         } finally {
-            try {
-                if (fis != null) {
-                    fis.close();
-                }
-            } catch (IOException ex) {
-                throw new IOException(ex);
-            }
-        }
-
-        // Now we create the table if there is at leat one geometry field.
-        if (hasGeometryField) {
-            Statement stmt = connection.createStatement();
-            stmt.execute(metadataBuilder.toString());
-            stmt.close();
-            
-            if (fieldIndex > 0) {
-                StringBuilder insert = new StringBuilder("INSERT INTO ").append(tableLocation).append(" VALUES ( ?");
-                for (int i = 1; i < fieldIndex; i++) {
-                    insert.append(",?");
-                }
-                insert.append(");");
-                preparedStatement = connection.prepareStatement(insert.toString());
-                return true;
-            }
-        } else {
-            throw new SQLException("The first feature must contains a geometry field.");
-        }
-        return false;
-    }
-    
-    /**
-     * Read the first feature to create the table
-     * @param jp
-     */
-    private void readFeatures(JsonParser jp, String geomType, StringBuilder metadataBuilder) throws IOException, SQLException {
-        jp.nextToken(); // START_ARRAY [
-        JsonToken token = jp.nextToken(); // START_OBJECT {
-        if (token != JsonToken.END_ARRAY) {
-            jp.nextToken(); // FIELD_NAME type"name"
-            jp.nextToken(); // VALUE_STRING Feature
-            geomType = jp.getText();
-            if (geomType.equalsIgnoreCase(GeoJsonField.FEATURE)) {
-                jp.nextToken(); // FIELD_NAME geometry
-                String firstField = jp.getText();
-                if (firstField.equalsIgnoreCase(GeoJsonField.GEOMETRY)) {
-                    parseGeometryMetadata(jp, metadataBuilder);
-                    hasGeometryField = true;
-                    fieldIndex++;
-                    jp.nextToken();//END_OBJECT } geometry
-                } else if (firstField.equalsIgnoreCase(GeoJsonField.PROPERTIES)) {
-                    fieldIndex = parseMetadataProperties(jp, metadataBuilder, fieldIndex);
-                    hasProperties = true;
-                }
-                // If there is only one geometry field in the feature them the next
-                // token corresponds to the end object of the feature.
-                jp.nextToken();
-                if (jp.getCurrentToken() != JsonToken.END_OBJECT) {
-                    String secondParam = jp.getText();
-                    if (secondParam.equalsIgnoreCase(GeoJsonField.GEOMETRY)) {
-                        parseGeometryMetadata(jp, metadataBuilder);
-                        hasGeometryField = true;
-                        fieldIndex++;
-                        jp.nextToken();//END_OBJECT } geometry;
-                    } else if (secondParam.equalsIgnoreCase(GeoJsonField.PROPERTIES)) {
-                        fieldIndex = parseMetadataProperties(jp, metadataBuilder, fieldIndex);
-                        hasProperties = true;
-                    }
-                    jp.nextToken(); //END_OBJECT } feature
-                }
-                if (!hasProperties) {
-                    metadataBuilder.append(",ID INT, PRIMARY KEY (ID)");
-                    fieldIndex++;
-                }
-                metadataBuilder.append(")");
-            } else {
-                throw new SQLException("Malformed GeoJSON file. Expected 'Feature', found '" + geomType + "'");
+            if (preparedStatement != null) {
+                preparedStatement.close();
             }
+            fis.close();
         }
+        setGeometryTypeConstraints();
     }
 
     /**
-     * Parses geometry metadata.
-     *
-     * @param jp
-     * @param metadataBuilder
+     * Creates the JsonFactory.
      */
-    private void parseGeometryMetadata(JsonParser jp, StringBuilder metadataBuilder) throws IOException, SQLException {
-        jp.nextToken(); //START_OBJECT {
-        jp.nextToken(); // FIELD_NAME type     
-        jp.nextToken(); //VALUE_STRING Point
-        firstGeometryType = jp.getText().toLowerCase();
-        if(geomTypes.contains(firstGeometryType)){
-            checkCoordinates(jp, metadataBuilder);
-        }
-        else if (firstGeometryType.equals(GeoJsonField.GEOMETRYCOLLECTION)) {
-            jp.nextToken();//START geometries array
-            if (jp.getText().equalsIgnoreCase(GeoJsonField.GEOMETRIES)) {
-                jp.skipChildren();
-                if(isH2){
-                metadataBuilder.append("THE_GEOM GEOMETRY");
-                }
-                else{
-                    metadataBuilder.append("THE_GEOM GEOMETRY(geometry,").append(parsedSRID).append(")");
-                }
-                firstGeometryType=GeoJsonField.GEOMETRY;
-                mixedGeometries=true;
-            } else {
-                throw new SQLException("Malformed GeoJSON file. Expected 'geometries', found '" + jp.getText() + "'");
-            }
-        } else {
-            throw new SQLException("Unsupported geometry : " + firstGeometryType);
-        }
-    }
-    
-    /**
-     * Check if the geometry is well formatted and contained an array of coordinates.
-     * 
-     * @param jp
-     * @param metadataBuilder
-     * @throws SQLException
-     * @throws IOException 
-     */
-    private void checkCoordinates(JsonParser jp, StringBuilder metadataBuilder) throws SQLException, IOException {
-        jp.nextToken(); // FIELD_NAME coordinates
-        if (jp.getText().equalsIgnoreCase(GeoJsonField.COORDINATES)) {
-            jp.nextToken();//START coordinates array
-            jp.skipChildren();
-            if (isH2) {
-                metadataBuilder.append("THE_GEOM GEOMETRY");
-            } else {
-                metadataBuilder.append("THE_GEOM GEOMETRY(geometry,").append(parsedSRID).append(")");
-            }
-        } else {
-            throw new SQLException("Malformed GeoJSON file. Expected 'coordinates', found '" + jp.getText() + "'");
-        }
+    private void init() {
+        jsFactory = new JsonFactory();
+        jsFactory.configure(JsonParser.Feature.ALLOW_COMMENTS, true);
+        jsFactory.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
+        jsFactory.configure(JsonParser.Feature.ALLOW_NON_NUMERIC_NUMBERS, true);
     }
 
     /**
-     * Parses the metadata properties.
+     * Parses a GeoJSON text sequence and writes it to a table.
      *
-     * @param jp
-     * @return index
+     * Each record contains one feature, records are separated by the record
+     * separator character (RFC 8142) or by a line feed (newline delimited
+     * GeoJSON). The file is read by the calling thread, chunks of records are
+     * parsed by a pool of threads and the features are inserted in the file
+     * order.
+     *
+     * @param progress
+     * @param separator Record separator, {@link #RECORD_SEPARATOR} or
+     * {@link #LINE_FEED}
      */
-    private int parseMetadataProperties(JsonParser jp, StringBuilder metadataBuilder, int fieldIndex) throws IOException {
-        jp.nextToken();//START_OBJECT {
-        while (jp.nextToken() != JsonToken.END_OBJECT) {
-            String fieldName = jp.getText().toUpperCase(); //FIELD_NAME columnName            
-            JsonToken value = jp.nextToken();
-            if(fieldIndex>0){
-                metadataBuilder.append(",");
+    private void parseGeoJsonSequence(ProgressVisitor progress, byte separator) throws SQLException, IOException {
+        this.progress = progress.subProcess(100);
+        init();
+        geometryFactory = new GeometryFactory(new PrecisionModel(), parsedSRID,
+                PackedCoordinateSequenceFactory.DOUBLE_FACTORY);
+        FileInputStream fis = new FileInputStream(fileName);
+        SequenceReader reader = null;
+        try {
+            this.fc = fis.getChannel();
+            this.fileSize = fc.size();
+            reader = new SequenceReader(fis, separator);
+            readFeatures(reader);
+        } finally {
+            if (reader != null) {
+                reader.close();
             }
-            if (value == JsonToken.VALUE_STRING) {
-                metadataBuilder.append(fieldName).append(" VARCHAR");
-                fieldIndex++;
-            } else if (value == JsonToken.VALUE_TRUE) {
-                metadataBuilder.append(fieldName).append(" BOOLEAN");
-                fieldIndex++;
-            } else if (value == JsonToken.VALUE_FALSE) {
-                metadataBuilder.append(fieldName).append(" BOOLEAN");
-                fieldIndex++;
-            } else if (value == JsonToken.VALUE_NUMBER_FLOAT) {
-                metadataBuilder.append(fieldName).append(" FLOAT8");
-                fieldIndex++;
-            } else if (value == JsonToken.VALUE_NUMBER_INT) {
-                metadataBuilder.append(fieldName).append(" INT");
-                fieldIndex++;
-            } else if (value == JsonToken.VALUE_NULL) {
-                metadataBuilder.append(fieldName).append(" VARCHAR");
-                fieldIndex++;
-            } else {
+            if (preparedStatement != null) {
+                preparedStatement.close();
             }
+            fis.close();
         }
-        return fieldIndex;
+        setGeometryTypeConstraints();
     }
 
     /**
-     * Creates the JsonFactory.
+     * @return A parser that shares the configuration of this driver, used by
+     * a single thread to parse the records of a GeoJSON sequence.
      */
-    private void init() {
-        jsFactory = new JsonFactory();
-        jsFactory.configure(JsonParser.Feature.ALLOW_COMMENTS, true);
-        jsFactory.configure(JsonParser.Feature.ALLOW_SINGLE_QUOTES, true);
-        jsFactory.configure(JsonParser.Feature.ALLOW_NON_NUMERIC_NUMBERS, true);
+    private GeoJsonReaderDriver newRecordParser() {
+        GeoJsonReaderDriver parser = new GeoJsonReaderDriver(connection, fileName);
+        parser.isH2 = isH2;
+        parser.jsFactory = jsFactory;
+        parser.geometryFactory = geometryFactory;
+        return parser;
     }
 
     /**
-     * Get the PreparedStatement to set the values to the table.
+     * Create the table from the first features then insert all the features.
      *
-     * @return
+     * @param reader Features of the file
      */
-    private PreparedStatement getPreparedStatement() {
-        return preparedStatement;
+    private void readFeatures(FeatureReader reader) throws SQLException, IOException {
+        Feature feature;
+        while (sample.size() < schemaSampleSize && (feature = reader.next()) != null) {
+            updateGeometryType(feature.geometryType);
+            sample.add(feature);
+        }
+        createTable();
+        FeatureRows rows = new FeatureRows(sample, reader);
+        sample = null;
+        if (BulkLoader.isSupported(connection)) {
+            BulkLoader.copyRows(connection, rows, tableLocation.toString(), progress, recorder);
+            while (rows.pending != null) {
+                updateColumns(rows.pending);
+                BulkLoader.copyRows(connection, rows, tableLocation.toString(), progress, recorder);
+            }
+        } else {
+            prepareInsert();
+            while ((feature = rows.nextFeature()) != null) {
+                insertFeature(feature);
+            }
+            executeBatch();
+        }
     }
 
     /**
@@ -418,56 +376,77 @@ public class GeoJsonReaderDriver {
      * { "type": "Feature", "geometry":{"type": "Point", "coordinates": [102.0,
      * 0.5]}, "properties": {"prop0": "value0"} }
      *
-     * @param jsParser
+     * @param jp
+     * @return The parsed feature
      */
-    private void parseFeature(JsonParser jp) throws IOException, SQLException {
-        jp.nextToken(); // FIELD_NAME geometry
-        String firstField = jp.getText();
-        fieldIndex = 1;
-        if (firstField.equalsIgnoreCase(GeoJsonField.GEOMETRY)) {
-            setGeometry(jp);
-        } else if (firstField.equalsIgnoreCase(GeoJsonField.PROPERTIES)) {
-            parseProperties(jp, fieldIndex);
-        }
-        //If there is only one geometry field in the feature them the next
-        //token corresponds to the end object of the feature
-        jp.nextToken();
-        if (jp.getCurrentToken() != JsonToken.END_OBJECT) {
-            String secondParam = jp.getText();// field name
-            if (secondParam.equalsIgnoreCase(GeoJsonField.GEOMETRY)) {
-                setGeometry(jp);
-            } else if (secondParam.equalsIgnoreCase(GeoJsonField.PROPERTIES)) {
-                parseProperties(jp, fieldIndex);
+    private Feature parseFeature(JsonParser jp) throws IOException, SQLException {
+        Feature feature = new Feature(featureCounter);
+        boolean hasGeometryField = false;
+        boolean hasProperties = false;
+        while (jp.nextToken() != JsonToken.END_OBJECT) {
+            String field = jp.getText(); // FIELD_NAME
+            if (field.equalsIgnoreCase(GeoJsonField.TYPE)) {
+                jp.nextToken(); // VALUE_STRING Feature
+                if (!jp.getText().equalsIgnoreCase(GeoJsonField.FEATURE)) {
+                    throw new SQLException("Malformed GeoJSON file. Expected 'Feature', found '" + jp.getText() + "'");
+                }
+            } else if (field.equalsIgnoreCase(GeoJsonField.GEOMETRY)) {
+                parseFeatureGeometry(jp, feature);
+                hasGeometryField = true;
+                feature.geometryBeforeProperties = !hasProperties;
+            } else if (field.equalsIgnoreCase(GeoJsonField.PROPERTIES)) {
+                parseProperties(jp, feature.properties);
+                hasProperties = true;
+            } else {
+                // Ignore other members (id, bbox..)
+                jp.nextToken();
+                jp.skipChildren();
             }
-            jp.nextToken(); //END_OBJECT } feature
         }
-        if (!hasProperties) {
-            getPreparedStatement().setObject(fieldIndex, featureCounter);
+        if (featureCounter == 1 && !hasGeometryField) {
+            throw new SQLException("The first feature must contains a geometry field.");
         }
-        getPreparedStatement().execute();
+        return feature;
     }
-    
+
     /**
-     * Set the parsed geometry to the table
-     * 
+     * Parses the geometry member of a feature
+     *
      * @param jp
-     * @throws IOException
-     * @throws SQLException 
+     * @param feature Feature that receives the geometry and its type
      */
-    private void setGeometry(JsonParser jp) throws IOException, SQLException {
-        jp.nextToken(); //START_OBJECT {
+    private void parseFeatureGeometry(JsonParser jp, Feature feature) throws IOException, SQLException {
+        if (jp.nextToken() == JsonToken.VALUE_NULL) { //START_OBJECT {
+            return;
+        }
         jp.nextToken(); // FIELD_NAME type     
         jp.nextToken(); //VALUE_STRING Point
-        String geometryType = jp.getText();
+        feature.geometryType = jp.getText().toLowerCase();
+        feature.geometry = parseGeometry(jp, feature.geometryType);
+    }
+
+    /**
+     * Update the geometry type of the table with the type of a feature
+     *
+     * @param geometryType GeoJSON geometry type in lower case, null for a null
+     * geometry
+     */
+    private void updateGeometryType(String geometryType) {
+        if (geometryType == null) {
+            return;
+        }
         //Test if mixed or not
-        if (!mixedGeometries) {
-            if (!geometryType.equalsIgnoreCase(firstGeometryType)) {
+        if (firstGeometryType == null) {
+            if (geometryType.equals(GeoJsonField.GEOMETRYCOLLECTION)) {
+                firstGeometryType = GeoJsonField.GEOMETRY;
                 mixedGeometries = true;
-                firstGeometryType = "geometry";
+            } else if (geomTypes.contains(geometryType)) {
+                firstGeometryType = geometryType;
             }
+        } else if (!mixedGeometries && !geometryType.equals(firstGeometryType)) {
+            mixedGeometries = true;
+            firstGeometryType = GeoJsonField.GEOMETRY;
         }
-        getPreparedStatement().setObject(fieldIndex, parseGeometry(jp, geometryType));
-        fieldIndex++;
     }
 
     /**
@@ -508,79 +487,215 @@ public class GeoJsonReaderDriver {
      *
      * "properties": {"prop0": "value0"}
      *
-     * @param jsParser
+     * @param jp
+     * @param properties Parsed values by column name
      */
-    private void parseProperties(JsonParser jp, int fieldIndex) throws IOException, SQLException {
-        jp.nextToken();//START_OBJECT {
+    private void parseProperties(JsonParser jp, Map<String, Object> properties) throws IOException {
+        if (jp.nextToken() != JsonToken.START_OBJECT) {//START_OBJECT {
+            // null properties
+            return;
+        }
         while (jp.nextToken() != JsonToken.END_OBJECT) {
+            String fieldName = TableLocation.capsIdentifier(jp.getText(), isH2); //FIELD_NAME columnName
             JsonToken value = jp.nextToken();
             if (value == JsonToken.VALUE_STRING) {
-                getPreparedStatement().setObject(fieldIndex, jp.getText());
-                fieldIndex++;
-            } else if (value == JsonToken.VALUE_TRUE) {
-                getPreparedStatement().setObject(fieldIndex, jp.getValueAsBoolean());
-                fieldIndex++;
-            } else if (value == JsonToken.VALUE_FALSE) {
-                getPreparedStatement().setObject(fieldIndex, jp.getValueAsBoolean());
-                fieldIndex++;
+                properties.put(fieldName, jp.getText());
+            } else if (value == JsonToken.VALUE_TRUE || value == JsonToken.VALUE_FALSE) {
+                properties.put(fieldName, jp.getValueAsBoolean());
             } else if (value == JsonToken.VALUE_NUMBER_FLOAT) {
-                getPreparedStatement().setObject(fieldIndex, jp.getValueAsDouble());
-                fieldIndex++;
+                properties.put(fieldName, jp.getValueAsDouble());
             } else if (value == JsonToken.VALUE_NUMBER_INT) {
-                getPreparedStatement().setObject(fieldIndex, jp.getValueAsInt());
-                fieldIndex++;
+                JsonParser.NumberType numberType = jp.getNumberType();
+                if (numberType == JsonParser.NumberType.INT) {
+                    properties.put(fieldName, jp.getIntValue());
+                } else if (numberType == JsonParser.NumberType.LONG) {
+                    properties.put(fieldName, jp.getLongValue());
+                } else {
+                    properties.put(fieldName, jp.getValueAsDouble());
+                }
             } else if (value == JsonToken.VALUE_NULL) {
-                getPreparedStatement().setObject(fieldIndex, null);
-                fieldIndex++;
+                properties.put(fieldName, null);
             } else {
                 //ignore other value
+                jp.skipChildren();
+            }
+        }
+    }
+
+    /**
+     * Create the table from the sampled features.
+     */
+    private void createTable() throws SQLException {
+        if (sample.isEmpty()) {
+            throw new SQLException("The first feature must contains a geometry field.");
+        }
+        for (Feature feature : sample) {
+            for (Map.Entry<String, Object> property : feature.properties.entrySet()) {
+                String columnName = property.getKey();
+                PropertyType valueType = PropertyType.fromValue(property.getValue());
+                PropertyColumn column = columns.get(columnName);
+                if (column == null) {
+                    columns.put(columnName, new PropertyColumn(columnName, valueType));
+                } else {
+                    column.type = PropertyType.widen(column.type, valueType);
+                }
             }
         }
+        boolean geometryBeforeProperties = sample.get(0).geometryBeforeProperties;
+        StringBuilder geometryColumn = new StringBuilder("THE_GEOM GEOMETRY");
+        if (!isH2) {
+            geometryColumn.append("(geometry,").append(parsedSRID).append(")");
+        }
+        StringBuilder metadataBuilder = new StringBuilder("CREATE TABLE ");
+        metadataBuilder.append(tableLocation);
+        metadataBuilder.append(" (");
+        if (geometryBeforeProperties || columns.isEmpty()) {
+            metadataBuilder.append(geometryColumn);
+            tableColumns.add(null);
+        }
+        boolean first = !geometryBeforeProperties && !columns.isEmpty();
+        for (PropertyColumn column : columns.values()) {
+            if (!first) {
+                metadataBuilder.append(",");
+            }
+            first = false;
+            metadataBuilder.append(column.getSQLName(isH2)).append(" ").append(column.getSQLType());
+            tableColumns.add(column);
+        }
+        if (!geometryBeforeProperties && !columns.isEmpty()) {
+            metadataBuilder.append(",").append(geometryColumn);
+            geometryColumnIndex = tableColumns.size();
+            tableColumns.add(null);
+        }
+        if (columns.isEmpty()) {
+            metadataBuilder.append(",").append(ID_COLUMN).append(" INT, PRIMARY KEY (").append(ID_COLUMN).append(")");
+            tableColumns.add(null);
+            hasIdColumn = true;
+        }
+        metadataBuilder.append(")");
+        Statement stmt = connection.createStatement();
+        try {
+            stmt.execute(metadataBuilder.toString());
+        } finally {
+            stmt.close();
+        }
+    }
 
+    /**
+     * @return True if the properties of the feature fit into the table columns,
+     * see {@link #updateColumns(Feature)}
+     */
+    private boolean fitsColumns(Feature feature) {
+        for (Map.Entry<String, Object> property : feature.properties.entrySet()) {
+            PropertyType valueType = PropertyType.fromValue(property.getValue());
+            PropertyColumn column = columns.get(property.getKey());
+            if (column == null) {
+                return false;
+            } else if (column.type != null && valueType != null
+                    && PropertyType.widen(column.type, valueType) != column.type) {
+                return false;
+            }
+        }
+        return true;
     }
 
     /**
-     * Parses the featureCollection
-     *
-     * @param jp
-     * @throws IOException
-     * @throws SQLException
+     * Build the insert statement using the current columns
      */
-    private void parseFeatures(JsonParser jp) throws IOException, SQLException {
-        jp.nextToken(); // FIELD_NAME features
-        String firstParam = jp.getText();
-        if(firstParam.equalsIgnoreCase(GeoJsonField.CRS)){
-            firstParam = skipCRS(jp);
+    private void prepareInsert() throws SQLException {
+        if (preparedStatement != null) {
+            preparedStatement.close();
         }
-        if (firstParam.equalsIgnoreCase(GeoJsonField.FEATURES)) {
-            jp.nextToken(); // START_ARRAY [
-            JsonToken token = jp.nextToken(); // START_OBJECT {
-            while (token != JsonToken.END_ARRAY) {
-                jp.nextToken(); // FIELD_NAME type
-                jp.nextToken(); // VALUE_STRING Feature
-                String geomType = jp.getText();
-                if (geomType.equalsIgnoreCase(GeoJsonField.FEATURE)) {         
-                    if (progress.isCanceled()) {
-                        throw new SQLException("Canceled by user");
+        StringBuilder insert = new StringBuilder("INSERT INTO ").append(tableLocation).append(" (THE_GEOM");
+        for (PropertyColumn column : columns.values()) {
+            insert.append(",").append(column.getSQLName(isH2));
+        }
+        if (hasIdColumn) {
+            insert.append(",").append(ID_COLUMN);
+        }
+        insert.append(") VALUES ( ?");
+        for (int i = 0; i < columns.size() + (hasIdColumn ? 1 : 0); i++) {
+            insert.append(",?");
+        }
+        insert.append(")");
+        preparedStatement = connection.prepareStatement(insert.toString());
+    }
+
+    /**
+     * Add a new property or widen the column type if the feature does not
+     * fit into the table.
+     */
+    private void updateColumns(Feature feature) throws SQLException {
+        for (Map.Entry<String, Object> property : feature.properties.entrySet()) {
+            String columnName = property.getKey();
+            PropertyType valueType = PropertyType.fromValue(property.getValue());
+            PropertyColumn column = columns.get(columnName);
+            if (column == null) {
+                column = new PropertyColumn(columnName, valueType);
+                // Rows already in the batch do not have this column
+                executeBatch();
+                Statement stmt = connection.createStatement();
+                try {
+                    stmt.execute(String.format("ALTER TABLE %s ADD COLUMN %s %s", tableLocation,
+                            column.getSQLName(isH2), column.getSQLType()));
+                } finally {
+                    stmt.close();
+                }
+                columns.put(columnName, column);
+                tableColumns.add(column);
+                // The bulk load does not use the insert statement
+                if (preparedStatement != null) {
+                    prepareInsert();
+                }
+            } else if (column.type != null && valueType != null) {
+                PropertyType widenType = PropertyType.widen(column.type, valueType);
+                if (widenType != column.type) {
+                    executeBatch();
+                    column.type = widenType;
+                    Statement stmt = connection.createStatement();
+                    try {
+                        stmt.execute(String.format(isH2 ? "ALTER TABLE %s ALTER COLUMN %s %s" :
+                                "ALTER TABLE %s ALTER COLUMN %s TYPE %s", tableLocation,
+                                column.getSQLName(isH2), column.getSQLType()));
+                    } finally {
+                        stmt.close();
                     }
-                    parseFeature(jp);
-                    token = jp.nextToken(); //START_OBJECT new feature                    
-                    featureCounter++;
-                    if (nodeCountProgress++ % readFileSizeEachNode == 0) {
-                        // Update Progress
-                        try {
-                            progress.setStep((int) (((double) fc.position() / fileSize) * 100));
-                        } catch (IOException ex) {
-                            // Ignore
-                        }
+                    if (preparedStatement != null) {
+                        prepareInsert();
                     }
-                } else {
-                    throw new SQLException("Malformed GeoJSON file. Expected 'Feature', found '" + geomType + "'");
                 }
             }
-            //LOOP END_ARRAY ]
-        } else {
-            throw new SQLException("Malformed GeoJSON file. Expected 'features', found '" + firstParam + "'");
+        }
+    }
+
+    /**
+     * Add the feature into the insert batch
+     */
+    private void insertFeature(Feature feature) throws SQLException {
+        updateColumns(feature);
+        int fieldIndex = 1;
+        preparedStatement.setObject(fieldIndex++, feature.geometry);
+        for (PropertyColumn column : columns.values()) {
+            preparedStatement.setObject(fieldIndex++, feature.properties.get(column.name));
+        }
+        if (hasIdColumn) {
+            preparedStatement.setObject(fieldIndex, feature.id);
+        }
+        preparedStatement.addBatch();
+        recorder.addRows(1);
+        batchSize++;
+        if (batchSize >= BATCH_MAX_SIZE) {
+            executeBatch();
+        }
+    }
+
+    private void executeBatch() throws SQLException {
+        if (batchSize > 0) {
+            long flushTime = recorder.startTimer();
+            preparedStatement.executeBatch();
+            preparedStatement.clearBatch();
+            recorder.stopFlushTimer(flushTime);
+            batchSize = 0;
         }
     }
 
@@ -600,7 +715,7 @@ public class GeoJsonReaderDriver {
         String coordinatesField = jp.getText();
         if (coordinatesField.equalsIgnoreCase(GeoJsonField.COORDINATES)) {
             jp.nextToken(); // START_ARRAY [ to parse the coordinate
-            Point point = GF.createPoint(parseCoordinate(jp));
+            Point point = geometryFactory.createPoint(parseCoordinate(jp));
             return point;
         } else {
             throw new SQLException("Malformed GeoJSON file. Expected 'coordinates', found '" + coordinatesField + "'");
@@ -623,7 +738,7 @@ public class GeoJsonReaderDriver {
         String coordinatesField = jp.getText();
         if (coordinatesField.equalsIgnoreCase(GeoJsonField.COORDINATES)) {
             jp.nextToken(); // START_ARRAY [ coordinates
-            MultiPoint mPoint = GF.createMultiPoint(parseCoordinates(jp));
+            MultiPoint mPoint = geometryFactory.createMultiPoint(parseCoordinates(jp));
             jp.nextToken();//END_OBJECT } geometry
             return mPoint;
         } else {
@@ -646,7 +761,7 @@ public class GeoJsonReaderDriver {
         String coordinatesField = jp.getText();
         if (coordinatesField.equalsIgnoreCase(GeoJsonField.COORDINATES)) {
             jp.nextToken(); // START_ARRAY [ coordinates
-            LineString line = GF.createLineString(parseCoordinates(jp));
+            LineString line = geometryFactory.createLineString(parseCoordinates(jp));
             jp.nextToken();//END_OBJECT } geometry
             return line;
         } else {
@@ -671,10 +786,10 @@ public class GeoJsonReaderDriver {
             jp.nextToken();//START_ARRAY [ coordinates
             jp.nextToken(); // START_ARRAY [ coordinates line
             while (jp.getCurrentToken() != JsonToken.END_ARRAY) {
-                lineStrings.add(GF.createLineString(parseCoordinates(jp)));
+                lineStrings.add(geometryFactory.createLineString(parseCoordinates(jp)));
                 jp.nextToken();
             }
-            MultiLineString line = GF.createMultiLineString(lineStrings.toArray(new LineString[lineStrings.size()]));
+            MultiLineString line = geometryFactory.createMultiLineString(lineStrings.toArray(new LineString[lineStrings.size()]));
             jp.nextToken();//END_OBJECT } geometry
             return line;
         } else {
@@ -717,19 +832,19 @@ public class GeoJsonReaderDriver {
             ArrayList<LinearRing> holes = new ArrayList<LinearRing>();
             while (jp.getCurrentToken() != JsonToken.END_ARRAY) {
                 if (linesIndex == 0) {
-                    linearRing = GF.createLinearRing(parseCoordinates(jp));
+                    linearRing = geometryFactory.createLinearRing(parseCoordinates(jp));
                 } else {
-                    holes.add(GF.createLinearRing(parseCoordinates(jp)));
+                    holes.add(geometryFactory.createLinearRing(parseCoordinates(jp)));
                 }
                 jp.nextToken();//END RING
                 linesIndex++;
             }
             if (linesIndex > 1) {
                 jp.nextToken();//END_OBJECT } geometry
-                return GF.createPolygon(linearRing, holes.toArray(new LinearRing[holes.size()]));
+                return geometryFactory.createPolygon(linearRing, holes.toArray(new LinearRing[holes.size()]));
             } else {
                 jp.nextToken();//END_OBJECT } geometry
-                return GF.createPolygon(linearRing, null);
+                return geometryFactory.createPolygon(linearRing, null);
             }
         } else {
             throw new SQLException("Malformed GeoJSON file. Expected 'coordinates', found '" + coordinatesField + "'");
@@ -764,23 +879,23 @@ public class GeoJsonReaderDriver {
                 ArrayList<LinearRing> holes = new ArrayList<LinearRing>();
                 while (jp.getCurrentToken() != JsonToken.END_ARRAY) {
                     if (linesIndex == 0) {
-                        linearRing = GF.createLinearRing(parseCoordinates(jp));
+                        linearRing = geometryFactory.createLinearRing(parseCoordinates(jp));
                     } else {
-                        holes.add(GF.createLinearRing(parseCoordinates(jp)));
+                        holes.add(geometryFactory.createLinearRing(parseCoordinates(jp)));
                     }
                     jp.nextToken();//END RING
                     linesIndex++;
                 }
                 if (linesIndex > 1) {
                     jp.nextToken();//END_OBJECT
-                    polygons.add(GF.createPolygon(linearRing, holes.toArray(new LinearRing[holes.size()])));
+                    polygons.add(geometryFactory.createPolygon(linearRing, holes.toArray(new LinearRing[holes.size()])));
                 } else {
                     jp.nextToken();//END_OBJECT
-                    polygons.add(GF.createPolygon(linearRing, null));
+                    polygons.add(geometryFactory.createPolygon(linearRing, null));
                 }
             }
             jp.nextToken();//END_OBJECT } geometry
-            return GF.createMultiPolygon(polygons.toArray(new Polygon[polygons.size()]));
+            return geometryFactory.createMultiPolygon(polygons.toArray(new Polygon[polygons.size()]));
 
         } else {
             throw new SQLException("Malformed GeoJSON file. Expected 'coordinates', found '" + coordinatesField + "'");
@@ -802,7 +917,6 @@ public class GeoJsonReaderDriver {
      * @return GeometryCollection
      */
     private GeometryCollection parseGeometryCollection(JsonParser jp) throws IOException, SQLException {
-        firstGeometryType=GeoJsonField.GEOMETRY;
         jp.nextToken(); // FIELD_NAME geometries        
         String coordinatesField = jp.getText();
         if (coordinatesField.equalsIgnoreCase(GeoJsonField.GEOMETRIES)) {
@@ -817,7 +931,7 @@ public class GeoJsonReaderDriver {
                 jp.nextToken();
             }
             jp.nextToken();//END_OBJECT } geometry
-            return GF.createGeometryCollection(geometries.toArray(new Geometry[geometries.size()]));
+            return geometryFactory.createGeometryCollection(geometries.toArray(new Geometry[geometries.size()]));
         } else {
             throw new SQLException("Malformed GeoJSON file. Expected 'geometries', found '" + coordinatesField + "'");
         }
@@ -829,24 +943,31 @@ public class GeoJsonReaderDriver {
      *
      * [ [100.0, 0.0], [101.0, 1.0] ]
      *
+     * The coordinates are stored into a packed sequence, without intermediate
+     * Coordinate instances.
+     *
      * @param jp
      * @throws IOException
-     * @throws SQLException
-     * @return Coordinate[]
+     * @return CoordinateSequence
      */
-    private Coordinate[] parseCoordinates(JsonParser jp) throws IOException {
+    private CoordinateSequence parseCoordinates(JsonParser jp) throws IOException {
         jp.nextToken(); // START_ARRAY [ to parse the each positions
-        ArrayList<Coordinate> coords = new ArrayList<Coordinate>();
+        int size = 0;
         while (jp.getCurrentToken() != JsonToken.END_ARRAY) {
-            coords.add(parseCoordinate(jp));
+            if ((size + 1) * 3 > coordinateBuffer.length) {
+                coordinateBuffer = Arrays.copyOf(coordinateBuffer, coordinateBuffer.length * 2);
+            }
+            parsePosition(jp, size * 3);
+            size++;
         }
-        return coords.toArray(new Coordinate[coords.size()]);
+        // Always 3 dimensions, z is NaN for 2D coordinates
+        return new PackedCoordinateSequence.Double(Arrays.copyOf(coordinateBuffer, size * 3), 3);
     }
 
     /**
-     * Parses a GeoJSON coordinate array and returns a JTS coordinate. The first
-     * token corresponds to the first X value. The last token correponds to the
-     * end of the coordinate array "]".
+     * Parses a GeoJSON coordinate array and returns a JTS coordinate sequence
+     * of one coordinate. The first token corresponds to the first X value.
+     * The last token correponds to the end of the coordinate array "]".
      *
      * Parsed syntax:
      *
@@ -854,60 +975,34 @@ public class GeoJsonReaderDriver {
      *
      * @param jp
      * @throws IOException
-     * @return Coordinate
+     * @return CoordinateSequence
      */
-    private Coordinate parseCoordinate(JsonParser jp) throws IOException {
+    private CoordinateSequence parseCoordinate(JsonParser jp) throws IOException {
+        parsePosition(jp, 0);
+        return new PackedCoordinateSequence.Double(Arrays.copyOf(coordinateBuffer, 3), 3);
+    }
+
+    /**
+     * Parses a GeoJSON position into the coordinate buffer.
+     *
+     * @param jp
+     * @param offset Index of x in the coordinate buffer
+     * @throws IOException
+     */
+    private void parsePosition(JsonParser jp, int offset) throws IOException {
         jp.nextToken();
-        double x = jp.getDoubleValue();// VALUE_NUMBER_FLOAT
+        coordinateBuffer[offset] = jp.getDoubleValue();// VALUE_NUMBER_FLOAT
         jp.nextToken(); // second value
-        double y = jp.getDoubleValue();
-        Coordinate coord;
+        coordinateBuffer[offset + 1] = jp.getDoubleValue();
         //We look for a z value
         jp.nextToken();
         if (jp.getCurrentToken() == JsonToken.END_ARRAY) {
-            coord = new Coordinate(x, y);
+            coordinateBuffer[offset + 2] = Double.NaN;
         } else {
-            double z = jp.getDoubleValue();
+            coordinateBuffer[offset + 2] = jp.getDoubleValue();
             jp.nextToken(); // exit array
-            coord = new Coordinate(x, y, z);
         }
         jp.nextToken();
-        return coord;
-    }
-
-    /**
-     * Parses the GeoJSON data and set the values to the table.
-     *
-     * @throws IOException
-     * @throws SQLException
-     */
-    private void parseData() throws IOException, SQLException {
-        FileInputStream fis = null;
-        try {
-            fis = new FileInputStream(fileName);
-            JsonParser jp = jsFactory.createParser(fis);
-            jp.nextToken();//START_OBJECT
-            jp.nextToken(); // field_name (type)
-            jp.nextToken(); // value_string (FeatureCollection)
-            String geomType = jp.getText();
-            if (geomType.equalsIgnoreCase(GeoJsonField.FEATURECOLLECTION)) {                
-                parseFeatures(jp);
-            } else {
-                throw new SQLException("Malformed GeoJSON file. Expected 'FeatureCollection', found '" + geomType + "'");
-            }
-            jp.close();
-        } catch (FileNotFoundException ex) {
-            throw new SQLException(ex);
-
-        } finally {
-            try {
-                if (fis != null) {
-                    fis.close();
-                }
-            } catch (IOException ex) {
-                throw new SQLException(ex);
-            }
-        }
     }
 
     /**
@@ -962,25 +1057,14 @@ public class GeoJsonReaderDriver {
         return srid;
     }
 
-    /**
-     * We skip the CRS because it has been already parsed.
-     * 
-     *
-     * @param jp
-     */
-    private String skipCRS(JsonParser jp) throws IOException {
-        jp.nextToken(); //START_OBJECT {
-        jp.skipChildren();
-        jp.nextToken(); //Go to features
-        return jp.getText();
-    }
-
-    
-
      /**
      * Add the geometry type constraint and the SRID
      */
     private void setGeometryTypeConstraints() throws SQLException {
+        if (firstGeometryType == null) {
+            // Only null geometries
+            firstGeometryType = GeoJsonField.GEOMETRY;
+        }
         if(isH2){
              connection.createStatement().execute(String.format("ALTER TABLE %s ALTER COLUMN the_geom %s", tableLocation.toString(), firstGeometryType));        
              SFSUtilities.addTableSRIDConstraint(connection, tableLocation, parsedSRID);
@@ -989,4 +1073,414 @@ public class GeoJsonReaderDriver {
             connection.createStatement().execute(String.format("ALTER TABLE %s ALTER COLUMN the_geom SET DATA TYPE geometry(%s,%d)", tableLocation.toString(), firstGeometryType, parsedSRID));
         }
     }
+
+    /**
+     * Features of a GeoJSON file, read one by one in the file order.
+     */
+    private interface FeatureReader {
+        /**
+         * @return The next feature, null at the end of the file
+         */
+        Feature next() throws IOException, SQLException;
+    }
+
+    /**
+     * Parses the features of a FeatureCollection
+     */
+    private class CollectionReader implements FeatureReader {
+        private final JsonParser jp;
+        private JsonToken token;
+
+        private CollectionReader(JsonParser jp) throws IOException {
+            this.jp = jp;
+            jp.nextToken(); // START_ARRAY [
+            token = jp.nextToken(); // START_OBJECT {
+        }
+
+        @Override
+        public Feature next() throws IOException, SQLException {
+            //LOOP END_ARRAY ]
+            if (token == JsonToken.END_ARRAY) {
+                return null;
+            }
+            if (progress.isCanceled()) {
+                throw new SQLException("Canceled by user");
+            }
+            Feature feature = parseFeature(jp);
+            token = jp.nextToken(); //START_OBJECT new feature
+            featureCounter++;
+            if (nodeCountProgress++ % readFileSizeEachNode == 0) {
+                // Update Progress
+                try {
+                    progress.setStep((int) (((double) fc.position() / fileSize) * 100));
+                } catch (IOException ex) {
+                    // Ignore
+                }
+            }
+            return feature;
+        }
+    }
+
+    /**
+     * Reads the records of a GeoJSON sequence. The file is read by the calling
+     * thread, chunks of records are parsed by a pool of threads and the
+     * features are returned in the file order.
+     */
+    private class SequenceReader implements FeatureReader {
+        private final FileInputStream fis;
+        private final byte separator;
+        private final ExecutorService executor;
+        private final int maxPending;
+        private final ArrayDeque<Future<List<Feature>>> pending = new ArrayDeque<Future<List<Feature>>>();
+        private final byte[] readBuffer = new byte[65536];
+        private RecordChunk chunk = new RecordChunk(featureCounter);
+        private boolean endOfFile = false;
+        private Iterator<Feature> features = Collections.<Feature>emptyList().iterator();
+
+        /**
+         * @param fis Input stream of the file
+         * @param separator Record separator, {@link #RECORD_SEPARATOR} or
+         * {@link #LINE_FEED}
+         */
+        private SequenceReader(FileInputStream fis, byte separator) {
+            this.fis = fis;
+            this.separator = separator;
+            int threadCount = Runtime.getRuntime().availableProcessors();
+            this.executor = Executors.newFixedThreadPool(threadCount, new ParserThreadFactory());
+            this.maxPending = threadCount * 2;
+        }
+
+        @Override
+        public Feature next() throws IOException, SQLException {
+            while (!features.hasNext()) {
+                readChunks();
+                if (pending.isEmpty()) {
+                    return null;
+                }
+                features = waitFeatures(pending.poll()).iterator();
+            }
+            return features.next();
+        }
+
+        /**
+         * Read the file until enough chunks are being parsed
+         */
+        private void readChunks() throws IOException {
+            while (!endOfFile && pending.size() < maxPending) {
+                int read = fis.read(readBuffer);
+                if (read == -1) {
+                    endOfFile = true;
+                    chunk.endRecord();
+                    if (chunk.recordCount > 0) {
+                        pending.add(executor.submit(new ParseChunk(newRecordParser(), chunk)));
+                    }
+                } else {
+                    int start = 0;
+                    for (int i = 0; i < read; i++) {
+                        if (readBuffer[i] == separator) {
+                            chunk.append(readBuffer, start, i - start);
+                            chunk.endRecord();
+                            start = i + 1;
+                            if (chunk.recordCount >= SEQUENCE_CHUNK_SIZE) {
+                                pending.add(executor.submit(new ParseChunk(newRecordParser(), chunk)));
+                                chunk = new RecordChunk(chunk.firstFeatureId + chunk.recordCount);
+                            }
+                        }
+                    }
+                    chunk.append(readBuffer, start, read - start);
+                }
+            }
+        }
+
+        /**
+         * Wait for a parsed chunk.
+         *
+         * @param parsedChunk Features of a chunk of records
+         * @return The features of the chunk
+         */
+        private List<Feature> waitFeatures(Future<List<Feature>> parsedChunk) throws SQLException, IOException {
+            if (progress.isCanceled()) {
+                throw new SQLException("Canceled by user");
+            }
+            List<Feature> parsedFeatures;
+            try {
+                parsedFeatures = parsedChunk.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new IOException("Interrupted while reading the GeoJSON file", ex);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof IOException) {
+                    throw (IOException) cause;
+                } else if (cause instanceof SQLException) {
+                    throw (SQLException) cause;
+                } else if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else {
+                    throw new IOException(cause);
+                }
+            }
+            try {
+                progress.setStep((int) (((double) fc.position() / fileSize) * 100));
+            } catch (IOException ex) {
+                // Ignore
+            }
+            return parsedFeatures;
+        }
+
+        /**
+         * Stop the parsing threads
+         */
+        private void close() {
+            for (Future<List<Feature>> parsedChunk : pending) {
+                parsedChunk.cancel(false);
+            }
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Rows of the features that fit into the table: the sampled features then
+     * the features of the reader.
+     */
+    private class FeatureRows implements BulkLoader.RowSource {
+        private final Iterator<Feature> sampleFeatures;
+        private final FeatureReader reader;
+        // Feature that requires a table update before being inserted
+        private Feature pending;
+
+        private FeatureRows(List<Feature> sample, FeatureReader reader) {
+            this.sampleFeatures = sample.iterator();
+            this.reader = reader;
+        }
+
+        /**
+         * @return The next feature, null at the end of the file
+         */
+        private Feature nextFeature() throws IOException, SQLException {
+            if (sampleFeatures.hasNext()) {
+                return sampleFeatures.next();
+            }
+            Feature feature = reader.next();
+            if (feature != null) {
+                updateGeometryType(feature.geometryType);
+            }
+            return feature;
+        }
+
+        @Override
+        public int getFieldCount() {
+            return tableColumns.size();
+        }
+
+        @Override
+        public Object[] nextRow() throws SQLException, IOException {
+            Feature feature = pending != null ? pending : nextFeature();
+            pending = null;
+            if (feature == null) {
+                return null;
+            }
+            if (!fitsColumns(feature)) {
+                // Stop the copy, the table is updated before the copy of this feature
+                pending = feature;
+                return null;
+            }
+            Object[] row = new Object[tableColumns.size()];
+            for (int i = 0; i < row.length; i++) {
+                PropertyColumn column = tableColumns.get(i);
+                if (column != null) {
+                    row[i] = feature.properties.get(column.name);
+                } else if (i == geometryColumnIndex) {
+                    row[i] = feature.geometry;
+                } else {
+                    row[i] = feature.id;
+                }
+            }
+            return row;
+        }
+    }
+
+    /**
+     * A parsed feature
+     */
+    private static class Feature {
+        private final int id;
+        private Geometry geometry;
+        // GeoJSON geometry type in lower case
+        private String geometryType;
+        private boolean geometryBeforeProperties = true;
+        // Values by column name
+        private final Map<String, Object> properties = new LinkedHashMap<String, Object>();
+
+        private Feature(int id) {
+            this.id = id;
+        }
+    }
+
+    /**
+     * Records of a GeoJSON sequence, stored in a single byte array
+     */
+    private static class RecordChunk {
+        private final int firstFeatureId;
+        private byte[] data = new byte[65536];
+        private int length = 0;
+        private int recordStart = 0;
+        // Start and end offsets of the records
+        private int[] bounds = new int[2 * 64];
+        private int recordCount = 0;
+
+        private RecordChunk(int firstFeatureId) {
+            this.firstFeatureId = firstFeatureId;
+        }
+
+        private void append(byte[] bytes, int offset, int count) {
+            if (length + count > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, length + count));
+            }
+            System.arraycopy(bytes, offset, data, length, count);
+            length += count;
+        }
+
+        /**
+         * Close the current record, blank records are ignored.
+         */
+        private void endRecord() {
+            boolean blank = true;
+            for (int i = recordStart; i < length && blank; i++) {
+                blank = data[i] == ' ' || data[i] == '\t' || data[i] == '\r' || data[i] == LINE_FEED;
+            }
+            if (!blank) {
+                if (2 * recordCount + 2 > bounds.length) {
+                    bounds = Arrays.copyOf(bounds, bounds.length * 2);
+                }
+                bounds[2 * recordCount] = recordStart;
+                bounds[2 * recordCount + 1] = length;
+                recordCount++;
+                recordStart = length;
+            } else {
+                length = recordStart;
+            }
+        }
+    }
+
+    /**
+     * Parse the records of a chunk, each record contains one feature.
+     */
+    private static class ParseChunk implements Callable<List<Feature>> {
+        private final GeoJsonReaderDriver parser;
+        private final RecordChunk chunk;
+
+        private ParseChunk(GeoJsonReaderDriver parser, RecordChunk chunk) {
+            this.parser = parser;
+            this.chunk = chunk;
+        }
+
+        @Override
+        public List<Feature> call() throws Exception {
+            List<Feature> features = new ArrayList<Feature>(chunk.recordCount);
+            for (int i = 0; i < chunk.recordCount; i++) {
+                int start = chunk.bounds[2 * i];
+                JsonParser jp = parser.jsFactory.createParser(chunk.data, start, chunk.bounds[2 * i + 1] - start);
+                try {
+                    if (jp.nextToken() != JsonToken.START_OBJECT) {
+                        throw new SQLException("Malformed GeoJSON sequence. Expected a feature object at record "
+                                + (chunk.firstFeatureId + i));
+                    }
+                    parser.featureCounter = chunk.firstFeatureId + i;
+                    features.add(parser.parseFeature(jp));
+                } finally {
+                    jp.close();
+                }
+            }
+            return features;
+        }
+    }
+
+    private static class ParserThreadFactory implements ThreadFactory {
+        private final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = defaultFactory.newThread(r);
+            thread.setName("GeoJsonRead-" + thread.getName());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+
+    /**
+     * A column built from the feature properties
+     */
+    private static class PropertyColumn {
+        private final String name;
+        // Null if only null values have been read
+        private PropertyType type;
+
+        private PropertyColumn(String name, PropertyType type) {
+            this.name = name;
+            this.type = type;
+        }
+
+        private String getSQLName(boolean isH2) {
+            return TableLocation.quoteIdentifier(name, isH2);
+        }
+
+        private String getSQLType() {
+            return type == null ? PropertyType.VARCHAR.sqlType : type.sqlType;
+        }
+    }
+
+    /**
+     * SQL type of a property, ordered from the narrowest numeric type to VARCHAR
+     */
+    private enum PropertyType {
+        BOOLEAN("BOOLEAN"), INT("INT"), BIGINT("BIGINT"), FLOAT8("FLOAT8"), VARCHAR("VARCHAR");
+
+        private final String sqlType;
+
+        PropertyType(String sqlType) {
+            this.sqlType = sqlType;
+        }
+
+        private boolean isNumeric() {
+            return this == INT || this == BIGINT || this == FLOAT8;
+        }
+
+        private static PropertyType fromValue(Object value) {
+            if (value == null) {
+                return null;
+            } else if (value instanceof Boolean) {
+                return BOOLEAN;
+            } else if (value instanceof Integer) {
+                return INT;
+            } else if (value instanceof Long) {
+                return BIGINT;
+            } else if (value instanceof Double) {
+                return FLOAT8;
+            } else {
+                return VARCHAR;
+            }
+        }
+
+        /**
+         * @return The type that can store the values of both types
+         */
+        private static PropertyType widen(PropertyType type, PropertyType other) {
+            if (type == null) {
+                return other;
+            } else if (other == null || type == other) {
+                return type;
+            } else if (type.isNumeric() && other.isNumeric()) {
+                return type.ordinal() > other.ordinal() ? type : other;
+            } else {
+                return VARCHAR;
+            }
+        }
+    }
+
 }
@@ -24,6 +24,8 @@ import com.fasterxml.jackson.core.JsonEncoding;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.vividsolutions.jts.geom.*;
+import org.h2gis.api.OperationMetrics;
+import org.h2gis.api.OperationRecorder;
 import org.h2gis.api.ProgressVisitor;
 import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.SFSUtilities;
@@ -50,6 +52,10 @@ import org.h2gis.drivers.utility.FileUtil;
  * "geometry":{"type": "Point", "coordinates": [102.0, 0.5]}, "properties":
  * {"prop0": "value0"} } ]}
  *
+ * A table can also be written as a GeoJSON text sequence (RFC 8142, .geojsons)
+ * or as a newline delimited GeoJSON file (.geojsonl). Each feature is written
+ * in its own record, the rows are streamed from the result set.
+ *
  * @author Erwan Bocher
  */
 public class GeoJsonWriteDriver {
@@ -59,6 +65,7 @@ public class GeoJsonWriteDriver {
     private final Connection connection;
     private Map<String, Integer> cachedColumnNames;
     private int columnCountProperties = -1;
+    private OperationRecorder recorder = OperationRecorder.DISABLED;
 
     /**
      * A simple GeoJSON driver to write a spatial table to a GeoJSON file.
@@ -80,12 +87,34 @@ public class GeoJsonWriteDriver {
      * @throws SQLException
      * @throws java.io.IOException
      */
-    public void write(ProgressVisitor progress) throws SQLException, IOException {        
-        if (FileUtil.isExtensionWellFormated(fileName, "geojson")) {
-            writeGeoJson(progress);
+    public void write(ProgressVisitor progress) throws SQLException, IOException {
+        boolean featureCollection = FileUtil.isExtensionWellFormated(fileName, "geojson");
+        boolean recordSeparator = FileUtil.isExtensionWellFormated(fileName, "geojsons");
+        if (!featureCollection && !recordSeparator && !FileUtil.isExtensionWellFormated(fileName, "geojsonl")) {
+            throw new SQLException("Only .geojson, .geojsonl and .geojsons extensions are supported");
+        }
+        recorder = OperationMetrics.start("GeoJSON export");
+        if (featureCollection) {
+            writeGeoJson(copyProgress(progress));
         } else {
-            throw new SQLException("Only .geojson extension is supported");
+            writeGeoJsonSequence(copyProgress(progress), recordSeparator);
         }
+        recorder.addBytesWritten(fileName.length());
+        // The rows are read between the written features
+        recorder.addTime(OperationRecorder.Phase.READ, recorder.getElapsedTime()
+                - recorder.getTime(OperationRecorder.Phase.WRITE));
+        recorder.close();
+    }
+
+    /**
+     * Create the sub process that counts one step by written feature.
+     *
+     * @param progress
+     * @return
+     * @throws SQLException
+     */
+    private ProgressVisitor copyProgress(ProgressVisitor progress) throws SQLException {
+        return progress.subProcess(JDBCUtilities.getRowCount(connection, tableName));
     }
 
     /**
@@ -125,9 +154,12 @@ public class GeoJsonWriteDriver {
 
                     cacheMetadata(resultSetMetaData);
                     while (rs.next()) {
+                        long writeTime = recorder.startTimer();
                         writeFeature(jsonGenerator, rs, geoFieldIndex);
+                        recorder.stopTimer(OperationRecorder.Phase.WRITE, writeTime);
+                        recorder.addRows(1);
+                        progress.endStep();
                     }
-                    progress.endStep();
                     // footer
                     jsonGenerator.writeEndArray();
                     jsonGenerator.writeEndObject();
@@ -154,6 +186,66 @@ public class GeoJsonWriteDriver {
         }
     }
 
+    /**
+     * Write the spatial table as a sequence of GeoJSON features, one feature
+     * by line.
+     *
+     * The CRS is not written : a sequence does not have a header to hold it and
+     * RFC 8142 sequences carry RFC 7946 GeoJSON texts, where the crs member has
+     * been removed and the coordinates are expected in WGS 84. The geometries
+     * are written as they are stored, reproject them with ST_Transform before
+     * the export if the table uses another SRID.
+     *
+     * @param progress
+     * @param recordSeparator True to start each record with the RS character
+     * (RFC 8142), false to write newline delimited GeoJSON
+     * @throws SQLException
+     */
+    private void writeGeoJsonSequence(ProgressVisitor progress, boolean recordSeparator) throws SQLException, IOException {
+        final TableLocation parse = TableLocation.parse(tableName, JDBCUtilities.isH2DataBase(connection.getMetaData()));
+        List<String> spatialFieldNames = SFSUtilities.getGeometryFields(connection, parse);
+        if (spatialFieldNames.isEmpty()) {
+            throw new SQLException(String.format("The table %s does not contain a geometry field", tableName));
+        }
+        FileOutputStream fos = new FileOutputStream(fileName);
+        try {
+            JsonFactory jsonFactory = new JsonFactory();
+            JsonGenerator jsonGenerator = jsonFactory.createGenerator(new BufferedOutputStream(fos), JsonEncoding.UTF8);
+            // Records are delimited by the separators written below
+            jsonGenerator.setRootValueSeparator(null);
+            Statement st = connection.createStatement();
+            try {
+                ResultSet rs = st.executeQuery(String.format("select * from %s", tableName));
+                try {
+                    ResultSetMetaData resultSetMetaData = rs.getMetaData();
+                    int geoFieldIndex = JDBCUtilities.getFieldIndex(resultSetMetaData, spatialFieldNames.get(0));
+                    cacheMetadata(resultSetMetaData);
+                    while (rs.next()) {
+                        if (progress.isCanceled()) {
+                            throw new SQLException("Canceled by user");
+                        }
+                        long writeTime = recorder.startTimer();
+                        if (recordSeparator) {
+                            jsonGenerator.writeRaw('\u001E');
+                        }
+                        writeFeature(jsonGenerator, rs, geoFieldIndex);
+                        jsonGenerator.writeRaw('\n');
+                        recorder.stopTimer(OperationRecorder.Phase.WRITE, writeTime);
+                        recorder.addRows(1);
+                        progress.endStep();
+                    }
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                st.close();
+            }
+            jsonGenerator.close();
+        } finally {
+            fos.close();
+        }
+    }
+
     /**
      * Write a GeoJSON feature.
      *
@@ -217,6 +309,10 @@ public class GeoJsonWriteDriver {
      * @param geometry
      */
     private void writeGeometry(Geometry geom, JsonGenerator gen) throws IOException {
+        if (geom == null) {
+            gen.writeNullField("geometry");
+            return;
+        }
         gen.writeObjectFieldStart("geometry");
         if (geom instanceof Point) {
             write((Point) geom, gen);
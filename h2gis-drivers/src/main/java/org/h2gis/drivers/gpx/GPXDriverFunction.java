@@ -24,7 +24,7 @@ import java.io.File;
 import java.io.IOException;
 import java.sql.Connection;
 import java.sql.SQLException;
-import org.h2gis.drivers.gpx.model.GpxParser;
+import org.h2gis.drivers.gpx.model.GpxStaxParser;
 import org.h2gis.api.DriverFunction;
 import org.h2gis.api.ProgressVisitor;
 
@@ -73,7 +73,7 @@ public class GPXDriverFunction implements DriverFunction {
 
     @Override
     public void importFile(Connection connection, String tableReference, File fileName, ProgressVisitor progress) throws SQLException, IOException {
-        GpxParser gpd = new GpxParser();
+        GpxStaxParser gpd = new GpxStaxParser();
         gpd.read(fileName, tableReference, connection);
     }
 }
@@ -199,7 +199,7 @@ public abstract class AbstractGpxParserTrk extends AbstractGpxParser {
         } else if (point) {
             getCurrentPoint().setAttribute(getCurrentElement(), getContentBuffer());
         } else if (segment) {
-            getCurrentSegment().setExtensions();
+            getCurrentSegment().setValue(GpxMetadata.TRKSEGEXTENSIONS, true);
         } else {
             getCurrentLine().setAttribute(getCurrentElement(), getContentBuffer());
         }
@@ -38,20 +38,34 @@ public class GPXCoordinate {
      * @return a coordinate
      */
     public static Coordinate createCoordinate(Attributes attributes) throws NumberFormatException {
+        return createCoordinate(attributes.getValue(GPXTags.LAT), attributes.getValue(GPXTags.LON),
+                attributes.getValue(GPXTags.ELE));
+    }
+
+    /**
+     * Create a coordinate from the attribute values of a gpx point.
+     *
+     * @param latValue Value of the lat attribute
+     * @param lonValue Value of the lon attribute
+     * @param eleValue Value of the ele attribute, null if the attribute is not
+     * set
+     * @throws NumberFormatException
+     * @return a coordinate
+     */
+    public static Coordinate createCoordinate(String latValue, String lonValue, String eleValue) throws NumberFormatException {
         // Associate a latitude and a longitude to the point
         double lat;
         double lon;
         try {
-            lat = Double.parseDouble(attributes.getValue(GPXTags.LAT));
+            lat = Double.parseDouble(latValue);
         } catch (NumberFormatException e) {
             throw new NumberFormatException("Cannot parse the latitude value");
         }
         try {
-            lon = Double.parseDouble(attributes.getValue(GPXTags.LON));
+            lon = Double.parseDouble(lonValue);
         } catch (NumberFormatException e) {
             throw new NumberFormatException("Cannot parse the longitude value");
         }
-        String eleValue = attributes.getValue(GPXTags.ELE);
         double ele = Double.NaN;
         if (eleValue != null) {
             try {
@@ -0,0 +1,505 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+
+package org.h2gis.drivers.gpx.model;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.geom.LineString;
+import com.vividsolutions.jts.geom.MultiLineString;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.impl.PackedCoordinateSequence;
+import org.h2gis.api.OperationMetrics;
+import org.h2gis.api.OperationRecorder;
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.TableLocation;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Read a GPX file in a single pass with a StAX stream reader and copy its content into the tables created by
+ * {@link GPXTablesFactory}. The tables and their content are the same as the ones of {@link GpxParser}, but the
+ * file is not pre-parsed to count the elements: a group of tables is created when its first point is read, the rows
+ * read before are kept until then. The rows are inserted by batches and the coordinates of the track segments and
+ * of the routes are accumulated in a double array.
+ */
+public class GpxStaxParser {
+
+    //Suffix table names
+    private static final String WAYPOINT = "_waypoint";
+    private static final String ROUTE = "_route";
+    private static final String ROUTEPOINT = "_routepoint";
+    private static final String TRACK = "_track";
+    private static final String TRACKSEGMENT = "_tracksegment";
+    private static final String TRACKPOINT = "_trackpoint";
+    private static final int BATCH_MAX_SIZE = 100;
+    private static final int BUFFER_SIZE = 65536;
+    private static final int SRID = 4326;
+
+    private final GeometryFactory geometryFactory = new GeometryFactory();
+    // Text of the current element
+    private final StringBuilder contentBuffer = new StringBuilder();
+    private Connection connection;
+    private boolean isH2;
+    private TableLocation requestedTable;
+    private OperationRecorder recorder = OperationRecorder.DISABLED;
+    private final RowBatch wptBatch = new RowBatch();
+    private final RowBatch rteBatch = new RowBatch();
+    private final RowBatch rteptBatch = new RowBatch();
+    private final RowBatch trkBatch = new RowBatch();
+    private final RowBatch trkSegmentsBatch = new RowBatch();
+    private final RowBatch trkPointsBatch = new RowBatch();
+    //Waypoint, route and track id
+    private int idWpt = 1;
+    private int idRte = 1;
+    private int trkID = 1;
+    // Coordinates (x, y, z) of the current route or track segment
+    private double[] coordinates = new double[3 * 256];
+    private int coordinateCount;
+
+    /**
+     * Reads the document and copies it into the database.
+     *
+     * @param inputFile a File representing the gpx file to read
+     * @param tableName the table used to create all tables
+     * @param connection the connection to the database
+     * @return a boolean value if the parser ends successfully or not
+     * @throws SQLException if the creation of the tables failed or if the file
+     * cannot be parsed
+     */
+    public boolean read(File inputFile, String tableName, Connection connection) throws SQLException {
+        this.connection = connection;
+        isH2 = JDBCUtilities.isH2DataBase(connection.getMetaData());
+        requestedTable = TableLocation.parse(tableName, isH2);
+        InputStream inputStream = null;
+        try {
+            recorder = OperationMetrics.start("GPX import");
+            recorder.addBytesRead(inputFile.length());
+            inputStream = new BufferedInputStream(new FileInputStream(inputFile), BUFFER_SIZE);
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+            XMLStreamReader reader = factory.createXMLStreamReader(inputStream);
+            try {
+                readDocument(reader);
+            } finally {
+                reader.close();
+            }
+            flush();
+            // The file is parsed while the batches are inserted
+            recorder.addTime(OperationRecorder.Phase.READ, recorder.getElapsedTime()
+                    - recorder.getTime(OperationRecorder.Phase.WRITE));
+            recorder.close();
+            return true;
+        } catch (XMLStreamException ex) {
+            throw new SQLException("Cannot parse the file " + inputFile.getAbsolutePath(), ex);
+        } catch (NumberFormatException ex) {
+            throw new SQLException("Cannot parse the file " + inputFile.getAbsolutePath(), ex);
+        } catch (IOException ex) {
+            throw new SQLException("Cannot parse the file " + inputFile.getAbsolutePath(), ex);
+        } finally {
+            try {
+                if (inputStream != null) {
+                    inputStream.close();
+                }
+            } catch (IOException ex) {
+                // Nothing to do, the file has been read
+            } finally {
+                wptBatch.close();
+                rteBatch.close();
+                rteptBatch.close();
+                trkBatch.close();
+                trkSegmentsBatch.close();
+                trkPointsBatch.close();
+            }
+        }
+    }
+
+    /**
+     * Read the <wpt>, <rte> and <trk> elements of the document, the other
+     * elements are not stored in the database.
+     */
+    private void readDocument(XMLStreamReader reader) throws XMLStreamException, SQLException {
+        while (reader.hasNext()) {
+            if (reader.next() == XMLStreamConstants.START_ELEMENT) {
+                String localName = reader.getLocalName();
+                if (localName.equalsIgnoreCase(GPXTags.WPT)) {
+                    readWaypoint(reader);
+                } else if (localName.equalsIgnoreCase(GPXTags.RTE)) {
+                    readRoute(reader);
+                } else if (localName.equalsIgnoreCase(GPXTags.TRK)) {
+                    readTrack(reader);
+                }
+            }
+        }
+    }
+
+    /**
+     * Read a <wpt> element, the reader is positioned on its start markup.
+     */
+    private void readWaypoint(XMLStreamReader reader) throws XMLStreamException, SQLException {
+        if (!wptBatch.isOpen()) {
+            String wptTableName = createTableName(WAYPOINT);
+            wptBatch.open(GPXTablesFactory.createWayPointsTable(connection, wptTableName, isH2));
+        }
+        GPXPoint waypoint = createPoint(reader, GpxMetadata.WPTFIELDCOUNT, idWpt++);
+        int depth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                contentBuffer.setLength(0);
+                if (reader.getLocalName().equalsIgnoreCase(GPXTags.LINK)) {
+                    waypoint.setValue(GpxMetadata.PTLINK, reader.getAttributeValue(null, GPXTags.HREF));
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth-- == 0) {
+                    insert(wptBatch, waypoint.getValues());
+                    return;
+                }
+                String currentElement = getName(reader);
+                waypoint.setAttribute(currentElement, contentBuffer);
+                if (currentElement.equalsIgnoreCase(GPXTags.TEXT)) {
+                    waypoint.setLinkText(contentBuffer);
+                }
+            } else {
+                appendText(reader, event);
+            }
+        }
+    }
+
+    /**
+     * Read a <rte> element, the reader is positioned on its start markup.
+     */
+    private void readRoute(XMLStreamReader reader) throws XMLStreamException, SQLException {
+        GPXLine route = new GPXLine(GpxMetadata.RTEFIELDCOUNT);
+        Object routeId = idRte++;
+        route.setValue(GpxMetadata.LINEID, routeId);
+        GPXPoint routePoint = null;
+        int idRtPt = 1;
+        coordinateCount = 0;
+        int depth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                contentBuffer.setLength(0);
+                String localName = reader.getLocalName();
+                if (localName.equalsIgnoreCase(GPXTags.RTEPT)) {
+                    if (!rteptBatch.isOpen()) {
+                        String routeTableName = createTableName(ROUTE);
+                        String routePointsTableName = createTableName(ROUTEPOINT);
+                        rteBatch.open(GPXTablesFactory.createRouteTable(connection, routeTableName, isH2));
+                        rteptBatch.open(GPXTablesFactory.createRoutePointsTable(connection, routePointsTableName,
+                                isH2));
+                    }
+                    routePoint = createPoint(reader, GpxMetadata.RTEPTFIELDCOUNT, idRtPt++);
+                    routePoint.setValue(GpxMetadata.RTEPT_RTEID, routeId);
+                    addCoordinate(routePoint);
+                } else if (localName.equalsIgnoreCase(GPXTags.LINK)) {
+                    String href = reader.getAttributeValue(null, GPXTags.HREF);
+                    if (routePoint != null) {
+                        routePoint.setValue(GpxMetadata.PTLINK, href);
+                    } else {
+                        route.setValue(GpxMetadata.LINELINK_HREF, href);
+                    }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth-- == 0) {
+                    // If there are more than one routepoint, we can set a geometry to the route
+                    if (coordinateCount > 1) {
+                        route.setGeometry(createLineString());
+                    }
+                    insert(rteBatch, route.getValues());
+                    return;
+                }
+                String currentElement = getName(reader);
+                if (currentElement.equalsIgnoreCase(GPXTags.RTEPT)) {
+                    insert(rteptBatch, routePoint.getValues());
+                    routePoint = null;
+                } else if (routePoint != null) {
+                    routePoint.setAttribute(currentElement, contentBuffer);
+                    if (currentElement.equalsIgnoreCase(GPXTags.TEXT)) {
+                        routePoint.setLinkText(contentBuffer);
+                    }
+                } else {
+                    route.setAttribute(currentElement, contentBuffer);
+                    if (currentElement.equalsIgnoreCase(GPXTags.TEXT)) {
+                        route.setLinkText(contentBuffer);
+                    }
+                }
+            } else {
+                appendText(reader, event);
+            }
+        }
+    }
+
+    /**
+     * Read a <trk> element, the reader is positioned on its start markup.
+     */
+    private void readTrack(XMLStreamReader reader) throws XMLStreamException, SQLException {
+        GPXLine track = new GPXLine(GpxMetadata.TRKFIELDCOUNT);
+        Object trackId = trkID++;
+        track.setValue(GpxMetadata.LINEID, trackId);
+        List<LineString> trackSegments = new ArrayList<LineString>();
+        GPXLine trackSegment = null;
+        GPXPoint trackPoint = null;
+        int trksegID = 1;
+        int trkptID = 1;
+        int depth = 0;
+        while (reader.hasNext()) {
+            int event = reader.next();
+            if (event == XMLStreamConstants.START_ELEMENT) {
+                depth++;
+                contentBuffer.setLength(0);
+                String localName = reader.getLocalName();
+                if (localName.equalsIgnoreCase(GPXTags.TRKSEG)) {
+                    trackSegment = new GPXLine(GpxMetadata.TRKSEGFIELDCOUNT);
+                    trackSegment.setValue(GpxMetadata.LINEID, trksegID++);
+                    trackSegment.setValue(GpxMetadata.TRKSEG_TRKID, trackId);
+                    coordinateCount = 0;
+                } else if (localName.equalsIgnoreCase(GPXTags.TRKPT)) {
+                    if (!trkPointsBatch.isOpen()) {
+                        String trackTableName = createTableName(TRACK);
+                        String trackSegmentsTableName = createTableName(TRACKSEGMENT);
+                        String trackPointsTableName = createTableName(TRACKPOINT);
+                        trkBatch.open(GPXTablesFactory.createTrackTable(connection, trackTableName, isH2));
+                        trkSegmentsBatch.open(GPXTablesFactory.createTrackSegmentsTable(connection,
+                                trackSegmentsTableName, isH2));
+                        trkPointsBatch.open(GPXTablesFactory.createTrackPointsTable(connection,
+                                trackPointsTableName, isH2));
+                    }
+                    trackPoint = createPoint(reader, GpxMetadata.TRKPTFIELDCOUNT, trkptID++);
+                    trackPoint.setValue(GpxMetadata.TRKPT_TRKSEGID, trksegID);
+                    addCoordinate(trackPoint);
+                } else if (localName.equalsIgnoreCase(GPXTags.LINK)) {
+                    String href = reader.getAttributeValue(null, GPXTags.HREF);
+                    if (trackPoint != null) {
+                        trackPoint.setValue(GpxMetadata.PTLINK, href);
+                    } else {
+                        track.setValue(GpxMetadata.LINELINK_HREF, href);
+                    }
+                }
+            } else if (event == XMLStreamConstants.END_ELEMENT) {
+                if (depth-- == 0) {
+                    // Set the track geometry.
+                    MultiLineString geometry = geometryFactory.createMultiLineString(
+                            trackSegments.toArray(new LineString[trackSegments.size()]));
+                    geometry.setSRID(SRID);
+                    track.setGeometry(geometry);
+                    insert(trkBatch, track.getValues());
+                    return;
+                }
+                String currentElement = getName(reader);
+                if (currentElement.equalsIgnoreCase(GPXTags.TRKSEG)) {
+                    // If there are more than one trackpoint, we can set a geometry to the track segment
+                    if (coordinateCount > 1) {
+                        LineString geometry = createLineString();
+                        trackSegment.setGeometry(geometry);
+                        trackSegments.add(geometry);
+                    }
+                    insert(trkSegmentsBatch, trackSegment.getValues());
+                    trackSegment = null;
+                } else if (currentElement.equalsIgnoreCase(GPXTags.TRKPT)) {
+                    insert(trkPointsBatch, trackPoint.getValues());
+                    trackPoint = null;
+                } else if (trackPoint != null) {
+                    trackPoint.setAttribute(currentElement, contentBuffer);
+                    if (currentElement.equalsIgnoreCase(GPXTags.TEXT)) {
+                        trackPoint.setLinkText(contentBuffer);
+                    }
+                } else {
+                    if (trackSegment != null) {
+                        trackSegment.setValue(GpxMetadata.TRKSEGEXTENSIONS, true);
+                    } else {
+                        track.setAttribute(currentElement, contentBuffer);
+                    }
+                    if (currentElement.equalsIgnoreCase(GPXTags.TEXT)) {
+                        track.setLinkText(contentBuffer);
+                    }
+                }
+            } else {
+                appendText(reader, event);
+            }
+        }
+    }
+
+    /**
+     * Create a point from the attributes of the current element.
+     */
+    private GPXPoint createPoint(XMLStreamReader reader, int fieldCount, int id) {
+        Coordinate coordinate = GPXCoordinate.createCoordinate(reader.getAttributeValue(null, GPXTags.LAT),
+                reader.getAttributeValue(null, GPXTags.LON), reader.getAttributeValue(null, GPXTags.ELE));
+        GPXPoint point = new GPXPoint(fieldCount);
+        Point geom = geometryFactory.createPoint(coordinate);
+        geom.setSRID(SRID);
+        point.setValue(GpxMetadata.THE_GEOM, geom);
+        point.setValue(GpxMetadata.PTLAT, coordinate.y);
+        point.setValue(GpxMetadata.PTLON, coordinate.x);
+        point.setValue(GpxMetadata.PTELE, coordinate.z);
+        point.setValue(GpxMetadata.PTID, id);
+        return point;
+    }
+
+    /**
+     * Add the coordinate of a point to the current route or track segment.
+     */
+    private void addCoordinate(GPXPoint point) {
+        Coordinate coordinate = ((Point) point.getValues()[GpxMetadata.THE_GEOM]).getCoordinate();
+        int offset = 3 * coordinateCount++;
+        if (offset == coordinates.length) {
+            coordinates = Arrays.copyOf(coordinates, 2 * offset);
+        }
+        coordinates[offset] = coordinate.x;
+        coordinates[offset + 1] = coordinate.y;
+        coordinates[offset + 2] = coordinate.z;
+    }
+
+    /**
+     * @return A line made of the coordinates of the current route or track
+     * segment
+     */
+    private LineString createLineString() {
+        LineString lineString = geometryFactory.createLineString(new PackedCoordinateSequence.Double(
+                Arrays.copyOf(coordinates, 3 * coordinateCount), 3));
+        lineString.setSRID(SRID);
+        return lineString;
+    }
+
+    /**
+     * Append the text of a characters event to the content buffer.
+     */
+    private void appendText(XMLStreamReader reader, int event) {
+        if (event == XMLStreamConstants.CHARACTERS || event == XMLStreamConstants.CDATA
+                || event == XMLStreamConstants.SPACE) {
+            contentBuffer.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+        }
+    }
+
+    /**
+     * @return The name of the current element, with its prefix
+     */
+    private static String getName(XMLStreamReader reader) {
+        String prefix = reader.getPrefix();
+        if (prefix == null || prefix.isEmpty()) {
+            return reader.getLocalName();
+        }
+        return prefix + ":" + reader.getLocalName();
+    }
+
+    /**
+     * Return the identifier of the table, check that the table does not
+     * already exist.
+     *
+     * @param suffix Suffix of the table name
+     * @return Table identifier in the best fit depending on database type
+     * @throws SQLException If the table already exists
+     */
+    private String createTableName(String suffix) throws SQLException {
+        String tableName = new TableLocation(requestedTable.getCatalog(), requestedTable.getSchema(),
+                TableLocation.parse(requestedTable.getTable() + suffix, isH2).getTable()).toString();
+        if (JDBCUtilities.tableExists(connection, tableName)) {
+            throw new SQLException("The table " + tableName + " already exists.");
+        }
+        return tableName;
+    }
+
+    private void insert(RowBatch batch, Object[] values) throws SQLException {
+        recorder.addRows(1);
+        if (batch.add(values)) {
+            long flushTime = recorder.startTimer();
+            batch.flush();
+            recorder.stopFlushTimer(flushTime);
+        }
+    }
+
+    private void flush() throws SQLException {
+        long flushTime = recorder.startTimer();
+        wptBatch.flush();
+        rteBatch.flush();
+        rteptBatch.flush();
+        trkBatch.flush();
+        trkSegmentsBatch.flush();
+        trkPointsBatch.flush();
+        recorder.stopFlushTimer(flushTime);
+    }
+
+    /**
+     * Rows waiting to be inserted into a table. The rows are kept until the
+     * table is created, the rows of a table which is never created are not
+     * inserted.
+     */
+    private static class RowBatch {
+        private final List<Object[]> rows = new ArrayList<Object[]>(BATCH_MAX_SIZE);
+        private PreparedStatement preparedStatement;
+
+        private boolean isOpen() {
+            return preparedStatement != null;
+        }
+
+        private void open(PreparedStatement preparedStatement) {
+            this.preparedStatement = preparedStatement;
+        }
+
+        /**
+         * @return True if the batch is full and must be flushed
+         */
+        private boolean add(Object[] values) {
+            rows.add(values);
+            return preparedStatement != null && rows.size() >= BATCH_MAX_SIZE;
+        }
+
+        private void flush() throws SQLException {
+            if (preparedStatement == null || rows.isEmpty()) {
+                return;
+            }
+            for (Object[] values : rows) {
+                for (int i = 0; i < values.length; i++) {
+                    preparedStatement.setObject(i + 1, values[i]);
+                }
+                preparedStatement.addBatch();
+            }
+            preparedStatement.executeBatch();
+            rows.clear();
+        }
+
+        private void close() throws SQLException {
+            rows.clear();
+            if (preparedStatement != null) {
+                preparedStatement.close();
+                preparedStatement = null;
+            }
+        }
+    }
+}
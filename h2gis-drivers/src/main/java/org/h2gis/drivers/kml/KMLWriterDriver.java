@@ -42,6 +42,8 @@ import javax.xml.stream.XMLOutputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 import org.h2gis.drivers.utility.FileUtil;
+import org.h2gis.api.OperationMetrics;
+import org.h2gis.api.OperationRecorder;
 import org.h2gis.api.ProgressVisitor;
 import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.SFSUtilities;
@@ -58,6 +60,7 @@ public class KMLWriterDriver {
     private final Connection connection;
     private HashMap<Integer, String> kmlFields;
     private int columnCount = -1;
+    private OperationRecorder recorder = OperationRecorder.DISABLED;
 
     public KMLWriterDriver(Connection connection, String tableName, File fileName) {
         this.connection = connection;
@@ -73,14 +76,21 @@ public class KMLWriterDriver {
      */
     public void write(ProgressVisitor progress) throws SQLException {        
         if (FileUtil.isExtensionWellFormated(fileName, "kml")) {
+            recorder = OperationMetrics.start("KML export");
             writeKML(progress);
         } else if (FileUtil.isExtensionWellFormated(fileName, "kmz")) {
             String name = fileName.getName();
             int pos = name.lastIndexOf(".");
+            recorder = OperationMetrics.start("KMZ export");
             writeKMZ(progress, name.substring(0, pos) + ".kml");
         } else {
             throw new SQLException("Please use the extensions .kml or kmz.");
         }
+        recorder.addBytesWritten(fileName.length());
+        // The rows are read between the written placemarks
+        recorder.addTime(OperationRecorder.Phase.READ, recorder.getElapsedTime()
+                - recorder.getTime(OperationRecorder.Phase.WRITE));
+        recorder.close();
     }
 
     /**
@@ -193,7 +203,10 @@ public class KMLWriterDriver {
                     xmlOut.writeCharacters(tableName);
                     xmlOut.writeEndElement();//Name
                     while (rs.next()) {
+                        long writeTime = recorder.startTimer();
                         writePlacemark(xmlOut, rs, geoFieldIndex, spatialFieldNames.get(0));
+                        recorder.stopTimer(OperationRecorder.Phase.WRITE, writeTime);
+                        recorder.addRows(1);
                         copyProgress.endStep();
                     }
 
@@ -0,0 +1,212 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.drivers.osm;
+
+import org.h2gis.drivers.utility.FileUtil;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Store the coordinates of the OSM nodes outside of the java heap. The records (node id, longitude, latitude) are
+ * written in a temporary file mapped in memory by blocks, the operating system pages the file when it does not fit
+ * in memory. Coordinates are stored as fixed point integers with the precision of the OSM database (1e-7 degree).
+ *
+ * Nodes are usually sorted by identifier in OSM files, a node is found using a binary search. If the nodes are not
+ * sorted, the records are sorted in place before the first search.
+ */
+final class NodeCoordinateStore {
+    private static final int RECORD_SIZE = 16;
+    private static final int BLOCK_SHIFT = 20;
+    /** Number of records in a mapped block */
+    private static final int BLOCK_RECORDS = 1 << BLOCK_SHIFT;
+    private static final int BLOCK_MASK = BLOCK_RECORDS - 1;
+    private static final double PRECISION = 1e7;
+    private final File file;
+    private final RandomAccessFile randomAccessFile;
+    private final FileChannel channel;
+    private final List<MappedByteBuffer> blocks = new ArrayList<MappedByteBuffer>();
+    private long size = 0;
+    private long lastId = Long.MIN_VALUE;
+    private boolean sorted = true;
+
+    /**
+     * Create the temporary file.
+     * @throws IOException Unable to create the file
+     */
+    NodeCoordinateStore() throws IOException {
+        file = File.createTempFile("h2gis_osm_nodes", ".bin");
+        file.deleteOnExit();
+        randomAccessFile = new RandomAccessFile(file, "rw");
+        channel = randomAccessFile.getChannel();
+    }
+
+    /**
+     * @return Number of stored nodes
+     */
+    long size() {
+        return size;
+    }
+
+    /**
+     * Add a node.
+     * @param id Node identifier
+     * @param lon Longitude
+     * @param lat Latitude
+     * @throws IOException Unable to extend the file
+     */
+    void put(long id, double lon, double lat) throws IOException {
+        int blockIndex = (int) (size >>> BLOCK_SHIFT);
+        if (blockIndex == blocks.size()) {
+            blocks.add(channel.map(FileChannel.MapMode.READ_WRITE, (long) blockIndex * BLOCK_RECORDS * RECORD_SIZE,
+                    (long) BLOCK_RECORDS * RECORD_SIZE));
+        }
+        MappedByteBuffer block = blocks.get(blockIndex);
+        int offset = ((int) size & BLOCK_MASK) * RECORD_SIZE;
+        block.putLong(offset, id);
+        block.putInt(offset + 8, (int) Math.round(lon * PRECISION));
+        block.putInt(offset + 12, (int) Math.round(lat * PRECISION));
+        if (id <= lastId) {
+            sorted = false;
+        }
+        lastId = id;
+        size++;
+    }
+
+    /**
+     * @param id Node identifier
+     * @return Index of the node, -1 if the node is not stored
+     */
+    long find(long id) {
+        if (!sorted) {
+            sort();
+        }
+        long low = 0;
+        long high = size - 1;
+        while (low <= high) {
+            long mid = (low + high) >>> 1;
+            long midId = getId(mid);
+            if (midId < id) {
+                low = mid + 1;
+            } else if (midId > id) {
+                high = mid - 1;
+            } else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * @param index Node index, returned by {@link #find(long)}
+     * @return Longitude of the node
+     */
+    double getLon(long index) {
+        return block(index).getInt(offset(index) + 8) / PRECISION;
+    }
+
+    /**
+     * @param index Node index, returned by {@link #find(long)}
+     * @return Latitude of the node
+     */
+    double getLat(long index) {
+        return block(index).getInt(offset(index) + 12) / PRECISION;
+    }
+
+    /**
+     * Unmap the blocks and delete the temporary file.
+     * @throws IOException Unable to close the file
+     */
+    void close() throws IOException {
+        // A mapped file can not be deleted on Windows
+        for (MappedByteBuffer block : blocks) {
+            FileUtil.unmap(block);
+        }
+        blocks.clear();
+        try {
+            randomAccessFile.close();
+        } finally {
+            if (!file.delete()) {
+                // The file may still be mapped, it will be removed when the JVM exits
+                file.deleteOnExit();
+            }
+        }
+    }
+
+    private MappedByteBuffer block(long index) {
+        return blocks.get((int) (index >>> BLOCK_SHIFT));
+    }
+
+    private static int offset(long index) {
+        return ((int) index & BLOCK_MASK) * RECORD_SIZE;
+    }
+
+    private long getId(long index) {
+        return block(index).getLong(offset(index));
+    }
+
+    /**
+     * Heap sort of the records, the records are swapped in the mapped file.
+     */
+    private void sort() {
+        for (long i = size / 2 - 1; i >= 0; i--) {
+            siftDown(i, size);
+        }
+        for (long end = size - 1; end > 0; end--) {
+            swap(0, end);
+            siftDown(0, end);
+        }
+        sorted = true;
+        lastId = size > 0 ? getId(size - 1) : Long.MIN_VALUE;
+    }
+
+    private void siftDown(long root, long end) {
+        while (2 * root + 1 < end) {
+            long child = 2 * root + 1;
+            if (child + 1 < end && getId(child) < getId(child + 1)) {
+                child++;
+            }
+            if (getId(root) >= getId(child)) {
+                return;
+            }
+            swap(root, child);
+            root = child;
+        }
+    }
+
+    private void swap(long first, long second) {
+        MappedByteBuffer firstBlock = block(first);
+        MappedByteBuffer secondBlock = block(second);
+        int firstOffset = offset(first);
+        int secondOffset = offset(second);
+        long id = firstBlock.getLong(firstOffset);
+        long coordinates = firstBlock.getLong(firstOffset + 8);
+        firstBlock.putLong(firstOffset, secondBlock.getLong(secondOffset));
+        firstBlock.putLong(firstOffset + 8, secondBlock.getLong(secondOffset + 8));
+        secondBlock.putLong(secondOffset, id);
+        secondBlock.putLong(secondOffset + 8, coordinates);
+    }
+}
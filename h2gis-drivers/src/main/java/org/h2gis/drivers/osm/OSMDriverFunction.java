@@ -36,6 +36,7 @@ public class OSMDriverFunction implements DriverFunction {
     public static String DESCRIPTION = "OSM file (0.6)";
     public static String DESCRIPTION_GZ = "OSM Gzipped file (0.6)";
     public static String DESCRIPTION_BZ2 = "OSM Bzipped file (0.6)";
+    public static String DESCRIPTION_PBF = "OSM PBF file (0.6)";
 
 
     @Override
@@ -56,6 +57,8 @@ public class OSMDriverFunction implements DriverFunction {
             return DESCRIPTION_GZ;
         } else  if (format.equalsIgnoreCase("bz2")) {
             return DESCRIPTION_BZ2;
+        } else if (format.equalsIgnoreCase("pbf")) {
+            return DESCRIPTION_PBF;
         } else {
             return "";
         }
@@ -65,7 +68,8 @@ public class OSMDriverFunction implements DriverFunction {
     public boolean isSpatialFormat(String extension) {
         return extension.equalsIgnoreCase("osm") ||
                 extension.equalsIgnoreCase("gz") ||
-                extension.equalsIgnoreCase("bz2");
+                extension.equalsIgnoreCase("bz2") ||
+                extension.equalsIgnoreCase("pbf");
     }
 
     @Override
@@ -75,8 +79,8 @@ public class OSMDriverFunction implements DriverFunction {
 
     @Override
     public void importFile(Connection connection, String tableReference, File fileName, ProgressVisitor progress) throws SQLException, IOException {
-        if(fileName == null || !(fileName.getName().endsWith(".osm") || fileName.getName().endsWith("osm.gz") || fileName.getName().endsWith("osm.bz2"))) {
-            throw new IOException(new IllegalArgumentException("This driver handle only osm and osm.gz files"));
+        if(fileName == null || !(fileName.getName().endsWith(".osm") || fileName.getName().endsWith("osm.gz") || fileName.getName().endsWith("osm.bz2") || fileName.getName().endsWith("osm.pbf"))) {
+            throw new IOException(new IllegalArgumentException("This driver handle only osm, osm.gz, osm.bz2 and osm.pbf files"));
         }
         OSMParser osmp = new OSMParser();
         osmp.read(connection, tableReference, fileName, progress);
@@ -84,7 +88,7 @@ public class OSMDriverFunction implements DriverFunction {
 
     @Override
     public String[] getImportFormats() {
-        return new String[]{"osm","gz","bz2"};
+        return new String[]{"osm","gz","bz2","pbf"};
     }
 
 }
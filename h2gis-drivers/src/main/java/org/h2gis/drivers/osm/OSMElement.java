@@ -33,8 +33,9 @@ import org.xml.sax.SAXException;
  */
 public class OSMElement {
 
-    private final SimpleDateFormat dataFormat1 = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
-    private final SimpleDateFormat dataFormat2 = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+    // Created when a timestamp is parsed, binary files store the time in milliseconds
+    private SimpleDateFormat dataFormat1;
+    private SimpleDateFormat dataFormat2;
     private final HashMap<String, String> tags;
     private long id, uid;
     private String user;
@@ -65,6 +66,15 @@ public class OSMElement {
         this.id = Long.valueOf(id);
     }
 
+    /**
+     * Set an id to the element
+     *
+     * @param id
+     */
+    public void setId(long id) {
+        this.id = id;
+    }
+
     /**
      * The user
      *
@@ -88,6 +98,10 @@ public class OSMElement {
         }
     }
 
+    public void setUid(long uid) {
+        this.uid = uid;
+    }
+
     /**
      * @return The way name (extracted from tag)
      */
@@ -116,6 +130,10 @@ public class OSMElement {
         }
     }
 
+    public void setVisible(boolean visible) {
+        this.visible = visible;
+    }
+
     /**
      *
      * @return
@@ -128,6 +146,10 @@ public class OSMElement {
         this.version = version != null ? Integer.valueOf(version) : 0;
     }
 
+    public void setVersion(int version) {
+        this.version = version;
+    }
+
     /**
      *
      * @return
@@ -142,6 +164,10 @@ public class OSMElement {
         }
     }
 
+    public void setChangeset(int changeset) {
+        this.changeset = changeset;
+    }
+
     /**
      *
      * @return
@@ -153,6 +179,10 @@ public class OSMElement {
 
     public void setTimestamp(String OSMtime) throws SAXException {
         if(OSMtime!=null){
+        if (dataFormat1 == null) {
+            dataFormat1 = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss'Z'");
+            dataFormat2 = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss");
+        }
         try {
             timestamp = new Timestamp(dataFormat1.parse(OSMtime).getTime());
         } catch (ParseException ex) {
@@ -164,6 +194,13 @@ public class OSMElement {
         }}
     }
 
+    /**
+     * @param timestamp Last update time
+     */
+    public void setTimestamp(Timestamp timestamp) {
+        this.timestamp = timestamp;
+    }
+
     /**
      *
      * @param key
@@ -20,11 +20,15 @@
 
 package org.h2gis.drivers.osm;
 
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.GeometryFactory;
 import com.vividsolutions.jts.geom.PrecisionModel;
 import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
 import org.h2.api.ErrorCode;
 import org.h2gis.api.EmptyProgressVisitor;
+import org.h2gis.api.OperationMetrics;
+import org.h2gis.api.OperationRecorder;
 import org.h2gis.api.ProgressVisitor;
 import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.TableLocation;
@@ -44,8 +48,10 @@ import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Types;
 import java.text.ParseException;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.zip.GZIPInputStream;
@@ -54,6 +60,12 @@ import java.util.zip.GZIPInputStream;
  * Parse an OSM file and store the elements into a database. The database model
  * contains 10 tables.
  *
+ * When the way geometries are built (see {@link #setBuildGeometries(boolean)}),
+ * the node coordinates are kept in a {@link NodeCoordinateStore} while the file
+ * is parsed. The way table receives a LINESTRING or POLYGON geometry built from
+ * this store, the way node table is not created and only the nodes that have
+ * tags are inserted into the node table.
+ *
  *
  * @author Erwan Bocher
  */
@@ -110,11 +122,26 @@ public class OSMParser extends DefaultHandler {
     // For progression information return
     private static final int AVERAGE_NODE_SIZE = 500;
     private static String TAG_DUPLICATE_EXCEPTION = String.valueOf(ErrorCode.DUPLICATE_KEY_1);
+    // Keys of the closed ways that are areas
+    private static final Set<String> AREA_KEYS = new HashSet<String>(Arrays.asList("building", "landuse",
+            "amenity", "leisure", "natural", "shop", "tourism", "historic", "military", "aeroway", "man_made",
+            "place", "building:part", "water"));
+    private boolean buildGeometries = false;
+    private NodeCoordinateStore nodeStore;
+    private OperationRecorder recorder = OperationRecorder.DISABLED;
 
     public OSMParser() {
 
     }
 
+    /**
+     * @param buildGeometries True to build the geometry of the ways while
+     * reading the file instead of storing the nodes of each way.
+     */
+    public void setBuildGeometries(boolean buildGeometries) {
+        this.buildGeometries = buildGeometries;
+    }
+
     /**
      * Read the OSM file and create its corresponding tables.
      *
@@ -137,9 +164,14 @@ public class OSMParser extends DefaultHandler {
 
         FileInputStream fs = null;
         try {
+            if (buildGeometries) {
+                nodeStore = new NodeCoordinateStore();
+            }
+            recorder = OperationMetrics.start("OSM import");
             fs = new FileInputStream(inputFile);
             this.fc = fs.getChannel();
             this.fileSize = fc.size();
+            recorder.addBytesRead(fileSize);
             // Given the file size and an average node file size.
             // Skip how many nodes in order to update progression at a step of 1%
             readFileSizeEachNode = Math.max(1, (this.fileSize / AVERAGE_NODE_SIZE) / 100);
@@ -147,7 +179,9 @@ public class OSMParser extends DefaultHandler {
             XMLReader parser = XMLReaderFactory.createXMLReader();
             parser.setErrorHandler(this);
             parser.setContentHandler(this);
-            if(inputFile.getName().endsWith(".osm")) {
+            if(inputFile.getName().endsWith(".osm.pbf")) {
+                new OSMPbfReader(this, Runtime.getRuntime().availableProcessors()).read(fs, this.progress);
+            } else if(inputFile.getName().endsWith(".osm")) {
                 parser.parse(new InputSource(fs));
             } else if(inputFile.getName().endsWith(".osm.gz")) {
                 parser.parse(new InputSource(new GZIPInputStream(fs)));
@@ -155,8 +189,12 @@ public class OSMParser extends DefaultHandler {
                 parser.parse(new InputSource(new BZip2CompressorInputStream(fs)));
             }
             else{
-                throw new SQLException("Supported formats are .osm, .osm.gz, .osm.bz2");
+                throw new SQLException("Supported formats are .osm, .osm.gz, .osm.bz2, .osm.pbf");
             }
+            // The file is parsed while the batches are inserted
+            recorder.addTime(OperationRecorder.Phase.READ, recorder.getElapsedTime()
+                    - recorder.getTime(OperationRecorder.Phase.WRITE) - recorder.getTime(OperationRecorder.Phase.GEOMETRY));
+            recorder.close();
             success = true;
         } catch (SAXException ex) {
             throw new SQLException(ex);
@@ -170,6 +208,14 @@ public class OSMParser extends DefaultHandler {
             } catch (IOException ex) {
                 throw new SQLException("Cannot close the file " + inputFile.getAbsolutePath(), ex);
             }
+            if (nodeStore != null) {
+                try {
+                    nodeStore.close();
+                } catch (IOException ex) {
+                    throw new SQLException("Cannot delete the node coordinates file", ex);
+                }
+                nodeStore = null;
+            }
             // When the reading ends, close() method has to be called
             if (nodePreparedStmt != null) {
                 nodePreparedStmt.close();
@@ -221,6 +267,9 @@ public class OSMParser extends DefaultHandler {
     private void checkOSMTables(Connection connection, boolean isH2, TableLocation requestedTable, String osmTableName) throws SQLException {
         String[] omsTables = new String[]{TAG, NODE, NODE_TAG, WAY, WAY_NODE, WAY_TAG, RELATION, RELATION_TAG, NODE_MEMBER, WAY_MEMBER, RELATION_MEMBER};
         for (String omsTableSuffix : omsTables) {
+            if (buildGeometries && omsTableSuffix.equals(WAY_NODE)) {
+                continue;
+            }
             String osmTable = caseIdentifier(requestedTable, osmTableName + omsTableSuffix, isH2);
             if (JDBCUtilities.tableExists(connection, osmTable)) {
                 throw new SQLException("The table " + osmTable + " already exists.");
@@ -258,11 +307,17 @@ public class OSMParser extends DefaultHandler {
         String nodeTagTableName = caseIdentifier(requestedTable, osmTableName + NODE_TAG, isH2);
         nodeTagPreparedStmt = OSMTablesFactory.createNodeTagTable(connection, nodeTagTableName, tagTableName);
         String wayTableName = caseIdentifier(requestedTable, osmTableName + WAY, isH2);
-        wayPreparedStmt = OSMTablesFactory.createWayTable(connection, wayTableName, isH2);
+        if (buildGeometries) {
+            wayPreparedStmt = OSMTablesFactory.createWayGeometryTable(connection, wayTableName, isH2);
+        } else {
+            wayPreparedStmt = OSMTablesFactory.createWayTable(connection, wayTableName, isH2);
+        }
         String wayTagTableName = caseIdentifier(requestedTable, osmTableName + WAY_TAG, isH2);
         wayTagPreparedStmt = OSMTablesFactory.createWayTagTable(connection, wayTagTableName, tagTableName);
-        String wayNodeTableName = caseIdentifier(requestedTable, osmTableName + WAY_NODE, isH2);
-        wayNodePreparedStmt = OSMTablesFactory.createWayNodeTable(connection, wayNodeTableName);
+        if (!buildGeometries) {
+            String wayNodeTableName = caseIdentifier(requestedTable, osmTableName + WAY_NODE, isH2);
+            wayNodePreparedStmt = OSMTablesFactory.createWayNodeTable(connection, wayNodeTableName);
+        }
         String relationTableName = caseIdentifier(requestedTable, osmTableName + RELATION, isH2);
         relationPreparedStmt = OSMTablesFactory.createRelationTable(connection, relationTableName);
         String relationTagTableName = caseIdentifier(requestedTable, osmTableName + RELATION_TAG, isH2);
@@ -305,15 +360,11 @@ public class OSMParser extends DefaultHandler {
                     break;
             }
             try{
-                if(insertTag && !insertedTagsKeys.contains(key)) {
-                    tagPreparedStmt.setObject(1, key);
-                    tagPreparedStmt.execute();
-                    insertedTagsKeys.add(key);
+                if(insertTag) {
+                    insertTagKey(key);
                 }
             } catch (SQLException ex) {
-                    if(ex.getErrorCode() != ErrorCode.DUPLICATE_KEY_1 && !TAG_DUPLICATE_EXCEPTION.equals(ex.getSQLState())) {
-                        throw new SAXException("Cannot insert the tag :  {" + key + " , " + value + "}", ex);
-                    }
+                throw new SAXException("Cannot insert the tag :  {" + key + " , " + value + "}", ex);
             }
         } else if (localName.compareToIgnoreCase("nd") == 0) {
             wayOSMElement.addRef(attributes.getValue("ref"));
@@ -322,39 +373,11 @@ public class OSMParser extends DefaultHandler {
             setCommonsAttributes(relationOSMElement, attributes);
             tagLocation = TAG_LOCATION.RELATION;
         } else if (localName.compareToIgnoreCase("member") == 0) {
-            if (type.equalsIgnoreCase("node")) {
-                try {
-                    nodeMemberPreparedStmt.setObject(1, relationOSMElement.getID());
-                    nodeMemberPreparedStmt.setObject(2, Long.valueOf(attributes.getValue("ref")));
-                    nodeMemberPreparedStmt.setObject(3, attributes.getValue("role"));
-                    nodeMemberPreparedStmt.setObject(4, idMemberOrder);
-                    nodeMemberPreparedStmt.addBatch();
-                    nodeMemberPreparedStmtBatchSize++;
-                } catch (SQLException ex) {
-                    throw new SAXException("Cannot insert the node member for the relation :  " + relationOSMElement.getID(), ex);
-                }
-            } else if (type.equalsIgnoreCase("way")) {
-                try {
-                    wayMemberPreparedStmt.setObject(1, relationOSMElement.getID());
-                    wayMemberPreparedStmt.setObject(2, Long.valueOf(attributes.getValue("ref")));
-                    wayMemberPreparedStmt.setObject(3, attributes.getValue("role"));
-                    wayMemberPreparedStmt.setObject(4, idMemberOrder);
-                    wayMemberPreparedStmt.addBatch();
-                    wayMemberPreparedStmtBatchSize++;
-                } catch (SQLException ex) {
-                    throw new SAXException("Cannot insert the way member for the relation :  " + relationOSMElement.getID(), ex);
-                }
-            } else if (type.equalsIgnoreCase("relation")) {
-                try {
-                    relationMemberPreparedStmt.setObject(1, relationOSMElement.getID());
-                    relationMemberPreparedStmt.setObject(2, Long.valueOf(attributes.getValue("ref")));
-                    relationMemberPreparedStmt.setObject(3, attributes.getValue("role"));
-                    relationMemberPreparedStmt.setObject(4, idMemberOrder);
-                    relationMemberPreparedStmt.addBatch();
-                    relationMemberPreparedStmtBatchSize++;
-                } catch (SQLException ex) {
-                    throw new SAXException("Cannot insert the relation member for the relation :  " + relationOSMElement.getID(), ex);
-                }
+            try {
+                insertMember(relationOSMElement.getID(), type, Long.valueOf(attributes.getValue("ref")),
+                        attributes.getValue("role"), idMemberOrder);
+            } catch (SQLException ex) {
+                throw new SAXException("Cannot insert the " + type + " member for the relation :  " + relationOSMElement.getID(), ex);
             }
         }
     }
@@ -363,16 +386,7 @@ public class OSMParser extends DefaultHandler {
     public void endDocument() throws SAXException {
         // Execute remaining batch
         try {
-            nodePreparedStmtBatchSize = insertBatch(nodePreparedStmt, nodePreparedStmtBatchSize, 1);
-            nodeTagPreparedStmtBatchSize = insertBatch(nodeTagPreparedStmt, nodeTagPreparedStmtBatchSize, 1);
-            wayPreparedStmtBatchSize = insertBatch(wayPreparedStmt, wayPreparedStmtBatchSize, 1);
-            wayTagPreparedStmtBatchSize = insertBatch(wayTagPreparedStmt, wayTagPreparedStmtBatchSize, 1);
-            relationPreparedStmtBatchSize = insertBatch(relationPreparedStmt, relationPreparedStmtBatchSize, 1);
-            relationTagPreparedStmtBatchSize = insertBatch(relationTagPreparedStmt, relationTagPreparedStmtBatchSize, 1);
-            nodeMemberPreparedStmtBatchSize = insertBatch(nodeMemberPreparedStmt,nodeMemberPreparedStmtBatchSize, 1);
-            wayMemberPreparedStmtBatchSize = insertBatch(wayMemberPreparedStmt, wayMemberPreparedStmtBatchSize, 1);
-            relationMemberPreparedStmtBatchSize = insertBatch(relationMemberPreparedStmt, relationMemberPreparedStmtBatchSize, 1);
-            wayNodePreparedStmtBatchSize = insertBatch(wayNodePreparedStmt, wayNodePreparedStmtBatchSize, 1);
+            executeRemainingBatch();
         } catch (SQLException ex) {
             throw new SAXException("Could not insert sql batch", ex);
         }
@@ -383,82 +397,24 @@ public class OSMParser extends DefaultHandler {
         if (localName.compareToIgnoreCase("node") == 0) {
             tagLocation = TAG_LOCATION.OTHER;
             try {
-                nodePreparedStmt.setObject(1, nodeOSMElement.getID());
-                nodePreparedStmt.setObject(2, nodeOSMElement.getPoint(gf));
-                nodePreparedStmt.setObject(3, nodeOSMElement.getElevation());
-                nodePreparedStmt.setObject(4, nodeOSMElement.getUser());
-                nodePreparedStmt.setObject(5, nodeOSMElement.getUID());
-                nodePreparedStmt.setObject(6, nodeOSMElement.getVisible());
-                nodePreparedStmt.setObject(7, nodeOSMElement.getVersion());
-                nodePreparedStmt.setObject(8, nodeOSMElement.getChangeSet());
-                nodePreparedStmt.setObject(9, nodeOSMElement.getTimeStamp(), Types.DATE);
-                nodePreparedStmt.setString(10, nodeOSMElement.getName());
-                nodePreparedStmt.addBatch();
-                nodePreparedStmtBatchSize++;
-                HashMap<String, String> tags = nodeOSMElement.getTags();
-                for (Map.Entry<String, String> entry : tags.entrySet()) {
-                    nodeTagPreparedStmt.setObject(1, nodeOSMElement.getID());
-                    nodeTagPreparedStmt.setObject(2, entry.getKey());
-                    nodeTagPreparedStmt.setObject(3, entry.getValue());
-                    nodeTagPreparedStmt.addBatch();
-                    nodeTagPreparedStmtBatchSize++;
-                }
+                insertNode(nodeOSMElement);
             } catch (SQLException ex) {
                 throw new SAXException("Cannot insert the node  :  " + nodeOSMElement.getID(), ex);
+            } catch (IOException ex) {
+                throw new SAXException("Cannot store the node  :  " + nodeOSMElement.getID(), ex);
             }
         } else if (localName.compareToIgnoreCase("way") == 0) {
             tagLocation = TAG_LOCATION.OTHER;
             try {
-                wayPreparedStmt.setObject(1, wayOSMElement.getID());
-                wayPreparedStmt.setObject(2, wayOSMElement.getUser());
-                wayPreparedStmt.setObject(3, wayOSMElement.getUID());
-                wayPreparedStmt.setObject(4, wayOSMElement.getVisible());
-                wayPreparedStmt.setObject(5, wayOSMElement.getVersion());
-                wayPreparedStmt.setObject(6, wayOSMElement.getChangeSet());
-                wayPreparedStmt.setTimestamp(7, wayOSMElement.getTimeStamp());
-                wayPreparedStmt.setString(8, wayOSMElement.getName());
-                wayPreparedStmt.addBatch();
-                wayPreparedStmtBatchSize++;
-                HashMap<String, String> tags = wayOSMElement.getTags();
-                for (Map.Entry<String, String> entry : tags.entrySet()) {
-                    wayTagPreparedStmt.setObject(1, wayOSMElement.getID());
-                    wayTagPreparedStmt.setObject(2, entry.getKey());
-                    wayTagPreparedStmt.setObject(3, entry.getValue());
-                    wayTagPreparedStmt.addBatch();
-                    wayTagPreparedStmtBatchSize++;
-                }
-                int order = 1;
-                for (long ref :  wayOSMElement.getNodesRef()) {
-                    wayNodePreparedStmt.setObject(1, wayOSMElement.getID());
-                    wayNodePreparedStmt.setObject(2, ref);
-                    wayNodePreparedStmt.setObject(3, order++);
-                    wayNodePreparedStmt.addBatch();
-                    wayNodePreparedStmtBatchSize++;
-                }
+                insertWay(wayOSMElement);
             } catch (SQLException ex) {
                 throw new SAXException("Cannot insert the way  :  " + wayOSMElement.getID(), ex);
             }
         } else if (localName.compareToIgnoreCase("relation") == 0) {
             tagLocation = TAG_LOCATION.OTHER;
             try {
-                relationPreparedStmt.setObject(1, relationOSMElement.getID());
-                relationPreparedStmt.setObject(2, relationOSMElement.getUser());
-                relationPreparedStmt.setObject(3, relationOSMElement.getUID());
-                relationPreparedStmt.setObject(4, relationOSMElement.getVisible());
-                relationPreparedStmt.setObject(5, relationOSMElement.getVersion());
-                relationPreparedStmt.setObject(6, relationOSMElement.getChangeSet());
-                relationPreparedStmt.setTimestamp(7, relationOSMElement.getTimeStamp());
-                relationPreparedStmt.addBatch();
-                relationPreparedStmtBatchSize++;
-                HashMap<String, String> tags = relationOSMElement.getTags();
-                for (Map.Entry<String, String> entry : tags.entrySet()) {
-                    relationTagPreparedStmt.setObject(1, relationOSMElement.getID());
-                    relationTagPreparedStmt.setObject(2, entry.getKey());
-                    relationTagPreparedStmt.setObject(3, entry.getValue());
-                    relationTagPreparedStmt.addBatch();
-                    relationTagPreparedStmtBatchSize++;
-                }
-                idMemberOrder = 0;
+                insertRelation(relationOSMElement);
+                idMemberOrder = 1;
             } catch (SQLException ex) {
                 throw new SAXException("Cannot insert the relation  :  " + relationOSMElement.getID(), ex);
             }
@@ -480,7 +436,234 @@ public class OSMParser extends DefaultHandler {
         }
     }
 
-    private void insertBatch() throws SQLException {
+    /**
+     * Add a key into the tag table if it has not been inserted yet.
+     *
+     * @param key Tag key
+     * @throws SQLException
+     */
+    void insertTagKey(String key) throws SQLException {
+        if (!insertedTagsKeys.contains(key)) {
+            try {
+                tagPreparedStmt.setObject(1, key);
+                tagPreparedStmt.execute();
+            } catch (SQLException ex) {
+                if (ex.getErrorCode() != ErrorCode.DUPLICATE_KEY_1 && !TAG_DUPLICATE_EXCEPTION.equals(ex.getSQLState())) {
+                    throw ex;
+                }
+            }
+            insertedTagsKeys.add(key);
+        }
+    }
+
+    /**
+     * Add a node and its tags into the insert batches.
+     *
+     * @param node
+     * @throws SQLException
+     * @throws IOException Unable to store the node coordinates
+     */
+    void insertNode(NodeOSMElement node) throws SQLException, IOException {
+        if (buildGeometries) {
+            nodeStore.put(node.getID(), node.getLongitude(), node.getLatitude());
+            if (node.getTags().isEmpty() && node.getName().isEmpty() && node.getElevation() == null) {
+                // Untagged nodes are only used to build the ways
+                return;
+            }
+        }
+        nodePreparedStmt.setObject(1, node.getID());
+        long geometryTime = recorder.startTimer();
+        nodePreparedStmt.setObject(2, node.getPoint(gf));
+        recorder.stopTimer(OperationRecorder.Phase.GEOMETRY, geometryTime);
+        nodePreparedStmt.setObject(3, node.getElevation());
+        nodePreparedStmt.setObject(4, node.getUser());
+        nodePreparedStmt.setObject(5, node.getUID());
+        nodePreparedStmt.setObject(6, node.getVisible());
+        nodePreparedStmt.setObject(7, node.getVersion());
+        nodePreparedStmt.setObject(8, node.getChangeSet());
+        nodePreparedStmt.setObject(9, node.getTimeStamp(), Types.DATE);
+        nodePreparedStmt.setString(10, node.getName());
+        nodePreparedStmt.addBatch();
+        nodePreparedStmtBatchSize++;
+        recorder.addRows(1);
+        HashMap<String, String> tags = node.getTags();
+        for (Map.Entry<String, String> entry : tags.entrySet()) {
+            nodeTagPreparedStmt.setObject(1, node.getID());
+            nodeTagPreparedStmt.setObject(2, entry.getKey());
+            nodeTagPreparedStmt.setObject(3, entry.getValue());
+            nodeTagPreparedStmt.addBatch();
+            nodeTagPreparedStmtBatchSize++;
+        }
+    }
+
+    /**
+     * Add a way, its tags and its nodes or its geometry into the insert
+     * batches.
+     *
+     * @param way
+     * @throws SQLException
+     */
+    void insertWay(WayOSMElement way) throws SQLException {
+        int fieldIndex = 1;
+        wayPreparedStmt.setObject(fieldIndex++, way.getID());
+        if (buildGeometries) {
+            long geometryTime = recorder.startTimer();
+            wayPreparedStmt.setObject(fieldIndex++, buildWayGeometry(way));
+            recorder.stopTimer(OperationRecorder.Phase.GEOMETRY, geometryTime);
+        }
+        wayPreparedStmt.setObject(fieldIndex++, way.getUser());
+        wayPreparedStmt.setObject(fieldIndex++, way.getUID());
+        wayPreparedStmt.setObject(fieldIndex++, way.getVisible());
+        wayPreparedStmt.setObject(fieldIndex++, way.getVersion());
+        wayPreparedStmt.setObject(fieldIndex++, way.getChangeSet());
+        wayPreparedStmt.setTimestamp(fieldIndex++, way.getTimeStamp());
+        wayPreparedStmt.setString(fieldIndex, way.getName());
+        wayPreparedStmt.addBatch();
+        wayPreparedStmtBatchSize++;
+        recorder.addRows(1);
+        HashMap<String, String> tags = way.getTags();
+        for (Map.Entry<String, String> entry : tags.entrySet()) {
+            wayTagPreparedStmt.setObject(1, way.getID());
+            wayTagPreparedStmt.setObject(2, entry.getKey());
+            wayTagPreparedStmt.setObject(3, entry.getValue());
+            wayTagPreparedStmt.addBatch();
+            wayTagPreparedStmtBatchSize++;
+        }
+        if (!buildGeometries) {
+            int order = 1;
+            for (long ref : way.getNodesRef()) {
+                wayNodePreparedStmt.setObject(1, way.getID());
+                wayNodePreparedStmt.setObject(2, ref);
+                wayNodePreparedStmt.setObject(3, order++);
+                wayNodePreparedStmt.addBatch();
+                wayNodePreparedStmtBatchSize++;
+            }
+        }
+    }
+
+    /**
+     * Add a relation and its tags into the insert batches.
+     *
+     * @param relation
+     * @throws SQLException
+     */
+    void insertRelation(OSMElement relation) throws SQLException {
+        relationPreparedStmt.setObject(1, relation.getID());
+        relationPreparedStmt.setObject(2, relation.getUser());
+        relationPreparedStmt.setObject(3, relation.getUID());
+        relationPreparedStmt.setObject(4, relation.getVisible());
+        relationPreparedStmt.setObject(5, relation.getVersion());
+        relationPreparedStmt.setObject(6, relation.getChangeSet());
+        relationPreparedStmt.setTimestamp(7, relation.getTimeStamp());
+        relationPreparedStmt.addBatch();
+        relationPreparedStmtBatchSize++;
+        recorder.addRows(1);
+        HashMap<String, String> tags = relation.getTags();
+        for (Map.Entry<String, String> entry : tags.entrySet()) {
+            relationTagPreparedStmt.setObject(1, relation.getID());
+            relationTagPreparedStmt.setObject(2, entry.getKey());
+            relationTagPreparedStmt.setObject(3, entry.getValue());
+            relationTagPreparedStmt.addBatch();
+            relationTagPreparedStmtBatchSize++;
+        }
+    }
+
+    /**
+     * Add a relation member into the insert batches.
+     *
+     * @param relationId Relation identifier
+     * @param type Member type: node, way or relation
+     * @param ref Member identifier
+     * @param role Member role
+     * @param order Member order in the relation
+     * @throws SQLException
+     */
+    void insertMember(long relationId, String type, long ref, String role, int order) throws SQLException {
+        PreparedStatement memberPreparedStmt;
+        if (type.equalsIgnoreCase("node")) {
+            memberPreparedStmt = nodeMemberPreparedStmt;
+            nodeMemberPreparedStmtBatchSize++;
+        } else if (type.equalsIgnoreCase("way")) {
+            memberPreparedStmt = wayMemberPreparedStmt;
+            wayMemberPreparedStmtBatchSize++;
+        } else if (type.equalsIgnoreCase("relation")) {
+            memberPreparedStmt = relationMemberPreparedStmt;
+            relationMemberPreparedStmtBatchSize++;
+        } else {
+            return;
+        }
+        memberPreparedStmt.setObject(1, relationId);
+        memberPreparedStmt.setObject(2, ref);
+        memberPreparedStmt.setObject(3, role);
+        memberPreparedStmt.setObject(4, order);
+        memberPreparedStmt.addBatch();
+    }
+
+    /**
+     * Execute the batches that are not empty.
+     *
+     * @throws SQLException
+     */
+    void executeRemainingBatch() throws SQLException {
+        nodePreparedStmtBatchSize = insertBatch(nodePreparedStmt, nodePreparedStmtBatchSize, 1);
+        nodeTagPreparedStmtBatchSize = insertBatch(nodeTagPreparedStmt, nodeTagPreparedStmtBatchSize, 1);
+        wayPreparedStmtBatchSize = insertBatch(wayPreparedStmt, wayPreparedStmtBatchSize, 1);
+        wayTagPreparedStmtBatchSize = insertBatch(wayTagPreparedStmt, wayTagPreparedStmtBatchSize, 1);
+        relationPreparedStmtBatchSize = insertBatch(relationPreparedStmt, relationPreparedStmtBatchSize, 1);
+        relationTagPreparedStmtBatchSize = insertBatch(relationTagPreparedStmt, relationTagPreparedStmtBatchSize, 1);
+        nodeMemberPreparedStmtBatchSize = insertBatch(nodeMemberPreparedStmt,nodeMemberPreparedStmtBatchSize, 1);
+        wayMemberPreparedStmtBatchSize = insertBatch(wayMemberPreparedStmt, wayMemberPreparedStmtBatchSize, 1);
+        relationMemberPreparedStmtBatchSize = insertBatch(relationMemberPreparedStmt, relationMemberPreparedStmtBatchSize, 1);
+        wayNodePreparedStmtBatchSize = insertBatch(wayNodePreparedStmt, wayNodePreparedStmtBatchSize, 1);
+    }
+
+    /**
+     * Build the geometry of a way from the stored node coordinates. A closed
+     * way is a POLYGON if it is tagged as an area, otherwise the way is a
+     * LINESTRING. Nodes missing from the file (ex: clipped extract) are
+     * skipped.
+     *
+     * @param way
+     * @return The way geometry, null if less than two nodes are found
+     */
+    private Geometry buildWayGeometry(WayOSMElement way) {
+        List<Long> refs = way.getNodesRef();
+        Coordinate[] coordinates = new Coordinate[refs.size()];
+        int count = 0;
+        for (long ref : refs) {
+            long index = nodeStore.find(ref);
+            if (index >= 0) {
+                coordinates[count++] = new Coordinate(nodeStore.getLon(index), nodeStore.getLat(index));
+            }
+        }
+        if (count < 2) {
+            return null;
+        }
+        if (count == refs.size() && count >= 4 && refs.get(0).equals(refs.get(count - 1)) && isArea(way)) {
+            return gf.createPolygon(gf.createLinearRing(coordinates), null);
+        }
+        return gf.createLineString(count == coordinates.length ? coordinates : Arrays.copyOf(coordinates, count));
+    }
+
+    /**
+     * @param way Closed way
+     * @return True if the tags of the way describe an area
+     */
+    private static boolean isArea(WayOSMElement way) {
+        Map<String, String> tags = way.getTags();
+        String area = tags.get("area");
+        if (area != null) {
+            return !area.equalsIgnoreCase("no");
+        }
+        for (String key : tags.keySet()) {
+            if (AREA_KEYS.contains(key)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void insertBatch() throws SQLException {
         nodePreparedStmtBatchSize = insertBatch(nodePreparedStmt, nodePreparedStmtBatchSize);
         nodeTagPreparedStmtBatchSize = insertBatch(nodeTagPreparedStmt, nodeTagPreparedStmtBatchSize);
         wayPreparedStmtBatchSize = insertBatch(wayPreparedStmt, wayPreparedStmtBatchSize);
@@ -494,7 +677,9 @@ public class OSMParser extends DefaultHandler {
     }
     private int insertBatch(PreparedStatement st, int batchSize, int maxBatchSize) throws SQLException {
         if(batchSize >= maxBatchSize) {
+            long flushTime = recorder.startTimer();
             st.executeBatch();
+            recorder.stopFlushTimer(flushTime);
             return 0;
         } else {
             return batchSize;
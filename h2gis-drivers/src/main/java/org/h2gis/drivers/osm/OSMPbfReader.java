@@ -0,0 +1,666 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.drivers.osm;
+
+import org.h2gis.api.ProgressVisitor;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+
+/**
+ * Read an OSM PBF file (.osm.pbf) and insert its elements with an {@link OSMParser}, in the same tables as the XML
+ * files.
+ *
+ * A PBF file is a sequence of blobs, each blob contains a compressed PrimitiveBlock of a few thousands elements.
+ * The calling thread reads the blobs, the blocks are decompressed and decoded by a pool of threads, then the
+ * decoded elements are inserted in the file order by the calling thread.
+ *
+ * See http://wiki.openstreetmap.org/wiki/PBF_Format
+ */
+final class OSMPbfReader {
+    private static final int MAX_BLOB_HEADER_SIZE = 64 * 1024;
+    private static final int MAX_BLOB_SIZE = 32 * 1024 * 1024;
+    private static final Set<String> SUPPORTED_FEATURES = new HashSet<String>(Arrays.asList("OsmSchema-V0.6",
+            "DenseNodes"));
+    private static final String[] MEMBER_TYPES = new String[]{"node", "way", "relation"};
+    private final OSMParser parser;
+    private final int threadCount;
+
+    /**
+     * @param parser Parser that inserts the elements, the tables must be created
+     * @param threadCount Number of decoder threads
+     */
+    OSMPbfReader(OSMParser parser, int threadCount) {
+        this.parser = parser;
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * Read all the blobs of the file.
+     * @param fis File input stream
+     * @param progress Progress, updated using the file position
+     * @throws IOException Read or decode error
+     * @throws SQLException Insert error or canceled by user
+     */
+    void read(FileInputStream fis, ProgressVisitor progress) throws IOException, SQLException {
+        FileChannel fc = fis.getChannel();
+        long fileSize = fc.size();
+        DataInputStream in = new DataInputStream(new BufferedInputStream(fis, 65536));
+        ExecutorService executor = Executors.newFixedThreadPool(threadCount, new DecoderThreadFactory());
+        ArrayDeque<Future<List<OSMElement>>> pending = new ArrayDeque<Future<List<OSMElement>>>();
+        int maxPending = threadCount * 2;
+        try {
+            while (true) {
+                int headerSize;
+                try {
+                    headerSize = in.readInt();
+                } catch (EOFException ex) {
+                    break;
+                }
+                if (headerSize <= 0 || headerSize > MAX_BLOB_HEADER_SIZE) {
+                    throw new IOException("Invalid PBF blob header size " + headerSize);
+                }
+                byte[] header = new byte[headerSize];
+                in.readFully(header);
+                String type = null;
+                int dataSize = -1;
+                ProtobufInput blobHeader = new ProtobufInput(header, 0, headerSize);
+                while (!blobHeader.isAtEnd()) {
+                    int field = blobHeader.nextField();
+                    if (field == 1) {
+                        type = blobHeader.readString();
+                    } else if (field == 3) {
+                        dataSize = (int) blobHeader.readVarint();
+                    } else {
+                        blobHeader.skipField();
+                    }
+                }
+                if (dataSize < 0 || dataSize > MAX_BLOB_SIZE) {
+                    throw new IOException("Invalid PBF blob size " + dataSize);
+                }
+                byte[] blob = new byte[dataSize];
+                in.readFully(blob);
+                if ("OSMHeader".equals(type)) {
+                    checkHeader(decodeBlob(blob));
+                } else if ("OSMData".equals(type)) {
+                    if (pending.size() >= maxPending) {
+                        insertElements(pending.poll(), progress);
+                    }
+                    pending.add(executor.submit(new DecodeBlock(blob)));
+                }
+                // Unknown blob types are ignored
+                progress.setStep((int) (((double) fc.position() / fileSize) * 100));
+            }
+            while (!pending.isEmpty()) {
+                insertElements(pending.poll(), progress);
+            }
+            parser.executeRemainingBatch();
+        } finally {
+            for (Future<List<OSMElement>> block : pending) {
+                block.cancel(false);
+            }
+            executor.shutdown();
+            try {
+                executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * Wait for a decoded block then insert its elements.
+     */
+    private void insertElements(Future<List<OSMElement>> block, ProgressVisitor progress) throws IOException,
+            SQLException {
+        if (progress.isCanceled()) {
+            throw new SQLException("Canceled by user");
+        }
+        List<OSMElement> elements;
+        try {
+            elements = block.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading the PBF file", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        }
+        for (OSMElement element : elements) {
+            for (String key : element.getTags().keySet()) {
+                parser.insertTagKey(key);
+            }
+            if (element instanceof NodeOSMElement) {
+                parser.insertNode((NodeOSMElement) element);
+            } else if (element instanceof WayOSMElement) {
+                parser.insertWay((WayOSMElement) element);
+            } else {
+                RelationElement relation = (RelationElement) element;
+                parser.insertRelation(relation);
+                for (int i = 0; i < relation.memberIds.length; i++) {
+                    parser.insertMember(relation.getID(), relation.memberTypes[i], relation.memberIds[i],
+                            relation.memberRoles[i], i + 1);
+                }
+            }
+            parser.insertBatch();
+        }
+    }
+
+    /**
+     * Check that the features required to read the file are supported.
+     * @param headerBlock Decoded HeaderBlock
+     * @throws IOException A required feature is not supported
+     */
+    private static void checkHeader(byte[] headerBlock) throws IOException {
+        ProtobufInput header = new ProtobufInput(headerBlock, 0, headerBlock.length);
+        while (!header.isAtEnd()) {
+            if (header.nextField() == 4) {
+                String feature = header.readString();
+                if (!SUPPORTED_FEATURES.contains(feature)) {
+                    throw new IOException("The PBF feature " + feature + " is not supported");
+                }
+            } else {
+                header.skipField();
+            }
+        }
+    }
+
+    /**
+     * @param blob Blob message
+     * @return Uncompressed content of the blob
+     * @throws IOException Unsupported compression or corrupted data
+     */
+    private static byte[] decodeBlob(byte[] blob) throws IOException {
+        ProtobufInput input = new ProtobufInput(blob, 0, blob.length);
+        byte[] zlibData = null;
+        int rawSize = -1;
+        while (!input.isAtEnd()) {
+            int field = input.nextField();
+            if (field == 1) {
+                return input.readBytes();
+            } else if (field == 2) {
+                rawSize = (int) input.readVarint();
+            } else if (field == 3) {
+                zlibData = input.readBytes();
+            } else if (field == 4 || field == 5 || field == 6 || field == 7) {
+                throw new IOException("Only raw and zlib compressed PBF blobs are supported");
+            } else {
+                input.skipField();
+            }
+        }
+        if (zlibData == null || rawSize < 0 || rawSize > MAX_BLOB_SIZE) {
+            throw new IOException("Invalid PBF blob");
+        }
+        byte[] data = new byte[rawSize];
+        Inflater inflater = new Inflater();
+        try {
+            inflater.setInput(zlibData);
+            int length = 0;
+            while (length < rawSize && !inflater.finished()) {
+                int read = inflater.inflate(data, length, rawSize - length);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                length += read;
+            }
+            if (length != rawSize) {
+                throw new IOException("Truncated PBF blob");
+            }
+        } catch (DataFormatException ex) {
+            throw new IOException("Corrupted PBF blob", ex);
+        } finally {
+            inflater.end();
+        }
+        return data;
+    }
+
+    /**
+     * Decode the elements of a PrimitiveBlock.
+     */
+    private static class DecodeBlock implements Callable<List<OSMElement>> {
+        private final byte[] blob;
+        private String[] strings = new String[0];
+        private long granularity = 100;
+        private long latOffset = 0;
+        private long lonOffset = 0;
+        private long dateGranularity = 1000;
+        private final List<OSMElement> elements = new ArrayList<OSMElement>();
+
+        private DecodeBlock(byte[] blob) {
+            this.blob = blob;
+        }
+
+        @Override
+        public List<OSMElement> call() throws Exception {
+            byte[] data = decodeBlob(blob);
+            ProtobufInput block = new ProtobufInput(data, 0, data.length);
+            // The block parameters may be written after the groups
+            List<ProtobufInput> groups = new ArrayList<ProtobufInput>();
+            while (!block.isAtEnd()) {
+                switch (block.nextField()) {
+                    case 1:
+                        readStringTable(block.readMessage());
+                        break;
+                    case 2:
+                        groups.add(block.readMessage());
+                        break;
+                    case 17:
+                        granularity = block.readVarint();
+                        break;
+                    case 18:
+                        dateGranularity = block.readVarint();
+                        break;
+                    case 19:
+                        latOffset = block.readVarint();
+                        break;
+                    case 20:
+                        lonOffset = block.readVarint();
+                        break;
+                    default:
+                        block.skipField();
+                }
+            }
+            for (ProtobufInput group : groups) {
+                while (!group.isAtEnd()) {
+                    switch (group.nextField()) {
+                        case 1:
+                            readNode(group.readMessage());
+                            break;
+                        case 2:
+                            readDenseNodes(group.readMessage());
+                            break;
+                        case 3:
+                            readWay(group.readMessage());
+                            break;
+                        case 4:
+                            readRelation(group.readMessage());
+                            break;
+                        default:
+                            group.skipField();
+                    }
+                }
+            }
+            return elements;
+        }
+
+        private void readStringTable(ProtobufInput table) throws IOException {
+            List<String> values = new ArrayList<String>();
+            while (!table.isAtEnd()) {
+                if (table.nextField() == 1) {
+                    values.add(table.readString());
+                } else {
+                    table.skipField();
+                }
+            }
+            strings = values.toArray(new String[values.size()]);
+        }
+
+        private double latitude(long lat) {
+            return (latOffset + granularity * lat) / 1e9;
+        }
+
+        private double longitude(long lon) {
+            return (lonOffset + granularity * lon) / 1e9;
+        }
+
+        private Timestamp timestamp(long time) {
+            return new Timestamp(time * dateGranularity);
+        }
+
+        private void readInfo(ProtobufInput info, OSMElement element) throws IOException {
+            while (!info.isAtEnd()) {
+                switch (info.nextField()) {
+                    case 1:
+                        element.setVersion((int) info.readVarint());
+                        break;
+                    case 2:
+                        element.setTimestamp(timestamp(info.readVarint()));
+                        break;
+                    case 3:
+                        element.setChangeset((int) info.readVarint());
+                        break;
+                    case 4:
+                        element.setUid((int) info.readVarint());
+                        break;
+                    case 5:
+                        element.setUser(strings[(int) info.readVarint()]);
+                        break;
+                    case 6:
+                        element.setVisible(info.readVarint() != 0);
+                        break;
+                    default:
+                        info.skipField();
+                }
+            }
+        }
+
+        private void addTags(OSMElement element, LongArray keys, LongArray values) {
+            for (int i = 0; i < keys.size; i++) {
+                element.addTag(strings[(int) keys.values[i]], strings[(int) values.values[i]]);
+            }
+        }
+
+        private void readNode(ProtobufInput input) throws IOException {
+            long id = 0;
+            long lat = 0;
+            long lon = 0;
+            LongArray keys = new LongArray();
+            LongArray values = new LongArray();
+            ProtobufInput info = null;
+            while (!input.isAtEnd()) {
+                switch (input.nextField()) {
+                    case 1:
+                        id = input.readSignedVarint();
+                        break;
+                    case 2:
+                        keys.read(input, false);
+                        break;
+                    case 3:
+                        values.read(input, false);
+                        break;
+                    case 4:
+                        info = input.readMessage();
+                        break;
+                    case 8:
+                        lat = input.readSignedVarint();
+                        break;
+                    case 9:
+                        lon = input.readSignedVarint();
+                        break;
+                    default:
+                        input.skipField();
+                }
+            }
+            NodeOSMElement node = new NodeOSMElement(latitude(lat), longitude(lon));
+            node.setId(id);
+            if (info != null) {
+                readInfo(info, node);
+            }
+            addTags(node, keys, values);
+            elements.add(node);
+        }
+
+        private void readDenseNodes(ProtobufInput input) throws IOException {
+            LongArray ids = new LongArray();
+            LongArray lats = new LongArray();
+            LongArray lons = new LongArray();
+            LongArray keysValues = new LongArray();
+            LongArray versions = new LongArray();
+            LongArray timestamps = new LongArray();
+            LongArray changesets = new LongArray();
+            LongArray uids = new LongArray();
+            LongArray userSids = new LongArray();
+            LongArray visibles = new LongArray();
+            while (!input.isAtEnd()) {
+                switch (input.nextField()) {
+                    case 1:
+                        ids.read(input, true);
+                        break;
+                    case 5:
+                        ProtobufInput denseInfo = input.readMessage();
+                        while (!denseInfo.isAtEnd()) {
+                            switch (denseInfo.nextField()) {
+                                case 1:
+                                    versions.read(denseInfo, false);
+                                    break;
+                                case 2:
+                                    timestamps.read(denseInfo, true);
+                                    break;
+                                case 3:
+                                    changesets.read(denseInfo, true);
+                                    break;
+                                case 4:
+                                    uids.read(denseInfo, true);
+                                    break;
+                                case 5:
+                                    userSids.read(denseInfo, true);
+                                    break;
+                                case 6:
+                                    visibles.read(denseInfo, false);
+                                    break;
+                                default:
+                                    denseInfo.skipField();
+                            }
+                        }
+                        break;
+                    case 8:
+                        lats.read(input, true);
+                        break;
+                    case 9:
+                        lons.read(input, true);
+                        break;
+                    case 10:
+                        keysValues.read(input, false);
+                        break;
+                    default:
+                        input.skipField();
+                }
+            }
+            if (lats.size != ids.size || lons.size != ids.size) {
+                throw new IOException("Malformed PBF dense nodes");
+            }
+            // Identifiers, coordinates and info are delta coded
+            long id = 0, lat = 0, lon = 0, timestamp = 0, changeset = 0, uid = 0, userSid = 0;
+            int keyValueIndex = 0;
+            for (int i = 0; i < ids.size; i++) {
+                id += ids.values[i];
+                lat += lats.values[i];
+                lon += lons.values[i];
+                NodeOSMElement node = new NodeOSMElement(latitude(lat), longitude(lon));
+                node.setId(id);
+                if (i < versions.size) {
+                    node.setVersion((int) versions.values[i]);
+                }
+                if (i < timestamps.size) {
+                    timestamp += timestamps.values[i];
+                    node.setTimestamp(timestamp(timestamp));
+                }
+                if (i < changesets.size) {
+                    changeset += changesets.values[i];
+                    node.setChangeset((int) changeset);
+                }
+                if (i < uids.size) {
+                    uid += uids.values[i];
+                    node.setUid(uid);
+                }
+                if (i < userSids.size) {
+                    userSid += userSids.values[i];
+                    node.setUser(strings[(int) userSid]);
+                }
+                if (i < visibles.size) {
+                    node.setVisible(visibles.values[i] != 0);
+                }
+                // Tags of each node are stored as key, value pairs ended by 0
+                while (keyValueIndex < keysValues.size && keysValues.values[keyValueIndex] != 0) {
+                    node.addTag(strings[(int) keysValues.values[keyValueIndex]],
+                            strings[(int) keysValues.values[keyValueIndex + 1]]);
+                    keyValueIndex += 2;
+                }
+                keyValueIndex++;
+                elements.add(node);
+            }
+        }
+
+        private void readWay(ProtobufInput input) throws IOException {
+            WayOSMElement way = new WayOSMElement();
+            LongArray keys = new LongArray();
+            LongArray values = new LongArray();
+            LongArray refs = new LongArray();
+            while (!input.isAtEnd()) {
+                switch (input.nextField()) {
+                    case 1:
+                        way.setId(input.readVarint());
+                        break;
+                    case 2:
+                        keys.read(input, false);
+                        break;
+                    case 3:
+                        values.read(input, false);
+                        break;
+                    case 4:
+                        readInfo(input.readMessage(), way);
+                        break;
+                    case 8:
+                        refs.read(input, true);
+                        break;
+                    default:
+                        input.skipField();
+                }
+            }
+            addTags(way, keys, values);
+            long ref = 0;
+            for (int i = 0; i < refs.size; i++) {
+                ref += refs.values[i];
+                way.addRef(ref);
+            }
+            elements.add(way);
+        }
+
+        private void readRelation(ProtobufInput input) throws IOException {
+            RelationElement relation = new RelationElement();
+            LongArray keys = new LongArray();
+            LongArray values = new LongArray();
+            LongArray roles = new LongArray();
+            LongArray memberIds = new LongArray();
+            LongArray types = new LongArray();
+            while (!input.isAtEnd()) {
+                switch (input.nextField()) {
+                    case 1:
+                        relation.setId(input.readVarint());
+                        break;
+                    case 2:
+                        keys.read(input, false);
+                        break;
+                    case 3:
+                        values.read(input, false);
+                        break;
+                    case 4:
+                        readInfo(input.readMessage(), relation);
+                        break;
+                    case 8:
+                        roles.read(input, false);
+                        break;
+                    case 9:
+                        memberIds.read(input, true);
+                        break;
+                    case 10:
+                        types.read(input, false);
+                        break;
+                    default:
+                        input.skipField();
+                }
+            }
+            if (roles.size != memberIds.size || types.size != memberIds.size) {
+                throw new IOException("Malformed PBF relation " + relation.getID());
+            }
+            addTags(relation, keys, values);
+            relation.memberIds = new long[memberIds.size];
+            relation.memberTypes = new String[memberIds.size];
+            relation.memberRoles = new String[memberIds.size];
+            long memberId = 0;
+            for (int i = 0; i < memberIds.size; i++) {
+                memberId += memberIds.values[i];
+                relation.memberIds[i] = memberId;
+                int type = (int) types.values[i];
+                relation.memberTypes[i] = type >= 0 && type < MEMBER_TYPES.length ? MEMBER_TYPES[type] : "";
+                relation.memberRoles[i] = strings[(int) roles.values[i]];
+            }
+            elements.add(relation);
+        }
+    }
+
+    /**
+     * A relation and its members
+     */
+    private static class RelationElement extends OSMElement {
+        private long[] memberIds;
+        private String[] memberTypes;
+        private String[] memberRoles;
+    }
+
+    /**
+     * Values of a repeated field
+     */
+    private static class LongArray {
+        private long[] values = new long[16];
+        private int size = 0;
+
+        /**
+         * Read the values of the current field, packed or not.
+         */
+        private void read(ProtobufInput input, boolean signed) throws IOException {
+            if (input.isPacked()) {
+                ProtobufInput packed = input.readMessage();
+                while (!packed.isAtEnd()) {
+                    add(signed ? packed.readSignedVarint() : packed.readVarint());
+                }
+            } else {
+                add(signed ? input.readSignedVarint() : input.readVarint());
+            }
+        }
+
+        private void add(long value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+
+    private static class DecoderThreadFactory implements ThreadFactory {
+        private final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = defaultFactory.newThread(r);
+            thread.setName("OSMRead-" + thread.getName());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -48,7 +48,10 @@ public class OSMRead extends AbstractFunction implements ScalarFunction {
                 " (SELECT N.ID_NODE, N.THE_GEOM,WN.ID_WAY IDWAY FROM MAP_NODE N,MAP_WAY_NODE WN WHERE N.ID_NODE = WN" +
                 ".ID_NODE ORDER BY WN.NODE_ORDER) WHERE  IDWAY = W.ID_WAY) THE_GEOM ,W.ID_WAY FROM MAP_WAY W," +
                 "MAP_BUILDINGS B WHERE W.ID_WAY = B.ID_WAY) GEOM_TABLE WHERE ST_GEOMETRYN(THE_GEOM," +
-                "1) = ST_GEOMETRYN(THE_GEOM, ST_NUMGEOMETRIES(THE_GEOM)) AND ST_NUMGEOMETRIES(THE_GEOM) > 2;");
+                "1) = ST_GEOMETRYN(THE_GEOM, ST_NUMGEOMETRIES(THE_GEOM)) AND ST_NUMGEOMETRIES(THE_GEOM) > 2;\n" +
+                "Set the optional last argument to true to build the LINESTRING or POLYGON geometry of the ways " +
+                "during the import, the way node table is not created and only the tagged nodes are stored:\n" +
+                "CALL OSMRead('map.osm', 'MAP', true);");
     }
 
     @Override
@@ -65,21 +68,41 @@ public class OSMRead extends AbstractFunction implements ScalarFunction {
      * @throws SQLException 
      */
     public static void readOSM(Connection connection, String fileName, String tableReference) throws FileNotFoundException, SQLException {
+        readOSM(connection, fileName, tableReference, false);
+    }
+
+    /**
+     * 
+     * @param connection
+     * @param fileName
+     * @param tableReference
+     * @param buildGeometries True to build the geometry of the ways during the import
+     * @throws FileNotFoundException
+     * @throws SQLException 
+     */
+    public static void readOSM(Connection connection, String fileName, String tableReference, boolean buildGeometries) throws FileNotFoundException, SQLException {
         File file = URIUtility.fileFromString(fileName);
         if (!file.exists()) {
             throw new FileNotFoundException("The following file does not exists:\n" + fileName);
         }
         if (file.getName().toLowerCase().endsWith(".osm")) {
             OSMParser osmp = new OSMParser();
+            osmp.setBuildGeometries(buildGeometries);
             osmp.read(connection, tableReference, file, new EmptyProgressVisitor());
         } else if (file.getName().toLowerCase().endsWith(".osm.gz")) {
             OSMParser osmp = new OSMParser();
+            osmp.setBuildGeometries(buildGeometries);
             osmp.read(connection, tableReference, file, new EmptyProgressVisitor());
         } else if (file.getName().toLowerCase().endsWith(".osm.bz2")) {
             OSMParser osmp = new OSMParser();
+            osmp.setBuildGeometries(buildGeometries);
+            osmp.read(connection, tableReference, file, new EmptyProgressVisitor());
+        } else if (file.getName().toLowerCase().endsWith(".osm.pbf")) {
+            OSMParser osmp = new OSMParser();
+            osmp.setBuildGeometries(buildGeometries);
             osmp.read(connection, tableReference, file, new EmptyProgressVisitor());
         } else {
-            throw new SQLException("Supported formats are .osm, .osm.gz, .osm.bz2");
+            throw new SQLException("Supported formats are .osm, .osm.gz, .osm.bz2, .osm.pbf");
         }
     }
 
@@ -152,6 +152,32 @@ public class OSMTablesFactory {
         return connection.prepareStatement("INSERT INTO " + wayTableName + " VALUES (?,?,?,?,?,?,?,?);");
     }
 
+    /**
+     * Create the ways table with a geometry column. The geometry of the way is
+     * a LINESTRING or a POLYGON, built from the coordinates of its nodes.
+     *
+     * @param connection
+     * @param wayTableName
+     * @param isH2
+     * @return
+     * @throws SQLException
+     */
+    public static PreparedStatement createWayGeometryTable(Connection connection, String wayTableName, boolean isH2) throws SQLException {
+        Statement stmt = connection.createStatement();
+        StringBuilder sb = new StringBuilder("CREATE TABLE ");
+        sb.append(wayTableName);
+        sb.append("(ID_WAY BIGINT PRIMARY KEY, THE_GEOM ");
+        if(isH2) {
+            sb.append("GEOMETRY CHECK ST_SRID(THE_GEOM)=4326");
+        } else {
+            sb.append("GEOMETRY(GEOMETRY, 4326)");
+        }
+        sb.append(", USER_NAME VARCHAR, UID BIGINT, VISIBLE BOOLEAN, VERSION INTEGER, CHANGESET INTEGER, LAST_UPDATE TIMESTAMP, NAME VARCHAR);");
+        stmt.execute(sb.toString());
+        stmt.close();
+        return connection.prepareStatement("INSERT INTO " + wayTableName + " VALUES (?,?,?,?,?,?,?,?,?);");
+    }
+
     /**
      * Create a table to store the way tags.
      *
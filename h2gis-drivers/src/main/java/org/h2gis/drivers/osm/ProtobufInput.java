@@ -0,0 +1,178 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.drivers.osm;
+
+import java.io.IOException;
+import java.nio.charset.Charset;
+
+/**
+ * Minimal reader of the Protocol Buffers wire format, used to decode the messages of OSM PBF files. A message is
+ * read as a sequence of fields: {@link #nextField()} returns the field number, then the value is read with the
+ * method matching the field type or skipped with {@link #skipField()}.
+ */
+final class ProtobufInput {
+    static final int WIRE_VARINT = 0;
+    static final int WIRE_FIXED64 = 1;
+    static final int WIRE_LENGTH_DELIMITED = 2;
+    static final int WIRE_FIXED32 = 5;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+    private final byte[] buffer;
+    private int position;
+    private final int limit;
+    private int wireType;
+
+    /**
+     * @param buffer Encoded message
+     * @param offset Message start
+     * @param length Message length
+     */
+    ProtobufInput(byte[] buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.position = offset;
+        this.limit = offset + length;
+    }
+
+    /**
+     * @return True if all the fields of the message have been read
+     */
+    boolean isAtEnd() {
+        return position >= limit;
+    }
+
+    /**
+     * Read the key of the next field.
+     * @return Field number
+     * @throws IOException Malformed message
+     */
+    int nextField() throws IOException {
+        int key = (int) readVarint();
+        wireType = key & 0x7;
+        return key >>> 3;
+    }
+
+    /**
+     * Skip the value of the current field.
+     * @throws IOException Malformed message or unsupported wire type
+     */
+    void skipField() throws IOException {
+        switch (wireType) {
+            case WIRE_VARINT:
+                readVarint();
+                break;
+            case WIRE_FIXED64:
+                skip(8);
+                break;
+            case WIRE_LENGTH_DELIMITED:
+                skip(readLength());
+                break;
+            case WIRE_FIXED32:
+                skip(4);
+                break;
+            default:
+                throw new IOException("Unsupported protocol buffer wire type " + wireType);
+        }
+    }
+
+    /**
+     * @return True if the current field is a packed repeated field
+     */
+    boolean isPacked() {
+        return wireType == WIRE_LENGTH_DELIMITED;
+    }
+
+    /**
+     * @return Unsigned varint value (int32, int64, uint32, uint64, bool, enum)
+     * @throws IOException Truncated message
+     */
+    long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            if (position >= limit) {
+                throw new IOException("Truncated protocol buffer message");
+            }
+            byte b = buffer[position++];
+            value |= (long) (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed protocol buffer varint");
+    }
+
+    /**
+     * @return Zigzag encoded value (sint32, sint64)
+     * @throws IOException Truncated message
+     */
+    long readSignedVarint() throws IOException {
+        long value = readVarint();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    /**
+     * @return UTF-8 string value
+     * @throws IOException Truncated message
+     */
+    String readString() throws IOException {
+        int length = readLength();
+        String value = new String(buffer, position, length, UTF8);
+        position += length;
+        return value;
+    }
+
+    /**
+     * @return Bytes value
+     * @throws IOException Truncated message
+     */
+    byte[] readBytes() throws IOException {
+        int length = readLength();
+        byte[] value = new byte[length];
+        System.arraycopy(buffer, position, value, 0, length);
+        position += length;
+        return value;
+    }
+
+    /**
+     * Read an embedded message or a packed repeated field. The returned input shares the buffer of this input.
+     * @return Input limited to the value of the current field
+     * @throws IOException Truncated message
+     */
+    ProtobufInput readMessage() throws IOException {
+        int length = readLength();
+        ProtobufInput message = new ProtobufInput(buffer, position, length);
+        position += length;
+        return message;
+    }
+
+    private int readLength() throws IOException {
+        int length = (int) readVarint();
+        if (length < 0 || position + length > limit) {
+            throw new IOException("Truncated protocol buffer message");
+        }
+        return length;
+    }
+
+    private void skip(int length) throws IOException {
+        if (position + length > limit) {
+            throw new IOException("Truncated protocol buffer message");
+        }
+        position += length;
+    }
+}
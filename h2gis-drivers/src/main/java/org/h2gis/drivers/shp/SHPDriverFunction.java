@@ -26,8 +26,10 @@ import java.sql.*;
 import java.util.ArrayList;
 import java.util.List;
 import org.h2.table.Column;
+import org.h2gis.drivers.FileDriver;
 import org.h2gis.drivers.dbf.DBFDriverFunction;
 import org.h2gis.drivers.dbf.internal.DbaseFileHeader;
+import org.h2gis.drivers.file_table.BulkLoader;
 import org.h2gis.drivers.file_table.FileEngine;
 import org.h2gis.drivers.file_table.H2TableIndex;
 import org.h2gis.drivers.shp.internal.SHPDriver;
@@ -36,6 +38,8 @@ import org.h2gis.drivers.shp.internal.ShapefileHeader;
 import org.h2gis.drivers.utility.FileUtil;
 import org.h2gis.drivers.utility.PRJUtil;
 import org.h2gis.api.DriverFunction;
+import org.h2gis.api.OperationMetrics;
+import org.h2gis.api.OperationRecorder;
 import org.h2gis.api.ProgressVisitor;
 import org.h2gis.utilities.GeometryTypeCodes;
 import org.h2gis.utilities.JDBCUtilities;
@@ -50,7 +54,26 @@ import org.h2gis.utilities.jts_utils.GeometryMetaData;
 public class SHPDriverFunction implements DriverFunction {
     public static String DESCRIPTION = "ESRI shapefile";
     private static final int BATCH_MAX_SIZE = 100;
-    
+    private int threadCount = 1;
+
+    /**
+     * @param threadCount Number of threads used to decode the shape file on import and to encode the rows on export.
+     * If greater than one, the rows are decoded or encoded in parallel by chunks of
+     * {@link SHPParallelReader#CHUNK_SIZE} rows.
+     */
+    public void setThreadCount(int threadCount) {
+        if (threadCount < 1) {
+            throw new IllegalArgumentException("The thread count must be greater than zero");
+        }
+        this.threadCount = threadCount;
+    }
+
+    /**
+     * @return Number of threads used to decode the shape file on import and to encode the rows on export
+     */
+    public int getThreadCount() {
+        return threadCount;
+    }
 
     @Override
     public void exportTable(Connection connection, String tableReference, File fileName, ProgressVisitor progress) throws SQLException, IOException {
@@ -93,36 +116,69 @@ public class SHPDriverFunction implements DriverFunction {
                         header.setEncoding(encoding);
                     }
                     header.setNumRecords(recordCount);
+                    // Encode the rows with several threads while this thread reads the table
+                    boolean parallel = threadCount > 1 && recordCount > SHPParallelWriter.CHUNK_SIZE;
                     SHPDriver shpDriver = null;
+                    SHPParallelWriter parallelWriter = null;
                     Object[] row = new Object[header.getNumFields() + 1];
-                    while (rs.next()) {
-                        int i = 0;
-                        for (Integer index : columnIndexes) {
-                            row[i++] = rs.getObject(index);
-                        }
-                        if (shpDriver == null) {
-                            // If there is not shape type constraint read the first geometry and use the same type
-                            byte[] wkb = rs.getBytes(geoFieldIndex);
-                            if (wkb != null) {
-                                shapeType = getShapeTypeFromGeometryMetaData(GeometryMetaData.getMetaDataFromWKB(wkb));
+                    OperationRecorder recorder = OperationMetrics.start("SHP export");
+                    try {
+                        long readTime = recorder.startTimer();
+                        while (rs.next()) {
+                            for (int i = 1; i < row.length; i++) {
+                                row[i] = rs.getObject(columnIndexes.get(i));
+                            }
+                            if (parallel && isH2) {
+                                // The WKB is parsed by the encoder threads
+                                row[0] = rs.getBytes(geoFieldIndex);
+                            } else {
+                                row[0] = rs.getObject(geoFieldIndex);
                             }
-                            if (shapeType != null) {
-                                shpDriver = new SHPDriver();
-                                shpDriver.setGeometryFieldIndex(0);
-                                shpDriver.initDriver(fileName, shapeType, header);
+                            if (shpDriver == null && parallelWriter == null) {
+                                // If there is not shape type constraint read the first geometry and use the same type
+                                byte[] wkb = row[0] instanceof byte[] ? (byte[]) row[0] : rs.getBytes(geoFieldIndex);
+                                if (wkb != null) {
+                                    shapeType = getShapeTypeFromGeometryMetaData(GeometryMetaData.getMetaDataFromWKB(wkb));
+                                }
+                                if (shapeType == null) {
+                                    throw new SQLException("Unsupported geometry type.");
+                                } else if (parallel) {
+                                    parallelWriter = new SHPParallelWriter(fileName, shapeType, header, threadCount);
+                                } else {
+                                    shpDriver = new SHPDriver();
+                                    shpDriver.setGeometryFieldIndex(0);
+                                    shpDriver.initDriver(fileName, shapeType, header);
+                                }
                             }
-                            else{
-                                throw new SQLException("Unsupported geometry type.");
+                            recorder.stopTimer(OperationRecorder.Phase.READ, readTime);
+                            long writeTime = recorder.startTimer();
+                            if (parallelWriter != null) {
+                                parallelWriter.insertRow(row);
+                            } else {
+                                shpDriver.insertRow(row);
                             }
+                            recorder.stopTimer(OperationRecorder.Phase.WRITE, writeTime);
+                            recorder.addRows(1);
+                            copyProgress.endStep();
+                            readTime = recorder.startTimer();
+                        }
+                        long writeTime = recorder.startTimer();
+                        if (parallelWriter != null) {
+                            parallelWriter.finish();
                         }
-                        if (shpDriver != null) {
-                            shpDriver.insertRow(row);
+                        recorder.stopTimer(OperationRecorder.Phase.WRITE, writeTime);
+                    } finally {
+                        if (parallelWriter != null) {
+                            parallelWriter.close();
                         }
-                        copyProgress.endStep();
                     }
                     if (shpDriver != null) {
                         shpDriver.close();
                     }
+                    if (recorder.isEnabled()) {
+                        recorder.addBytesWritten(getShapeFilesLength(fileName));
+                    }
+                    recorder.close();
                 } finally {
                     rs.close();
                 }
@@ -187,6 +243,8 @@ public class SHPDriverFunction implements DriverFunction {
     public void importFile(Connection connection, String tableReference, File fileName, ProgressVisitor progress,String forceEncoding) throws SQLException, IOException {
         final boolean isH2 = JDBCUtilities.isH2DataBase(connection.getMetaData());
         SHPDriver shpDriver = new SHPDriver();
+        OperationRecorder recorder = OperationMetrics.start("SHP import");
+        shpDriver.setRecorder(recorder);
         shpDriver.initDriverFromFile(fileName, forceEncoding);
         ProgressVisitor copyProgress = progress.subProcess((int)(shpDriver.getRowCount() / BATCH_MAX_SIZE));
         // PostGIS does not show sql
@@ -220,36 +278,28 @@ public class SHPDriverFunction implements DriverFunction {
                 st.execute(lastSql);
             }
             st.close();
+            final boolean bulkLoad = BulkLoader.isSupported(connection);
             try {
-                        lastSql = String.format("INSERT INTO %s VALUES (DEFAULT, %s )", parse,
-                                DBFDriverFunction.getQuestionMark(dbfHeader.getNumFields() + 1));
-                        PreparedStatement preparedStatement = connection.prepareStatement(lastSql);
-                try {
-                    long batchSize = 0;
-                    for (int rowId = 0; rowId < shpDriver.getRowCount(); rowId++) {
-                        Object[] values = shpDriver.getRow(rowId);
-                        for (int columnId = 0; columnId < values.length; columnId++) {
-                            preparedStatement.setObject(columnId + 1, values[columnId]);
-                        }
-                        preparedStatement.addBatch();
-                        batchSize++;
-                        if (batchSize >= BATCH_MAX_SIZE) {
-                            preparedStatement.executeBatch();
-                            preparedStatement.clearBatch();
-                            batchSize = 0;
-                            copyProgress.endStep();
-                        }
-                    }
-                    if(batchSize > 0) {
-                        preparedStatement.executeBatch();
+                if (threadCount > 1 && shpDriver.getRowCount() > SHPParallelReader.CHUNK_SIZE) {
+                    // Decode the shape file with several threads while this thread insert the rows
+                    SHPParallelReader reader = new SHPParallelReader(fileName, forceEncoding, srid, threadCount);
+                    try {
+                        lastSql = copyRows(connection, bulkLoad, parse, reader, SHPParallelReader.CHUNK_SIZE, copyProgress,
+                                recorder);
+                    } finally {
+                        reader.close();
                     }
-                } finally {
-                    preparedStatement.close();
+                } else {
+                    lastSql = copyRows(connection, bulkLoad, parse, shpDriver, BATCH_MAX_SIZE, copyProgress, recorder);
+                }
+                if (recorder.isEnabled()) {
+                    recorder.addBytesRead(getShapeFilesLength(fileName));
                 }
                 //Alter table to set the SRID constraint
                 if(isH2){
                     SFSUtilities.addTableSRIDConstraint(connection, parse, srid);
-                }                
+                }
+                recorder.close();                
                 //TODO create spatial index on the_geom ?
             } catch (Exception ex) {
                 connection.createStatement().execute("DROP TABLE IF EXISTS " + tableReference);
@@ -263,6 +313,78 @@ public class SHPDriverFunction implements DriverFunction {
         }
     }
 
+    /**
+     * @param shpFile Shape file
+     * @return The size of the shp, shx and dbf files in bytes
+     */
+    private static long getShapeFilesLength(File shpFile) {
+        String path = shpFile.getPath();
+        String nameWithoutExt = path.substring(0, path.lastIndexOf('.'));
+        long length = 0;
+        for (String extension : new String[]{".shp", ".shx", ".dbf"}) {
+            length += new File(nameWithoutExt + extension).length();
+        }
+        return length;
+    }
+
+    /**
+     * Insert the rows of the driver after the SERIAL primary key column.
+     * @param bulkLoad True to use {@link BulkLoader}, see {@link BulkLoader#isSupported(Connection)}
+     * @return The insert request
+     */
+    private static String copyRows(Connection connection, boolean bulkLoad, TableLocation parse, FileDriver driver,
+                                   int batchMaxSize, ProgressVisitor copyProgress, OperationRecorder recorder)
+            throws SQLException, IOException {
+        if (bulkLoad) {
+            // Copy the rows without binding the values
+            BulkLoader.copyRows(connection, driver, parse.toString(), copyProgress, recorder);
+            return "";
+        }
+        String sql = String.format("INSERT INTO %s VALUES (DEFAULT, %s )", parse,
+                DBFDriverFunction.getQuestionMark(driver.getFieldCount()));
+        PreparedStatement preparedStatement = connection.prepareStatement(sql);
+        try {
+            long batchSize = 0;
+            for (long rowId = 0; rowId < driver.getRowCount(); rowId++) {
+                if (copyProgress.isCanceled()) {
+                    throw new SQLException("Canceled by user");
+                }
+                long readTime = recorder.startTimer();
+                long geometryTime = recorder.getTime(OperationRecorder.Phase.GEOMETRY);
+                Object[] values = driver.getRow(rowId);
+                recorder.stopTimer(OperationRecorder.Phase.READ,
+                        readTime + recorder.getTime(OperationRecorder.Phase.GEOMETRY) - geometryTime);
+                long writeTime = recorder.startTimer();
+                for (int columnId = 0; columnId < values.length; columnId++) {
+                    preparedStatement.setObject(columnId + 1, values[columnId]);
+                }
+                preparedStatement.addBatch();
+                recorder.stopTimer(OperationRecorder.Phase.WRITE, writeTime);
+                recorder.addRows(1);
+                batchSize++;
+                // Same progression steps whatever the batch size
+                if ((rowId + 1) % BATCH_MAX_SIZE == 0) {
+                    copyProgress.endStep();
+                }
+                if (batchSize >= batchMaxSize) {
+                    long flushTime = recorder.startTimer();
+                    preparedStatement.executeBatch();
+                    preparedStatement.clearBatch();
+                    recorder.stopFlushTimer(flushTime);
+                    batchSize = 0;
+                }
+            }
+            if(batchSize > 0) {
+                long flushTime = recorder.startTimer();
+                preparedStatement.executeBatch();
+                recorder.stopFlushTimer(flushTime);
+            }
+        } finally {
+            preparedStatement.close();
+        }
+        return sql;
+    }
+
     /**
      * Return the shape type supported by the shapefile format
      * @param meta
@@ -43,6 +43,8 @@ public class SHPEngine extends FileEngine<SHPDriver> {
     @Override
     protected SHPDriver createDriver(File filePath, List<String> args) throws IOException {
         SHPDriver driver = new SHPDriver();
+        // Linked tables are read using random access, mapping the file avoids a copy on each read
+        driver.setMemoryMapped(isMemoryMapped());
         driver.initDriverFromFile(filePath, args.size() > 1 ? args.get(1) : null);
         return driver;
     }
@@ -0,0 +1,245 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.drivers.shp;
+
+import org.h2gis.drivers.FileDriver;
+import org.h2gis.drivers.shp.internal.SHPDriver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decode the rows of a shape file using several threads. The row range is split into chunks of consecutive rows,
+ * the SHX file gives the position of each chunk in the SHP file. Every decoder thread reads through its own
+ * SHP, SHX and DBF channels. A bounded number of chunks is decoded ahead of the consumer, chunks are returned
+ * in the file order. Rows must be read with increasing row index.
+ */
+class SHPParallelReader implements FileDriver {
+    /** Number of rows decoded by a single task */
+    static final int CHUNK_SIZE = 1000;
+    private final long rowCount;
+    private final int fieldCount;
+    private final BlockingQueue<SHPDriver> drivers;
+    private final List<SHPDriver> openedDrivers;
+    private final ExecutorService executor;
+    private final ArrayDeque<Future<Object[][]>> pending;
+    private final int maxPending;
+    private long nextChunkStart = 0;
+    private Object[][] currentChunk = new Object[0][];
+    private long currentChunkStart = 0;
+
+    /**
+     * Open the decoders and start reading the first chunks.
+     * @param shpFile Shape file path
+     * @param forceEncoding If defined use this encoding instead of the one defined in dbf header.
+     * @param srid SRID of read geometries
+     * @param threadCount Number of decoder threads
+     * @throws IOException Unable to open the files
+     */
+    SHPParallelReader(File shpFile, String forceEncoding, int srid, int threadCount) throws IOException {
+        drivers = new ArrayBlockingQueue<SHPDriver>(threadCount);
+        openedDrivers = new ArrayList<SHPDriver>(threadCount);
+        try {
+            for (int i = 0; i < threadCount; i++) {
+                SHPDriver driver = new SHPDriver();
+                driver.initDriverFromFile(shpFile, forceEncoding);
+                driver.setSRID(srid);
+                openedDrivers.add(driver);
+                drivers.add(driver);
+            }
+        } catch (IOException ex) {
+            closeDrivers();
+            throw ex;
+        }
+        rowCount = openedDrivers.get(0).getRowCount();
+        fieldCount = openedDrivers.get(0).getFieldCount();
+        executor = Executors.newFixedThreadPool(threadCount, new DecoderThreadFactory());
+        maxPending = threadCount * 2;
+        pending = new ArrayDeque<Future<Object[][]>>(maxPending);
+        while (pending.size() < maxPending && submitNextChunk()) {
+            // Fill the queue
+        }
+    }
+
+    @Override
+    public long getRowCount() {
+        return rowCount;
+    }
+
+    @Override
+    public int getFieldCount() {
+        return fieldCount;
+    }
+
+    @Override
+    public Object[] getRow(long rowId) throws IOException {
+        if (rowId < currentChunkStart) {
+            throw new IOException("Rows of the shape file must be read in ascending order");
+        }
+        while (rowId >= currentChunkStart + currentChunk.length) {
+            if (!hasNext()) {
+                throw new IOException("Row index out of bounds " + rowId);
+            }
+            currentChunkStart += currentChunk.length;
+            currentChunk = next();
+        }
+        return currentChunk[(int) (rowId - currentChunkStart)];
+    }
+
+    @Override
+    public Object[] getRow(long rowId, int[] fields) throws IOException {
+        return getRow(rowId);
+    }
+
+    @Override
+    public void insertRow(Object[] values) throws IOException {
+        throw new IOException("The shape file is opened in read mode");
+    }
+
+    private boolean submitNextChunk() {
+        if (nextChunkStart >= rowCount) {
+            return false;
+        }
+        long chunkEnd = Math.min(rowCount, nextChunkStart + CHUNK_SIZE);
+        pending.add(executor.submit(new DecodeChunk(drivers, nextChunkStart, chunkEnd)));
+        nextChunkStart = chunkEnd;
+        return true;
+    }
+
+    private boolean hasNext() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Wait for the next chunk in file order.
+     * @return Decoded rows of the next chunk
+     * @throws IOException Read error in a decoder thread
+     */
+    private Object[][] next() throws IOException {
+        Future<Object[][]> chunk = pending.poll();
+        submitNextChunk();
+        try {
+            return chunk.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while reading the shape file", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    /**
+     * Cancel the remaining chunks, wait for the running decoders then close the files.
+     * @throws IOException Close error
+     */
+    @Override
+    public void close() throws IOException {
+        for (Future<Object[][]> chunk : pending) {
+            chunk.cancel(false);
+        }
+        pending.clear();
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        closeDrivers();
+    }
+
+    private void closeDrivers() throws IOException {
+        IOException firstException = null;
+        for (SHPDriver driver : openedDrivers) {
+            try {
+                driver.close();
+            } catch (IOException ex) {
+                if (firstException == null) {
+                    firstException = ex;
+                }
+            }
+        }
+        openedDrivers.clear();
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+
+    /**
+     * Decode a range of rows using one of the free drivers.
+     */
+    private static class DecodeChunk implements Callable<Object[][]> {
+        private final BlockingQueue<SHPDriver> drivers;
+        private final long startRow;
+        private final long endRow;
+
+        private DecodeChunk(BlockingQueue<SHPDriver> drivers, long startRow, long endRow) {
+            this.drivers = drivers;
+            this.startRow = startRow;
+            this.endRow = endRow;
+        }
+
+        @Override
+        public Object[][] call() throws Exception {
+            // There is as many drivers as threads, a driver is always available
+            SHPDriver driver = drivers.take();
+            try {
+                Object[][] rows = new Object[(int) (endRow - startRow)][];
+                for (long rowId = startRow; rowId < endRow; rowId++) {
+                    rows[(int) (rowId - startRow)] = driver.getRow(rowId);
+                }
+                return rows;
+            } finally {
+                drivers.add(driver);
+            }
+        }
+    }
+
+    private static class DecoderThreadFactory implements ThreadFactory {
+        private final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = defaultFactory.newThread(r);
+            thread.setName("SHPRead-" + thread.getName());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
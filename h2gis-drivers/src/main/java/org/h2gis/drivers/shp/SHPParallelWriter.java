@@ -0,0 +1,455 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.drivers.shp;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.ParseException;
+import com.vividsolutions.jts.io.WKBReader;
+import org.h2gis.drivers.dbf.internal.DbaseFileException;
+import org.h2gis.drivers.dbf.internal.DbaseFileHeader;
+import org.h2gis.drivers.dbf.internal.DbaseFileWriter;
+import org.h2gis.drivers.shp.internal.ShapeHandler;
+import org.h2gis.drivers.shp.internal.ShapeType;
+import org.h2gis.drivers.shp.internal.ShapefileException;
+import org.h2gis.drivers.shp.internal.ShapefileHeader;
+import org.h2gis.drivers.utility.WriteBufferManager;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Encode the rows of a shape file using several threads. The rows are grouped into chunks of consecutive rows,
+ * every chunk is encoded by an encoder thread into reusable direct buffers: the SHP records and the DBF records.
+ * A bounded number of chunks is encoded ahead of the writer, the thread that inserts the rows appends the encoded
+ * chunks in the insertion order to the SHP, SHX and DBF files. The headers are written when the writing is finished.
+ */
+class SHPParallelWriter {
+    /** Number of rows encoded by a single task */
+    static final int CHUNK_SIZE = 1000;
+    private static final int HEADER_LENGTH = 100;
+    private final ShapeType shapeType;
+    private final DbaseFileHeader dbaseHeader;
+    private final List<FileOutputStream> outputStreams = new ArrayList<FileOutputStream>(3);
+    private final FileChannel shpChannel;
+    private final FileChannel shxChannel;
+    private final FileChannel dbfChannel;
+    private final BlockingQueue<ChunkEncoder> encoders;
+    private final BlockingQueue<EncodedChunk> freeChunks;
+    private final ExecutorService executor;
+    private final ArrayDeque<Future<EncodedChunk>> pending;
+    private final int maxPending;
+    private final ByteBuffer shxBuffer = ByteBuffer.allocateDirect(CHUNK_SIZE * 8).order(ByteOrder.BIG_ENDIAN);
+    private Object[][] currentChunk = new Object[CHUNK_SIZE][];
+    private int currentChunkSize = 0;
+    private int submittedCount = 0;
+    private int recordCount = 0;
+    /** Offset of the next SHP record in 16-bit words */
+    private long offset = HEADER_LENGTH / 2;
+    private Envelope bounds = null;
+
+    /**
+     * Create the files and start the encoder threads.
+     * @param shpFile Shape file path, the SHX and DBF files are written in the same folder
+     * @param shapeType Shape type of all the geometries
+     * @param dbaseHeader DBF fields
+     * @param threadCount Number of encoder threads
+     * @throws IOException Unable to create the files
+     */
+    SHPParallelWriter(File shpFile, ShapeType shapeType, DbaseFileHeader dbaseHeader, int threadCount)
+            throws IOException {
+        this.shapeType = shapeType;
+        this.dbaseHeader = dbaseHeader;
+        String path = shpFile.getAbsolutePath();
+        String nameWithoutExt = path.substring(0, path.lastIndexOf('.'));
+        try {
+            shpChannel = openChannel(new File(nameWithoutExt + ".shp"));
+            shxChannel = openChannel(new File(nameWithoutExt + ".shx"));
+            dbfChannel = openChannel(new File(nameWithoutExt + ".dbf"));
+            // The SHP and SHX headers are written at the end
+            shpChannel.position(HEADER_LENGTH);
+            shxChannel.position(HEADER_LENGTH);
+            dbaseHeader.writeHeader(dbfChannel);
+            encoders = new ArrayBlockingQueue<ChunkEncoder>(threadCount);
+            for (int i = 0; i < threadCount; i++) {
+                encoders.add(new ChunkEncoder(shapeType, dbaseHeader));
+            }
+        } catch (IOException ex) {
+            closeChannels();
+            throw ex;
+        }
+        executor = Executors.newFixedThreadPool(threadCount, new EncoderThreadFactory());
+        maxPending = threadCount * 2;
+        pending = new ArrayDeque<Future<EncodedChunk>>(maxPending);
+        freeChunks = new ArrayBlockingQueue<EncodedChunk>(maxPending);
+    }
+
+    private FileChannel openChannel(File file) throws IOException {
+        FileOutputStream fos = new FileOutputStream(file);
+        outputStreams.add(fos);
+        return fos.getChannel();
+    }
+
+    /**
+     * Add a row, the row is written later by the thread that inserts the rows.
+     * @param values Geometry then DBF values. The geometry can be a {@link Geometry} or a WKB byte array, the
+     * WKB is parsed by the encoder threads.
+     * @throws IOException Write error of a previous chunk
+     */
+    void insertRow(Object[] values) throws IOException {
+        if (values[0] == null) {
+            throw new IOException("Shape files do not support NULL Geometry values.");
+        } else if (!(values[0] instanceof Geometry) && !(values[0] instanceof byte[])) {
+            throw new IllegalArgumentException("Field at 0 should be an instance of Geometry," +
+                    " found " + values[0].getClass() + " instead.");
+        }
+        // The caller may reuse the array
+        currentChunk[currentChunkSize++] = values.clone();
+        if (currentChunkSize == CHUNK_SIZE) {
+            submitChunk();
+        }
+    }
+
+    private void submitChunk() throws IOException {
+        if (pending.size() >= maxPending) {
+            writeChunk(next());
+        }
+        Object[][] rows = currentChunkSize == CHUNK_SIZE ? currentChunk : Arrays.copyOf(currentChunk,
+                currentChunkSize);
+        // Record numbers start at 1
+        pending.add(executor.submit(new EncodeChunk(encoders, freeChunks, rows, submittedCount + 1)));
+        submittedCount += rows.length;
+        currentChunk = new Object[CHUNK_SIZE][];
+        currentChunkSize = 0;
+    }
+
+    /**
+     * Wait for the next chunk in insertion order.
+     * @return Encoded rows of the next chunk
+     * @throws IOException Encoding error in an encoder thread
+     */
+    private EncodedChunk next() throws IOException {
+        Future<EncodedChunk> chunk = pending.poll();
+        try {
+            return chunk.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while writing the shape file", ex);
+        } catch (ExecutionException ex) {
+            Throwable cause = ex.getCause();
+            if (cause instanceof IOException) {
+                throw (IOException) cause;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else {
+                throw new IOException(cause);
+            }
+        }
+    }
+
+    /**
+     * Append an encoded chunk to the files then recycle its buffers.
+     */
+    private void writeChunk(EncodedChunk chunk) throws IOException {
+        shxBuffer.clear();
+        for (int i = 0; i < chunk.recordCount; i++) {
+            if (offset > Integer.MAX_VALUE) {
+                throw new IOException("The shape file size limit is exceeded");
+            }
+            int length = chunk.lengths[i];
+            shxBuffer.putInt((int) offset);
+            shxBuffer.putInt(length);
+            offset += length + 4;
+        }
+        shxBuffer.flip();
+        writeFully(shxChannel, shxBuffer);
+        chunk.shp.flip();
+        writeFully(shpChannel, chunk.shp);
+        chunk.dbf.flip();
+        writeFully(dbfChannel, chunk.dbf);
+        recordCount += chunk.recordCount;
+        if (!chunk.bounds.isNull()) {
+            if (bounds == null) {
+                bounds = new Envelope(chunk.bounds);
+            } else {
+                bounds.expandToInclude(chunk.bounds);
+            }
+        }
+        chunk.clear();
+        freeChunks.offer(chunk);
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Write the remaining rows then the headers of the files.
+     * @throws IOException Write error
+     */
+    void finish() throws IOException {
+        if (currentChunkSize > 0) {
+            submitChunk();
+        }
+        while (!pending.isEmpty()) {
+            writeChunk(next());
+        }
+        if (offset > Integer.MAX_VALUE) {
+            throw new IOException("The shape file size limit is exceeded");
+        }
+        Envelope writeBounds = bounds == null ? new Envelope() : bounds;
+        ShapefileHeader header = new ShapefileHeader();
+        shpChannel.position(0);
+        WriteBufferManager shpHeader = new WriteBufferManager(shpChannel);
+        header.write(shpHeader, shapeType, recordCount, (int) offset, writeBounds.getMinX(), writeBounds.getMinY(),
+                writeBounds.getMaxX(), writeBounds.getMaxY());
+        shpHeader.flush();
+        shxChannel.position(0);
+        WriteBufferManager shxHeader = new WriteBufferManager(shxChannel);
+        header.write(shxHeader, shapeType, recordCount, HEADER_LENGTH / 2 + 4 * recordCount, writeBounds.getMinX(),
+                writeBounds.getMinY(), writeBounds.getMaxX(), writeBounds.getMaxY());
+        shxHeader.flush();
+        if (dbaseHeader.getNumRecords() != recordCount) {
+            dbaseHeader.setNumRecords(recordCount);
+            dbfChannel.position(0);
+            dbaseHeader.writeHeader(dbfChannel);
+        }
+    }
+
+    /**
+     * Cancel the remaining chunks, wait for the running encoders then close the files.
+     * @throws IOException Close error
+     */
+    void close() throws IOException {
+        for (Future<EncodedChunk> chunk : pending) {
+            chunk.cancel(false);
+        }
+        pending.clear();
+        executor.shutdown();
+        try {
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        closeChannels();
+    }
+
+    private void closeChannels() throws IOException {
+        IOException firstException = null;
+        for (FileOutputStream fos : outputStreams) {
+            try {
+                fos.close();
+            } catch (IOException ex) {
+                if (firstException == null) {
+                    firstException = ex;
+                }
+            }
+        }
+        outputStreams.clear();
+        if (firstException != null) {
+            throw firstException;
+        }
+    }
+
+    /**
+     * Records of a chunk, the buffers are reused by the next chunks.
+     */
+    private static class EncodedChunk {
+        /** Initial size of the SHP buffer, it grows if the records of a chunk are larger */
+        private static final int SHP_BUFFER_SIZE = 256 * 1024;
+        private ByteBuffer shp = ByteBuffer.allocateDirect(SHP_BUFFER_SIZE);
+        private final ByteBuffer dbf;
+        /** Content length of each SHP record in 16-bit words */
+        private final int[] lengths = new int[CHUNK_SIZE];
+        private final Envelope bounds = new Envelope();
+        private int recordCount = 0;
+
+        private EncodedChunk(int dbfRecordLength) {
+            dbf = ByteBuffer.allocateDirect(dbfRecordLength * CHUNK_SIZE);
+        }
+
+        private void clear() {
+            shp.clear();
+            dbf.clear();
+            bounds.setToNull();
+            recordCount = 0;
+        }
+    }
+
+    /**
+     * Append the bytes to the SHP buffer of a chunk, the buffer is replaced by a larger one when it is full.
+     */
+    private static class ChunkSink implements WritableByteChannel {
+        private EncodedChunk target;
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int length = src.remaining();
+            ByteBuffer shp = target.shp;
+            if (shp.remaining() < length) {
+                ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(shp.capacity() * 2, shp.position() + length));
+                shp.flip();
+                larger.put(shp);
+                target.shp = larger;
+                shp = larger;
+            }
+            shp.put(src);
+            return length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+
+    /**
+     * Encoder state used by one thread at a time.
+     */
+    private static class ChunkEncoder {
+        private final ShapeType shapeType;
+        private final ShapeHandler handler;
+        private final DbaseFileWriter dbfWriter;
+        private final int dbfRecordLength;
+        private final WKBReader wkbReader = new WKBReader();
+        private final ChunkSink sink = new ChunkSink();
+        private final WriteBufferManager shpBuffer;
+
+        private ChunkEncoder(ShapeType shapeType, DbaseFileHeader dbaseHeader) throws IOException {
+            this.shapeType = shapeType;
+            try {
+                handler = shapeType.getShapeHandler();
+            } catch (ShapefileException ex) {
+                throw new IOException("Error with type " + shapeType, ex);
+            }
+            dbfWriter = new DbaseFileWriter(dbaseHeader);
+            dbfRecordLength = dbaseHeader.getRecordLength();
+            shpBuffer = new WriteBufferManager(sink);
+        }
+
+        private void encode(Object[][] rows, int firstRecord, EncodedChunk chunk) throws IOException {
+            sink.target = chunk;
+            try {
+                for (int i = 0; i < rows.length; i++) {
+                    Object[] row = rows[i];
+                    Geometry geometry = getGeometry(row[0]);
+                    chunk.bounds.expandToInclude(geometry.getEnvelopeInternal());
+                    int length = handler.getLength(geometry) / 2;
+                    shpBuffer.order(ByteOrder.BIG_ENDIAN);
+                    shpBuffer.putInt(firstRecord + i);
+                    shpBuffer.putInt(length);
+                    shpBuffer.order(ByteOrder.LITTLE_ENDIAN);
+                    shpBuffer.putInt(shapeType.id);
+                    handler.write(shpBuffer, geometry);
+                    chunk.lengths[i] = length;
+                    dbfWriter.write(Arrays.copyOfRange(row, 1, row.length), chunk.dbf);
+                }
+                shpBuffer.flush();
+                chunk.recordCount = rows.length;
+            } catch (DbaseFileException ex) {
+                throw new IOException(ex.getLocalizedMessage(), ex);
+            } finally {
+                sink.target = null;
+            }
+        }
+
+        private Geometry getGeometry(Object value) throws IOException {
+            if (value instanceof Geometry) {
+                return (Geometry) value;
+            }
+            try {
+                return wkbReader.read((byte[]) value);
+            } catch (ParseException ex) {
+                throw new IOException("Unable to read the geometry", ex);
+            }
+        }
+    }
+
+    /**
+     * Encode a chunk of rows using one of the free encoders.
+     */
+    private static class EncodeChunk implements Callable<EncodedChunk> {
+        private final BlockingQueue<ChunkEncoder> encoders;
+        private final BlockingQueue<EncodedChunk> freeChunks;
+        private final Object[][] rows;
+        private final int firstRecord;
+
+        private EncodeChunk(BlockingQueue<ChunkEncoder> encoders, BlockingQueue<EncodedChunk> freeChunks,
+                            Object[][] rows, int firstRecord) {
+            this.encoders = encoders;
+            this.freeChunks = freeChunks;
+            this.rows = rows;
+            this.firstRecord = firstRecord;
+        }
+
+        @Override
+        public EncodedChunk call() throws Exception {
+            // There is as many encoders as threads, an encoder is always available
+            ChunkEncoder encoder = encoders.take();
+            try {
+                EncodedChunk chunk = freeChunks.poll();
+                if (chunk == null) {
+                    chunk = new EncodedChunk(encoder.dbfRecordLength);
+                }
+                encoder.encode(rows, firstRecord, chunk);
+                return chunk;
+            } finally {
+                encoders.add(encoder);
+            }
+        }
+    }
+
+    private static class EncoderThreadFactory implements ThreadFactory {
+        private final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = defaultFactory.newThread(r);
+            thread.setName("SHPWrite-" + thread.getName());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -54,9 +54,23 @@ public class SHPRead  extends AbstractFunction implements ScalarFunction {
      * @param forceEncoding Use this encoding instead of DBF file header encoding property.
      */
     public static void readShape(Connection connection, String fileName, String tableReference,String forceEncoding) throws IOException, SQLException {
+        readShape(connection, fileName, tableReference, forceEncoding, 1);
+    }
+
+    /**
+     * Copy data from Shape File into a new table in specified connection.
+     * @param connection Active connection
+     * @param tableReference [[catalog.]schema.]table reference
+     * @param fileName File path of the SHP file or URI
+     * @param forceEncoding Use this encoding instead of DBF file header encoding property.
+     * @param threadCount Number of threads used to decode the shape file, 0 to use all available processors.
+     */
+    public static void readShape(Connection connection, String fileName, String tableReference,String forceEncoding,
+                                 int threadCount) throws IOException, SQLException {
         File file = URIUtility.fileFromString(fileName);
         if (FileUtil.isFileImportable(file, "shp")) {
             SHPDriverFunction shpDriverFunction = new SHPDriverFunction();
+            shpDriverFunction.setThreadCount(threadCount > 0 ? threadCount : Runtime.getRuntime().availableProcessors());
             shpDriverFunction.importFile(connection, TableLocation.parse(tableReference, true).toString(true),
                     file, new EmptyProgressVisitor(), forceEncoding);
         }
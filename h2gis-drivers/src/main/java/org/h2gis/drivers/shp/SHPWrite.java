@@ -36,7 +36,7 @@ import java.sql.SQLException;
 public class SHPWrite extends AbstractFunction implements ScalarFunction {
 
     public SHPWrite() {
-        addProperty(PROP_REMARKS, "Transfer the content of a table into a new shape file\nCALL SHPWRITE('FILENAME', 'TABLE'[,'ENCODING'])");
+        addProperty(PROP_REMARKS, "Transfer the content of a table into a new shape file\nCALL SHPWRITE('FILENAME', 'TABLE'[,'ENCODING'[, threadCount]])");
     }
 
     @Override
@@ -66,7 +66,23 @@ public class SHPWrite extends AbstractFunction implements ScalarFunction {
      * @throws SQLException
      */
     public static void exportTable(Connection connection, String fileName, String tableReference,String encoding) throws IOException, SQLException {
+        exportTable(connection, fileName, tableReference, encoding, 1);
+    }
+
+    /**
+     * Read a table and write it into a shape file.
+     * @param connection Active connection
+     * @param fileName Shape file name or URI
+     * @param tableReference Table name
+     * @param encoding File encoding
+     * @param threadCount Number of threads used to encode the rows, 0 to use all available processors.
+     * @throws IOException
+     * @throws SQLException
+     */
+    public static void exportTable(Connection connection, String fileName, String tableReference, String encoding,
+                                   int threadCount) throws IOException, SQLException {
         SHPDriverFunction shpDriverFunction = new SHPDriverFunction();
+        shpDriverFunction.setThreadCount(threadCount > 0 ? threadCount : Runtime.getRuntime().availableProcessors());
         shpDriverFunction.exportTable(connection, tableReference, URIUtility.fileFromString(fileName), new EmptyProgressVisitor(), encoding);
     }
 }
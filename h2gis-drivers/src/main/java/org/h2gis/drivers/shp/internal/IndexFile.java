@@ -62,9 +62,24 @@ public class IndexFile {
 	 */
 	public IndexFile(FileChannel channel)
 			throws IOException {
+		this(channel, false);
+	}
+
+	/**
+	 * Load the index file from the given channel.
+	 *
+	 * @param channel
+	 *            The channel to read from.
+	 * @param memoryMapped
+	 *            True to map the file in memory instead of reading it through a buffer.
+	 * @throws java.io.IOException
+	 *             If an error occurs.
+	 */
+	public IndexFile(FileChannel channel, boolean memoryMapped)
+			throws IOException {
 		readHeader(channel);
 		this.channel = channel;
-		this.buf = new ReadBufferManager(channel, 8 * 128);
+		this.buf = memoryMapped ? ReadBufferManager.map(channel) : new ReadBufferManager(channel, 8 * 128);
 	}
 
 	/**
@@ -94,6 +109,9 @@ public class IndexFile {
 	}
 
 	public void close() throws IOException {
+		if (buf != null) {
+			buf.close();
+		}
 		if (channel != null && channel.isOpen()) {
 			channel.close();
 		}
@@ -20,8 +20,10 @@
 
 package org.h2gis.drivers.shp.internal;
 
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
-import org.h2gis.drivers.FileDriver;
+import org.h2gis.api.OperationRecorder;
+import org.h2gis.drivers.SpatialFileDriver;
 import org.h2gis.drivers.dbf.internal.DBFDriver;
 import org.h2gis.drivers.dbf.internal.DbaseFileHeader;
 
@@ -29,6 +31,7 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.Arrays;
 
 /**
  * Merge ShapeFileReader and DBFReader.
@@ -43,17 +46,36 @@ import java.io.IOException;
  *
  * @author Nicolas Fortin
  */
-public class SHPDriver implements FileDriver {
+public class SHPDriver implements SpatialFileDriver {
     private DBFDriver dbfDriver = new DBFDriver();
     private File shpFile;
     private File shxFile;
     private ShapefileReader shapefileReader;
     private ShapefileWriter shapefileWriter;
     private IndexFile shxFileReader;
+    private SpatialIndexFile spatialIndexFile;
     private int geometryFieldIndex = 0;
     private ShapeType shapeType;
     public File prjFile;
     private int srid =0;
+    private boolean memoryMapped = false;
+    private OperationRecorder recorder = OperationRecorder.DISABLED;
+
+    /**
+     * @param memoryMapped True to map the files in memory when they are opened in read mode. Random row access is
+     * faster, must be called before {@link #initDriverFromFile(java.io.File, String)}
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+        dbfDriver.setMemoryMapped(memoryMapped);
+    }
+
+    /**
+     * @param recorder Recorder of the time spent building the geometries in getRow()
+     */
+    public void setRecorder(OperationRecorder recorder) {
+        this.recorder = recorder;
+    }
 
     /**
      * @param geometryFieldIndex The geometry field index in getRow() array.
@@ -94,6 +116,7 @@ public class SHPDriver implements FileDriver {
     /**
      * @return The geometry field index in getRow() array.
      */
+    @Override
     public int getGeometryFieldIndex() {
         return geometryFieldIndex;
     }
@@ -163,9 +186,9 @@ public class SHPDriver implements FileDriver {
             throw new IllegalArgumentException("DBF File not found");
         }
         FileInputStream shpFis = new FileInputStream(shpFile);
-        shapefileReader = new ShapefileReader(shpFis.getChannel());
+        shapefileReader = new ShapefileReader(shpFis.getChannel(), memoryMapped);
         FileInputStream shxFis = new FileInputStream(shxFile);
-        shxFileReader = new IndexFile(shxFis.getChannel());
+        shxFileReader = new IndexFile(shxFis.getChannel(), memoryMapped);
     }
 
     /**
@@ -190,6 +213,10 @@ public class SHPDriver implements FileDriver {
     @Override
     public void close() throws IOException {
         dbfDriver.close();
+        if(spatialIndexFile != null) {
+            spatialIndexFile.close();
+            spatialIndexFile = null;
+        }
         if(shapefileReader != null) {
             shapefileReader.close();
             shxFileReader.close();
@@ -200,6 +227,7 @@ public class SHPDriver implements FileDriver {
         }
     }
 
+    @Override
     public int getFieldCount() {
         return dbfDriver.getFieldCount() + 1;
     }
@@ -214,16 +242,62 @@ public class SHPDriver implements FileDriver {
         if(geometryFieldIndex > 0) {
             System.arraycopy(dbfValues, 0, values, 0, geometryFieldIndex);
         }
-        Geometry geom = shapefileReader.geomAt(shxFileReader.getOffset((int)rowId));
-        geom.setSRID(getSrid());
-        values[geometryFieldIndex] = geom;
+        values[geometryFieldIndex] = readGeometry(rowId);
         // Copy dbf values after geometryFieldIndex
         if(geometryFieldIndex < dbfValues.length) {
-            System.arraycopy(dbfValues, geometryFieldIndex, values, geometryFieldIndex + 1, dbfValues.length);
+            System.arraycopy(dbfValues, geometryFieldIndex, values, geometryFieldIndex + 1, dbfValues.length - geometryFieldIndex);
         }
         return values;
     }
 
+    @Override
+    public Object[] getRow(long rowId, int[] fields) throws IOException {
+        Object[] values = new Object[getFieldCount()];
+        int[] dbfFields = new int[fields.length];
+        int dbfFieldCount = 0;
+        for(int field : fields) {
+            if(field == geometryFieldIndex) {
+                values[geometryFieldIndex] = readGeometry(rowId);
+            } else {
+                dbfFields[dbfFieldCount++] = field < geometryFieldIndex ? field : field - 1;
+            }
+        }
+        if(dbfFieldCount > 0) {
+            Object[] dbfValues = dbfDriver.getRow(rowId, Arrays.copyOf(dbfFields, dbfFieldCount));
+            for(int i = 0; i < dbfFieldCount; i++) {
+                int dbfField = dbfFields[i];
+                values[dbfField < geometryFieldIndex ? dbfField : dbfField + 1] = dbfValues[dbfField];
+            }
+        }
+        return values;
+    }
+
+    private Geometry readGeometry(long rowId) throws IOException {
+        long startTime = recorder.startTimer();
+        Geometry geom = shapefileReader.geomAt(shxFileReader.getOffset((int)rowId));
+        geom.setSRID(getSrid());
+        recorder.stopTimer(OperationRecorder.Phase.GEOMETRY, startTime);
+        return geom;
+    }
+
+    @Override
+    public void openSpatialIndex() throws IOException {
+        if(spatialIndexFile == null) {
+            if(shapefileReader == null) {
+                throw new IOException("The shape file is not opened in read mode");
+            }
+            spatialIndexFile = SpatialIndexFile.openOrCreate(shpFile, shapefileReader, shxFileReader);
+        }
+    }
+
+    @Override
+    public long[] queryIndex(Envelope envelope) throws IOException {
+        if(spatialIndexFile == null) {
+            throw new IOException("The spatial index is not opened");
+        }
+        return spatialIndexFile.query(envelope);
+    }
+
     /**
      * Set a SRID code that will be used for geometries.
      * @param srid 
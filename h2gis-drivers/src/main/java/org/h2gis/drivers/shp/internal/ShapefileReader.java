@@ -20,6 +20,7 @@
 
 package org.h2gis.drivers.shp.internal;
 
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 import org.h2gis.drivers.utility.ReadBufferManager;
 
@@ -55,6 +56,7 @@ public class ShapefileReader {
         private FileChannel channel;
         private ReadBufferManager buffer;
         private ShapeType fileShapeType = ShapeType.UNDEFINED;
+        private boolean memoryMapped;
 
         /**
          * Creates a new instance of ShapeFile.
@@ -67,8 +69,26 @@ public class ShapefileReader {
          *             If for some reason the file contains invalid records.
          */
         public ShapefileReader(FileChannel channel) throws IOException,
+                ShapefileException {
+                this(channel, false);
+        }
+
+        /**
+         * Creates a new instance of ShapeFile.
+         *
+         * @param channel
+         *            The ReadableByteChannel this reader will use.
+         * @param memoryMapped
+         *            True to map the file in memory instead of reading it through a buffer.
+         * @throws java.io.IOException
+         *             If problems arise.
+         * @throws ShapefileException
+         *             If for some reason the file contains invalid records.
+         */
+        public ShapefileReader(FileChannel channel, boolean memoryMapped) throws IOException,
                 ShapefileException {
                 this.channel = channel;
+                this.memoryMapped = memoryMapped;
                 init();
         }
 
@@ -104,7 +124,7 @@ public class ShapefileReader {
                 if (handler == null) {
                         throw new IOException("Unsuported shape type:" + fileShapeType);
                 }
-                buffer = new ReadBufferManager(channel);
+                buffer = memoryMapped ? ReadBufferManager.map(channel) : new ReadBufferManager(channel);
         }
 
         /**
@@ -125,9 +145,13 @@ public class ShapefileReader {
          *             If errors occur while closing the channel.
          */
         public void close() throws IOException {
+                if (buffer != null) {
+                        buffer.close();
+                }
                 if (channel != null && channel.isOpen()) {
                         channel.close();
                 }
+                buffer = null;
                 channel = null;
                 header = null;
         }
@@ -163,6 +187,36 @@ public class ShapefileReader {
                 return handler.read(buffer, recordType);
         }
 
+        /**
+         * Read the bounding box of the record without decoding the geometry.
+         *
+         * @param offset Record offset in bytes
+         * @throws java.io.IOException
+         * @return The record envelope, null if the record is a NULL shape.
+         */
+        public Envelope envelopeAt(int offset) throws IOException {
+                buffer.position(offset);
+                // record header
+                buffer.skip(8);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                ShapeType recordType = ShapeType.forID(buffer.getInt());
+                if (recordType == ShapeType.NULL) {
+                        return null;
+                }
+                if (recordType.isPointType()) {
+                        double x = buffer.getDouble();
+                        double y = buffer.getDouble();
+                        return new Envelope(x, x, y, y);
+                } else {
+                        // Record bounding box is Xmin, Ymin, Xmax, Ymax
+                        double minX = buffer.getDouble();
+                        double minY = buffer.getDouble();
+                        double maxX = buffer.getDouble();
+                        double maxY = buffer.getDouble();
+                        return new Envelope(minX, maxX, minY, maxY);
+                }
+        }
+
         /**
          * @param handler
          *            The handler to set.
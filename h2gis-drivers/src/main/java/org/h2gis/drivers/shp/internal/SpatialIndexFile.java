@@ -0,0 +1,363 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.drivers.shp.internal;
+
+import com.vividsolutions.jts.geom.Envelope;
+import org.h2gis.drivers.utility.ReadBufferManager;
+import org.h2gis.drivers.utility.WriteBufferManager;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * Persistent packed R-Tree stored next to the shape file (.h2idx sidecar).
+ * The tree is bulk loaded using Sort-Tile-Recursive ordering of the record envelopes, then stored level by level
+ * (leaves first). Children of the entry i of level l are the entries [i*nodeSize, (i+1)*nodeSize[ of level l-1,
+ * so the file does not need to store pointers. The length and the modification date of the shape file are kept
+ * in the header in order to detect an outdated index.
+ */
+public class SpatialIndexFile {
+    /** Sidecar file extension */
+    public static final String EXTENSION = "h2idx";
+    private static final int MAGIC = 0x48324958;
+    private static final int VERSION = 1;
+    private static final int DEFAULT_NODE_SIZE = 16;
+    private static final int ENTRY_SIZE = 4 * 8;
+    private static final int FIXED_HEADER_SIZE = 4 + 4 + 8 + 8 + 4 + 4 + 4;
+
+    private FileChannel channel;
+    private ReadBufferManager buffer;
+    private int nodeSize;
+    private int[] levelSize;
+    private long[] levelStart;
+    private long idStart;
+
+    private SpatialIndexFile(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    /**
+     * Open the index file of a shape file, create or replace it if it does not exists or if it is outdated.
+     * @param shpFile Shape file
+     * @param shapefileReader Shape file reader, used to read record envelopes
+     * @param indexFile Shx file reader, used to locate records
+     * @return Opened index instance
+     * @throws IOException Read or write error
+     */
+    public static SpatialIndexFile openOrCreate(File shpFile, ShapefileReader shapefileReader, IndexFile indexFile)
+            throws IOException {
+        File idxFile = getIndexFile(shpFile);
+        if (idxFile.exists()) {
+            SpatialIndexFile index = open(idxFile, shpFile);
+            if (index != null) {
+                return index;
+            }
+        }
+        write(idxFile, shpFile, shapefileReader, indexFile, DEFAULT_NODE_SIZE);
+        SpatialIndexFile index = open(idxFile, shpFile);
+        if (index == null) {
+            throw new IOException("Unable to read the spatial index file " + idxFile.getAbsolutePath());
+        }
+        return index;
+    }
+
+    /**
+     * @param shpFile Shape file
+     * @return Sidecar spatial index file location
+     */
+    public static File getIndexFile(File shpFile) {
+        String path = shpFile.getAbsolutePath();
+        return new File(path.substring(0, path.lastIndexOf('.')) + "." + EXTENSION);
+    }
+
+    /**
+     * Read the index header
+     * @param idxFile Index file
+     * @param shpFile Indexed shape file
+     * @return Index instance or null if the index does not match the shape file
+     * @throws IOException
+     */
+    private static SpatialIndexFile open(File idxFile, File shpFile) throws IOException {
+        FileInputStream fis = new FileInputStream(idxFile);
+        boolean valid = false;
+        try {
+            SpatialIndexFile index = new SpatialIndexFile(fis.getChannel());
+            valid = index.readHeader(shpFile);
+            return valid ? index : null;
+        } finally {
+            if (!valid) {
+                // Release the file before it is rebuilt
+                fis.close();
+            }
+        }
+    }
+
+    private boolean readHeader(File shpFile) throws IOException {
+        if (channel.size() < FIXED_HEADER_SIZE) {
+            return false;
+        }
+        buffer = new ReadBufferManager(channel);
+        if (buffer.getInt() != MAGIC || buffer.getInt() != VERSION) {
+            return false;
+        }
+        if (buffer.getLong() != shpFile.length() || buffer.getLong() != shpFile.lastModified()) {
+            return false;
+        }
+        // Leaf count
+        buffer.getInt();
+        nodeSize = buffer.getInt();
+        int levelCount = buffer.getInt();
+        levelSize = new int[levelCount];
+        levelStart = new long[levelCount];
+        long pos = FIXED_HEADER_SIZE + 4 * levelCount;
+        for (int level = 0; level < levelCount; level++) {
+            levelSize[level] = buffer.getInt();
+            levelStart[level] = pos;
+            pos += (long) levelSize[level] * ENTRY_SIZE;
+        }
+        idStart = pos;
+        return channel.size() == idStart + (levelCount > 0 ? 4L * levelSize[0] : 0);
+    }
+
+    /**
+     * Build the packed R-Tree and write it into the index file
+     */
+    private static void write(File idxFile, File shpFile, ShapefileReader shapefileReader, IndexFile indexFile,
+                              int nodeSize) throws IOException {
+        // Read all record envelopes, null shapes are not indexed
+        final int recordCount = indexFile.getRecordCount();
+        final double[] bounds = new double[recordCount * 4];
+        int[] leaves = new int[recordCount];
+        int count = 0;
+        for (int rowId = 0; rowId < recordCount; rowId++) {
+            Envelope env = shapefileReader.envelopeAt(indexFile.getOffset(rowId));
+            if (env != null && !env.isNull()) {
+                bounds[rowId * 4] = env.getMinX();
+                bounds[rowId * 4 + 1] = env.getMinY();
+                bounds[rowId * 4 + 2] = env.getMaxX();
+                bounds[rowId * 4 + 3] = env.getMaxY();
+                leaves[count++] = rowId;
+            }
+        }
+        leaves = Arrays.copyOf(leaves, count);
+        sortTileRecursive(leaves, bounds, nodeSize);
+        // Compute levels, from leaves to root
+        int levelCount = 1;
+        for (int size = count; size > nodeSize; size = (size + nodeSize - 1) / nodeSize) {
+            levelCount++;
+        }
+        double[][] levels = new double[levelCount][];
+        levels[0] = new double[count * 4];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(bounds, leaves[i] * 4, levels[0], i * 4, 4);
+        }
+        for (int level = 1; level < levelCount; level++) {
+            double[] children = levels[level - 1];
+            int childCount = children.length / 4;
+            int parentCount = (childCount + nodeSize - 1) / nodeSize;
+            double[] parents = new double[parentCount * 4];
+            for (int parent = 0; parent < parentCount; parent++) {
+                double minX = Double.MAX_VALUE, minY = Double.MAX_VALUE;
+                double maxX = -Double.MAX_VALUE, maxY = -Double.MAX_VALUE;
+                int end = Math.min(childCount, (parent + 1) * nodeSize);
+                for (int child = parent * nodeSize; child < end; child++) {
+                    minX = Math.min(minX, children[child * 4]);
+                    minY = Math.min(minY, children[child * 4 + 1]);
+                    maxX = Math.max(maxX, children[child * 4 + 2]);
+                    maxY = Math.max(maxY, children[child * 4 + 3]);
+                }
+                parents[parent * 4] = minX;
+                parents[parent * 4 + 1] = minY;
+                parents[parent * 4 + 2] = maxX;
+                parents[parent * 4 + 3] = maxY;
+            }
+            levels[level] = parents;
+        }
+        FileOutputStream fos = new FileOutputStream(idxFile);
+        try {
+            WriteBufferManager out = new WriteBufferManager(fos.getChannel());
+            out.putInt(MAGIC);
+            out.putInt(VERSION);
+            out.putLong(shpFile.length());
+            out.putLong(shpFile.lastModified());
+            out.putInt(count);
+            out.putInt(nodeSize);
+            out.putInt(levelCount);
+            for (double[] level : levels) {
+                out.putInt(level.length / 4);
+            }
+            for (double[] level : levels) {
+                for (double value : level) {
+                    out.putDouble(value);
+                }
+            }
+            for (int rowId : leaves) {
+                out.putInt(rowId);
+            }
+            out.flush();
+        } finally {
+            fos.close();
+        }
+    }
+
+    /**
+     * Sort records by the x center of envelopes, cut the result in vertical slices then sort each slice by the y
+     * center of envelopes.
+     */
+    private static void sortTileRecursive(int[] leaves, double[] bounds, int nodeSize) {
+        sortByCenter(leaves, bounds, 0, 0, leaves.length);
+        int nodeCount = (leaves.length + nodeSize - 1) / nodeSize;
+        int sliceCount = Math.max(1, (int) Math.ceil(Math.sqrt(nodeCount)));
+        int sliceLength = Math.max(1, (int) Math.ceil((double) nodeCount / sliceCount)) * nodeSize;
+        for (int start = 0; start < leaves.length; start += sliceLength) {
+            sortByCenter(leaves, bounds, 1, start, Math.min(leaves.length, start + sliceLength));
+        }
+    }
+
+    /**
+     * Sort the range [from, to[ of record identifiers using the envelope center on the provided axis.
+     */
+    private static void sortByCenter(int[] ids, double[] bounds, int axis, int from, int to) {
+        double[] keys = new double[to - from];
+        for (int i = from; i < to; i++) {
+            keys[i - from] = bounds[ids[i] * 4 + axis] + bounds[ids[i] * 4 + axis + 2];
+        }
+        quickSort(keys, ids, from, 0, keys.length - 1);
+    }
+
+    private static void quickSort(double[] keys, int[] ids, int offset, int low, int high) {
+        while (low < high) {
+            double pivot = keys[(low + high) >>> 1];
+            int i = low, j = high;
+            while (i <= j) {
+                while (keys[i] < pivot) {
+                    i++;
+                }
+                while (keys[j] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    double key = keys[i];
+                    keys[i] = keys[j];
+                    keys[j] = key;
+                    int id = ids[offset + i];
+                    ids[offset + i] = ids[offset + j];
+                    ids[offset + j] = id;
+                    i++;
+                    j--;
+                }
+            }
+            // Recurse into the smaller part to bound the stack depth
+            if (j - low < high - i) {
+                quickSort(keys, ids, offset, low, j);
+                low = i;
+            } else {
+                quickSort(keys, ids, offset, i, high);
+                high = j;
+            }
+        }
+    }
+
+    /**
+     * Query the index
+     * @param envelope Search envelope
+     * @return Record index [0-getRecordCount()[ of the records having an envelope intersecting the provided one,
+     * sorted in ascending order
+     * @throws IOException
+     */
+    public long[] query(Envelope envelope) throws IOException {
+        int levelCount = levelSize.length;
+        if (levelCount == 0 || levelSize[0] == 0) {
+            return new long[0];
+        }
+        long[] result = new long[16];
+        int resultSize = 0;
+        // Stack of (level, first entry, last entry)
+        int[] stack = new int[levelCount * 3 * nodeSize];
+        int stackSize = 0;
+        stack[stackSize++] = levelCount - 1;
+        stack[stackSize++] = 0;
+        stack[stackSize++] = levelSize[levelCount - 1];
+        while (stackSize > 0) {
+            int end = stack[--stackSize];
+            int begin = stack[--stackSize];
+            int level = stack[--stackSize];
+            for (int entry = begin; entry < end; entry++) {
+                long pos = levelStart[level] + (long) entry * ENTRY_SIZE;
+                if (buffer.getDouble(pos) > envelope.getMaxX() || buffer.getDouble(pos + 8) > envelope.getMaxY() ||
+                        buffer.getDouble(pos + 16) < envelope.getMinX() ||
+                        buffer.getDouble(pos + 24) < envelope.getMinY()) {
+                    continue;
+                }
+                if (level == 0) {
+                    if (resultSize == result.length) {
+                        result = Arrays.copyOf(result, resultSize * 2);
+                    }
+                    result[resultSize++] = buffer.getInt(idStart + 4L * entry);
+                } else {
+                    if (stackSize + 3 > stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[stackSize++] = level - 1;
+                    stack[stackSize++] = entry * nodeSize;
+                    stack[stackSize++] = Math.min(levelSize[level - 1], (entry + 1) * nodeSize);
+                }
+            }
+        }
+        long[] rowIds = Arrays.copyOf(result, resultSize);
+        // Read records in file order
+        Arrays.sort(rowIds);
+        return rowIds;
+    }
+
+    /**
+     * @return Envelope of all indexed records, null if there is no records
+     * @throws IOException
+     */
+    public Envelope getEnvelope() throws IOException {
+        if (levelSize.length == 0 || levelSize[0] == 0) {
+            return null;
+        }
+        int root = levelSize.length - 1;
+        Envelope envelope = new Envelope();
+        for (int entry = 0; entry < levelSize[root]; entry++) {
+            long pos = levelStart[root] + (long) entry * ENTRY_SIZE;
+            envelope.expandToInclude(new Envelope(buffer.getDouble(pos), buffer.getDouble(pos + 16),
+                    buffer.getDouble(pos + 8), buffer.getDouble(pos + 24)));
+        }
+        return envelope;
+    }
+
+    /**
+     * Close the index file
+     * @throws IOException
+     */
+    public void close() throws IOException {
+        if (channel != null && channel.isOpen()) {
+            channel.close();
+        }
+        buffer = null;
+    }
+}
@@ -22,6 +22,9 @@ package org.h2gis.drivers.utility;
 
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
 import java.sql.SQLException;
 
 /**
@@ -68,4 +71,38 @@ public class FileUtil {
         }
         return extension.equalsIgnoreCase(prefix);
     }
+
+    /**
+     * Unmap a memory mapped buffer now instead of waiting for the garbage collector, the file is no longer locked
+     * by the mapping. The JDK does not offer a public API for this, if the internal methods are not available the
+     * buffer is left to the garbage collector. The buffer must not be used after this call.
+     *
+     * @param buffer Memory mapped buffer
+     */
+    public static void unmap(ByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Method invokeCleaner;
+            try {
+                // Java 9 and later
+                invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            } catch (NoSuchMethodException ex) {
+                invokeCleaner = null;
+            }
+            if (invokeCleaner != null) {
+                Field theUnsafe = unsafeClass.getDeclaredField("theUnsafe");
+                theUnsafe.setAccessible(true);
+                invokeCleaner.invoke(theUnsafe.get(null), buffer);
+            } else {
+                Method cleanerMethod = buffer.getClass().getMethod("cleaner");
+                cleanerMethod.setAccessible(true);
+                Object cleaner = cleanerMethod.invoke(buffer);
+                if (cleaner != null) {
+                    cleaner.getClass().getMethod("clean").invoke(cleaner);
+                }
+            }
+        } catch (Exception ex) {
+            // Released by the garbage collector
+        }
+    }
 }
@@ -20,18 +20,33 @@
 
 package org.h2gis.drivers.utility;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.FileChannel;
 
+/**
+ * Random access reader of a file channel. Two modes are available:
+ * <ul>
+ * <li>Buffered: the default mode, a window of the file is copied into a heap buffer and moved with the reads.</li>
+ * <li>Memory mapped: see {@link #map(java.nio.channels.FileChannel)}, the file is mapped in memory by segments, a
+ * read does not copy the file content and does not call the channel.</li>
+ * </ul>
+ */
 public final class ReadBufferManager {
+        /** Size of a memory mapped segment */
+        private static final long SEGMENT_SIZE = 1 << 30;
+        /** Consecutive segments share this number of bytes, a read shorter than this never spans two segments. */
+        private static final int SEGMENT_OVERLAP = 1 << 20;
 
         private int bufferSize;
         private ByteBuffer buffer;
         private FileChannel channel;
         private long windowStart;
         private long positionInFile;
+        private ByteBuffer[] segments;
+        private long channelSize;
 
         /**
          * Instantiates a ReadBufferManager to read the specified channel
@@ -60,6 +75,92 @@ public final class ReadBufferManager {
                 getWindowOffset(0, bufferSize);
         }
 
+        private ReadBufferManager(FileChannel channel, ByteBuffer[] segments) throws IOException {
+                this.channel = channel;
+                this.segments = segments;
+                this.channelSize = channel.size();
+                this.buffer = segments[0];
+                this.windowStart = 0;
+        }
+
+        /**
+         * Instantiates a ReadBufferManager that map the specified channel in memory. The file is split in
+         * segments in order to read files larger than 2GB. The channel content must not be truncated while this
+         * instance is used.
+         *
+         * @param channel Channel opened in read mode
+         * @return ReadBufferManager instance
+         * @throws java.io.IOException
+         */
+        public static ReadBufferManager map(FileChannel channel) throws IOException {
+                long size = channel.size();
+                long stride = SEGMENT_SIZE - SEGMENT_OVERLAP;
+                int segmentCount = Math.max(1, (int) ((size + stride - 1) / stride));
+                ByteBuffer[] segments = new ByteBuffer[segmentCount];
+                for (int i = 0; i < segmentCount; i++) {
+                        long start = i * stride;
+                        long length = Math.max(0, Math.min(SEGMENT_SIZE, size - start));
+                        segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, start, length);
+                }
+                return new ReadBufferManager(channel, segments);
+        }
+
+        /**
+         * Release the memory mapped segments, the file is no longer locked by the mapping. The channel is not
+         * closed. This instance must not be used after this call.
+         */
+        public void close() {
+                if (segments != null) {
+                        for (ByteBuffer segment : segments) {
+                                FileUtil.unmap(segment);
+                        }
+                        segments = null;
+                }
+                buffer = null;
+        }
+
+        /**
+         * @return True if the file is mapped in memory
+         */
+        public boolean isMemoryMapped() {
+                return segments != null;
+        }
+
+        /**
+         * Select the memory mapped segment that contains the desired bytes and returns the position of the first
+         * byte in the segment
+         */
+        private int getSegmentOffset(long bytePos, int length) throws IOException {
+                if (bytePos < 0 || bytePos + length > channelSize) {
+                        throw new EOFException("Read out of the file bounds at " + bytePos);
+                }
+                long stride = SEGMENT_SIZE - SEGMENT_OVERLAP;
+                int segment = (int) (bytePos / stride);
+                buffer = segments[segment];
+                windowStart = segment * stride;
+                return (int) (bytePos - windowStart);
+        }
+
+        /**
+         * Copy bytes from the memory mapped segments, the read may span several segments
+         */
+        private void getMapped(long bytePos, byte[] dst, int offset, int length) throws IOException {
+                if (length <= SEGMENT_OVERLAP) {
+                        int windowOffset = getSegmentOffset(bytePos, length);
+                        buffer.position(windowOffset);
+                        buffer.get(dst, offset, length);
+                } else {
+                        int done = 0;
+                        while (done < length) {
+                                int windowOffset = getSegmentOffset(bytePos + done, 1);
+                                int count = Math.min(length - done, buffer.capacity() - windowOffset);
+                                buffer.position(windowOffset);
+                                buffer.get(dst, offset + done, count);
+                                done += count;
+                        }
+                }
+        }
+
         /**
          * Moves the window if necessary to contain the desired byte and returns the
          * position of the byte in the window
@@ -68,6 +169,9 @@ public final class ReadBufferManager {
          * @throws java.io.IOException
          */
         private int getWindowOffset(long bytePos, int length) throws IOException {
+                if (segments != null) {
+                        return getSegmentOffset(bytePos, length);
+                }
                 long desiredMin = bytePos;
                 long desiredMax = desiredMin + length - 1;
                 if ((desiredMin >= windowStart)
@@ -130,7 +234,13 @@ public final class ReadBufferManager {
          * @param order
          */
         public void order(ByteOrder order) {
-                buffer.order(order);
+                if (segments != null) {
+                        for (ByteBuffer segment : segments) {
+                                segment.order(order);
+                        }
+                } else {
+                        buffer.order(order);
+                }
         }
 
         /**
@@ -213,6 +323,11 @@ public final class ReadBufferManager {
          * @throws java.io.IOException
          */
         public ByteBuffer get(byte[] buffer) throws IOException {
+                if (segments != null) {
+                        getMapped(positionInFile, buffer, 0, buffer.length);
+                        positionInFile += buffer.length;
+                        return this.buffer;
+                }
                 int windowOffset = getWindowOffset(positionInFile, buffer.length);
                 this.buffer.position(windowOffset);
                 positionInFile += buffer.length;
@@ -228,9 +343,27 @@ public final class ReadBufferManager {
          * @throws java.io.IOException
          */
         public ByteBuffer get(long pos, byte[] buffer) throws IOException {
-                int windowOffset = getWindowOffset(pos, buffer.length);
+                return get(pos, buffer, 0, buffer.length);
+        }
+
+        /**
+         * Gets length bytes at the specified position
+         *
+         * @param pos Position in the file
+         * @param buffer Destination array
+         * @param offset Index of the first byte written in the array
+         * @param length Number of bytes to read
+         * @return
+         * @throws java.io.IOException
+         */
+        public ByteBuffer get(long pos, byte[] buffer, int offset, int length) throws IOException {
+                if (segments != null) {
+                        getMapped(pos, buffer, offset, length);
+                        return this.buffer;
+                }
+                int windowOffset = getWindowOffset(pos, length);
                 this.buffer.position(windowOffset);
-                return this.buffer.get(buffer);
+                return this.buffer.get(buffer, offset, length);
         }
 
         /**
@@ -282,6 +415,9 @@ public final class ReadBufferManager {
          * @throws java.io.IOException
          */
         public boolean isEOF() throws IOException {
+                if (segments != null) {
+                        return positionInFile >= channelSize;
+                }
                 return (buffer.remaining() == 0)
                         && (windowStart + buffer.capacity() >= channel.size());
         }
@@ -294,6 +430,9 @@ public final class ReadBufferManager {
          * @throws java.io.IOException
          */
         public long remaining() throws IOException {
+                if (segments != null) {
+                        return Math.max(0, channelSize - positionInFile);
+                }
                 return channel.size() - windowStart - buffer.position();
         }
 }
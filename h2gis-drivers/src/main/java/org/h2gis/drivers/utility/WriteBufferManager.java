@@ -23,10 +23,11 @@ package org.h2gis.drivers.utility;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
-import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
 
 /**
- * Class to write files using nio.
+ * Class to write files using nio. The values are stored in a direct buffer of constant size, the buffer is
+ * written to the channel when it is full.
  *
  * @author Fernando Gonzalez Cortes
  */
@@ -34,7 +35,7 @@ public final class WriteBufferManager {
 
 	private static final int BUFFER_SIZE = 1024 * 128;
 
-	private FileChannel channel;
+	private WritableByteChannel channel;
 
 	private ByteBuffer buffer;
 
@@ -45,9 +46,9 @@ public final class WriteBufferManager {
 	 * @param channel
 	 * @throws java.io.IOException
 	 */
-	public WriteBufferManager(FileChannel channel) throws IOException {
+	public WriteBufferManager(WritableByteChannel channel) throws IOException {
 		this.channel = channel;
-		buffer = ByteBuffer.allocate(BUFFER_SIZE);
+		buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
 	}
 
 	/**
@@ -69,17 +70,7 @@ public final class WriteBufferManager {
 	 */
 	private void prepareToAddBytes(int numBytes) throws IOException {
 		if (buffer.remaining() < numBytes) {
-			buffer.flip();
-			channel.write(buffer);
-
-			int bufferCapacity = Math.max(BUFFER_SIZE, numBytes);
-			if (bufferCapacity != buffer.capacity()) {
-				ByteOrder order = buffer.order();
-				buffer = ByteBuffer.allocate(bufferCapacity);
-				buffer.order(order);
-			} else {
-				buffer.clear();
-			}
+			flush();
 		}
 	}
 
@@ -90,8 +81,14 @@ public final class WriteBufferManager {
 	 * @throws java.io.IOException
 	 */
 	public void put(byte[] bs) throws IOException {
-		prepareToAddBytes(bs.length);
-		buffer.put(bs);
+		if (bs.length > buffer.capacity()) {
+			// Larger than the buffer, write the array directly
+			flush();
+			writeFully(ByteBuffer.wrap(bs));
+		} else {
+			prepareToAddBytes(bs.length);
+			buffer.put(bs);
+		}
 	}
 
 	/**
@@ -102,7 +99,14 @@ public final class WriteBufferManager {
 	 */
 	public void flush() throws IOException {
 		buffer.flip();
-		channel.write(buffer);
+		writeFully(buffer);
+		buffer.clear();
+	}
+
+	private void writeFully(ByteBuffer bytes) throws IOException {
+		while (bytes.hasRemaining()) {
+			channel.write(bytes);
+		}
 	}
 
 	/**
@@ -125,6 +129,17 @@ public final class WriteBufferManager {
 		buffer.putInt(value);
 	}
 
+	/**
+	 * Puts the specified long at the current position
+	 *
+	 * @param value
+	 * @throws java.io.IOException
+	 */
+	public void putLong(long value) throws IOException {
+		prepareToAddBytes(8);
+		buffer.putLong(value);
+	}
+
 	/**
 	 * Puts the specified double at the current position
 	 *
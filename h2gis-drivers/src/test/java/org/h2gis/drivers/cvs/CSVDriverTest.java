@@ -30,10 +30,15 @@ import org.h2gis.drivers.csv.CSVDriverFunction;
 import org.h2gis.sfs.unitTest.SpatialDBFactory;
 import org.h2gis.api.DriverFunction;
 import org.h2gis.api.EmptyProgressVisitor;
+import org.h2gis.api.OperationMetrics;
+import org.h2gis.api.OperationStatistics;
+import org.h2gis.api.ProgressVisitor;
 import org.junit.After;
 import org.junit.AfterClass;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -92,4 +97,74 @@ public class CSVDriverTest {
         }
     }   
     
+    @Test
+    public void testExportImportMetrics() throws SQLException, IOException {
+        st.execute("DROP TABLE IF EXISTS AREA_METRICS, IMPORT_AREA_METRICS");
+        st.execute("create table area_metrics(idarea int primary key, name varchar) as "
+                + "select x, 'name' || x from system_range(1, 250)");
+        File csvFile = new File("target/area_metrics.csv");
+        DriverFunction driver = new CSVDriverFunction();
+        OperationMetrics.setEnabled(true);
+        try {
+            OperationMetrics.reset();
+            driver.exportTable(connection, "AREA_METRICS", csvFile, new EmptyProgressVisitor());
+            driver.importFile(connection, "IMPORT_AREA_METRICS", csvFile, new EmptyProgressVisitor());
+        } finally {
+            OperationMetrics.setEnabled(false);
+        }
+        OperationStatistics export = null;
+        OperationStatistics imported = null;
+        for (OperationStatistics statistics : OperationMetrics.getStatistics()) {
+            if ("CSV export".equals(statistics.getName())) {
+                export = statistics;
+            } else if ("CSV import".equals(statistics.getName())) {
+                imported = statistics;
+            }
+        }
+        assertNotNull(export);
+        assertEquals(250, export.getRowCount());
+        assertEquals(csvFile.length(), export.getBytesWritten());
+        assertNotNull(imported);
+        assertEquals(250, imported.getRowCount());
+        assertEquals(csvFile.length(), imported.getBytesRead());
+        // The rows are parsed while the database inserts them
+        assertTrue(imported.getReadTime() > 0);
+        assertTrue(imported.getWriteTime() > 0);
+        assertTrue(imported.getElapsedTime() >= imported.getReadTime() + imported.getWriteTime());
+        ResultSet rs = st.executeQuery("SELECT COUNT(*), MAX(IDAREA::INT), MAX(NAME) FROM IMPORT_AREA_METRICS");
+        try {
+            assertTrue(rs.next());
+            assertEquals(250, rs.getInt(1));
+            assertEquals(250, rs.getInt(2));
+            assertEquals("name99", rs.getString(3));
+        } finally {
+            rs.close();
+        }
+        st.execute("DROP TABLE IF EXISTS AREA_METRICS, IMPORT_AREA_METRICS");
+    }
+
+    @Test
+    public void testImportCanceled() throws SQLException, IOException {
+        st.execute("DROP TABLE IF EXISTS AREA_CANCEL, IMPORT_AREA_CANCEL");
+        st.execute("create table area_cancel(idarea int primary key, name varchar) as "
+                + "select x, 'name' || x from system_range(1, 250)");
+        File csvFile = new File("target/area_cancel.csv");
+        DriverFunction driver = new CSVDriverFunction();
+        driver.exportTable(connection, "AREA_CANCEL", csvFile, new EmptyProgressVisitor());
+        ProgressVisitor progressVisitor = new EmptyProgressVisitor();
+        progressVisitor.cancel();
+        try {
+            driver.importFile(connection, "IMPORT_AREA_CANCEL", csvFile, progressVisitor);
+            fail("Import should be canceled");
+        } catch (SQLException ex) {
+            ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM IMPORT_AREA_CANCEL");
+            try {
+                assertTrue(rs.next());
+                assertEquals(0, rs.getInt(1));
+            } finally {
+                rs.close();
+            }
+        }
+        st.execute("DROP TABLE IF EXISTS AREA_CANCEL, IMPORT_AREA_CANCEL");
+    }
 }
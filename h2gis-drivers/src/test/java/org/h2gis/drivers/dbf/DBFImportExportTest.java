@@ -22,6 +22,7 @@ package org.h2gis.drivers.dbf;
 
 import org.h2.util.StringUtils;
 import org.h2gis.drivers.dbf.internal.DBFDriver;
+import org.h2gis.drivers.dbf.internal.DbaseFileReader;
 import org.h2gis.drivers.file_table.H2TableIndex;
 import org.h2gis.drivers.shp.SHPEngineTest;
 import org.h2gis.sfs.CreateSpatialExtension;
@@ -33,15 +34,25 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
+import java.util.Calendar;
+import java.util.Date;
+import java.util.Locale;
+import java.util.Random;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -228,4 +239,138 @@ public class DBFImportExportTest {
         assertFalse(rs.next());
         rs.close();
     }
+
+    @Test
+    public void testImportSerialSequence() throws SQLException, IOException {
+        Statement stat = connection.createStatement();
+        File dbfFile = new File("target/area_serial.dbf");
+        stat.execute("DROP TABLE IF EXISTS AREA, AREA2");
+        stat.execute("create table area(id integer, descr CHAR(50))");
+        stat.execute("insert into area values(1, 'main area')");
+        stat.execute("insert into area values(2, 'second area')");
+        stat.execute("CALL DBFWrite('"+dbfFile.getPath()+"', 'AREA')");
+        stat.execute("CALL DBFRead('"+dbfFile.getPath()+"', 'AREA2')");
+        // The primary key sequence must continue after the imported rows
+        stat.execute("insert into area2(id, descr) values(3, 'third area')");
+        ResultSet rs = stat.executeQuery("SELECT pk, id, descr FROM AREA2 order by pk");
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(rs.next());
+            assertEquals(i, rs.getInt(1));
+            assertEquals(i, rs.getInt(2));
+        }
+        assertFalse(rs.next());
+        rs.close();
+        // The linked table used to copy the rows is removed
+        rs = stat.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME LIKE 'H2GIS_BULK_LOAD_%'");
+        assertTrue(rs.next());
+        assertEquals(0, rs.getInt(1));
+        rs.close();
+        stat.execute("DROP TABLE IF EXISTS AREA, AREA2");
+    }
+
+    @Test
+    public void testReadFieldValues() throws IOException {
+        String[] types = new String[]{"N", "N", "F", "D", "L", "C"};
+        int[] lengths = new int[]{12, 10, 10, 8, 1, 8};
+        int[] decimals = new int[]{0, 3, 2, 0, 0, 0};
+        String[][] rows = new String[][]{
+                {"         123", "    -1.250", "    1,5   ", "20151225", "T", "abc     "},
+                {" -2147483649", "     1.5e3", "          ", "00000000", "n", "  x  \0\0\0"},
+                {"      1.5   ", "     0.100", "     -0.30", "        ", "Y", "        "},
+                {"            ", "***.******", "  123.4567", "2015x225", "F", "        "}};
+        File dbfFile = new File("target/read_values.dbf");
+        writeDbf(dbfFile, types, lengths, decimals, rows);
+        for (boolean memoryMapped : new boolean[]{false, true}) {
+            DbaseFileReader reader = new DbaseFileReader(new FileInputStream(dbfFile).getChannel(), null,
+                    memoryMapped);
+            try {
+                assertEquals(123, reader.getFieldValue(0, 0));
+                assertEquals(-1.25, reader.getFieldValue(0, 1));
+                assertEquals(1.5, reader.getFieldValue(0, 2));
+                Calendar calendar = Calendar.getInstance();
+                calendar.setTime((Date) reader.getFieldValue(0, 3));
+                assertEquals(2015, calendar.get(Calendar.YEAR));
+                assertEquals(Calendar.DECEMBER, calendar.get(Calendar.MONTH));
+                assertEquals(25, calendar.get(Calendar.DAY_OF_MONTH));
+                assertEquals(true, reader.getFieldValue(0, 4));
+                assertEquals("abc", reader.getFieldValue(0, 5));
+                assertEquals(-2147483649L, reader.getFieldValue(1, 0));
+                assertEquals(1500.0, reader.getFieldValue(1, 1));
+                assertNull(reader.getFieldValue(1, 2));
+                assertNull(reader.getFieldValue(1, 3));
+                assertEquals(false, reader.getFieldValue(1, 4));
+                assertEquals("x", reader.getFieldValue(1, 5));
+                assertEquals(1.5, reader.getFieldValue(2, 0));
+                assertEquals(0.1, reader.getFieldValue(2, 1));
+                assertEquals(-0.3, reader.getFieldValue(2, 2));
+                assertNull(reader.getFieldValue(2, 3));
+                assertEquals(true, reader.getFieldValue(2, 4));
+                assertNull(reader.getFieldValue(3, 0));
+                assertNull(reader.getFieldValue(3, 1));
+                assertEquals(123.4567, reader.getFieldValue(3, 2));
+                assertNull(reader.getFieldValue(3, 3));
+                assertEquals(false, reader.getFieldValue(3, 4));
+            } finally {
+                reader.close();
+            }
+        }
+    }
+
+    @Test
+    public void testReadDecimalsAsParseDouble() throws IOException {
+        // The decimal numbers parsed from the bytes must be equal to the numbers parsed by Double.parseDouble
+        Random random = new Random(42);
+        String[][] rows = new String[1000][];
+        for (int i = 0; i < rows.length; i++) {
+            double value = (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(12));
+            rows[i] = new String[]{String.format(Locale.ROOT, "%20." + random.nextInt(10) + "f", value)
+                    .substring(0, 20)};
+        }
+        File dbfFile = new File("target/read_decimals.dbf");
+        writeDbf(dbfFile, new String[]{"N"}, new int[]{20}, new int[]{9}, rows);
+        DbaseFileReader reader = new DbaseFileReader(new FileInputStream(dbfFile).getChannel(), null);
+        try {
+            for (int i = 0; i < rows.length; i++) {
+                assertEquals(rows[i][0], Double.parseDouble(rows[i][0].trim()), reader.getFieldValue(i, 0));
+            }
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Write a dBase III file with the given field contents, the values must have the length of the field.
+     */
+    private static void writeDbf(File file, String[] types, int[] lengths, int[] decimals, String[][] rows)
+            throws IOException {
+        int recordLength = 1;
+        for (int length : lengths) {
+            recordLength += length;
+        }
+        int headerLength = 32 + 32 * types.length + 1;
+        ByteBuffer buffer = ByteBuffer.allocate(headerLength + recordLength * rows.length + 1);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        buffer.put((byte) 0x03).put((byte) 115).put((byte) 1).put((byte) 1);
+        buffer.putInt(rows.length).putShort((short) headerLength).putShort((short) recordLength);
+        buffer.put(new byte[20]);
+        for (int i = 0; i < types.length; i++) {
+            byte[] name = Arrays.copyOf(("FIELD" + i).getBytes("US-ASCII"), 11);
+            buffer.put(name).put((byte) types[i].charAt(0)).putInt(0);
+            buffer.put((byte) lengths[i]).put((byte) decimals[i]).put(new byte[14]);
+        }
+        buffer.put((byte) 0x0D);
+        for (String[] row : rows) {
+            buffer.put((byte) ' ');
+            for (String value : row) {
+                buffer.put(value.getBytes("US-ASCII"));
+            }
+        }
+        buffer.put((byte) 0x1A);
+        FileOutputStream out = new FileOutputStream(file);
+        try {
+            out.write(buffer.array());
+        } finally {
+            out.close();
+        }
+    }
 }
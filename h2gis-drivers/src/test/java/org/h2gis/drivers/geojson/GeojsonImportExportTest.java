@@ -22,14 +22,23 @@ package org.h2gis.drivers.geojson;
 
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.io.WKTReader;
+import java.io.File;
+import java.io.FileWriter;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.Statement;
+import org.h2gis.api.EmptyProgressVisitor;
+import org.h2gis.api.OperationMetrics;
+import org.h2gis.api.OperationStatistics;
 import org.h2gis.sfs.CreateSpatialExtension;
 import org.h2gis.sfs.unitTest.SpatialDBFactory;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -502,5 +511,221 @@ public class GeojsonImportExportTest {
         stat.close();
     }
 
+    @Test
+    public void testReadGeojsonLateProperties() throws Exception {
+        File file = new File("target/late_properties.geojson");
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write("{\"type\":\"FeatureCollection\",\"features\":["
+                    + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[1,2]},"
+                    + "\"properties\":{\"a\":1}},"
+                    + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[3,4,5]},"
+                    + "\"properties\":{\"b\":\"x\",\"a\":2.5}},"
+                    + "{\"type\":\"Feature\",\"id\":3,\"geometry\":null,"
+                    + "\"properties\":{\"a\":\"text\"}}]}");
+        } finally {
+            writer.close();
+        }
+        Statement stat = connection.createStatement();
+        stat.execute("DROP TABLE IF EXISTS TABLE_LATE_PROPERTIES");
+        GeoJsonReaderDriver driver = new GeoJsonReaderDriver(connection, file);
+        // The schema is built using only the first feature
+        driver.setSchemaSampleSize(1);
+        driver.read(new EmptyProgressVisitor(), "TABLE_LATE_PROPERTIES");
+        ResultSet res = stat.executeQuery("SELECT THE_GEOM, A, B FROM TABLE_LATE_PROPERTIES");
+        try {
+            assertTrue(res.next());
+            assertTrue(((Geometry) res.getObject(1)).equals(WKTREADER.read("POINT(1 2)")));
+            assertEquals(1, Double.valueOf(res.getString(2)), 1e-12);
+            assertNull(res.getObject(3));
+            assertTrue(res.next());
+            assertEquals(5, ((Geometry) res.getObject(1)).getCoordinate().z, 1e-12);
+            assertEquals(2.5, Double.valueOf(res.getString(2)), 1e-12);
+            assertEquals("x", res.getString(3));
+            assertTrue(res.next());
+            assertNull(res.getObject(1));
+            assertEquals("text", res.getString(2));
+            assertFalse(res.next());
+        } finally {
+            res.close();
+        }
+        stat.execute("DROP TABLE IF EXISTS TABLE_LATE_PROPERTIES");
+        stat.close();
+    }
+
+    @Test
+    public void testReadGeojsonSequenceLateProperties() throws Exception {
+        File file = new File("target/late_properties.geojsonl");
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write("{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[1,2]}}\n"
+                    + "{\"type\":\"Feature\",\"properties\":{\"a\":1},"
+                    + "\"geometry\":{\"type\":\"Point\",\"coordinates\":[3,4]}}\n"
+                    + "{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[5,6]},"
+                    + "\"properties\":{\"a\":2.5}}\n");
+        } finally {
+            writer.close();
+        }
+        Statement stat = connection.createStatement();
+        stat.execute("DROP TABLE IF EXISTS TABLE_SEQUENCE_LATE");
+        GeoJsonReaderDriver driver = new GeoJsonReaderDriver(connection, file);
+        // The first feature does not have properties, the table has a primary key
+        driver.setSchemaSampleSize(1);
+        driver.read(new EmptyProgressVisitor(), "TABLE_SEQUENCE_LATE");
+        ResultSet res = stat.executeQuery("SELECT THE_GEOM, ID, A FROM TABLE_SEQUENCE_LATE ORDER BY ID");
+        try {
+            assertTrue(res.next());
+            assertTrue(((Geometry) res.getObject(1)).equals(WKTREADER.read("POINT(1 2)")));
+            assertEquals(1, res.getInt(2));
+            assertNull(res.getObject(3));
+            assertTrue(res.next());
+            assertTrue(((Geometry) res.getObject(1)).equals(WKTREADER.read("POINT(3 4)")));
+            assertEquals(2, res.getInt(2));
+            assertEquals(1, res.getDouble(3), 1e-12);
+            assertTrue(res.next());
+            assertTrue(((Geometry) res.getObject(1)).equals(WKTREADER.read("POINT(5 6)")));
+            assertEquals(3, res.getInt(2));
+            assertEquals(2.5, res.getDouble(3), 1e-12);
+            assertFalse(res.next());
+        } finally {
+            res.close();
+        }
+        stat.execute("DROP TABLE IF EXISTS TABLE_SEQUENCE_LATE");
+        stat.close();
+    }
+
+    @Test
+    public void testWriteReadGeojsonSequence() throws Exception {
+        Statement stat = connection.createStatement();
+        stat.execute("DROP TABLE IF EXISTS TABLE_SEQUENCE, TABLE_SEQUENCE_READ");
+        stat.execute("create table TABLE_SEQUENCE(the_geom POINT, id int, name varchar)");
+        // More rows than a single parsing chunk
+        stat.execute("insert into TABLE_SEQUENCE select ST_GeomFromText('POINT(' || x || ' ' || (x * 2) || ')'), x, 'name' || x"
+                + " from system_range(1, 1500)");
+        stat.execute("CALL GeoJsonWrite('target/sequence.geojsonl', 'TABLE_SEQUENCE');");
+        stat.execute("CALL GeoJsonRead('target/sequence.geojsonl', 'TABLE_SEQUENCE_READ');");
+        ResultSet res = stat.executeQuery("SELECT * FROM TABLE_SEQUENCE_READ");
+        try {
+            for (int i = 1; i <= 1500; i++) {
+                assertTrue(res.next());
+                assertTrue(((Geometry) res.getObject(1)).equals(WKTREADER.read("POINT(" + i + " " + (i * 2) + ")")));
+                assertEquals(i, res.getInt(2));
+                assertEquals("name" + i, res.getString(3));
+            }
+            assertFalse(res.next());
+        } finally {
+            res.close();
+        }
+        stat.execute("DROP TABLE IF EXISTS TABLE_SEQUENCE, TABLE_SEQUENCE_READ");
+        stat.close();
+    }
 
+    @Test
+    public void testReadGeojsonTextSequence() throws Exception {
+        File file = new File("target/text_sequence.geojsons");
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write("\u001E{\"type\":\"Feature\",\"geometry\":{\"type\":\"Point\",\"coordinates\":[1,2]},"
+                    + "\"properties\":{\"a\":1}}\n"
+                    + "\u001E{\"type\":\"Feature\",\"geometry\":{\"type\":\"LineString\","
+                    + "\"coordinates\":[[1,2],[3,4]]},\"properties\":{\"a\":2,\"b\":\"x\"}}\n"
+                    + "\u001E{\"type\":\"Feature\",\"geometry\":null,\"properties\":{\"a\":3}}\n");
+        } finally {
+            writer.close();
+        }
+        Statement stat = connection.createStatement();
+        stat.execute("DROP TABLE IF EXISTS TABLE_TEXT_SEQUENCE, TABLE_TEXT_SEQUENCE_READ");
+        stat.execute("CALL GeoJsonRead('target/text_sequence.geojsons', 'TABLE_TEXT_SEQUENCE');");
+        stat.execute("CALL GeoJsonWrite('target/text_sequence_copy.geojsons', 'TABLE_TEXT_SEQUENCE');");
+        stat.execute("CALL GeoJsonRead('target/text_sequence_copy.geojsons', 'TABLE_TEXT_SEQUENCE_READ');");
+        ResultSet res = stat.executeQuery("SELECT THE_GEOM, A, B FROM TABLE_TEXT_SEQUENCE_READ");
+        try {
+            assertTrue(res.next());
+            assertTrue(((Geometry) res.getObject(1)).equals(WKTREADER.read("POINT(1 2)")));
+            assertEquals(1, res.getInt(2));
+            assertNull(res.getObject(3));
+            assertTrue(res.next());
+            assertTrue(((Geometry) res.getObject(1)).equals(WKTREADER.read("LINESTRING(1 2, 3 4)")));
+            assertEquals(2, res.getInt(2));
+            assertEquals("x", res.getString(3));
+            assertTrue(res.next());
+            assertNull(res.getObject(1));
+            assertEquals(3, res.getInt(2));
+            assertFalse(res.next());
+        } finally {
+            res.close();
+        }
+        stat.execute("DROP TABLE IF EXISTS TABLE_TEXT_SEQUENCE, TABLE_TEXT_SEQUENCE_READ");
+        stat.close();
+    }
+
+    @Test
+    public void testReadGeojsonTextSequenceMultiLine() throws Exception {
+        File file = new File("target/text_sequence_multiline.geojsons");
+        FileWriter writer = new FileWriter(file);
+        try {
+            writer.write("\u001E{\n  \"type\": \"Feature\",\n  \"geometry\": {\n    \"type\": \"Point\",\n"
+                    + "    \"coordinates\": [1, 2]\n  },\n  \"properties\": {\n    \"a\": 1\n  }\n}\n"
+                    + "\u001E{\n  \"type\": \"Feature\",\n  \"geometry\": {\n    \"type\": \"LineString\",\n"
+                    + "    \"coordinates\": [[1, 2],\n      [3, 4]]\n  },\n  \"properties\": {\n    \"a\": 2\n  }\n}\n");
+        } finally {
+            writer.close();
+        }
+        Statement stat = connection.createStatement();
+        stat.execute("DROP TABLE IF EXISTS TABLE_TEXT_SEQUENCE_MULTILINE");
+        stat.execute("CALL GeoJsonRead('target/text_sequence_multiline.geojsons', 'TABLE_TEXT_SEQUENCE_MULTILINE');");
+        ResultSet res = stat.executeQuery("SELECT THE_GEOM, A FROM TABLE_TEXT_SEQUENCE_MULTILINE");
+        try {
+            assertTrue(res.next());
+            assertTrue(((Geometry) res.getObject(1)).equals(WKTREADER.read("POINT(1 2)")));
+            assertEquals(1, res.getInt(2));
+            assertTrue(res.next());
+            assertTrue(((Geometry) res.getObject(1)).equals(WKTREADER.read("LINESTRING(1 2, 3 4)")));
+            assertEquals(2, res.getInt(2));
+            assertFalse(res.next());
+        } finally {
+            res.close();
+        }
+        stat.execute("DROP TABLE TABLE_TEXT_SEQUENCE_MULTILINE");
+        stat.close();
+    }
+
+    @Test
+    public void testWriteReadGeojsonMetrics() throws Exception {
+        Statement stat = connection.createStatement();
+        stat.execute("DROP TABLE IF EXISTS TABLE_METRICS, TABLE_METRICS_READ");
+        stat.execute("create table TABLE_METRICS(the_geom POINT, id int) as "
+                + "select ST_GeomFromText('POINT(' || x || ' ' || x || ')'), x from system_range(1, 250)");
+        OperationMetrics.setEnabled(true);
+        try {
+            OperationMetrics.reset();
+            stat.execute("CALL GeoJsonWrite('target/metrics.geojsonl', 'TABLE_METRICS');");
+            stat.execute("CALL GeoJsonRead('target/metrics.geojsonl', 'TABLE_METRICS_READ');");
+        } finally {
+            OperationMetrics.setEnabled(false);
+        }
+        long fileLength = new File("target/metrics.geojsonl").length();
+        OperationStatistics export = null;
+        OperationStatistics imported = null;
+        for (OperationStatistics statistics : OperationMetrics.getStatistics()) {
+            if ("GeoJSON export".equals(statistics.getName())) {
+                export = statistics;
+            } else if ("GeoJSON import".equals(statistics.getName())) {
+                imported = statistics;
+            }
+        }
+        assertNotNull(export);
+        assertEquals(1, export.getRunCount());
+        assertEquals(250, export.getRowCount());
+        assertEquals(fileLength, export.getBytesWritten());
+        assertTrue(export.getWriteTime() > 0);
+        assertNotNull(imported);
+        assertEquals(250, imported.getRowCount());
+        assertEquals(fileLength, imported.getBytesRead());
+        // The features are parsed while the database inserts them
+        assertTrue(imported.getReadTime() > 0);
+        assertTrue(imported.getWriteTime() > 0);
+        stat.execute("DROP TABLE TABLE_METRICS, TABLE_METRICS_READ");
+        stat.close();
+    }
 }
@@ -21,17 +21,23 @@
 package org.h2gis.drivers.gpx;
 
 import com.vividsolutions.jts.geom.Geometry;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.PrintWriter;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import org.h2.jdbc.JdbcSQLException;
 import org.h2.util.StringUtils;
+import org.h2gis.drivers.gpx.model.GpxParser;
+import org.h2gis.drivers.gpx.model.GpxStaxParser;
 import org.h2gis.sfs.CreateSpatialExtension;
 import org.h2gis.sfs.unitTest.SpatialDBFactory;
 import org.junit.After;
 import org.junit.AfterClass;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -202,4 +208,84 @@ public class GPXImportTest {
         assertTrue(!rs.next());
         rs.close();    
     }
+
+    @Test
+    public void importGPXSinglePass() throws Exception {
+        File bigFile = File.createTempFile("track", ".gpx");
+        bigFile.deleteOnExit();
+        PrintWriter writer = new PrintWriter(new FileWriter(bigFile));
+        try {
+            writer.println("<?xml version=\"1.0\"?>");
+            writer.println("<gpx version=\"1.1\" creator=\"H2GIS\" xmlns=\"http://www.topografix.com/GPX/1/1\">");
+            writer.println("<wpt lat=\"47.2\" lon=\"-1.5\"><name>start</name><link href=\"http://www.h2gis.org\">"
+                    + "<text>H2GIS</text></link><sat>4</sat></wpt>");
+            writer.println("<rte><name><![CDATA[Route]]></name><number>1</number>");
+            for (int i = 0; i < 150; i++) {
+                writer.println("<rtept lat=\"" + (47 + i * 1e-4) + "\" lon=\"-1.5\"><name>rtept" + i + "</name></rtept>");
+            }
+            writer.println("</rte>");
+            for (int trk = 0; trk < 2; trk++) {
+                writer.println("<trk><name>track" + trk + "</name><link href=\"http://www.h2gis.org\"><text>H2GIS</text></link>");
+                for (int seg = 0; seg < 3; seg++) {
+                    writer.println("<trkseg>");
+                    for (int pt = 0; pt < 120; pt++) {
+                        writer.println("<trkpt lat=\"" + (47 + pt * 1e-4) + "\" lon=\"" + (-1.5 + seg * 1e-3) + "\">"
+                                + "<time>2015-01-01T00:00:" + (pt % 60) + "Z</time><hdop>1.5</hdop></trkpt>");
+                    }
+                    writer.println("<extensions><speed>12</speed></extensions></trkseg>");
+                }
+                writer.println("</trk>");
+            }
+            writer.println("</gpx>");
+        } finally {
+            writer.close();
+        }
+        File[] files = new File[]{new File(GPXImportTest.class.getResource("waypoint.gpx").getPath()),
+                new File(GPXImportTest.class.getResource("route.gpx").getPath()),
+                new File(GPXImportTest.class.getResource("track.gpx").getPath()), bigFile};
+        String[] suffixes = new String[]{"_WAYPOINT", "_ROUTE", "_ROUTEPOINT", "_TRACK", "_TRACKSEGMENT", "_TRACKPOINT"};
+        for (File file : files) {
+            for (String suffix : suffixes) {
+                st.execute("DROP TABLE IF EXISTS SAX" + suffix + ", STAX" + suffix);
+            }
+            new GpxParser().read(file, "SAX", connection);
+            new GpxStaxParser().read(file, "STAX", connection);
+            for (String suffix : suffixes) {
+                ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM INFORMATION_SCHEMA.TABLES WHERE TABLE_NAME IN ('SAX"
+                        + suffix + "', 'STAX" + suffix + "')");
+                assertTrue(rs.next());
+                int tableCount = rs.getInt(1);
+                rs.close();
+                assertTrue(tableCount != 1);
+                if (tableCount == 2) {
+                    assertSameRows("SAX" + suffix, "STAX" + suffix);
+                }
+            }
+        }
+        ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM STAX_TRACKPOINT");
+        assertTrue(rs.next());
+        assertEquals(720, rs.getInt(1));
+        rs.close();
+    }
+
+    private void assertSameRows(String expectedTable, String table) throws SQLException {
+        Statement expectedSt = connection.createStatement();
+        try {
+            ResultSet expected = expectedSt.executeQuery("SELECT * FROM " + expectedTable);
+            ResultSet rs = st.executeQuery("SELECT * FROM " + table);
+            int columnCount = rs.getMetaData().getColumnCount();
+            assertEquals(expected.getMetaData().getColumnCount(), columnCount);
+            while (expected.next()) {
+                assertTrue(rs.next());
+                for (int i = 1; i <= columnCount; i++) {
+                    assertEquals(expected.getString(i), rs.getString(i));
+                }
+            }
+            assertFalse(rs.next());
+            rs.close();
+            expected.close();
+        } finally {
+            expectedSt.close();
+        }
+    }
 }
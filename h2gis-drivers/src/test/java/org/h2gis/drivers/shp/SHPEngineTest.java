@@ -24,7 +24,10 @@ import com.vividsolutions.jts.geom.Geometry;
 import org.apache.commons.io.FileUtils;
 import org.h2.util.StringUtils;
 import org.h2gis.drivers.DriverManager;
+import org.h2gis.drivers.file_table.FileEngine;
 import org.h2gis.drivers.file_table.H2TableIndex;
+import org.h2gis.drivers.file_table.H2TableSpatialIndex;
+import org.h2gis.drivers.shp.internal.SpatialIndexFile;
 import org.h2gis.sfs.CreateSpatialExtension;
 import org.h2gis.sfs.unitTest.SpatialDBFactory;
 import org.h2gis.utilities.GeometryTypeCodes;
@@ -294,7 +297,7 @@ public class SHPEngineTest {
         rs = st.executeQuery("select * from INFORMATION_SCHEMA.INDEXES WHERE TABLE_NAME = 'SHPTABLE' and COLUMN_NAME='THE_GEOM'");
         try {
             assertTrue(rs.next());
-            assertEquals("org.h2.index.SpatialTreeIndex", rs.getString("INDEX_CLASS"));
+            assertEquals(H2TableSpatialIndex.class.getName(), rs.getString("INDEX_CLASS"));
         } finally {
             rs.close();
         }
@@ -308,6 +311,119 @@ public class SHPEngineTest {
         }
     }
 
+    @Test
+    public void readSHPProjectionTest() throws SQLException {
+        Statement st = connection.createStatement();
+        st.execute("drop table if exists shptable");
+        st.execute("CALL FILE_TABLE('"+SHPEngineTest.class.getResource("waternetwork.shp").getPath()+"', 'SHPTABLE');");
+        // Only the requested columns are read
+        ResultSet rs = st.executeQuery("SELECT SUM(gid) FROM shptable WHERE type_axe = 'ditch'");
+        assertTrue(rs.next());
+        long sumGid = rs.getLong(1);
+        rs.close();
+        rs = st.executeQuery("SELECT SUM(gid) FROM (SELECT * FROM shptable) WHERE type_axe = 'ditch'");
+        assertTrue(rs.next());
+        assertEquals(sumGid, rs.getLong(1));
+        rs.close();
+        // Columns used only in an outer join condition
+        rs = st.executeQuery("SELECT COUNT(b.PK) FROM shptable a LEFT JOIN shptable b ON a.gid = b.gid AND " +
+                "ST_Length(b.the_geom) > 0 WHERE a.type_axe = 'ditch'");
+        assertTrue(rs.next());
+        long countJoin = rs.getLong(1);
+        rs.close();
+        rs = st.executeQuery("SELECT COUNT(*) FROM shptable WHERE type_axe = 'ditch' AND ST_Length(the_geom) > 0");
+        assertTrue(rs.next());
+        assertEquals(rs.getLong(1), countJoin);
+        assertTrue(countJoin > 0);
+        rs.close();
+        st.execute("drop table shptable");
+    }
+
+    @Test
+    public void testSpatialIndexFile() throws Exception {
+        File src = new File(SHPEngineTest.class.getResource("waternetwork.shp").getPath());
+        File tmpFile = File.createTempFile("waternetworkidx","");
+        assertTrue(tmpFile.delete());
+        File dst = new File(tmpFile + ".shp");
+        FileUtils.copyFile(src, dst);
+        FileUtils.copyFile(new File(SHPEngineTest.class.getResource("waternetwork.dbf").getPath()), new File(tmpFile + ".dbf"));
+        FileUtils.copyFile(new File(SHPEngineTest.class.getResource("waternetwork.shx").getPath()), new File(tmpFile + ".shx"));
+        File idxFile = SpatialIndexFile.getIndexFile(dst);
+        assertFalse(idxFile.exists());
+        Statement st = connection.createStatement();
+        st.execute("DROP TABLE IF EXISTS shpidxtable");
+        st.execute("CALL FILE_TABLE("+ StringUtils.quoteStringSQL(dst.getPath()) + ", 'shpidxtable');");
+        String query = "SELECT COUNT(*) FROM SHPIDXTABLE WHERE THE_GEOM && ST_BUFFER('POINT(183541 2426015)', 500)";
+        ResultSet rs = st.executeQuery(query);
+        assertTrue(rs.next());
+        int expectedCount = rs.getInt(1);
+        rs.close();
+        assertTrue(expectedCount > 2);
+        st.execute("CREATE SPATIAL INDEX SHPIDXTABLE_GEOM_IDX ON shpidxtable(the_geom)");
+        assertTrue(idxFile.exists());
+        long indexModified = idxFile.lastModified();
+        // The query must use the spatial index
+        rs = st.executeQuery("EXPLAIN " + query);
+        assertTrue(rs.next());
+        assertTrue(rs.getString(1).contains("SHPIDXTABLE_GEOM_IDX: THE_GEOM &&"));
+        rs.close();
+        rs = st.executeQuery(query);
+        assertTrue(rs.next());
+        assertEquals(expectedCount, rs.getInt(1));
+        rs.close();
+        // Reopen the database, the index file must be reused
+        connection.close();
+        Thread.sleep(50);
+        connection = SpatialDBFactory.openSpatialDataBase(DB_NAME);
+        st = connection.createStatement();
+        rs = st.executeQuery(query);
+        assertTrue(rs.next());
+        assertEquals(expectedCount, rs.getInt(1));
+        rs.close();
+        assertEquals(indexModified, idxFile.lastModified());
+        st.execute("DROP TABLE IF EXISTS shpidxtable");
+        assertTrue(dst.delete());
+        assertTrue(new File(tmpFile + ".dbf").delete());
+        assertTrue(new File(tmpFile + ".shx").delete());
+        assertTrue(idxFile.delete());
+    }
+
+    @Test
+    public void readSHPMemoryMapped() throws Exception {
+        File tmpFile = File.createTempFile("waternetworkmapped", "");
+        assertTrue(tmpFile.delete());
+        String[] extensions = new String[]{".shp", ".dbf", ".shx"};
+        for (String extension : extensions) {
+            FileUtils.copyFile(new File(SHPEngineTest.class.getResource("waternetwork" + extension).getPath()),
+                    new File(tmpFile + extension));
+        }
+        String query = "SELECT COUNT(*), SUM(ST_LENGTH(THE_GEOM)), SUM(GID) FROM SHPMAPPEDTABLE";
+        Statement st = connection.createStatement();
+        try {
+            st.execute("DROP TABLE IF EXISTS shpmappedtable");
+            st.execute("CALL FILE_TABLE(" + StringUtils.quoteStringSQL(tmpFile + ".shp") + ", 'shpmappedtable');");
+            ResultSet rs = st.executeQuery(query);
+            assertTrue(rs.next());
+            String expected = rs.getString(1) + " " + rs.getString(2) + " " + rs.getString(3);
+            rs.close();
+            st.execute("DROP TABLE shpmappedtable");
+            System.setProperty(FileEngine.MEMORY_MAPPED_PROPERTY, "true");
+            st.execute("CALL FILE_TABLE(" + StringUtils.quoteStringSQL(tmpFile + ".shp") + ", 'shpmappedtable');");
+            rs = st.executeQuery(query);
+            assertTrue(rs.next());
+            assertEquals(expected, rs.getString(1) + " " + rs.getString(2) + " " + rs.getString(3));
+            rs.close();
+            // The mapped files are released with the table
+            st.execute("DROP TABLE shpmappedtable");
+        } finally {
+            System.clearProperty(FileEngine.MEMORY_MAPPED_PROPERTY);
+            st.close();
+        }
+        for (String extension : extensions) {
+            assertTrue(new File(tmpFile + extension).delete());
+        }
+    }
+
     /**
      * Check the call of special case {@link H2TableIndex#find(org.h2.engine.Session, org.h2.result.SearchRow, org.h2.result.SearchRow)} with null at first and last
      * @throws SQLException
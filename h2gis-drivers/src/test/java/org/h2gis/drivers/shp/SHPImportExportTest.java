@@ -24,28 +24,45 @@ import com.vividsolutions.jts.geom.Coordinate;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.io.WKTWriter;
 import org.h2.util.StringUtils;
+import org.h2.tools.Server;
 import org.h2gis.drivers.DriverManager;
+import org.h2gis.drivers.file_table.BulkLoadEngine;
+import org.h2gis.drivers.file_table.BulkLoader;
 import org.h2gis.drivers.file_table.H2TableIndex;
 import org.h2gis.drivers.shp.internal.SHPDriver;
 import org.h2gis.sfs.CreateSpatialExtension;
 import org.h2gis.sfs.unitTest.SpatialDBFactory;
 import org.h2gis.api.DriverFunction;
 import org.h2gis.api.EmptyProgressVisitor;
+import org.h2gis.api.OperationMetrics;
+import org.h2gis.api.OperationStatistics;
+import org.h2gis.api.ProgressVisitor;
+import org.h2gis.utilities.JDBCUtilities;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.io.DataInputStream;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.lang.management.ManagementFactory;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.Arrays;
+import javax.management.ObjectName;
+import org.h2gis.drivers.dbf.DBFDriverFunction;
 import org.h2gis.drivers.dbf.DBFRead;
 import org.h2gis.drivers.dbf.DBFWrite;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Test copy data from SHP to database
@@ -568,4 +585,200 @@ public class SHPImportExportTest {
         assertTrue(res.getInt(3)==1);
         res.close();  
     }
+
+    @Test
+    public void exportImportParallel() throws SQLException, IOException {
+        Statement stat = connection.createStatement();
+        stat.execute("DROP TABLE IF EXISTS PUNCTUAL_LARGE, IMPORT_PUNCTUAL_LARGE");
+        stat.execute("create table punctual_large(idarea int primary key, the_geom POINT)");
+        stat.execute("insert into punctual_large select x, ST_GeomFromText('POINT(' || x || ' ' || (x * 2) || ')') from system_range(1, 2500)");
+        stat.execute("CALL SHPWrite('target/punctual_large_export.shp', 'PUNCTUAL_LARGE')");
+        stat.execute("CALL SHPRead('target/punctual_large_export.shp', 'IMPORT_PUNCTUAL_LARGE', null, 4)");
+        ResultSet res = stat.executeQuery("SELECT PK, IDAREA, THE_GEOM FROM IMPORT_PUNCTUAL_LARGE ORDER BY PK");
+        try {
+            int count = 0;
+            while (res.next()) {
+                count++;
+                // Rows are inserted in the file order
+                assertEquals(count, res.getInt(1));
+                assertEquals(count, res.getInt(2));
+                Geometry geom = (Geometry) res.getObject(3);
+                assertEquals(count, geom.getCoordinate().x, 1e-12);
+                assertEquals(count * 2, geom.getCoordinate().y, 1e-12);
+            }
+            assertEquals(2500, count);
+        } finally {
+            res.close();
+        }
+        stat.execute("DROP TABLE IF EXISTS PUNCTUAL_LARGE, IMPORT_PUNCTUAL_LARGE");
+    }
+
+    @Test
+    public void importParallelCanceled() throws SQLException, IOException {
+        Statement stat = connection.createStatement();
+        stat.execute("DROP TABLE IF EXISTS PUNCTUAL_LARGE, IMPORT_PUNCTUAL_LARGE");
+        stat.execute("create table punctual_large(idarea int primary key, the_geom POINT)");
+        stat.execute("insert into punctual_large select x, ST_GeomFromText('POINT(' || x || ' ' || x || ')') from system_range(1, 2500)");
+        stat.execute("CALL SHPWrite('target/punctual_large_cancel.shp', 'PUNCTUAL_LARGE')");
+        SHPDriverFunction driverFunction = new SHPDriverFunction();
+        driverFunction.setThreadCount(2);
+        ProgressVisitor progressVisitor = new EmptyProgressVisitor();
+        progressVisitor.cancel();
+        try {
+            driverFunction.importFile(connection, "IMPORT_PUNCTUAL_LARGE", new File("target/punctual_large_cancel.shp"),
+                    progressVisitor);
+            fail("Import should be canceled");
+        } catch (SQLException ex) {
+            // The table is removed on cancel
+            assertFalse(JDBCUtilities.tableExists(connection, "IMPORT_PUNCTUAL_LARGE"));
+        }
+        stat.execute("DROP TABLE IF EXISTS PUNCTUAL_LARGE");
+    }
+
+    @Test
+    public void exportParallel() throws SQLException, IOException {
+        Statement stat = connection.createStatement();
+        stat.execute("DROP TABLE IF EXISTS AREA_LARGE, IMPORT_AREA_LARGE");
+        stat.execute("create table area_large(idarea int primary key, name varchar(10), value double, the_geom POLYGON)");
+        stat.execute("insert into area_large select x, 'area' || x, x / 3.0, ST_GeomFromText('POLYGON((' || x || ' 0, ' " +
+                "|| (x + 1) || ' 0, ' || (x + 1) || ' ' || (x % 7 + 1) || ', ' || x || ' 0))') from system_range(1, 2500)");
+        stat.execute("CALL SHPWrite('target/area_large_serial.shp', 'AREA_LARGE')");
+        stat.execute("CALL SHPWrite('target/area_large_parallel.shp', 'AREA_LARGE', null, 4)");
+        // The files are the same
+        assertArrayEquals(readFile("target/area_large_serial.shp"), readFile("target/area_large_parallel.shp"));
+        assertArrayEquals(readFile("target/area_large_serial.shx"), readFile("target/area_large_parallel.shx"));
+        byte[] serialDbf = readFile("target/area_large_serial.dbf");
+        byte[] parallelDbf = readFile("target/area_large_parallel.dbf");
+        // Skip the date of the header
+        assertArrayEquals(Arrays.copyOfRange(serialDbf, 4, serialDbf.length),
+                Arrays.copyOfRange(parallelDbf, 4, parallelDbf.length));
+        stat.execute("CALL SHPRead('target/area_large_parallel.shp', 'IMPORT_AREA_LARGE')");
+        ResultSet res = stat.executeQuery("SELECT COUNT(*), SUM(IDAREA) FROM IMPORT_AREA_LARGE");
+        try {
+            assertTrue(res.next());
+            assertEquals(2500, res.getInt(1));
+            assertEquals(2500 * 2501 / 2, res.getInt(2));
+        } finally {
+            res.close();
+        }
+        stat.execute("DROP TABLE IF EXISTS AREA_LARGE, IMPORT_AREA_LARGE");
+    }
+
+    @Test(expected = SQLException.class)
+    public void exportParallelNullGeometry() throws SQLException, IOException {
+        Statement stat = connection.createStatement();
+        stat.execute("DROP TABLE IF EXISTS PUNCTUAL_NULL");
+        stat.execute("create table punctual_null(idarea int primary key, the_geom POINT)");
+        stat.execute("insert into punctual_null select x, CASEWHEN(x = 2200, null, ST_GeomFromText('POINT(' || x || ' ' || x || ')')) " +
+                "from system_range(1, 2500)");
+        try {
+            stat.execute("CALL SHPWrite('target/punctual_null.shp', 'PUNCTUAL_NULL', null, 2)");
+        } finally {
+            stat.execute("DROP TABLE IF EXISTS PUNCTUAL_NULL");
+        }
+    }
+
+    @Test
+    public void exportImportMetrics() throws Exception {
+        Statement stat = connection.createStatement();
+        stat.execute("DROP TABLE IF EXISTS AREA_METRICS, IMPORT_AREA_METRICS");
+        stat.execute("create table area_metrics(idarea int primary key, the_geom POLYGON)");
+        stat.execute("insert into area_metrics select x, ST_GeomFromText('POLYGON((' || x || ' 0, ' " +
+                "|| (x + 1) || ' 0, ' || (x + 1) || ' 1, ' || x || ' 0))') from system_range(1, 300)");
+        OperationMetrics.setEnabled(true);
+        try {
+            OperationMetrics.reset();
+            stat.execute("CALL SHPWrite('target/area_metrics.shp', 'AREA_METRICS')");
+            stat.execute("CALL SHPRead('target/area_metrics.shp', 'IMPORT_AREA_METRICS')");
+        } finally {
+            OperationMetrics.setEnabled(false);
+        }
+        long fileLength = new File("target/area_metrics.shp").length() + new File("target/area_metrics.shx").length()
+                + new File("target/area_metrics.dbf").length();
+        OperationStatistics export = null;
+        OperationStatistics imported = null;
+        for (OperationStatistics statistics : OperationMetrics.getStatistics()) {
+            if ("SHP export".equals(statistics.getName())) {
+                export = statistics;
+            } else if ("SHP import".equals(statistics.getName())) {
+                imported = statistics;
+            }
+        }
+        assertNotNull(export);
+        assertEquals(1, export.getRunCount());
+        assertEquals(300, export.getRowCount());
+        assertEquals(fileLength, export.getBytesWritten());
+        assertTrue(export.getWriteTime() > 0);
+        assertNotNull(imported);
+        assertEquals(1, imported.getRunCount());
+        assertEquals(300, imported.getRowCount());
+        assertEquals(fileLength, imported.getBytesRead());
+        assertTrue(imported.getGeometryTime() > 0);
+        assertTrue(imported.getElapsedTime() >= imported.getReadTime() + imported.getGeometryTime());
+        // Exported over JMX
+        assertEquals(300L, ManagementFactory.getPlatformMBeanServer().getAttribute(
+                new ObjectName("org.h2gis:type=OperationStatistics,name=\"SHP import\""), "RowCount"));
+        stat.execute("DROP TABLE IF EXISTS AREA_METRICS, IMPORT_AREA_METRICS");
+    }
+
+    private static byte[] readFile(String path) throws IOException {
+        File file = new File(path);
+        byte[] bytes = new byte[(int) file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(bytes);
+        } finally {
+            in.close();
+        }
+        return bytes;
+    }
+
+    /**
+     * The bulk loader drivers are registered in the client JVM, a remote connection uses the batched inserts.
+     */
+    @Test
+    public void importRemoteConnection() throws Exception {
+        assertTrue(BulkLoader.isSupported(connection));
+        Server server = Server.createTcpServer("-tcpPort", "0").start();
+        try {
+            Connection remote = java.sql.DriverManager.getConnection("jdbc:h2:tcp://localhost:" + server.getPort()
+                    + "/mem:" + DB_NAME + "_remote", "sa", "");
+            try {
+                CreateSpatialExtension.initSpatialExtension(remote);
+                assertFalse(BulkLoader.isSupported(remote));
+                File shpFile = new File(SHPImportExportTest.class.getResource("waternetwork.shp").getPath());
+                new SHPDriverFunction().importFile(remote, "WATERNETWORK", shpFile, new EmptyProgressVisitor());
+                new DBFDriverFunction().importFile(remote, "WATERNETWORK_DBF",
+                        new File(SHPImportExportTest.class.getResource("waternetwork.dbf").getPath()),
+                        new EmptyProgressVisitor());
+                Statement st = remote.createStatement();
+                ResultSet rs = st.executeQuery("SELECT COUNT(*), COUNT(THE_GEOM) FROM WATERNETWORK");
+                assertTrue(rs.next());
+                int rowCount = rs.getInt(1);
+                assertTrue(rowCount > 0);
+                assertEquals(rowCount, rs.getInt(2));
+                rs.close();
+                rs = st.executeQuery("SELECT COUNT(*) FROM WATERNETWORK_DBF");
+                assertTrue(rs.next());
+                assertEquals(rowCount, rs.getInt(1));
+                rs.close();
+                st.close();
+            } finally {
+                remote.close();
+            }
+        } finally {
+            server.stop();
+        }
+    }
+
+    @Test(expected = SQLException.class)
+    public void bulkLoadUnknownSource() throws SQLException {
+        Statement st = connection.createStatement();
+        try {
+            st.execute("CREATE LOCAL TEMPORARY TABLE BULK_UNKNOWN(PK BIGINT, A INT) ENGINE \"" +
+                    BulkLoadEngine.class.getName() + "\" WITH \"unknown\"");
+        } finally {
+            st.close();
+        }
+    }
 }
@@ -71,6 +71,7 @@ import org.h2gis.ext.functions.spatial.create.ST_RingBuffer;
 import org.h2gis.ext.functions.spatial.distance.ST_ClosestCoordinate;
 import org.h2gis.ext.functions.spatial.distance.ST_ClosestPoint;
 import org.h2gis.ext.functions.spatial.distance.ST_FurthestCoordinate;
+import org.h2gis.ext.functions.spatial.distance.ST_KNearest;
 import org.h2gis.ext.functions.spatial.distance.ST_LocateAlong;
 import org.h2gis.ext.functions.spatial.distance.ST_LongestLine;
 import org.h2gis.ext.functions.spatial.distance.ST_MaxDistance;
@@ -98,6 +99,7 @@ import org.h2gis.ext.functions.spatial.mesh.ST_Tessellate;
 import org.h2gis.ext.functions.spatial.mesh.ST_Voronoi;
 import org.h2gis.ext.functions.spatial.predicates.ST_Covers;
 import org.h2gis.ext.functions.spatial.predicates.ST_DWithin;
+import org.h2gis.ext.functions.spatial.predicates.ST_SpatialJoin;
 import org.h2gis.ext.functions.spatial.processing.ST_LineIntersector;
 import org.h2gis.ext.functions.spatial.processing.ST_LineMerge;
 import org.h2gis.ext.functions.spatial.processing.ST_OffSetCurve;
@@ -122,6 +124,7 @@ import org.h2gis.ext.functions.spatial.properties.ST_IsValidReason;
 import org.h2gis.ext.functions.spatial.properties.ST_MinimumDiameter;
 import org.h2gis.ext.functions.spatial.properties.ST_NPoints;
 import org.h2gis.ext.functions.spatial.properties.ST_Perimeter;
+import org.h2gis.ext.functions.spatial.properties.ST_TableExtent;
 import org.h2gis.ext.functions.spatial.properties.ST_XMax;
 import org.h2gis.ext.functions.spatial.properties.ST_XMin;
 import org.h2gis.ext.functions.spatial.properties.ST_YMax;
@@ -134,6 +137,7 @@ import org.h2gis.ext.functions.spatial.topography.ST_TriangleDirection;
 import org.h2gis.ext.functions.spatial.topography.ST_TriangleSlope;
 import org.h2gis.ext.functions.spatial.trigonometry.ST_Azimuth;
 import org.h2gis.ext.functions.system.DoubleRange;
+import org.h2gis.ext.functions.system.H2GISMetrics;
 import org.h2gis.ext.functions.system.IntegerRange;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -188,6 +192,7 @@ public class CreateSpatialExtension {
                 new ST_Interpolate3DLine(),
                 new ST_IsRectangle(),
                 new ST_IsValid(),
+                new ST_KNearest(),
                 new ST_LocateAlong(),
                 new ST_MakeEllipse(),
                 new ST_MakeEnvelope(),
@@ -212,6 +217,8 @@ public class CreateSpatialExtension {
                 new ST_SimplifyPreserveTopology(),
                 new ST_Snap(),
                 new ST_Split(),
+                new ST_SpatialJoin(),
+                new ST_TableExtent(),
                 new ST_ToMultiLine(),
                 new ST_ToMultiPoint(),
                 new ST_ToMultiSegments(),
@@ -244,6 +251,7 @@ public class CreateSpatialExtension {
                 new ST_CollectionExtract(),
                 new DoubleRange(),
                 new IntegerRange(),
+                new H2GISMetrics(),
                 new ST_SideBuffer(),
                 new ST_RingSideBuffer(),
                 new ST_SunPosition(),
@@ -21,8 +21,14 @@
 package org.h2gis.ext.functions.spatial.create;
 
 import com.vividsolutions.jts.geom.*;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import com.vividsolutions.jts.index.strtree.STRtree;
 import org.h2.tools.SimpleResultSet;
 import org.h2.tools.SimpleRowSource;
+import org.h2gis.api.OperationMetrics;
+import org.h2gis.api.OperationRecorder;
+import org.h2gis.ext.functions.spatial.properties.TableEnvelope;
 import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.SFSUtilities;
 import org.h2gis.utilities.TableLocation;
@@ -34,23 +40,34 @@ import java.util.List;
  * GridRowSet is used to populate a result set with all grid cells. A cell could
  * be represented as a polygon or its center point.
  *
+ * The cells are computed one by one while the result set is read. When the
+ * coverage filter is enabled, only the cells whose polygon intersects the
+ * input geometry or the geometries of the input table are returned. The ID of
+ * a cell does not depend on the filter.
+ *
  * @author Erwan Bocher
  */
 public class GridRowSet implements SimpleRowSource {
 
     private static final GeometryFactory GF = new GeometryFactory();
-    private static int cellI = 0;
-    private static int cellJ = 0;
+    private int cellI = 0;
+    private int cellJ = 0;
     private int maxI, maxJ;
     private double deltaX, deltaY;
     private double minX, minY;
-    private int id = 0;
     private final Connection connection;
     private boolean firstRow = true;
     private Envelope envelope;
+    private Geometry geometry;
     private boolean isTable;
     private String tableName;
     private boolean isCenterCell = false;
+    private boolean coverageFilter = false;
+    /** Prepared input geometries, used by the coverage filter */
+    private STRtree coverage;
+    /** True if the current row of cells may intersect the input geometries */
+    private boolean rowIntersects;
+    private OperationRecorder recorder = OperationRecorder.DISABLED;
 
     /**
      * The grid will be computed according a table stored in the database
@@ -84,71 +101,174 @@ public class GridRowSet implements SimpleRowSource {
         this.isTable = false;
     }
 
+    /**
+     * The grid will be computed according a geometry
+     *
+     * @param connection
+     * @param deltaX
+     * @param deltaY
+     * @param geometry
+     */
+    public GridRowSet(Connection connection, double deltaX, double deltaY, Geometry geometry) {
+        this(connection, deltaX, deltaY, geometry.getEnvelopeInternal());
+        this.geometry = geometry;
+    }
+
     @Override
     public Object[] readRow() throws SQLException {
         if (firstRow) {
             reset();
         }
-        if (cellI == maxI) {
-            cellJ++;
-            cellI = 0;
-        }
-        if (cellJ >= maxJ) {
-            cellJ = 0;
-            return null;
-        }
-        if (isCenterCell) {
-            return new Object[]{getCellPoint(), id++, cellI, cellJ + 1};
+        while (cellJ < maxJ) {
+            if (cellI == 0 && coverage != null) {
+                rowIntersects = !coverage.query(new Envelope(minX, minX + maxI * deltaX,
+                        minY + cellJ * deltaY, minY + (cellJ + 1) * deltaY)).isEmpty();
+            }
+            if (cellI == maxI || (coverage != null && !rowIntersects)) {
+                cellJ++;
+                cellI = 0;
+                continue;
+            }
+            int i = cellI++;
+            if (coverage != null && !intersectsCoverage(i, cellJ)) {
+                continue;
+            }
+            long geometryTime = recorder.startTimer();
+            Geometry cell = isCenterCell ? getCellPoint(i, cellJ) : getCellPolygon(i, cellJ);
+            recorder.stopTimer(OperationRecorder.Phase.GEOMETRY, geometryTime);
+            recorder.addRows(1);
+            return new Object[]{cell, cellJ * maxI + i, i + 1, cellJ + 1};
         }
-        return new Object[]{getCellPolygon(), id++, cellI, cellJ + 1};
+        recorder.close();
+        return null;
     }
 
     @Override
     public void close() {
+        recorder.close();
     }
 
     @Override
     public void reset() throws SQLException {
+        recorder.close();
+        recorder = OperationMetrics.start(isCenterCell ? "ST_MakeGridPoints" : "ST_MakeGrid");
         cellI = 0;
         cellJ = 0;
         firstRow = false;
+        coverage = null;
         //We compute the extend according the first input value
         if (isTable) {
-            Statement statement = connection.createStatement();
-            ResultSet rs = statement.executeQuery("select ST_Extent(" + getFirstGeometryField(tableName, connection) + ")  from " + tableName);
-            try {
-                rs.next();
-                Geometry geomExtend = (Geometry) rs.getObject(1);
-                if (geomExtend == null) {
-                    throw new SQLException("The envelope cannot be null.");
-                } else {
-                    envelope = geomExtend.getEnvelopeInternal();
-                    initParameters();
-                }
-
-            } finally {
-                rs.close();
+            long readTime = recorder.startTimer();
+            if (coverageFilter) {
+                envelope = readTableCoverage();
+            } else {
+                envelope = TableEnvelope.getEnvelope(connection, TableLocation.parse(tableName,
+                        JDBCUtilities.isH2DataBase(connection.getMetaData())), null);
+            }
+            recorder.stopTimer(OperationRecorder.Phase.READ, readTime);
+            if (envelope == null) {
+                throw new SQLException("The envelope cannot be null.");
+            } else {
+                initParameters();
             }
         } else {
             if (envelope == null) {
                 throw new SQLException("The input geometry used to compute the grid cannot be null.");
             } else {
+                if (coverageFilter) {
+                    if (geometry == null) {
+                        throw new SQLException("The coverage filter requires an input geometry.");
+                    }
+                    coverage = new STRtree();
+                    addToCoverage(geometry);
+                }
                 initParameters();
             }
         }
     }
 
+    /**
+     * Read the geometries of the input table into the coverage index.
+     *
+     * @return The envelope of the table geometries, null if the table does not
+     * contain any geometry
+     * @throws SQLException
+     */
+    private Envelope readTableCoverage() throws SQLException {
+        TableLocation location = TableLocation.parse(tableName, JDBCUtilities.isH2DataBase(connection.getMetaData()));
+        List<String> geometryFields = SFSUtilities.getGeometryFields(connection, location);
+        if (geometryFields.isEmpty()) {
+            throw new SQLException("The table " + location + " does not contain a Geometry field");
+        }
+        coverage = new STRtree();
+        Envelope tableEnvelope = new Envelope();
+        Statement st = connection.createStatement();
+        try {
+            ResultSet rs = st.executeQuery("SELECT " + TableLocation.quoteIdentifier(geometryFields.get(0)) +
+                    " FROM " + location);
+            try {
+                while (rs.next()) {
+                    Geometry geom = (Geometry) rs.getObject(1);
+                    if (geom != null) {
+                        tableEnvelope.expandToInclude(geom.getEnvelopeInternal());
+                        addToCoverage(geom);
+                    }
+                }
+            } finally {
+                rs.close();
+            }
+        } finally {
+            st.close();
+        }
+        return tableEnvelope.isNull() ? null : tableEnvelope;
+    }
+
+    /**
+     * Add the parts of a geometry to the coverage index, a part that covers a
+     * small area does not select the cells of the other parts.
+     *
+     * @param geom Input geometry
+     */
+    private void addToCoverage(Geometry geom) {
+        for (int i = 0; i < geom.getNumGeometries(); i++) {
+            Geometry part = geom.getGeometryN(i);
+            if (!part.isEmpty()) {
+                coverage.insert(part.getEnvelopeInternal(), PreparedGeometryFactory.prepare(part));
+            }
+        }
+    }
+
+    /**
+     * @return True if the polygon of the cell intersects an input geometry
+     */
+    private boolean intersectsCoverage(int i, int j) {
+        Polygon cellPolygon = null;
+        for (Object item : coverage.query(getCellEnvelope(i, j))) {
+            if (cellPolygon == null) {
+                cellPolygon = getCellPolygon(i, j);
+            }
+            if (((PreparedGeometry) item).intersects(cellPolygon)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Envelope getCellEnvelope(int i, int j) {
+        return new Envelope(minX + i * deltaX, minX + (i + 1) * deltaX, minY + j * deltaY, minY + (j + 1) * deltaY);
+    }
+
     /**
      * Compute the polygon corresponding to the cell
      *
      * @return Polygon of the cell
      */
-    private Polygon getCellPolygon() {
+    private Polygon getCellPolygon(int i, int j) {
         final Coordinate[] summits = new Coordinate[5];
-        double x1 = minX + cellI * deltaX;
-        double y1 = minY + cellJ * deltaY;
-        double x2 = minX + (cellI + 1) * deltaX;
-        double y2 = minY + (cellJ + 1) * deltaY;
+        double x1 = minX + i * deltaX;
+        double y1 = minY + j * deltaY;
+        double x2 = minX + (i + 1) * deltaX;
+        double y2 = minY + (j + 1) * deltaY;
         summits[0] = new Coordinate(x1, y1);
         summits[1] = new Coordinate(x2, y1);
         summits[2] = new Coordinate(x2, y2);
@@ -156,7 +276,6 @@ public class GridRowSet implements SimpleRowSource {
         summits[4] = new Coordinate(x1, y1);
         final LinearRing g = GF.createLinearRing(summits);
         final Polygon gg = GF.createPolygon(g, null);
-        cellI++;
         return gg;
     }
 
@@ -165,10 +284,9 @@ public class GridRowSet implements SimpleRowSource {
      *
      * @return Center point of the cell
      */
-    private Point getCellPoint() {
-        double x1 = (minX + cellI * deltaX) + (deltaX / 2d);
-        double y1 = (minY + cellJ * deltaY) + (deltaY / 2d);
-        cellI++;
+    private Point getCellPoint(int i, int j) {
+        double x1 = (minX + i * deltaX) + (deltaX / 2d);
+        double y1 = (minY + j * deltaY) + (deltaY / 2d);
         return GF.createPoint(new Coordinate(x1, y1));
     }
 
@@ -191,21 +309,24 @@ public class GridRowSet implements SimpleRowSource {
     }
 
     /**
-     * Return the first spatial geometry field name
+     * Return true if only the cells that intersect the input geometries are
+     * returned
      *
-     * @param tableName
-     * @param connection
-     * @return the name of the first geometry column
-     * @throws SQLException
+     * @return
      */
-    private static String getFirstGeometryField(String tableName, Connection connection) throws SQLException {
-        // Find first geometry column
-        List<String> geomFields = SFSUtilities.getGeometryFields(connection, TableLocation.parse(tableName, JDBCUtilities.isH2DataBase(connection.getMetaData())));
-        if (!geomFields.isEmpty()) {
-            return geomFields.get(0);
-        } else {
-            throw new SQLException("The table " + tableName + " does not contain a geometry field");
-        }
+    public boolean isCoverageFilter() {
+        return coverageFilter;
+    }
+
+    /**
+     * Set if only the cells that intersect the input geometries must be
+     * returned. The input geometries are the geometry given to the constructor
+     * or the geometries of the input table.
+     *
+     * @param coverageFilter
+     */
+    public void setCoverageFilter(boolean coverageFilter) {
+        this.coverageFilter = coverageFilter;
     }
 
     /**
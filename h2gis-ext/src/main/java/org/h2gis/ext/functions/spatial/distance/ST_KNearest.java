@@ -0,0 +1,279 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.ext.functions.spatial.distance;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import com.vividsolutions.jts.index.strtree.AbstractNode;
+import com.vividsolutions.jts.index.strtree.Boundable;
+import com.vividsolutions.jts.index.strtree.ItemBoundable;
+import org.h2.tools.SimpleResultSet;
+import org.h2gis.api.AbstractFunction;
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.ext.functions.spatial.predicates.IndexedJoin.BatchRowSource;
+import org.h2gis.ext.functions.spatial.predicates.IndexedJoin.IndexedInput;
+import org.h2gis.ext.functions.spatial.predicates.IndexedJoin.Input;
+import org.h2gis.ext.functions.spatial.properties.TableEnvelope;
+import org.h2gis.utilities.TableLocation;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+
+/**
+ * Table function that returns, for every row of a first table, the k rows of a second table that have the nearest
+ * geometries.
+ *
+ * The geometries of the second input are loaded in memory into a bulk-loaded STRtree, which is traversed best-first:
+ * the nodes and the rows are visited by increasing distance of their envelopes, and the exact distance of a row is
+ * computed only when its envelope is the nearest remaining one. With a maximum distance, when both inputs are
+ * tables, only the rows of the second table within this distance of the extent of the first table are loaded, they
+ * are found with the spatial index of the second table if it has one.
+ *
+ * The rows of the first input are read by batches, every batch is searched on a pool of threads while the next
+ * batches are read. The neighbours are returned in the order of the first input, then by increasing distance.
+ *
+ * An input is a table name or a SELECT query. The key of a table is its integer primary key, or the _ROWID_ if it
+ * does not have one. The first column of a query is the key.
+ */
+public class ST_KNearest extends AbstractFunction implements ScalarFunction {
+    /** Number of rows of the first input searched by a task */
+    private static final int BATCH_SIZE = 512;
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+    public ST_KNearest() {
+        addProperty(PROP_REMARKS, "Return for every row of a first table the k nearest rows of a second table,\n" +
+                "as the columns ID_A, ID_B, DISTANCE and RANK. An optional maximum distance excludes the farther\n" +
+                "rows. The inputs are table names or select queries that return the key as the first column.\n" +
+                "The second input is loaded in memory.\n" +
+                "SELECT * FROM ST_KNearest('addresses', 'hydrants', 5[, maxDistance])");
+        addProperty(PROP_NOBUFFER, true);
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "kNearest";
+    }
+
+    /**
+     * Find the k nearest rows of the second input for every row of the first input.
+     *
+     * @param connection Active connection
+     * @param inputA Name of the first table or SELECT query
+     * @param inputB Name of the second table or SELECT query, loaded in memory
+     * @param k Maximum number of neighbours of a row of the first input
+     * @return A result set of ID_A, ID_B, DISTANCE, RANK
+     * @throws SQLException
+     */
+    public static ResultSet kNearest(Connection connection, String inputA, String inputB, int k)
+            throws SQLException {
+        return kNearest(connection, inputA, inputB, k, Double.POSITIVE_INFINITY);
+    }
+
+    /**
+     * Find the k nearest rows of the second input within a maximum distance for every row of the first input.
+     *
+     * @param connection Active connection
+     * @param inputA Name of the first table or SELECT query
+     * @param inputB Name of the second table or SELECT query, loaded in memory
+     * @param k Maximum number of neighbours of a row of the first input
+     * @param maxDistance Maximum distance between the geometries of a row and of its neighbours
+     * @return A result set of ID_A, ID_B, DISTANCE, RANK
+     * @throws SQLException
+     */
+    public static ResultSet kNearest(Connection connection, String inputA, String inputB, int k,
+                                     double maxDistance) throws SQLException {
+        if (inputA == null || inputB == null) {
+            return null;
+        }
+        if (k <= 0) {
+            throw new SQLException("The number of neighbours must be greater than 0");
+        }
+        if (maxDistance < 0 || Double.isNaN(maxDistance)) {
+            throw new SQLException("The maximum distance must be positive");
+        }
+        KNearestRowSource rowSource = new KNearestRowSource(connection, inputA, inputB, k, maxDistance);
+        SimpleResultSet rs = new SimpleResultSet(rowSource);
+        rs.addColumn("ID_A", Types.BIGINT, 19, 0);
+        rs.addColumn("ID_B", Types.BIGINT, 19, 0);
+        rs.addColumn("DISTANCE", Types.DOUBLE, 17, 0);
+        rs.addColumn("RANK", Types.INTEGER, 10, 0);
+        return rs;
+    }
+
+    /**
+     * A node or a row of the STRtree, ordered by its distance to the searched geometry
+     */
+    private static class Candidate implements Comparable<Candidate> {
+        private final Boundable boundable;
+        private final double distance;
+        /** True if the distance is the exact distance of a row, false if it is the distance of the envelope */
+        private final boolean exact;
+
+        private Candidate(Boundable boundable, double distance, boolean exact) {
+            this.boundable = boundable;
+            this.distance = distance;
+            this.exact = exact;
+        }
+
+        @Override
+        public int compareTo(Candidate other) {
+            int cmp = Double.compare(distance, other.distance);
+            if (cmp == 0 && exact != other.exact) {
+                // Return the rows before exploring the nodes at the same distance
+                return exact ? -1 : 1;
+            }
+            return cmp;
+        }
+    }
+
+    /**
+     * Search the neighbours of a batch of rows of the first input
+     */
+    private static class SearchTask implements Callable<List<Object[]>> {
+        private final IndexedInput indexedInput;
+        private final int k;
+        private final double maxDistance;
+        private final long[] keys;
+        private final Geometry[] geometries;
+
+        private SearchTask(IndexedInput indexedInput, int k, double maxDistance, long[] keys,
+                           Geometry[] geometries) {
+            this.indexedInput = indexedInput;
+            this.k = k;
+            this.maxDistance = maxDistance;
+            this.keys = keys;
+            this.geometries = geometries;
+        }
+
+        @Override
+        public List<Object[]> call() throws Exception {
+            List<Object[]> rows = new ArrayList<Object[]>(keys.length * Math.min(k, 8));
+            AbstractNode root = indexedInput.getTree().getRoot();
+            if (root.isEmpty()) {
+                return rows;
+            }
+            PriorityQueue<Candidate> queue = new PriorityQueue<Candidate>();
+            for (int i = 0; i < keys.length; i++) {
+                Geometry geometry = geometries[i];
+                Envelope envelope = geometry.getEnvelopeInternal();
+                queue.clear();
+                queue.add(new Candidate(root, envelope.distance((Envelope) root.getBounds()), false));
+                int rank = 0;
+                while (rank < k && !queue.isEmpty()) {
+                    Candidate candidate = queue.poll();
+                    if (candidate.boundable instanceof AbstractNode) {
+                        for (Object child : ((AbstractNode) candidate.boundable).getChildBoundables()) {
+                            Boundable boundable = (Boundable) child;
+                            double distance = envelope.distance((Envelope) boundable.getBounds());
+                            if (distance <= maxDistance) {
+                                queue.add(new Candidate(boundable, distance, false));
+                            }
+                        }
+                    } else {
+                        int index = (Integer) ((ItemBoundable) candidate.boundable).getItem();
+                        if (candidate.exact) {
+                            rank++;
+                            rows.add(new Object[]{keys[i], indexedInput.getKey(index), candidate.distance, rank});
+                        } else {
+                            // The exact distance is not less than the distance of the envelopes
+                            double distance = geometry.distance(indexedInput.getGeometry(index));
+                            if (distance <= maxDistance) {
+                                queue.add(new Candidate(candidate.boundable, distance, true));
+                            }
+                        }
+                    }
+                }
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * Read the first input by batches and return the neighbours
+     */
+    private static class KNearestRowSource extends BatchRowSource<List<Object[]>> {
+        private final int k;
+        private final double maxDistance;
+
+        private KNearestRowSource(Connection connection, String inputA, String inputB, int k,
+                                  double maxDistance) {
+            super(connection, "ST_KNearest", inputA, inputB, BATCH_SIZE);
+            this.k = k;
+            this.maxDistance = maxDistance;
+        }
+
+        @Override
+        protected IndexedInput readIndexedInput(Input a, Input b) throws SQLException {
+            Envelope filter = null;
+            if (a.getLocation() != null && b.getLocation() != null && !Double.isInfinite(maxDistance)) {
+                filter = TableEnvelope.getEnvelope(connection, a.getLocation(), a.getGeometryField());
+                if (filter == null) {
+                    // The first table does not contain any geometry
+                    return IndexedInput.empty();
+                }
+                filter.expandBy(maxDistance);
+            }
+            Statement st;
+            ResultSet rs;
+            if (filter == null) {
+                st = connection.createStatement();
+                rs = st.executeQuery(b.getQuery());
+            } else {
+                PreparedStatement pst = connection.prepareStatement(b.getQuery() + " WHERE " +
+                        TableLocation.quoteIdentifier(b.getGeometryField()) + " && ?");
+                pst.setObject(1, GEOMETRY_FACTORY.toGeometry(filter));
+                st = pst;
+                rs = pst.executeQuery();
+            }
+            try {
+                return IndexedInput.read(b, rs);
+            } finally {
+                rs.close();
+                st.close();
+            }
+        }
+
+        @Override
+        protected Callable<List<Object[]>> createTask(IndexedInput indexedInput, long[] keys,
+                                                      Geometry[] geometries) {
+            return new SearchTask(indexedInput, k, maxDistance, keys, geometries);
+        }
+
+        @Override
+        protected int getRowCount(List<Object[]> rows) {
+            return rows.size();
+        }
+
+        @Override
+        protected Object[] getRow(List<Object[]> rows, int index) {
+            return rows.get(index);
+        }
+    }
+}
@@ -0,0 +1,415 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+
+package org.h2gis.ext.functions.spatial.predicates;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.index.strtree.STRtree;
+import org.h2.tools.SimpleRowSource;
+import org.h2gis.api.OperationMetrics;
+import org.h2gis.api.OperationRecorder;
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.SFSUtilities;
+import org.h2gis.utilities.TableLocation;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.regex.Pattern;
+
+/**
+ * Common plumbing of the table functions that join the rows of a first input with the rows of a second input loaded
+ * in memory, such as {@link ST_SpatialJoin} and ST_KNearest.
+ *
+ * An input is a table name or a SELECT query. The key of a table is its integer primary key, or the _ROWID_ if it
+ * does not have one. The first column of a query is the key.
+ */
+public class IndexedJoin {
+    private static final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+    /** Maximum number of batches waiting for a thread */
+    private static final int MAX_PENDING = THREAD_COUNT * 2;
+    /** Start of a SELECT query, of a WITH query or of a query between parentheses */
+    private static final Pattern QUERY_PATTERN = Pattern.compile("\\s*(\\(|(SELECT|WITH)\\b)",
+            Pattern.CASE_INSENSITIVE);
+    private static ExecutorService executor;
+
+    private IndexedJoin() {
+    }
+
+    /**
+     * @return The pool of threads shared by the join functions
+     */
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+                private final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = defaultFactory.newThread(r);
+                    thread.setName("H2GIS-Join-" + thread.getName());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * A table or a SELECT query that returns the key then a geometry
+     */
+    public static class Input {
+        private final String input;
+        /** Null if the input is a query */
+        private final TableLocation location;
+        private final String geometryField;
+        private final String key;
+
+        /**
+         * @param connection Active connection
+         * @param input Table name or query
+         * @throws SQLException If the table does not contain a geometry field
+         */
+        public Input(Connection connection, String input) throws SQLException {
+            this.input = input;
+            if (QUERY_PATTERN.matcher(input).lookingAt()) {
+                location = null;
+                geometryField = null;
+                key = null;
+                return;
+            }
+            location = TableLocation.parse(input, JDBCUtilities.isH2DataBase(connection.getMetaData()));
+            List<String> geometryFields = SFSUtilities.getGeometryFields(connection, location);
+            if (geometryFields.isEmpty()) {
+                throw new SQLException("The table " + location + " does not contain a geometry field");
+            }
+            geometryField = geometryFields.get(0);
+            int pkIndex = JDBCUtilities.getIntegerPrimaryKey(connection, location.toString());
+            key = pkIndex > 0 ? TableLocation.quoteIdentifier(JDBCUtilities.getFieldName(connection.getMetaData(),
+                    location.toString(), pkIndex)) : "_ROWID_";
+        }
+
+        /**
+         * @return The table, null if the input is a query
+         */
+        public TableLocation getLocation() {
+            return location;
+        }
+
+        /**
+         * @return The geometry field of the table, null if the input is a query
+         */
+        public String getGeometryField() {
+            return geometryField;
+        }
+
+        /**
+         * @return A query that returns the key then the geometry
+         */
+        public String getQuery() {
+            if (location == null) {
+                return input;
+            }
+            return "SELECT " + key + ", " + TableLocation.quoteIdentifier(geometryField) + " FROM " + location;
+        }
+
+        /**
+         * @param metaData Metadata of the input query
+         * @return Index of the first geometry column after the key
+         * @throws SQLException If the query does not return a geometry after the key
+         */
+        public int getGeometryIndex(ResultSetMetaData metaData) throws SQLException {
+            for (int i = 2; i <= metaData.getColumnCount(); i++) {
+                if ("GEOMETRY".equalsIgnoreCase(metaData.getColumnTypeName(i))) {
+                    return i;
+                }
+            }
+            throw new SQLException("The input " + input + " does not contain a geometry field after the key");
+        }
+    }
+
+    /**
+     * Rows of the second input, indexed by their envelope. The items of the tree are the indexes of the rows.
+     */
+    public static class IndexedInput {
+        private final STRtree tree = new STRtree();
+        private long[] keys = new long[1024];
+        private Geometry[] geometries = new Geometry[1024];
+        private int size = 0;
+
+        /**
+         * Load the rows of an input, the tree is built and can be read by several threads.
+         *
+         * @param input Input of the rows
+         * @param rs Result of the query of the input
+         * @return The indexed rows
+         * @throws SQLException
+         */
+        public static IndexedInput read(Input input, ResultSet rs) throws SQLException {
+            IndexedInput indexed = new IndexedInput();
+            int geometryIndex = input.getGeometryIndex(rs.getMetaData());
+            while (rs.next()) {
+                Geometry geometry = (Geometry) rs.getObject(geometryIndex);
+                if (geometry != null && !geometry.isEmpty()) {
+                    indexed.add(rs.getLong(1), geometry);
+                }
+            }
+            // The tree is read by several threads, it must be built before
+            indexed.tree.build();
+            return indexed;
+        }
+
+        /**
+         * @return An empty built tree
+         */
+        public static IndexedInput empty() {
+            IndexedInput indexed = new IndexedInput();
+            indexed.tree.build();
+            return indexed;
+        }
+
+        private void add(long key, Geometry geometry) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, size * 2);
+                geometries = Arrays.copyOf(geometries, size * 2);
+            }
+            keys[size] = key;
+            geometries[size] = geometry;
+            tree.insert(geometry.getEnvelopeInternal(), size);
+            size++;
+        }
+
+        /**
+         * @return The tree of the row indexes
+         */
+        public STRtree getTree() {
+            return tree;
+        }
+
+        /**
+         * @param index Row index
+         * @return The key of the row
+         */
+        public long getKey(int index) {
+            return keys[index];
+        }
+
+        /**
+         * @param index Row index
+         * @return The geometry of the row
+         */
+        public Geometry getGeometry(int index) {
+            return geometries[index];
+        }
+    }
+
+    /**
+     * Read the first input by batches, process every batch on the shared pool of threads while the next batches are
+     * read, and return the rows of the batches in the order of the first input.
+     *
+     * @param <B> Result of the processing of a batch
+     */
+    public abstract static class BatchRowSource<B> implements SimpleRowSource {
+        protected final Connection connection;
+        private final String operation;
+        private final String inputA;
+        private final String inputB;
+        private final int batchSize;
+        private boolean firstRow = true;
+        private OperationRecorder recorder = OperationRecorder.DISABLED;
+        private IndexedInput indexedInput;
+        private Statement statementA;
+        private ResultSet rowsA;
+        private int geometryIndexA;
+        private ArrayDeque<Future<B>> pending = new ArrayDeque<Future<B>>();
+        private B batch;
+        private int rowIndex = 0;
+
+        /**
+         * @param connection Active connection
+         * @param operation Name of the operation in the metrics
+         * @param inputA Name of the first table or SELECT query
+         * @param inputB Name of the second table or SELECT query, loaded in memory
+         * @param batchSize Number of rows of the first input processed by a task
+         */
+        protected BatchRowSource(Connection connection, String operation, String inputA, String inputB,
+                                 int batchSize) {
+            this.connection = connection;
+            this.operation = operation;
+            this.inputA = inputA;
+            this.inputB = inputB;
+            this.batchSize = batchSize;
+        }
+
+        /**
+         * Load the second input in memory.
+         *
+         * @param a First input
+         * @param b Second input
+         * @return The indexed rows of the second input
+         * @throws SQLException
+         */
+        protected abstract IndexedInput readIndexedInput(Input a, Input b) throws SQLException;
+
+        /**
+         * @param indexedInput Rows of the second input
+         * @param keys Keys of a batch of rows of the first input
+         * @param geometries Geometries of the rows, not null nor empty
+         * @return The task that processes the batch
+         */
+        protected abstract Callable<B> createTask(IndexedInput indexedInput, long[] keys, Geometry[] geometries);
+
+        /**
+         * @param batch Result of a task
+         * @return Number of rows of the result
+         */
+        protected abstract int getRowCount(B batch);
+
+        /**
+         * @param batch Result of a task
+         * @param index Index of the row in [0-getRowCount]
+         * @return The row
+         */
+        protected abstract Object[] getRow(B batch, int index);
+
+        @Override
+        public Object[] readRow() throws SQLException {
+            if (firstRow) {
+                reset();
+            }
+            while (batch == null || rowIndex >= getRowCount(batch)) {
+                if (pending.isEmpty()) {
+                    recorder.close();
+                    return null;
+                }
+                batch = next();
+                rowIndex = 0;
+                submitBatches();
+            }
+            recorder.addRows(1);
+            return getRow(batch, rowIndex++);
+        }
+
+        /**
+         * Wait for the next batch in the order of the first input.
+         */
+        private B next() throws SQLException {
+            Future<B> future = pending.poll();
+            try {
+                return future.get();
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+                throw new SQLException("Interrupted while running " + operation, ex);
+            } catch (ExecutionException ex) {
+                Throwable cause = ex.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                }
+                throw new SQLException(cause.getLocalizedMessage(), cause);
+            }
+        }
+
+        /**
+         * Read the next batches of the first input until the window of pending batches is full.
+         */
+        private void submitBatches() throws SQLException {
+            while (rowsA != null && pending.size() < MAX_PENDING) {
+                long readTime = recorder.startTimer();
+                long[] keys = new long[batchSize];
+                Geometry[] geometries = new Geometry[batchSize];
+                int size = 0;
+                while (size < batchSize && rowsA.next()) {
+                    Geometry geometry = (Geometry) rowsA.getObject(geometryIndexA);
+                    if (geometry != null && !geometry.isEmpty()) {
+                        keys[size] = rowsA.getLong(1);
+                        geometries[size] = geometry;
+                        size++;
+                    }
+                }
+                if (size < batchSize) {
+                    closeInputA();
+                }
+                recorder.stopTimer(OperationRecorder.Phase.READ, readTime);
+                if (size > 0) {
+                    pending.add(getExecutor().submit(createTask(indexedInput,
+                            Arrays.copyOf(keys, size), Arrays.copyOf(geometries, size))));
+                }
+            }
+        }
+
+        @Override
+        public void close() {
+            for (Future<B> future : pending) {
+                future.cancel(false);
+            }
+            pending.clear();
+            // Record the rows read by a query that did not read all of them
+            recorder.close();
+            try {
+                closeInputA();
+            } catch (SQLException ex) {
+                throw new RuntimeException(ex);
+            }
+        }
+
+        private void closeInputA() throws SQLException {
+            if (rowsA != null) {
+                rowsA.close();
+                rowsA = null;
+            }
+            if (statementA != null) {
+                statementA.close();
+                statementA = null;
+            }
+        }
+
+        @Override
+        public void reset() throws SQLException {
+            close();
+            firstRow = false;
+            batch = null;
+            rowIndex = 0;
+            recorder = OperationMetrics.start(operation);
+            Input a = new Input(connection, inputA);
+            if (indexedInput == null) {
+                long readTime = recorder.startTimer();
+                indexedInput = readIndexedInput(a, new Input(connection, inputB));
+                recorder.stopTimer(OperationRecorder.Phase.READ, readTime);
+            }
+            statementA = connection.createStatement();
+            rowsA = statementA.executeQuery(a.getQuery());
+            geometryIndexA = a.getGeometryIndex(rowsA.getMetaData());
+            submitBatches();
+        }
+    }
+}
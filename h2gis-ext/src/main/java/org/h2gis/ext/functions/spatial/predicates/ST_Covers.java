@@ -21,7 +21,11 @@
 package org.h2gis.ext.functions.spatial.predicates;
 
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import org.h2.value.Value;
+import org.h2.value.ValueGeometry;
 import org.h2gis.api.DeterministicScalarFunction;
+import org.h2gis.sfs.functions.spatial.predicates.PreparedGeometryCache;
 
 /**
  * ST_Covers returns true if no point in geometry B is outside geometry A.
@@ -37,7 +41,7 @@ public class ST_Covers extends DeterministicScalarFunction {
 
     @Override
     public String getJavaStaticMethod() {
-        return "covers";
+        return "isCovers";
     }
 
     /**
@@ -53,4 +57,24 @@ public class ST_Covers extends DeterministicScalarFunction {
         }
         return geomA.covers(geomB);
     }
+
+    /**
+     * Evaluate the predicate, a geometry A given for several rows is prepared.
+     *
+     * @param geomA Geometry A
+     * @param geomB Geometry B
+     * @return True if no point in geometry B is outside geometry A
+     */
+    public static Boolean isCovers(Value geomA, Value geomB) {
+        ValueGeometry a = PreparedGeometryCache.toGeometryValue(geomA);
+        ValueGeometry b = PreparedGeometryCache.toGeometryValue(geomB);
+        if(a == null||b == null){
+            return null;
+        }
+        PreparedGeometry prepared = PreparedGeometryCache.getInstance().getPrepared(a);
+        if(prepared != null) {
+            return prepared.covers(b.getGeometryNoCopy());
+        }
+        return a.getGeometryNoCopy().covers(b.getGeometryNoCopy());
+    }
 }
@@ -21,7 +21,11 @@
 package org.h2gis.ext.functions.spatial.predicates;
 
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import org.h2.value.Value;
+import org.h2.value.ValueGeometry;
 import org.h2gis.api.DeterministicScalarFunction;
+import org.h2gis.sfs.functions.spatial.predicates.PreparedGeometryCache;
 
 /**
  * ST_DWithin returns true if the geometries are within the specified distance of one another.
@@ -38,7 +42,7 @@ public class ST_DWithin extends DeterministicScalarFunction {
 
     @Override
     public String getJavaStaticMethod() {
-        return "isWithinDistance";
+        return "withinDistance";
     }
 
     /**
@@ -55,4 +59,35 @@ public class ST_DWithin extends DeterministicScalarFunction {
         }
         return geomA.isWithinDistance(geomB, distance);
     }
+
+    /**
+     * Evaluate the predicate, a geometry given for several rows is prepared. The geometries are within any
+     * distance if they intersect, the distance is computed otherwise.
+     *
+     * @param geomA Geometry A
+     * @param geomB Geometry B
+     * @param distance Distance
+     * @return True if if the geometries are within the specified distance of one another
+     */
+    public static Boolean withinDistance(Value geomA, Value geomB, Double distance) {
+        ValueGeometry a = PreparedGeometryCache.toGeometryValue(geomA);
+        ValueGeometry b = PreparedGeometryCache.toGeometryValue(geomB);
+        if(a == null||b == null){
+            return null;
+        }
+        Geometry geometryA = a.getGeometryNoCopy();
+        Geometry geometryB = b.getGeometryNoCopy();
+        if(distance >= 0 && geometryA.getEnvelopeInternal().distance(geometryB.getEnvelopeInternal()) <= distance) {
+            PreparedGeometryCache cache = PreparedGeometryCache.getInstance();
+            PreparedGeometry prepared = cache.getPrepared(a);
+            if(prepared != null && prepared.intersects(geometryB)) {
+                return true;
+            }
+            prepared = prepared == null ? cache.getPrepared(b) : null;
+            if(prepared != null && prepared.intersects(geometryA)) {
+                return true;
+            }
+        }
+        return geometryA.isWithinDistance(geometryB, distance);
+    }
 }
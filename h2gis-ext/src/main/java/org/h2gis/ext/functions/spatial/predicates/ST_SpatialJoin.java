@@ -0,0 +1,244 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.ext.functions.spatial.predicates;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import org.h2.tools.SimpleResultSet;
+import org.h2gis.api.AbstractFunction;
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.ext.functions.spatial.predicates.IndexedJoin.BatchRowSource;
+import org.h2gis.ext.functions.spatial.predicates.IndexedJoin.IndexedInput;
+import org.h2gis.ext.functions.spatial.predicates.IndexedJoin.Input;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+
+/**
+ * Table function that returns the keys of the pairs of rows of two tables whose geometries satisfy a spatial
+ * predicate.
+ *
+ * The geometries of the second input are loaded in memory into a bulk-loaded STRtree. The rows of the first input
+ * are read by batches, every batch is joined on a pool of threads while the next batches are read. The pairs are
+ * returned in the order of the first input. Use the smallest table as the second input.
+ *
+ * An input is a table name or a SELECT query. The key of a table is its integer primary key, or the _ROWID_ if it
+ * does not have one. The first column of a query is the key.
+ */
+public class ST_SpatialJoin extends AbstractFunction implements ScalarFunction {
+    /** Number of rows of the first input joined by a task */
+    private static final int BATCH_SIZE = 1024;
+
+    public ST_SpatialJoin() {
+        addProperty(PROP_REMARKS, "Return the keys ID_A, ID_B of the rows of two tables whose geometries satisfy\n" +
+                "a spatial predicate. The predicate is one of INTERSECTS, CONTAINS, WITHIN, COVERS, COVEREDBY,\n" +
+                "TOUCHES, CROSSES, OVERLAPS. The inputs are table names or select queries that return the key\n" +
+                "as the first column. The second input is loaded in memory.\n" +
+                "SELECT * FROM ST_SpatialJoin('tableA', 'tableB', 'INTERSECTS')");
+        addProperty(PROP_NOBUFFER, true);
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "spatialJoin";
+    }
+
+    /**
+     * Join two tables on a spatial predicate.
+     *
+     * @param connection Active connection
+     * @param inputA Name of the first table or SELECT query
+     * @param inputB Name of the second table or SELECT query, loaded in memory
+     * @param predicateName Predicate evaluated as predicate(A, B)
+     * @return A result set of the keys ID_A, ID_B
+     * @throws SQLException
+     */
+    public static ResultSet spatialJoin(Connection connection, String inputA, String inputB, String predicateName)
+            throws SQLException {
+        if (inputA == null || inputB == null || predicateName == null) {
+            return null;
+        }
+        Predicate predicate;
+        try {
+            predicate = Predicate.valueOf(predicateName.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException ex) {
+            throw new SQLException("Unsupported predicate " + predicateName + ", expected one of " +
+                    Arrays.toString(Predicate.values()));
+        }
+        SpatialJoinRowSource rowSource = new SpatialJoinRowSource(connection, inputA, inputB, predicate);
+        SimpleResultSet rs = new SimpleResultSet(rowSource);
+        rs.addColumn("ID_A", Types.BIGINT, 19, 0);
+        rs.addColumn("ID_B", Types.BIGINT, 19, 0);
+        return rs;
+    }
+
+    /**
+     * Supported predicates, all of them are false when the envelopes do not intersect.
+     */
+    private enum Predicate {
+        INTERSECTS {
+            @Override
+            boolean test(PreparedGeometry a, Geometry b) {
+                return a.intersects(b);
+            }
+        },
+        CONTAINS {
+            @Override
+            boolean test(PreparedGeometry a, Geometry b) {
+                return a.contains(b);
+            }
+        },
+        WITHIN {
+            @Override
+            boolean test(PreparedGeometry a, Geometry b) {
+                return a.within(b);
+            }
+        },
+        COVERS {
+            @Override
+            boolean test(PreparedGeometry a, Geometry b) {
+                return a.covers(b);
+            }
+        },
+        COVEREDBY {
+            @Override
+            boolean test(PreparedGeometry a, Geometry b) {
+                return a.coveredBy(b);
+            }
+        },
+        TOUCHES {
+            @Override
+            boolean test(PreparedGeometry a, Geometry b) {
+                return a.touches(b);
+            }
+        },
+        CROSSES {
+            @Override
+            boolean test(PreparedGeometry a, Geometry b) {
+                return a.crosses(b);
+            }
+        },
+        OVERLAPS {
+            @Override
+            boolean test(PreparedGeometry a, Geometry b) {
+                return a.overlaps(b);
+            }
+        };
+
+        abstract boolean test(PreparedGeometry a, Geometry b);
+    }
+
+    /**
+     * Join a batch of rows of the first input
+     */
+    private static class JoinTask implements Callable<long[]> {
+        private final IndexedInput indexedInput;
+        private final Predicate predicate;
+        private final long[] keys;
+        private final Geometry[] geometries;
+
+        private JoinTask(IndexedInput indexedInput, Predicate predicate, long[] keys, Geometry[] geometries) {
+            this.indexedInput = indexedInput;
+            this.predicate = predicate;
+            this.keys = keys;
+            this.geometries = geometries;
+        }
+
+        /**
+         * @return The pairs of keys, A then B
+         */
+        @Override
+        public long[] call() throws Exception {
+            long[] pairs = new long[BATCH_SIZE * 2];
+            int size = 0;
+            for (int i = 0; i < keys.length; i++) {
+                Envelope envelope = geometries[i].getEnvelopeInternal();
+                List candidates = indexedInput.getTree().query(envelope);
+                if (candidates.isEmpty()) {
+                    continue;
+                }
+                PreparedGeometry prepared = PreparedGeometryFactory.prepare(geometries[i]);
+                for (Object candidate : candidates) {
+                    int index = (Integer) candidate;
+                    if (predicate.test(prepared, indexedInput.getGeometry(index))) {
+                        if (size == pairs.length) {
+                            pairs = Arrays.copyOf(pairs, size * 2);
+                        }
+                        pairs[size++] = keys[i];
+                        pairs[size++] = indexedInput.getKey(index);
+                    }
+                }
+            }
+            return Arrays.copyOf(pairs, size);
+        }
+    }
+
+    /**
+     * Read the first input by batches and return the joined pairs
+     */
+    private static class SpatialJoinRowSource extends BatchRowSource<long[]> {
+        private final Predicate predicate;
+
+        private SpatialJoinRowSource(Connection connection, String inputA, String inputB, Predicate predicate) {
+            super(connection, "ST_SpatialJoin", inputA, inputB, BATCH_SIZE);
+            this.predicate = predicate;
+        }
+
+        @Override
+        protected IndexedInput readIndexedInput(Input a, Input b) throws SQLException {
+            Statement st = connection.createStatement();
+            try {
+                ResultSet rs = st.executeQuery(b.getQuery());
+                try {
+                    return IndexedInput.read(b, rs);
+                } finally {
+                    rs.close();
+                }
+            } finally {
+                st.close();
+            }
+        }
+
+        @Override
+        protected Callable<long[]> createTask(IndexedInput indexedInput, long[] keys, Geometry[] geometries) {
+            return new JoinTask(indexedInput, predicate, keys, geometries);
+        }
+
+        @Override
+        protected int getRowCount(long[] pairs) {
+            return pairs.length / 2;
+        }
+
+        @Override
+        protected Object[] getRow(long[] pairs, int index) {
+            return new Object[]{pairs[index * 2], pairs[index * 2 + 1]};
+        }
+    }
+}
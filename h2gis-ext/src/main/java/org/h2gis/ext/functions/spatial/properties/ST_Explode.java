@@ -30,6 +30,8 @@ import org.h2.tools.SimpleResultSet;
 import org.h2.tools.SimpleRowSource;
 import org.h2gis.sfs.TableFunctionUtil;
 import org.h2gis.api.DeterministicScalarFunction;
+import org.h2gis.api.OperationMetrics;
+import org.h2gis.api.OperationRecorder;
 import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.SFSUtilities;
 import org.h2gis.utilities.TableLocation;
@@ -106,6 +108,7 @@ public class ST_Explode extends DeterministicScalarFunction {
         public Queue<Geometry> sourceRowGeometries = new LinkedList<Geometry>();
         public int explodeId = 1;
         public Connection connection;
+        protected OperationRecorder recorder = OperationRecorder.DISABLED;
         
         public ExplodeResultSet(Connection connection, String tableName, String spatialFieldName) {
             this.tableName = tableName;
@@ -123,8 +126,10 @@ public class ST_Explode extends DeterministicScalarFunction {
             }
             if(sourceRowGeometries.isEmpty()) {
                 // No more rows
+                recorder.close();
                 return null;
             } else {
+                recorder.addRows(1);
                 Object[] objects = new Object[columnCount+1];
                 for(int i=1;i<=columnCount+1;i++) {
                     if(i==spatialFieldIndex) {
@@ -156,6 +161,7 @@ public class ST_Explode extends DeterministicScalarFunction {
 
         @Override
         public void close() {
+            recorder.close();
             if(tableQuery!=null) {
                 try {
                     tableQuery.close();
@@ -173,9 +179,14 @@ public class ST_Explode extends DeterministicScalarFunction {
         private void parseRow() throws SQLException {
             sourceRowGeometries.clear();
             explodeId = 1;
-            if(tableQuery.next()) {
+            long readTime = recorder.startTimer();
+            boolean hasRow = tableQuery.next();
+            recorder.stopTimer(OperationRecorder.Phase.READ, readTime);
+            if(hasRow) {
                 Geometry geometry = (Geometry) tableQuery.getObject(spatialFieldIndex);
+                long geometryTime = recorder.startTimer();
                 explode(geometry);
+                recorder.stopTimer(OperationRecorder.Phase.GEOMETRY, geometryTime);
                 // If the geometry is empty, set empty field or null if generic geometry collection
                 if(sourceRowGeometries.isEmpty()) {
                     GeometryFactory factory = geometry.getFactory();
@@ -198,6 +209,8 @@ public class ST_Explode extends DeterministicScalarFunction {
             if(tableQuery!=null && !tableQuery.isClosed()) {
                 close();
             }
+            recorder.close();
+            recorder = OperationMetrics.start("ST_Explode");
             Statement st = connection.createStatement();
             tableQuery = st.executeQuery("SELECT * FROM "+tableName);
             firstRow = false;
@@ -252,6 +265,8 @@ public class ST_Explode extends DeterministicScalarFunction {
             if (tableQuery != null && !tableQuery.isClosed()) {
                 close();
             }
+            recorder.close();
+            recorder = OperationMetrics.start("ST_Explode");
             Statement st = connection.createStatement();
             tableQuery = st.executeQuery(tableName);
             firstRow = false;
@@ -0,0 +1,85 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.ext.functions.spatial.properties;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import org.h2gis.api.AbstractFunction;
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.utilities.JDBCUtilities;
+import org.h2gis.utilities.TableLocation;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+/**
+ * ST_TableExtent returns the envelope of all the geometries of a table. Unlike {@link ST_Extent}, the table is not
+ * read entirely when the geometry field has a spatial index.
+ */
+public class ST_TableExtent extends AbstractFunction implements ScalarFunction {
+
+    public ST_TableExtent() {
+        addProperty(PROP_REMARKS, "Return an envelope of all the geometries of a table.\n" +
+                "The first argument is the table name, the optional second argument is the geometry field " +
+                "(the first geometry field by default).\n" +
+                "The spatial index of the geometry field is used when it exists.");
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "getTableExtent";
+    }
+
+    /**
+     * @param connection Active connection
+     * @param tableName Table name
+     * @return The envelope of the first geometry field of the table, null if the table does not contain any geometry
+     * @throws SQLException
+     */
+    public static Geometry getTableExtent(Connection connection, String tableName) throws SQLException {
+        return getTableExtent(connection, tableName, null);
+    }
+
+    /**
+     * @param connection Active connection
+     * @param tableName Table name
+     * @param geometryField Geometry field name, quoted if it is case sensitive
+     * @return The envelope of the geometry field, null if the table does not contain any geometry
+     * @throws SQLException
+     */
+    public static Geometry getTableExtent(Connection connection, String tableName, String geometryField)
+            throws SQLException {
+        if (tableName == null) {
+            return null;
+        }
+        boolean isH2 = JDBCUtilities.isH2DataBase(connection.getMetaData());
+        if (geometryField != null) {
+            // The field name follows the same case rules than the table name
+            geometryField = TableLocation.parse(geometryField, isH2).getTable();
+        }
+        Envelope envelope = TableEnvelope.getEnvelope(connection, TableLocation.parse(tableName, isH2), geometryField);
+        if (envelope == null) {
+            return null;
+        }
+        return new GeometryFactory().toGeometry(envelope);
+    }
+}
@@ -0,0 +1,305 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.ext.functions.spatial.properties;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import org.h2.engine.Session;
+import org.h2.engine.SessionInterface;
+import org.h2.index.Index;
+import org.h2.index.SpatialIndex;
+import org.h2.index.SpatialTreeIndex;
+import org.h2.jdbc.JdbcConnection;
+import org.h2.mvstore.Page;
+import org.h2.mvstore.db.MVSpatialIndex;
+import org.h2.mvstore.rtree.MVRTreeMap;
+import org.h2.mvstore.rtree.SpatialKey;
+import org.h2.schema.Schema;
+import org.h2.table.Column;
+import org.h2.table.Table;
+import org.h2.value.Value;
+import org.h2gis.utilities.SFSUtilities;
+import org.h2gis.utilities.TableLocation;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Compute the envelope of all the geometries of a table column.
+ *
+ * When the column has a spatial index, the bounds of the root of the R-Tree are read. The keys of the R-Tree are
+ * stored with a float precision, then the exact envelope is computed from the rows that touch the sides of these
+ * bounds only, these rows are fetched using the spatial index. The table is read entirely when there is no spatial
+ * index.
+ *
+ * The envelopes are cached until the table is modified. The cache is not used while a session has uncommitted
+ * changes, because these changes are not visible to all the sessions.
+ */
+public final class TableEnvelope {
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+    /** Cached envelopes, by table then by column name */
+    private static final Map<Table, Map<String, CachedEnvelope>> CACHE =
+            new WeakHashMap<Table, Map<String, CachedEnvelope>>();
+
+    private TableEnvelope() {
+    }
+
+    /**
+     * Merge the bounding box of all geometries inside the provided table.
+     * @param connection Active connection
+     * @param location Location of the table
+     * @param geometryField Geometry field or empty string (take the first geometry field)
+     * @return Envelope of the table, null if the table does not contain any geometry
+     * @throws SQLException If the table does not exist or does not contain a geometry field.
+     */
+    public static Envelope getEnvelope(Connection connection, TableLocation location, String geometryField)
+            throws SQLException {
+        Session session = getSession(connection);
+        Table table = session == null ? null : findTable(session, location);
+        if (geometryField == null || geometryField.isEmpty()) {
+            geometryField = getFirstGeometryField(connection, location, table);
+        }
+        if (table == null || !Table.TABLE.equals(table.getTableType()) || !table.doesColumnExist(geometryField)) {
+            return readEnvelope(connection, location, geometryField, null);
+        }
+        Column column = table.getColumn(geometryField);
+        boolean useCache = !hasUncommittedChanges(session);
+        long modificationId = table.getMaxDataModificationId();
+        if (useCache) {
+            synchronized (CACHE) {
+                Map<String, CachedEnvelope> columns = CACHE.get(table);
+                CachedEnvelope cached = columns == null ? null : columns.get(column.getName());
+                if (cached != null && cached.modificationId == modificationId) {
+                    return cached.envelope == null ? null : new Envelope(cached.envelope);
+                }
+            }
+        }
+        Envelope envelope = readIndexEnvelope(connection, location, table, column);
+        if (envelope == null) {
+            envelope = readEnvelope(connection, location, column.getName(), null);
+        }
+        if (useCache && table.getMaxDataModificationId() == modificationId) {
+            synchronized (CACHE) {
+                Map<String, CachedEnvelope> columns = CACHE.get(table);
+                if (columns == null) {
+                    columns = new HashMap<String, CachedEnvelope>();
+                    CACHE.put(table, columns);
+                }
+                columns.put(column.getName(), new CachedEnvelope(modificationId,
+                        envelope == null ? null : new Envelope(envelope)));
+            }
+        }
+        return envelope;
+    }
+
+    /**
+     * Remove all the cached envelopes.
+     */
+    public static void clearCache() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+
+    private static String getFirstGeometryField(Connection connection, TableLocation location, Table table)
+            throws SQLException {
+        if (table != null) {
+            // Avoid the query on the GEOMETRY_COLUMNS view
+            for (Column column : table.getColumns()) {
+                if (column.getType() == Value.GEOMETRY) {
+                    return column.getName();
+                }
+            }
+        } else {
+            List<String> geometryFields = SFSUtilities.getGeometryFields(connection, location);
+            if (!geometryFields.isEmpty()) {
+                return geometryFields.get(0);
+            }
+        }
+        throw new SQLException("The table " + location + " does not contain a Geometry field, " +
+                "then the extent cannot be computed");
+    }
+
+    /**
+     * Compute the exact envelope from the bounds of a spatial index.
+     * @return The envelope, null if there is no spatial index or if the bounds of the index contain rows that are
+     * not visible to this session
+     */
+    private static Envelope readIndexEnvelope(Connection connection, TableLocation location, Table table,
+                                              Column column) throws SQLException {
+        Envelope bounds = null;
+        for (Index index : table.getIndexes()) {
+            if (index instanceof SpatialIndex && index.getColumns().length == 1 &&
+                    index.getColumns()[0] == column) {
+                bounds = getRootBounds(index);
+                if (bounds != null) {
+                    break;
+                }
+            }
+        }
+        if (bounds == null) {
+            return null;
+        }
+        // Margins that cover the rounding of the coordinates to float values
+        double marginX = 2 * Math.max(Math.ulp((float) bounds.getMinX()), Math.ulp((float) bounds.getMaxX()));
+        double marginY = 2 * Math.max(Math.ulp((float) bounds.getMinY()), Math.ulp((float) bounds.getMaxY()));
+        double minX = bounds.getMinX() - marginX;
+        double maxX = bounds.getMaxX() + marginX;
+        double minY = bounds.getMinY() - marginY;
+        double maxY = bounds.getMaxY() + marginY;
+        // The rows that have the smallest and the largest coordinates touch the sides of the bounds
+        Envelope[] sides = new Envelope[]{
+                new Envelope(minX, bounds.getMinX() + marginX, minY, maxY),
+                new Envelope(bounds.getMaxX() - marginX, maxX, minY, maxY),
+                new Envelope(minX, maxX, minY, bounds.getMinY() + marginY),
+                new Envelope(minX, maxX, bounds.getMaxY() - marginY, maxY)};
+        Envelope envelope = new Envelope();
+        for (Envelope side : sides) {
+            Envelope sideEnvelope = readEnvelope(connection, location, column.getName(),
+                    GEOMETRY_FACTORY.toGeometry(side));
+            if (sideEnvelope == null) {
+                // The bounds come from rows that are not visible to this session
+                return null;
+            }
+            envelope.expandToInclude(sideEnvelope);
+        }
+        return envelope;
+    }
+
+    /**
+     * @param index Spatial index
+     * @return The bounds of all the keys of the R-Tree, null if the index is empty or not supported
+     */
+    private static Envelope getRootBounds(Index index) {
+        MVRTreeMap<?> treeMap;
+        try {
+            Field field;
+            if (index instanceof MVSpatialIndex) {
+                field = MVSpatialIndex.class.getDeclaredField("spatialMap");
+            } else if (index instanceof SpatialTreeIndex) {
+                field = SpatialTreeIndex.class.getDeclaredField("treeMap");
+            } else {
+                return null;
+            }
+            field.setAccessible(true);
+            treeMap = (MVRTreeMap<?>) field.get(index);
+        } catch (NoSuchFieldException ex) {
+            return null;
+        } catch (IllegalAccessException ex) {
+            return null;
+        }
+        if (treeMap == null) {
+            return null;
+        }
+        // The keys of an internal page are the bounds of its children
+        Page root = treeMap.getRoot();
+        Envelope bounds = new Envelope();
+        for (int i = 0; i < root.getKeyCount(); i++) {
+            SpatialKey key = (SpatialKey) root.getKey(i);
+            if (!key.isNull() && key.min(0) <= key.max(0) && key.min(1) <= key.max(1)) {
+                bounds.expandToInclude(key.min(0), key.min(1));
+                bounds.expandToInclude(key.max(0), key.max(1));
+            }
+        }
+        return bounds.isNull() ? null : bounds;
+    }
+
+    /**
+     * @param filter Only the rows that intersect this geometry are read, null to read the entire table
+     * @return The envelope of the rows, null if there is no geometry
+     */
+    private static Envelope readEnvelope(Connection connection, TableLocation location, String geometryField,
+                                         Geometry filter) throws SQLException {
+        String query = "SELECT ST_Extent(" + TableLocation.quoteIdentifier(geometryField) + ") FROM " + location;
+        ResultSet rs;
+        Statement st;
+        if (filter == null) {
+            st = connection.createStatement();
+            rs = st.executeQuery(query);
+        } else {
+            PreparedStatement pst = connection.prepareStatement(query + " WHERE " +
+                    TableLocation.quoteIdentifier(geometryField) + " && ?");
+            pst.setObject(1, filter);
+            st = pst;
+            rs = pst.executeQuery();
+        }
+        try {
+            if (rs.next()) {
+                Geometry extent = (Geometry) rs.getObject(1);
+                return extent == null ? null : extent.getEnvelopeInternal();
+            }
+            return null;
+        } finally {
+            rs.close();
+            st.close();
+        }
+    }
+
+    /**
+     * @return The session of the connection, null if it is not an embedded H2 connection
+     */
+    private static Session getSession(Connection connection) throws SQLException {
+        if (connection.isWrapperFor(JdbcConnection.class)) {
+            SessionInterface session = connection.unwrap(JdbcConnection.class).getSession();
+            if (session instanceof Session) {
+                return (Session) session;
+            }
+        }
+        return null;
+    }
+
+    private static Table findTable(Session session, TableLocation location) {
+        String schemaName = location.getSchema(session.getCurrentSchemaName());
+        Schema schema = session.getDatabase().findSchema(schemaName);
+        return schema == null ? null : schema.findTableOrView(session, location.getTable());
+    }
+
+    /**
+     * @return True if a session of the database contains changes that are not committed
+     */
+    private static boolean hasUncommittedChanges(Session session) {
+        for (Session other : session.getDatabase().getSessions(false)) {
+            if (other.containsUncommitted()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static class CachedEnvelope {
+        private final long modificationId;
+        private final Envelope envelope;
+
+        private CachedEnvelope(long modificationId, Envelope envelope) {
+            this.modificationId = modificationId;
+            this.envelope = envelope;
+        }
+    }
+}
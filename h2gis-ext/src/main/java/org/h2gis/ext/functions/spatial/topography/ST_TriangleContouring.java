@@ -30,6 +30,8 @@ import org.h2.value.Value;
 import org.h2.value.ValueString;
 import org.h2gis.sfs.TableFunctionUtil;
 import org.h2gis.api.DeterministicScalarFunction;
+import org.h2gis.api.OperationMetrics;
+import org.h2gis.api.OperationRecorder;
 import org.h2gis.utilities.JDBCUtilities;
 import org.h2gis.utilities.SFSUtilities;
 import org.h2gis.utilities.TableLocation;
@@ -136,6 +138,7 @@ public class ST_TriangleContouring extends DeterministicScalarFunction {
         private TriMarkersFactory triFactory;
         private List<Double> isoLvls;
         private GeometryFactory factory = new GeometryFactory();
+        private OperationRecorder recorder = OperationRecorder.DISABLED;
 
         private ExplodeResultSet(Connection connection, String tableName, String isoField1,String isoField2,String isoField3, List<Double> isoLvls) {
             this.tableName = tableName;
@@ -166,8 +169,10 @@ public class ST_TriangleContouring extends DeterministicScalarFunction {
             }
             if(generatedRows.isEmpty()) {
                 // No more rows
+                recorder.close();
                 return null;
             } else {
+                recorder.addRows(1);
                 Object[] objects = new Object[columnCount+1];
                 GeneratedTriangle result = generatedRows.remove();
                 for(int i=1;i<=columnCount+1;i++) {
@@ -185,6 +190,7 @@ public class ST_TriangleContouring extends DeterministicScalarFunction {
 
         @Override
         public void close() {
+            recorder.close();
             if(tableQuery!=null) {
                 try {
                     tableQuery.close();
@@ -197,12 +203,16 @@ public class ST_TriangleContouring extends DeterministicScalarFunction {
 
         private void parseRow() throws SQLException {
             generatedRows.clear();
-            if(tableQuery.next()) {
+            long readTime = recorder.startTimer();
+            boolean hasRow = tableQuery.next();
+            recorder.stopTimer(OperationRecorder.Phase.READ, readTime);
+            if(hasRow) {
                 Geometry inputTriangle = (Geometry) tableQuery.getObject(spatialFieldIndex);
                 if(inputTriangle == null || inputTriangle.getNumPoints() != 4) {
                     throw new SQLException("Invalid geometry input, got " + (inputTriangle == null ? "null" : inputTriangle.toText()));
                 }
                 // Compute ISO
+                long geometryTime = recorder.startTimer();
                 TriMarkers triangle = triFactory.getTriangle(inputTriangle.getCoordinates());
                 Map<Short, Deque<TriMarkers>> result = Contouring.processTriangle(triangle, isoLvls);
                 for(Map.Entry<Short, Deque<TriMarkers>> isoResult : result.entrySet()) {
@@ -213,6 +223,7 @@ public class ST_TriangleContouring extends DeterministicScalarFunction {
                         generatedRows.add(new GeneratedTriangle(polygon, isoResult.getKey()));
                     }
                 }
+                recorder.stopTimer(OperationRecorder.Phase.GEOMETRY, geometryTime);
             } else {
                 endOfResultSet = true;
             }
@@ -223,6 +234,8 @@ public class ST_TriangleContouring extends DeterministicScalarFunction {
             if(tableQuery!=null && !tableQuery.isClosed()) {
                 close();
             }
+            recorder.close();
+            recorder = OperationMetrics.start("ST_TriangleContouring");
             Statement st = connection.createStatement();
             tableQuery = st.executeQuery("SELECT * FROM "+tableName);
             firstRow = false;
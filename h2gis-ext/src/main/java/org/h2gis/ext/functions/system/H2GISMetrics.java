@@ -0,0 +1,100 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.ext.functions.system;
+
+import org.h2.tools.SimpleResultSet;
+import org.h2gis.api.AbstractFunction;
+import org.h2gis.api.OperationMetrics;
+import org.h2gis.api.OperationStatistics;
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.sfs.TableFunctionUtil;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Table function that returns the statistics recorded by {@link OperationMetrics} for the drivers and the table
+ * functions. The times are in milliseconds.
+ */
+public class H2GISMetrics extends AbstractFunction implements ScalarFunction {
+
+    public H2GISMetrics() {
+        addProperty(PROP_REMARKS, "Return the throughput and the timing statistics of the drivers and of the table\n" +
+                "functions, the times are in milliseconds.\n" +
+                "H2GIS_METRICS(enabled) enables or disables the recording of the metrics before returning them.\n" +
+                "The metrics are also enabled by the system property " + OperationMetrics.ENABLED_PROPERTY + ".");
+        addProperty(PROP_NAME, "H2GIS_METRICS");
+        addProperty(PROP_NOBUFFER, true);
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "getMetrics";
+    }
+
+    /**
+     * @param connection Active connection
+     * @return The statistics of all the operations
+     * @throws SQLException
+     */
+    public static ResultSet getMetrics(Connection connection) throws SQLException {
+        SimpleResultSet rs = new SimpleResultSet();
+        rs.addColumn("OPERATION", Types.VARCHAR, Integer.MAX_VALUE, 0);
+        rs.addColumn("RUN_COUNT", Types.BIGINT, 19, 0);
+        rs.addColumn("ROW_COUNT", Types.BIGINT, 19, 0);
+        rs.addColumn("ROWS_PER_SECOND", Types.DOUBLE, 17, 0);
+        rs.addColumn("BYTES_READ", Types.BIGINT, 19, 0);
+        rs.addColumn("BYTES_WRITTEN", Types.BIGINT, 19, 0);
+        rs.addColumn("ELAPSED_TIME", Types.DOUBLE, 17, 0);
+        rs.addColumn("READ_TIME", Types.DOUBLE, 17, 0);
+        rs.addColumn("GEOMETRY_TIME", Types.DOUBLE, 17, 0);
+        rs.addColumn("WRITE_TIME", Types.DOUBLE, 17, 0);
+        rs.addColumn("FLUSH_COUNT", Types.BIGINT, 19, 0);
+        rs.addColumn("FLUSH_TIME", Types.DOUBLE, 17, 0);
+        rs.addColumn("MAX_FLUSH_TIME", Types.DOUBLE, 17, 0);
+        if (TableFunctionUtil.isColumnListConnection(connection)) {
+            return rs;
+        }
+        for (OperationStatistics statistics : OperationMetrics.getStatistics()) {
+            rs.addRow(statistics.getName(), statistics.getRunCount(), statistics.getRowCount(),
+                    statistics.getRowsPerSecond(), statistics.getBytesRead(), statistics.getBytesWritten(),
+                    statistics.getElapsedTime(), statistics.getReadTime(), statistics.getGeometryTime(),
+                    statistics.getWriteTime(), statistics.getFlushCount(), statistics.getFlushTime(),
+                    statistics.getMaxFlushTime());
+        }
+        return rs;
+    }
+
+    /**
+     * @param connection Active connection
+     * @param enabled True to record the metrics of the next operations
+     * @return The statistics of all the operations
+     * @throws SQLException
+     */
+    public static ResultSet getMetrics(Connection connection, boolean enabled) throws SQLException {
+        if (!TableFunctionUtil.isColumnListConnection(connection)) {
+            OperationMetrics.setEnabled(enabled);
+        }
+        return getMetrics(connection);
+    }
+}
@@ -27,11 +27,13 @@ import org.h2.jdbc.JdbcSQLException;
 import org.h2.value.ValueGeometry;
 import org.h2gis.sfs.unitTest.SpatialDBFactory;
 import org.h2gis.ext.functions.spatial.affine_transformations.ST_Translate;
+import org.h2gis.ext.functions.spatial.predicates.ST_SpatialJoin;
 import org.h2gis.utilities.SFSUtilities;
 import org.h2gis.utilities.TableLocation;
 import org.junit.*;
 
 import java.sql.Connection;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
@@ -275,6 +277,55 @@ public class SpatialFunctionTest {
         st.execute("drop table ptClouds");
     }
 
+    @Test
+    public void test_ST_TableExtent() throws Exception {
+        st.execute("drop table if exists ptClouds");
+        st.execute("create table ptClouds(id INTEGER PRIMARY KEY, the_geom POINT);"
+                + "create spatial index on ptClouds(the_geom);"
+                + "insert into ptClouds SELECT X, ST_MakePoint(X * 0.1 + 1e-9, 1.0 / X) FROM SYSTEM_RANGE(1, 1000);");
+        assertTableExtent(new Envelope(0.1 + 1e-9, 100 + 1e-9, 0.001, 1));
+        // The cached envelope must be updated after a modification
+        st.execute("delete from ptClouds where id = 1000");
+        assertTableExtent(new Envelope(0.1 + 1e-9, 99.9 + 1e-9, 1 / 999d, 1));
+        st.execute("update ptClouds set the_geom = ST_MakePoint(-0.3, 2.7) where id = 500");
+        assertTableExtent(new Envelope(-0.3, 99.9 + 1e-9, 1 / 999d, 2.7));
+        st.execute("drop table ptClouds");
+    }
+
+    private void assertTableExtent(Envelope expected) throws SQLException {
+        ResultSet rs = st.executeQuery("select ST_TableExtent('ptClouds'), ST_Extent(the_geom) from ptClouds");
+        try {
+            assertTrue(rs.next());
+            Envelope result = ((Geometry) rs.getObject(1)).getEnvelopeInternal();
+            // The envelope must be exact, not rounded to the float precision of the spatial index
+            assertEquals(((Geometry) rs.getObject(2)).getEnvelopeInternal(), result);
+            assertEquals(expected.getMinX(), result.getMinX(), 1e-12);
+            assertEquals(expected.getMaxX(), result.getMaxX(), 1e-12);
+            assertEquals(expected.getMinY(), result.getMinY(), 1e-12);
+            assertEquals(expected.getMaxY(), result.getMaxY(), 1e-12);
+        } finally {
+            rs.close();
+        }
+    }
+
+    @Test
+    public void test_NULL_ST_TableExtent() throws Exception {
+        st.execute("drop table if exists ptClouds");
+        st.execute("create table ptClouds(id INTEGER PRIMARY KEY, the_geom POINT, other_geom POINT);"
+                + "create spatial index on ptClouds(the_geom);");
+        ResultSet rs = st.executeQuery("select ST_TableExtent('ptClouds')");
+        assertTrue(rs.next());
+        assertNull(rs.getObject(1));
+        rs.close();
+        st.execute("insert into ptClouds VALUES (1, null, 'POINT(1 2)'), (2, null, 'POINT(3 4)')");
+        rs = st.executeQuery("select ST_TableExtent('ptClouds'), ST_TableExtent('ptClouds', 'other_geom')");
+        assertTrue(rs.next());
+        assertNull(rs.getObject(1));
+        assertEquals(new Envelope(1, 3, 2, 4), ((Geometry) rs.getObject(2)).getEnvelopeInternal());
+        rs.close();
+        st.execute("drop table ptClouds");
+    }
+
     @Test
     public void test_ST_IsRectangle() throws Exception {
         st.execute("DROP TABLE IF EXISTS input_table;"
@@ -334,6 +385,193 @@ public class SpatialFunctionTest {
         st.execute("DROP TABLE input_table;");
     }
 
+    @Test
+    public void test_ST_CoversDWithinRepeatedGeometry() throws Exception {
+        st.execute("DROP TABLE IF EXISTS grid_points;"
+                + "CREATE TABLE grid_points AS SELECT ST_GeomFromText('POINT(' || MOD(X, 21) || ' ' || (X / 21) || ')') "
+                + "the_geom FROM SYSTEM_RANGE(0, 440);");
+        // The polygon is prepared after the first rows
+        String polygon = "'POLYGON((0 0, 10 0, 10 10, 0 10, 0 0), (4 4, 6 4, 6 6, 4 6, 4 4))'::GEOMETRY";
+        ResultSet rs = st.executeQuery("SELECT COUNT(CASEWHEN(ST_Covers(" + polygon + ", the_geom), 1, NULL)), "
+                + "COUNT(CASEWHEN(ST_DWithin(the_geom, " + polygon + ", 1), 1, NULL)) FROM grid_points;");
+        assertTrue(rs.next());
+        assertEquals(120, rs.getInt(1));
+        assertEquals(143, rs.getInt(2));
+        rs.close();
+        st.execute("DROP TABLE grid_points;");
+    }
+
+    @Test
+    public void test_ST_SpatialJoin() throws Exception {
+        st.execute("DROP TABLE IF EXISTS join_points, join_cells;"
+                + "CREATE TABLE join_points(pk INT PRIMARY KEY, the_geom POINT) AS SELECT X, "
+                + "ST_GeomFromText('POINT(' || (MOD(X, 50) + 0.5) || ' ' || (X / 50 + 0.5) || ')') FROM SYSTEM_RANGE(0, 2499);"
+                + "CREATE TABLE join_cells(the_geom POLYGON) AS SELECT the_geom FROM ST_MakeGrid("
+                + "'POLYGON((0 0, 50 0, 50 50, 0 50, 0 0))'::GEOMETRY, 10, 10);");
+        // More pairs than a batch of the first input
+        ResultSet rs = st.executeQuery("SELECT COUNT(*), COUNT(DISTINCT ID_A), MIN(ID_B) FROM "
+                + "ST_SpatialJoin('join_points', 'join_cells', 'within');");
+        assertTrue(rs.next());
+        assertEquals(2500, rs.getInt(1));
+        assertEquals(2500, rs.getInt(2));
+        assertEquals(1, rs.getLong(3));
+        rs.close();
+        rs = st.executeQuery("SELECT COUNT(*) FROM ST_SpatialJoin('join_points', 'join_cells', 'within') j, "
+                + "join_points p, join_cells c WHERE j.ID_A = p.pk AND j.ID_B = c._ROWID_ "
+                + "AND ST_Within(p.the_geom, c.the_geom);");
+        assertTrue(rs.next());
+        assertEquals(2500, rs.getInt(1));
+        rs.close();
+        // Query inputs, the cells touch their neighbours
+        rs = st.executeQuery("SELECT COUNT(*) FROM join_cells a, join_cells b "
+                + "WHERE ST_Touches(a.the_geom, b.the_geom);");
+        assertTrue(rs.next());
+        int expectedCount = rs.getInt(1);
+        // 20 horizontal, 20 vertical and 32 diagonal neighbours in both orders
+        assertEquals(144, expectedCount);
+        rs.close();
+        rs = st.executeQuery("SELECT COUNT(*) FROM ST_SpatialJoin('SELECT _ROWID_, the_geom FROM join_cells', "
+                + "'SELECT _ROWID_, the_geom FROM join_cells', 'TOUCHES');");
+        assertTrue(rs.next());
+        assertEquals(expectedCount, rs.getInt(1));
+        rs.close();
+        // Queries starting with a line break, a parenthesis or a WITH clause
+        rs = st.executeQuery("SELECT COUNT(*) FROM ST_SpatialJoin('\n\tselect\n_ROWID_, the_geom FROM join_cells', "
+                + "'(SELECT _ROWID_, the_geom FROM join_cells)', 'TOUCHES');");
+        assertTrue(rs.next());
+        assertEquals(expectedCount, rs.getInt(1));
+        rs.close();
+        rs = st.executeQuery("SELECT COUNT(*) FROM ST_SpatialJoin('join_points', "
+                + "'WITH c(id, the_geom) AS (SELECT _ROWID_, the_geom FROM join_cells "
+                + "UNION ALL SELECT id, the_geom FROM c WHERE 1 = 0) SELECT id, the_geom::GEOMETRY FROM c', 'WITHIN');");
+        assertTrue(rs.next());
+        assertEquals(2500, rs.getInt(1));
+        rs.close();
+        try {
+            st.executeQuery("SELECT * FROM ST_SpatialJoin('join_points', 'join_cells', 'DISJOINT');");
+            fail();
+        } catch (SQLException ex) {
+            // Expected
+        }
+        st.execute("DROP TABLE join_points, join_cells;");
+    }
+
+    @Test
+    public void test_ST_KNearest() throws Exception {
+        st.execute("DROP TABLE IF EXISTS knn_addresses, knn_hydrants;"
+                + "CREATE TABLE knn_addresses(pk INT PRIMARY KEY, the_geom POINT) AS SELECT X, "
+                + "ST_GeomFromText('POINT(' || (MOD(X * 37, 1000) / 10.0) || ' ' || (MOD(X * 91, 997) / 10.0) || ')') "
+                + "FROM SYSTEM_RANGE(1, 600);"
+                + "CREATE TABLE knn_hydrants(the_geom GEOMETRY) AS SELECT "
+                + "ST_GeomFromText('POINT(' || (MOD(X * 53, 1009) / 10.0) || ' ' || (MOD(X * 17, 991) / 10.0) || ')') "
+                + "FROM SYSTEM_RANGE(1, 300);"
+                + "INSERT INTO knn_hydrants VALUES ('LINESTRING(0 0, 100 100)');");
+        // More rows than a batch of the first input
+        ResultSet rs = st.executeQuery("SELECT COUNT(*), COUNT(DISTINCT ID_A), MAX(RANK) FROM "
+                + "ST_KNearest('knn_addresses', 'knn_hydrants', 3);");
+        assertTrue(rs.next());
+        assertEquals(1800, rs.getInt(1));
+        assertEquals(600, rs.getInt(2));
+        assertEquals(3, rs.getInt(3));
+        rs.close();
+        // Compare with a sort of all the distances
+        Statement nearest = connection.createStatement();
+        PreparedStatement sorted = connection.prepareStatement("SELECT ST_Distance(a.the_geom, h.the_geom) d "
+                + "FROM knn_addresses a, knn_hydrants h WHERE a.pk = ? ORDER BY d LIMIT 5");
+        for (int pk = 1; pk <= 600; pk += 23) {
+            sorted.setInt(1, pk);
+            ResultSet actual = nearest.executeQuery("SELECT ID_B, DISTANCE, RANK FROM ST_KNearest("
+                    + "'SELECT pk, the_geom FROM knn_addresses WHERE pk = " + pk + "', 'knn_hydrants', 5)");
+            ResultSet expected = sorted.executeQuery();
+            for (int rank = 1; rank <= 5; rank++) {
+                assertTrue(actual.next());
+                assertTrue(expected.next());
+                assertEquals(expected.getDouble(1), actual.getDouble(2), 1e-12);
+                assertEquals(rank, actual.getInt(3));
+            }
+            assertFalse(actual.next());
+            actual.close();
+            expected.close();
+        }
+        nearest.close();
+        sorted.close();
+        // The rows farther than the maximum distance are excluded
+        rs = st.executeQuery("SELECT SUM(LEAST(3, (SELECT COUNT(*) FROM knn_hydrants h "
+                + "WHERE ST_Distance(a.the_geom, h.the_geom) <= 4))) FROM knn_addresses a");
+        assertTrue(rs.next());
+        int expectedCount = rs.getInt(1);
+        rs.close();
+        rs = st.executeQuery("SELECT COUNT(*), MAX(DISTANCE) FROM "
+                + "ST_KNearest('knn_addresses', 'knn_hydrants', 3, 4);");
+        assertTrue(rs.next());
+        assertEquals(expectedCount, rs.getInt(1));
+        assertTrue(rs.getDouble(2) <= 4);
+        rs.close();
+        rs = st.executeQuery("SELECT COUNT(*) FROM ST_KNearest(' (select pk, the_geom FROM knn_addresses)', "
+                + "'with h(id, the_geom) AS (SELECT _ROWID_, the_geom FROM knn_hydrants "
+                + "UNION ALL SELECT id, the_geom FROM h WHERE 1 = 0) SELECT id, the_geom::GEOMETRY FROM h', 3, 4);");
+        assertTrue(rs.next());
+        assertEquals(expectedCount, rs.getInt(1));
+        rs.close();
+        try {
+            st.executeQuery("SELECT * FROM ST_KNearest('knn_addresses', 'knn_hydrants', 0);");
+            fail();
+        } catch (SQLException ex) {
+            // Expected
+        }
+        st.execute("DROP TABLE knn_addresses, knn_hydrants;");
+    }
+
+    @Test
+    public void test_H2GIS_Metrics() throws Exception {
+        st.execute("DROP TABLE IF EXISTS metrics_points;"
+                + "CREATE TABLE metrics_points(the_geom POINT) AS SELECT "
+                + "ST_GeomFromText('POINT(' || X || ' ' || X || ')') FROM SYSTEM_RANGE(1, 100);");
+        try {
+            st.execute("SELECT * FROM H2GIS_METRICS(true)");
+            st.execute("SELECT * FROM ST_SpatialJoin('metrics_points', 'metrics_points', 'INTERSECTS')");
+        } finally {
+            st.execute("SELECT * FROM H2GIS_METRICS(false)");
+        }
+        ResultSet rs = st.executeQuery("SELECT RUN_COUNT > 0, ROW_COUNT >= 100, READ_TIME > 0 FROM H2GIS_METRICS() "
+                + "WHERE OPERATION = 'ST_SpatialJoin'");
+        assertTrue(rs.next());
+        assertTrue(rs.getBoolean(1));
+        assertTrue(rs.getBoolean(2));
+        assertTrue(rs.getBoolean(3));
+        rs.close();
+        rs = st.executeQuery("SELECT RUN_COUNT FROM H2GIS_METRICS() WHERE OPERATION = 'ST_SpatialJoin'");
+        assertTrue(rs.next());
+        long runCount = rs.getLong(1);
+        rs.close();
+        try {
+            st.execute("SELECT * FROM H2GIS_METRICS(true)");
+            // A run that does not read all the rows is recorded when it is closed
+            ResultSet join = ST_SpatialJoin.spatialJoin(connection, "metrics_points", "metrics_points", "INTERSECTS");
+            assertTrue(join.next());
+            join.close();
+            st.execute("SELECT * FROM ST_MakeGrid('metrics_points', 10, 10)");
+            st.execute("SELECT * FROM ST_Explode('SELECT ST_Accum(the_geom) the_geom FROM metrics_points')");
+        } finally {
+            st.execute("SELECT * FROM H2GIS_METRICS(false)");
+        }
+        rs = st.executeQuery("SELECT RUN_COUNT FROM H2GIS_METRICS() WHERE OPERATION = 'ST_SpatialJoin'");
+        assertTrue(rs.next());
+        assertTrue(rs.getLong(1) > runCount);
+        rs.close();
+        rs = st.executeQuery("SELECT ROW_COUNT, GEOMETRY_TIME > 0 FROM H2GIS_METRICS() "
+                + "WHERE OPERATION = 'ST_MakeGrid'");
+        assertTrue(rs.next());
+        assertEquals(100, rs.getLong(1));
+        assertTrue(rs.getBoolean(2));
+        rs.close();
+        rs = st.executeQuery("SELECT ROW_COUNT FROM H2GIS_METRICS() WHERE OPERATION = 'ST_Explode'");
+        assertTrue(rs.next());
+        assertEquals(100, rs.getLong(1));
+        rs.close();
+        st.execute("DROP TABLE metrics_points;");
+    }
+
     @Test
     public void test_ST_Covers() throws Exception {
         st.execute("DROP TABLE IF EXISTS input_table;"
@@ -20,6 +20,7 @@
 
 package org.h2gis.ext.drivers.osm;
 
+import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.geom.Point;
 import java.io.File;
 import java.io.IOException;
@@ -250,7 +251,93 @@ public class OSMImportTest {
         rs.close();
         }
     }
-    
+
+    @Test
+    public void importOSMFileWithWayGeometries() throws SQLException {
+        st.execute("DROP TABLE IF EXISTS GEOM_OSM_TAG, GEOM_OSM_NODE, GEOM_OSM_NODE_TAG, GEOM_OSM_WAY, GEOM_OSM_WAY_TAG, GEOM_OSM_RELATION, GEOM_OSM_RELATION_TAG, GEOM_OSM_NODE_MEMBER, GEOM_OSM_WAY_MEMBER, GEOM_OSM_RELATION_MEMBER;");
+        st.execute("CALL OSMRead(" + StringUtils.quoteStringSQL(OSMImportTest.class.getResource("saint_jean.osm").getPath()) + ", 'GEOM_OSM', true);");
+        ResultSet rs = st.executeQuery("SELECT count(TABLE_NAME) FROM INFORMATION_SCHEMA.TABLES where TABLE_NAME LIKE 'GEOM_OSM%'");
+        rs.next();
+        // No way node table
+        assertEquals(10, rs.getInt(1));
+        rs.close();
+        // Only the nodes with tags are stored
+        rs = st.executeQuery("SELECT count(ID_NODE) FROM GEOM_OSM_NODE");
+        rs.next();
+        assertEquals(5, rs.getInt(1));
+        rs.close();
+        rs = st.executeQuery("SELECT count(ID_WAY) FROM GEOM_OSM_WAY WHERE THE_GEOM IS NOT NULL");
+        rs.next();
+        assertEquals(472, rs.getInt(1));
+        rs.close();
+        // Closed building
+        rs = st.executeQuery("SELECT THE_GEOM FROM GEOM_OSM_WAY WHERE ID_WAY=296514927");
+        assertTrue(rs.next());
+        assertEquals("POLYGON ((-2.123538 47.634307, -2.123576 47.634312, -2.12358 47.634297, -2.123543 47.634292, -2.123538 47.634307))", rs.getString(1));
+        assertEquals(4326, ((Geometry) rs.getObject(1)).getSRID());
+        rs.close();
+        rs = st.executeQuery("SELECT THE_GEOM FROM GEOM_OSM_WAY WHERE ID_WAY=225134294");
+        assertTrue(rs.next());
+        assertEquals("LINESTRING (-2.1205407 47.6349376, -2.1204418 47.6345443)", rs.getString(1));
+        rs.close();
+        st.execute("DROP TABLE IF EXISTS GEOM_OSM_TAG, GEOM_OSM_NODE, GEOM_OSM_NODE_TAG, GEOM_OSM_WAY, GEOM_OSM_WAY_TAG, GEOM_OSM_RELATION, GEOM_OSM_RELATION_TAG, GEOM_OSM_NODE_MEMBER, GEOM_OSM_WAY_MEMBER, GEOM_OSM_RELATION_MEMBER;");
+    }
+
+    @Test
+    public void importPbfOSMFile() throws SQLException {
+        st.execute("DROP TABLE IF EXISTS OSM_TAG, OSM_NODE, OSM_NODE_TAG, OSM_WAY,OSM_WAY_TAG, OSM_WAY_NODE, OSM_RELATION, OSM_RELATION_TAG, OSM_NODE_MEMBER, OSM_WAY_MEMBER, OSM_RELATION_MEMBER;");
+        st.execute("DROP TABLE IF EXISTS PBF_TAG, PBF_NODE, PBF_NODE_TAG, PBF_WAY, PBF_WAY_TAG, PBF_WAY_NODE, PBF_RELATION, PBF_RELATION_TAG, PBF_NODE_MEMBER, PBF_WAY_MEMBER, PBF_RELATION_MEMBER;");
+        st.execute("CALL OSMRead(" + StringUtils.quoteStringSQL(OSMImportTest.class.getResource("saint_jean.osm").getPath()) + ", 'OSM');");
+        st.execute("CALL OSMRead(" + StringUtils.quoteStringSQL(OSMImportTest.class.getResource("saint_jean.osm.pbf").getPath()) + ", 'PBF');");
+        ResultSet rs = st.executeQuery("SELECT count(TABLE_NAME) FROM INFORMATION_SCHEMA.TABLES where TABLE_NAME LIKE 'PBF%'");
+        rs.next();
+        assertEquals(11, rs.getInt(1));
+        rs.close();
+        rs = st.executeQuery("SELECT count(ID_NODE) FROM PBF_NODE");
+        rs.next();
+        assertEquals(3243, rs.getInt(1));
+        rs.close();
+        rs = st.executeQuery("SELECT THE_GEOM FROM PBF_NODE WHERE ID_NODE=462020579");
+        assertTrue(rs.next());
+        assertEquals("POINT (-2.1213541 47.6347657)", rs.getString("the_geom"));
+        rs.close();
+        rs = st.executeQuery("SELECT ELE FROM PBF_NODE WHERE ID_NODE=670177172");
+        assertTrue(rs.next());
+        assertEquals(91.9, rs.getDouble("ELE"), 0.1);
+        rs.close();
+        rs = st.executeQuery("SELECT count(ID_RELATION) FROM PBF_RELATION");
+        assertTrue(rs.next());
+        assertEquals(3, rs.getInt(1));
+        rs.close();
+        // The PBF file holds the same data than the XML file
+        String[] sameContent = new String[]{
+                "SELECT ID_NODE, ST_AsText(THE_GEOM), ELE, USER_NAME, UID, VISIBLE, VERSION, CHANGESET, NAME FROM %s_NODE",
+                "SELECT ID_NODE, TAG_KEY, TAG_VALUE FROM %1$s_NODE_TAG NT, %1$s_TAG T WHERE NT.ID_TAG = T.ID_TAG",
+                "SELECT ID_WAY, USER_NAME, UID, VISIBLE, VERSION, CHANGESET, NAME FROM %s_WAY",
+                "SELECT ID_WAY, TAG_KEY, VALUE FROM %1$s_WAY_TAG WT, %1$s_TAG T WHERE WT.ID_TAG = T.ID_TAG",
+                "SELECT * FROM %s_WAY_NODE",
+                "SELECT ID_RELATION, USER_NAME, UID, VISIBLE, VERSION, CHANGESET FROM %s_RELATION",
+                "SELECT * FROM %s_NODE_MEMBER",
+                "SELECT * FROM %s_WAY_MEMBER",
+                "SELECT * FROM %s_RELATION_MEMBER"};
+        for (String query : sameContent) {
+            rs = st.executeQuery("SELECT count(*) FROM (" + String.format(query, "OSM") + ")");
+            assertTrue(rs.next());
+            int count = rs.getInt(1);
+            rs.close();
+            rs = st.executeQuery("SELECT count(*) FROM (" + String.format(query, "PBF") + ")");
+            assertTrue(rs.next());
+            assertEquals(query, count, rs.getInt(1));
+            rs.close();
+            rs = st.executeQuery("SELECT count(*) FROM (" + String.format(query, "OSM") + " EXCEPT "
+                    + String.format(query, "PBF") + ")");
+            assertTrue(rs.next());
+            assertEquals(query, 0, rs.getInt(1));
+            rs.close();
+        }
+        st.execute("DROP TABLE IF EXISTS PBF_TAG, PBF_NODE, PBF_NODE_TAG, PBF_WAY, PBF_WAY_TAG, PBF_WAY_NODE, PBF_RELATION, PBF_RELATION_TAG, PBF_NODE_MEMBER, PBF_WAY_MEMBER, PBF_RELATION_MEMBER;");
+    }
+
     /**
      * A method to test if the internet network is active.
      *
@@ -604,6 +604,73 @@ public class CreateFunctionTest {
         st.execute("DROP TABLE input_table, grid;");
     }
 
+    @Test
+    public void test_ST_MakeGridCoverageFilter() throws Exception {
+        // The cells of the bounding box that do not touch the line are not returned
+        ResultSet rs = st.executeQuery("select * from st_makegrid('LINESTRING(0.5 0.5, 9.5 0.5, 9.5 9.5)'::GEOMETRY, 1, 1, true);");
+        int count = 0;
+        while (rs.next()) {
+            int idCol = rs.getInt("ID_COL");
+            int idRow = rs.getInt("ID_ROW");
+            assertTrue(idRow == 1 || idCol == 9);
+            // The id is the same as the id of the full grid
+            assertEquals((idRow - 1) * 9 + idCol - 1, rs.getInt("ID"));
+            count++;
+        }
+        rs.close();
+        assertEquals(17, count);
+    }
+
+    @Test
+    public void test_ST_MakeGridPointsCoverageFilterTable() throws Exception {
+        st.execute("DROP TABLE IF EXISTS input_table;"
+                + "CREATE TABLE input_table(the_geom Geometry);"
+                + "INSERT INTO input_table VALUES"
+                + "(ST_GeomFromText('POLYGON((0 0, 0.9 0, 0.9 0.9, 0 0.9, 0 0))')),"
+                + "(ST_GeomFromText('POLYGON((9.1 9.1, 10 9.1, 10 10, 9.1 10, 9.1 9.1))'));");
+        ResultSet rs = st.executeQuery("select * from st_makegridpoints('input_table', 0.5, 0.5, true);");
+        int count = 0;
+        while (rs.next()) {
+            Geometry point = (Geometry) rs.getObject(1);
+            assertTrue(point.getCoordinate().x < 1 || point.getCoordinate().x > 9);
+            count++;
+        }
+        rs.close();
+        assertEquals(8, count);
+        st.execute("DROP TABLE input_table;");
+    }
+
+    @Test
+    public void test_ST_MakeGridConcurrentResultSets() throws Exception {
+        Statement st2 = connection.createStatement();
+        ResultSet rs1 = st.executeQuery("select ID_COL, ID_ROW from st_makegrid('POLYGON((0 0, 3 0, 3 3, 0 0))'::GEOMETRY, 1, 1);");
+        ResultSet rs2 = st2.executeQuery("select ID_COL, ID_ROW from st_makegrid('POLYGON((0 0, 2 0, 2 2, 0 0))'::GEOMETRY, 1, 1);");
+        // Read the two grids at the same time
+        int count1 = 0;
+        int count2 = 0;
+        boolean hasNext1 = rs1.next();
+        boolean hasNext2 = rs2.next();
+        while (hasNext1 || hasNext2) {
+            if (hasNext1) {
+                assertEquals(count1 % 3 + 1, rs1.getInt(1));
+                assertEquals(count1 / 3 + 1, rs1.getInt(2));
+                count1++;
+                hasNext1 = rs1.next();
+            }
+            if (hasNext2) {
+                assertEquals(count2 % 2 + 1, rs2.getInt(1));
+                assertEquals(count2 / 2 + 1, rs2.getInt(2));
+                count2++;
+                hasNext2 = rs2.next();
+            }
+        }
+        rs1.close();
+        rs2.close();
+        st2.close();
+        assertEquals(9, count1);
+        assertEquals(4, count2);
+    }
+
     @Test
     public void test_ST_MakePolygon1() throws Exception {
         ResultSet rs = st.executeQuery("SELECT ST_MakePolygon('LINESTRING (100 250, 100 350, 200 350, 200 250, 100 250)'::GEOMETRY );");
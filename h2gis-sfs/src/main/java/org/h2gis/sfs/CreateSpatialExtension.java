@@ -33,6 +33,7 @@ import org.h2gis.api.Function;
 import org.h2gis.api.ScalarFunction;
 import org.h2gis.sfs.functions.HexToVarBinary;
 import org.h2gis.sfs.functions.spatial.aggregate.ST_Accum;
+import org.h2gis.sfs.functions.spatial.aggregate.ST_UnionAgg;
 import org.h2gis.sfs.functions.spatial.convert.ST_AsBinary;
 import org.h2gis.sfs.functions.spatial.convert.ST_AsText;
 import org.h2gis.sfs.functions.spatial.convert.ST_AsWKT;
@@ -49,6 +50,7 @@ import org.h2gis.sfs.functions.spatial.convert.ST_PolyFromText;
 import org.h2gis.sfs.functions.spatial.convert.ST_PolyFromWKB;
 import org.h2gis.sfs.functions.spatial.crs.ST_SetSRID;
 import org.h2gis.sfs.functions.spatial.crs.ST_Transform;
+import org.h2gis.sfs.functions.spatial.crs.SpatialRefSysTrigger;
 import org.h2gis.sfs.functions.spatial.operators.ST_Buffer;
 import org.h2gis.sfs.functions.spatial.operators.ST_ConvexHull;
 import org.h2gis.sfs.functions.spatial.operators.ST_Difference;
@@ -97,7 +99,9 @@ import org.h2gis.sfs.functions.spatial.properties.ST_StartPoint;
 import org.h2gis.sfs.functions.spatial.properties.ST_X;
 import org.h2gis.sfs.functions.spatial.properties.ST_Y;
 import org.h2gis.sfs.functions.spatial.properties.ST_Z;
+import org.h2gis.sfs.notification.TableChanges;
 import org.h2gis.sfs.type.DimensionFromConstraint;
+import org.h2gis.sfs.type.GeometryColumns;
 import org.h2gis.sfs.type.DomainInfo;
 import org.h2gis.sfs.type.GeometryTypeFromConstraint;
 import org.h2gis.sfs.type.GeometryTypeNameFromConstraint;
@@ -132,6 +136,8 @@ public class CreateSpatialExtension {
                 new ColumnSRID(),
                 new GeometryTypeNameFromConstraint(),
                 new DimensionFromConstraint(),
+                new GeometryColumns(),
+                new TableChanges(),
                 new ST_GeomFromText(),
                 new ST_Area(),
                 new ST_AsBinary(),
@@ -188,6 +194,7 @@ public class CreateSpatialExtension {
                 new ST_SRID(),
                 new ST_EnvelopesIntersect(),
                 new ST_Accum(),
+                new ST_UnionAgg(),
                 new ST_Transform(),
                 new ST_SetSRID(),
                 new ST_CoordDim(),
@@ -258,12 +265,9 @@ public class CreateSpatialExtension {
     public static void registerSpatialTables(Connection connection) throws SQLException {
         Statement st = connection.createStatement();
         st.execute("drop view if exists geometry_columns");
-        st.execute("create view geometry_columns as select TABLE_CATALOG f_table_catalog,TABLE_SCHEMA f_table_schema,TABLE_NAME f_table_name," +
-                "COLUMN_NAME f_geometry_column,1 storage_type,_GeometryTypeFromConstraint(CHECK_CONSTRAINT || REMARKS, NUMERIC_PRECISION) geometry_type," +
-                "_DimensionFromConstraint(TABLE_CATALOG,TABLE_SCHEMA, TABLE_NAME,COLUMN_NAME,CHECK_CONSTRAINT) coord_dimension," +
-                "_ColumnSRID(TABLE_CATALOG,TABLE_SCHEMA, TABLE_NAME,COLUMN_NAME,CHECK_CONSTRAINT) srid," +
-                " _GeometryTypeNameFromConstraint(CHECK_CONSTRAINT || REMARKS, NUMERIC_PRECISION) type" +
-                " from INFORMATION_SCHEMA.COLUMNS WHERE TYPE_NAME = 'GEOMETRY'");
+        st.execute("create view geometry_columns as select f_table_catalog, f_table_schema, f_table_name," +
+                "f_geometry_column, storage_type, geometry_type, coord_dimension, srid, type" +
+                " from _GeometryColumns()");
         ResultSet rs = connection.getMetaData().getTables("","PUBLIC","SPATIAL_REF_SYS",null);
         if(!rs.next()) {
         	InputStreamReader reader = new InputStreamReader(
@@ -276,6 +280,7 @@ public class CreateSpatialExtension {
 				e.printStackTrace();
 			}
         }
+        SpatialRefSysTrigger.register(connection);
     }
 
     /**
@@ -20,7 +20,11 @@
 
 package org.h2gis.sfs;
 
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
 import org.h2.api.Trigger;
+import org.h2gis.sfs.notification.TableChangeNotifier;
+import org.h2gis.sfs.notification.TableChanges;
 import org.h2gis.utilities.TableLocation;
 
 import java.sql.Connection;
@@ -30,14 +34,20 @@ import java.sql.SQLException;
 import java.sql.Statement;
 
 /**
- * This trigger is used to track modifications on tables by inserting notifications into a temporary table.
+ * This trigger is used to track modifications on tables. The modifications are coalesced by table and by transaction
+ * then published by the {@link TableChangeNotifier} of the database, the changes can be read with the TABLE_CHANGES
+ * table function or received by a {@link org.h2gis.sfs.notification.TableChangeListener}.
  * The table H2GIS_SCHEMA.UPDATE_TRIGGERS contain the list of created triggers.
- * The table H2GIS_SCHEMA.UPDATE_NOTIFICATIONS contain the list of updates related to triggers.
- * When this trigger is attached to a table, a line is inserted in H2GIS_SCHEMA.UPDATE_NOTIFICATIONS each time this table is updated.
+ * The view H2GIS_SCHEMA.UPDATE_NOTIFICATIONS contain the list of updates related to triggers.
+ * When this trigger is attached to a table, a line is visible in H2GIS_SCHEMA.UPDATE_NOTIFICATIONS each time a
+ * transaction updates this table.
  * @author Nicolas Fortin
  */
 public class UpdateTrigger implements Trigger {
     private int idTrigger;
+    private String schemaName;
+    private String tableName;
+    private String triggerName;
     public static final String TRIGGER_SCHEMA = "H2GIS_SCHEMA";
     public static final String TRIGGER_TABLE = "UPDATE_TRIGGERS";
     public static final String NOTIFICATION_TABLE = "UPDATE_NOTIFICATIONS";
@@ -48,16 +58,24 @@ public class UpdateTrigger implements Trigger {
 
     @Override
     public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before, int type) throws SQLException {
+        this.schemaName = schemaName;
+        this.tableName = tableName;
+        this.triggerName = triggerName;
         Statement st = conn.createStatement();
         final TableLocation triggerTable = new TableLocation(TRIGGER_SCHEMA, TRIGGER_TABLE);
         final TableLocation notificationTable = new TableLocation(TRIGGER_SCHEMA, NOTIFICATION_TABLE);
         try {
             st.execute("create schema if not exists "+TRIGGER_SCHEMA);
-            st.execute("create temporary table if not exists "+notificationTable+" ( id BIGINT PRIMARY KEY" +
-                    " AUTO_INCREMENT, idtrigger int)");
-            st.execute("create index if not exists triggerindex on "+notificationTable+"(idtrigger)");
             st.execute("create temporary table if not exists "+triggerTable+"(idtrigger int primary key" +
                     " auto_increment, trigger_name varchar unique, schema_name VARCHAR, table_name varchar)");
+            TableChanges tableChanges = new TableChanges();
+            if (!hasFunction(conn, CreateSpatialExtension.getAlias(tableChanges))) {
+                CreateSpatialExtension.registerFunction(st, tableChanges, "", false);
+            }
+            // Keep the layout of the former notification table
+            st.execute("create or replace force view " + notificationTable + " as select c.id, t.idtrigger from " +
+                    CreateSpatialExtension.getAlias(tableChanges) + "() c, " + triggerTable + " t" +
+                    " where c.trigger_name = t.trigger_name");
             PreparedStatement preparedStatement = conn.prepareStatement("select idtrigger, trigger_name from "+triggerTable+" where trigger_name = ?");
             preparedStatement.setString(1, triggerName);
             ResultSet rs = preparedStatement.executeQuery();
@@ -92,17 +110,33 @@ public class UpdateTrigger implements Trigger {
         }
     }
 
+    private static boolean hasFunction(Connection conn, String alias) throws SQLException {
+        ResultSet rs = conn.getMetaData().getProcedures(null, null, alias);
+        try {
+            return rs.next();
+        } finally {
+            rs.close();
+        }
+    }
+
     @Override
     public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
-        final TableLocation notificationTable = new TableLocation(TRIGGER_SCHEMA, NOTIFICATION_TABLE);
         try {
-            PreparedStatement st = conn.prepareStatement("INSERT INTO "+notificationTable+"(idtrigger) VALUES(?)");
-            st.setInt(1, idTrigger);
-            try {
-                st.execute();
-            } finally {
-                st.close();
+            Envelope envelope = null;
+            for (Object[] row : new Object[][]{oldRow, newRow}) {
+                if (row != null) {
+                    for (Object value : row) {
+                        if (value instanceof Geometry && !((Geometry) value).isEmpty()) {
+                            if (envelope == null) {
+                                envelope = new Envelope(((Geometry) value).getEnvelopeInternal());
+                            } else {
+                                envelope.expandToInclude(((Geometry) value).getEnvelopeInternal());
+                            }
+                        }
+                    }
+                }
             }
+            TableChangeNotifier.record(conn, schemaName, tableName, triggerName, envelope);
         } catch (Exception ex) {
             // Ignore exception to not interfere with database
         }
@@ -0,0 +1,283 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.sfs.functions.spatial.aggregate;
+
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.operation.union.UnaryUnionOp;
+import org.h2.api.Aggregate;
+import org.h2.value.Value;
+import org.h2gis.api.AbstractFunction;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Aggregate function that computes the union of all the geometries of a group.
+ *
+ * The geometries are not all kept in memory. They are buffered, sorted along a Hilbert curve, then the buffer is
+ * split into batches of neighbouring geometries. Each batch is merged by a cascaded union on a pool of threads while
+ * the next rows are read. The partial unions are merged by groups of neighbours until a single geometry remains.
+ */
+public class ST_UnionAgg extends AbstractFunction implements Aggregate {
+    /** Number of geometries sorted together */
+    private static final int BUFFER_SIZE = 8192;
+    /** Number of geometries merged by a task */
+    private static final int BATCH_SIZE = 512;
+    /** Number of partial unions merged by a task */
+    private static final int MERGE_SIZE = 8;
+    private static final int THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+    /** Maximum number of batches waiting for a thread */
+    private static final int MAX_PENDING = BUFFER_SIZE / BATCH_SIZE + THREAD_COUNT * 2;
+    private static final int HILBERT_ORDER = 15;
+    private static ExecutorService executor;
+    private List<Geometry> buffer = new ArrayList<Geometry>();
+    private ArrayDeque<Future<Geometry>> pending = new ArrayDeque<Future<Geometry>>();
+    private List<Geometry> partialUnions = new ArrayList<Geometry>();
+    private int srid = 0;
+
+    public ST_UnionAgg() {
+        addProperty(PROP_REMARKS, "This aggregate function returns the union of all the geometries.\n" +
+                "Use it instead of ST_Union(ST_Accum(the_geom)) to dissolve a large table.");
+    }
+
+    @Override
+    public void init(Connection connection) throws SQLException {
+        buffer = new ArrayList<Geometry>();
+        pending = new ArrayDeque<Future<Geometry>>();
+        partialUnions = new ArrayList<Geometry>();
+        srid = 0;
+    }
+
+    @Override
+    public int getInternalType(int[] inputTypes) throws SQLException {
+        if (inputTypes.length != 1) {
+            throw new SQLException(ST_UnionAgg.class.getSimpleName() + " expects 1 argument.");
+        }
+        if (inputTypes[0] != Value.GEOMETRY) {
+            throw new SQLException(ST_UnionAgg.class.getSimpleName() + " expects a Geometry argument");
+        }
+        return Value.GEOMETRY;
+    }
+
+    @Override
+    public void add(Object o) throws SQLException {
+        if (o instanceof Geometry) {
+            Geometry geom = (Geometry) o;
+            if (geom.isEmpty()) {
+                return;
+            }
+            if (buffer.isEmpty() && pending.isEmpty() && partialUnions.isEmpty()) {
+                srid = geom.getSRID();
+            }
+            buffer.add(geom);
+            if (buffer.size() >= BUFFER_SIZE) {
+                flushBuffer();
+            }
+        } else if (o != null) {
+            throw new SQLException("ST_UnionAgg accepts only Geometry values. Input: " +
+                    o.getClass().getSimpleName());
+        }
+    }
+
+    @Override
+    public Geometry getResult() throws SQLException {
+        try {
+            flushBuffer();
+            while (!pending.isEmpty()) {
+                partialUnions.add(pending.poll().get());
+            }
+            // Merge the neighbouring partial unions until a single geometry remains
+            while (partialUnions.size() > 1) {
+                for (List<Geometry> group : splitAlongHilbertCurve(partialUnions, MERGE_SIZE)) {
+                    pending.add(getExecutor().submit(new UnionTask(group)));
+                }
+                partialUnions = new ArrayList<Geometry>(pending.size());
+                while (!pending.isEmpty()) {
+                    partialUnions.add(pending.poll().get());
+                }
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new SQLException("The union has been interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new SQLException("Cannot compute the union", ex.getCause());
+        } finally {
+            cancelPendingTasks();
+        }
+        if (partialUnions.isEmpty()) {
+            return null;
+        }
+        Geometry result = partialUnions.get(0);
+        result.setSRID(srid);
+        return result;
+    }
+
+    /**
+     * Send the buffered geometries to the thread pool, by batches of neighbours.
+     */
+    private void flushBuffer() throws SQLException {
+        if (buffer.isEmpty()) {
+            return;
+        }
+        try {
+            for (List<Geometry> batch : splitAlongHilbertCurve(buffer, BATCH_SIZE)) {
+                pending.add(getExecutor().submit(new UnionTask(batch)));
+            }
+            buffer = new ArrayList<Geometry>();
+            // Keep a bounded number of geometries in memory
+            while (pending.size() > MAX_PENDING) {
+                partialUnions.add(pending.poll().get());
+            }
+            if (partialUnions.size() >= MERGE_SIZE) {
+                pending.add(getExecutor().submit(new UnionTask(partialUnions)));
+                partialUnions = new ArrayList<Geometry>();
+            }
+        } catch (InterruptedException ex) {
+            cancelPendingTasks();
+            Thread.currentThread().interrupt();
+            throw new SQLException("The union has been interrupted", ex);
+        } catch (ExecutionException ex) {
+            cancelPendingTasks();
+            throw new SQLException("Cannot compute the union", ex.getCause());
+        }
+    }
+
+    private void cancelPendingTasks() {
+        for (Future<Geometry> task : pending) {
+            task.cancel(false);
+        }
+        pending.clear();
+    }
+
+    /**
+     * Sort the geometries along a Hilbert curve, using the center of their envelope.
+     * @param geometries Geometries
+     * @param groupSize Maximum number of geometries of a group
+     * @return Groups of neighbouring geometries
+     */
+    private static List<List<Geometry>> splitAlongHilbertCurve(List<Geometry> geometries, int groupSize) {
+        final Envelope extent = new Envelope();
+        for (Geometry geometry : geometries) {
+            extent.expandToInclude(geometry.getEnvelopeInternal());
+        }
+        final int[] keys = new int[geometries.size()];
+        Integer[] order = new Integer[geometries.size()];
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = hilbertIndex(extent, geometries.get(i).getEnvelopeInternal().centre());
+            order[i] = i;
+        }
+        Arrays.sort(order, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer o1, Integer o2) {
+                return keys[o1] < keys[o2] ? -1 : (keys[o1] == keys[o2] ? 0 : 1);
+            }
+        });
+        List<List<Geometry>> groups = new ArrayList<List<Geometry>>(geometries.size() / groupSize + 1);
+        for (int start = 0; start < order.length; start += groupSize) {
+            int end = Math.min(order.length, start + groupSize);
+            List<Geometry> group = new ArrayList<Geometry>(end - start);
+            for (int i = start; i < end; i++) {
+                group.add(geometries.get(order[i]));
+            }
+            groups.add(group);
+        }
+        return groups;
+    }
+
+    /**
+     * @param extent Envelope of all the points
+     * @param point Point
+     * @return Position of the point along a Hilbert curve that covers the extent
+     */
+    static int hilbertIndex(Envelope extent, Coordinate point) {
+        int side = 1 << HILBERT_ORDER;
+        int x = extent.getWidth() > 0 ?
+                (int) Math.min(side - 1, (point.x - extent.getMinX()) / extent.getWidth() * side) : 0;
+        int y = extent.getHeight() > 0 ?
+                (int) Math.min(side - 1, (point.y - extent.getMinY()) / extent.getHeight() * side) : 0;
+        int index = 0;
+        for (int s = side / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            index += s * s * ((3 * rx) ^ ry);
+            // Rotate the quadrant
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = side - 1 - x;
+                    y = side - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return index;
+    }
+
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(THREAD_COUNT, new ThreadFactory() {
+                private final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = defaultFactory.newThread(r);
+                    thread.setName("ST_UnionAgg-" + thread.getName());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Cascaded union of a group of geometries
+     */
+    private static class UnionTask implements Callable<Geometry> {
+        private final List<Geometry> geometries;
+
+        private UnionTask(List<Geometry> geometries) {
+            this.geometries = geometries;
+        }
+
+        @Override
+        public Geometry call() throws Exception {
+            if (geometries.size() == 1) {
+                return geometries.get(0);
+            }
+            return UnaryUnionOp.union(geometries);
+        }
+    }
+}
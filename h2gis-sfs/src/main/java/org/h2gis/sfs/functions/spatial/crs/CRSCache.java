@@ -0,0 +1,288 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.sfs.functions.spatial.crs;
+
+import org.cts.CRSHelper;
+import org.cts.Identifier;
+import org.cts.crs.CRSException;
+import org.cts.crs.CoordinateReferenceSystem;
+import org.cts.crs.GeodeticCRS;
+import org.cts.op.CoordinateOperation;
+import org.cts.op.CoordinateOperationFactory;
+import org.cts.parser.proj.ParameterException;
+import org.cts.parser.proj.ProjKeyParameters;
+import org.h2.engine.Session;
+import org.h2.engine.SessionInterface;
+import org.h2.jdbc.JdbcConnection;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Cache of the Coordinate Reference Systems and of the coordinate operations used by {@link ST_Transform}.
+ *
+ * The SPATIAL_REF_SYS table of a database is read once, then the CRS and the operations are created on demand
+ * and kept in bounded LRU caches. The entries of a database are removed by {@link SpatialRefSysTrigger} when its
+ * SPATIAL_REF_SYS table is updated. The cache is shared by all the sessions and does not keep any connection, the
+ * connection of the caller is only used to read the table.
+ */
+public final class CRSCache {
+    /** Default maximum number of CRS and of coordinate operations kept for a database */
+    public static final int DEFAULT_MAXIMUM_SIZE = 128;
+    private static final CRSCache INSTANCE = new CRSCache(DEFAULT_MAXIMUM_SIZE);
+    private final Map<Object, DatabaseCRS> databases = new WeakHashMap<Object, DatabaseCRS>();
+    private volatile int maximumSize;
+
+    /**
+     * @param maximumSize Maximum number of CRS and of coordinate operations kept for a database
+     */
+    public CRSCache(int maximumSize) {
+        setMaximumSize(maximumSize);
+    }
+
+    /**
+     * @return The cache used by {@link ST_Transform}
+     */
+    public static CRSCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return Maximum number of CRS and of coordinate operations kept for a database
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Change the size of the cache, the cached entries are removed.
+     * @param maximumSize Maximum number of CRS and of coordinate operations kept for a database
+     */
+    public void setMaximumSize(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("The cache size must be greater than 0");
+        }
+        this.maximumSize = maximumSize;
+        clear();
+    }
+
+    /**
+     * Remove all the cached entries.
+     */
+    public void clear() {
+        synchronized (databases) {
+            databases.clear();
+        }
+    }
+
+    /**
+     * Remove the cached entries of a database. The SPATIAL_REF_SYS table will be read again on the next request.
+     * @param connection Connection to the database
+     * @throws SQLException Unable to identify the database
+     */
+    public void invalidate(Connection connection) throws SQLException {
+        invalidate(getDatabaseKey(connection));
+    }
+
+    /**
+     * @param databaseKey Database identifier returned by {@link #getDatabaseKey(Connection)}
+     */
+    void invalidate(Object databaseKey) {
+        synchronized (databases) {
+            databases.remove(databaseKey);
+        }
+    }
+
+    /**
+     * @param connection Active connection, used to read the SPATIAL_REF_SYS table on the first call
+     * @param srid Code of the CRS in the SPATIAL_REF_SYS table
+     * @return The Coordinate Reference System
+     * @throws SQLException The CRS does not exist or cannot be created
+     */
+    public CoordinateReferenceSystem getCRS(Connection connection, int srid) throws SQLException {
+        return getDatabaseCRS(connection).getCRS(connection, srid);
+    }
+
+    /**
+     * @param connection Active connection, used to read the SPATIAL_REF_SYS table on the first call
+     * @param inputSRID Code of the source CRS
+     * @param targetSRID Code of the target CRS
+     * @return The operation that transforms the coordinates of the source CRS into the target CRS, null if there
+     * is no operation between these CRS
+     * @throws SQLException The CRS cannot be created or the transformation is not supported
+     */
+    public CoordinateOperation getCoordinateOperation(Connection connection, int inputSRID, int targetSRID)
+            throws SQLException {
+        return getDatabaseCRS(connection).getCoordinateOperation(connection, inputSRID, targetSRID);
+    }
+
+    private DatabaseCRS getDatabaseCRS(Connection connection) throws SQLException {
+        Object key = getDatabaseKey(connection);
+        synchronized (databases) {
+            DatabaseCRS databaseCRS = databases.get(key);
+            if (databaseCRS == null) {
+                databaseCRS = new DatabaseCRS(maximumSize);
+                databases.put(key, databaseCRS);
+            }
+            return databaseCRS;
+        }
+    }
+
+    /**
+     * The connections given to the functions and to the triggers are not the connections of the users, the
+     * database instance is used to identify the database.
+     * @param connection Active connection
+     * @return Object that identify the database of the connection
+     */
+    static Object getDatabaseKey(Connection connection) throws SQLException {
+        if (connection.isWrapperFor(JdbcConnection.class)) {
+            SessionInterface session = connection.unwrap(JdbcConnection.class).getSession();
+            if (session instanceof Session) {
+                return ((Session) session).getDatabase();
+            }
+        }
+        return connection.getMetaData().getURL();
+    }
+
+    /**
+     * Cached entries of a database
+     */
+    private static class DatabaseCRS {
+        private Map<Integer, String[]> definitions;
+        private final Map<Integer, CoordinateReferenceSystem> crsCache;
+        private final Map<EPSGTuple, CoordinateOperation> operationCache;
+
+        private DatabaseCRS(int maximumSize) {
+            crsCache = new LruCache<Integer, CoordinateReferenceSystem>(maximumSize);
+            operationCache = new LruCache<EPSGTuple, CoordinateOperation>(maximumSize);
+        }
+
+        /**
+         * Read the proj4 definitions of the SPATIAL_REF_SYS table
+         * @param connection Active connection
+         * @param srid Requested code, the table is read again if this code is missing
+         * @return The definition of the CRS, [proj4text, auth_name], null if the code is not in the table
+         */
+        private synchronized String[] getDefinition(Connection connection, int srid) throws SQLException {
+            String[] definition = definitions == null ? null : definitions.get(srid);
+            if (definition == null) {
+                // The table is read the first time, or again if rows have been inserted without notification
+                Map<Integer, String[]> rows = new HashMap<Integer, String[]>();
+                Statement st = connection.createStatement();
+                try {
+                    ResultSet rs = st.executeQuery("SELECT srid, proj4text, auth_name FROM SPATIAL_REF_SYS");
+                    try {
+                        while (rs.next()) {
+                            rows.put(rs.getInt(1), new String[]{rs.getString(2), rs.getString(3)});
+                        }
+                    } finally {
+                        rs.close();
+                    }
+                } finally {
+                    st.close();
+                }
+                definitions = rows;
+                definition = rows.get(srid);
+            }
+            return definition;
+        }
+
+        private CoordinateReferenceSystem getCRS(Connection connection, int srid) throws SQLException {
+            CoordinateReferenceSystem crs;
+            synchronized (crsCache) {
+                crs = crsCache.get(srid);
+            }
+            if (crs == null) {
+                String[] definition = getDefinition(connection, srid);
+                if (definition == null || definition[0] == null) {
+                    throw new SQLException("Cannot find the CRS " + srid + " in the SPATIAL_REF_SYS table");
+                }
+                try {
+                    Map<String, String> parameters = SpatialRefRegistry.parseProj4Text(definition[0],
+                            definition[1], String.valueOf(srid));
+                    String title = parameters.remove(ProjKeyParameters.title);
+                    crs = CRSHelper.createCoordinateReferenceSystem(new Identifier("epsg", String.valueOf(srid),
+                            title), parameters);
+                } catch (CRSException ex) {
+                    throw new SQLException("Cannot create the CRS", ex);
+                } catch (ParameterException ex) {
+                    throw new SQLException("Cannot create the CRS", ex);
+                }
+                synchronized (crsCache) {
+                    crsCache.put(srid, crs);
+                }
+            }
+            return crs;
+        }
+
+        private CoordinateOperation getCoordinateOperation(Connection connection, int inputSRID, int targetSRID)
+                throws SQLException {
+            EPSGTuple epsg = new EPSGTuple(inputSRID, targetSRID);
+            CoordinateOperation op;
+            synchronized (operationCache) {
+                op = operationCache.get(epsg);
+            }
+            if (op == null) {
+                CoordinateReferenceSystem inputCRS = getCRS(connection, inputSRID);
+                CoordinateReferenceSystem targetCRS = getCRS(connection, targetSRID);
+                if (inputCRS instanceof GeodeticCRS && targetCRS instanceof GeodeticCRS) {
+                    List<CoordinateOperation> ops = CoordinateOperationFactory
+                            .createCoordinateOperations((GeodeticCRS) inputCRS, (GeodeticCRS) targetCRS);
+                    if (ops.isEmpty()) {
+                        return null;
+                    }
+                    op = ops.get(0);
+                    synchronized (operationCache) {
+                        operationCache.put(epsg, op);
+                    }
+                } else {
+                    throw new SQLException("The transformation from "
+                            + inputCRS + " to " + targetSRID + " is not yet supported.");
+                }
+            }
+            return op;
+        }
+    }
+
+    /**
+     * Least recently used entries are removed when the limit is reached, the accesses must be synchronized.
+     */
+    private static class LruCache<K, V> extends LinkedHashMap<K, V> {
+        private final int limit;
+
+        private LruCache(int limit) {
+            super(16, 0.75f, true);
+            this.limit = limit;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<K, V> eldest) {
+            return size() > limit;
+        }
+    }
+}
@@ -21,21 +21,21 @@
 package org.h2gis.sfs.functions.spatial.crs;
 
 import com.vividsolutions.jts.geom.*;
-import org.cts.CRSFactory;
 import org.cts.IllegalCoordinateException;
-import org.cts.crs.CRSException;
 import org.cts.crs.CoordinateReferenceSystem;
-import org.cts.crs.GeodeticCRS;
 import org.cts.op.CoordinateOperation;
-import org.cts.op.CoordinateOperationFactory;
 import org.h2gis.api.AbstractFunction;
 import org.h2gis.api.ScalarFunction;
 
 import java.sql.Connection;
 import java.sql.SQLException;
-import java.util.LinkedHashMap;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 
 /**
@@ -47,10 +47,11 @@ import java.util.Map;
  * @author Adam Gouge
  */
 public class ST_Transform extends AbstractFunction implements ScalarFunction {
-
-    private static CRSFactory crsf;
-    private static SpatialRefRegistry srr = new SpatialRefRegistry();
-    private static Map<EPSGTuple, CoordinateOperation> copPool = new CopCache(5);
+    /** Minimal number of coordinates of a geometry transformed by several threads */
+    private static final int PARALLEL_THRESHOLD = 100000;
+    private static final int PARALLEL_CHUNK_SIZE = 25000;
+    private static final int PARALLEL_THREAD_COUNT = Runtime.getRuntime().availableProcessors();
+    private static ExecutorService executor;
 
     /**
      * Constructor
@@ -81,109 +82,169 @@ public class ST_Transform extends AbstractFunction implements ScalarFunction {
         if (codeEpsg == null) {
             throw new IllegalArgumentException("The SRID code cannot be null.");
         }
-        if (crsf == null) {
-            crsf = new CRSFactory();
-            //Activate the CRSFactory and the internal H2 spatial_ref_sys registry to
-            // manage Coordinate Reference Systems.
-            crsf.getRegistryManager().addRegistry(srr);
+        int inputSRID = geom.getSRID();
+        if (inputSRID == 0) {
+            throw new SQLException("Cannot find a CRS");
         }
-        srr.setConnection(connection);
-        try {
-            int inputSRID = geom.getSRID();
-            if (inputSRID == 0) {
-                throw new SQLException("Cannot find a CRS");
-            } else {
-                CoordinateReferenceSystem inputCRS = crsf.getCRS(srr.getRegistryName() + ":" + String.valueOf(inputSRID));
-                CoordinateReferenceSystem targetCRS = crsf.getCRS(srr.getRegistryName() + ":" + String.valueOf(codeEpsg));
-                if (inputCRS.equals(targetCRS)) {
-                    return geom;
+        CRSCache cache = CRSCache.getInstance();
+        CoordinateReferenceSystem inputCRS = cache.getCRS(connection, inputSRID);
+        CoordinateReferenceSystem targetCRS = cache.getCRS(connection, codeEpsg);
+        if (inputCRS.equals(targetCRS)) {
+            return geom;
+        }
+        CoordinateOperation op = cache.getCoordinateOperation(connection, inputSRID, codeEpsg);
+        if (op != null) {
+            Geometry outPutGeom = (Geometry) geom.clone();
+            transform(outPutGeom, op);
+            outPutGeom.setSRID(codeEpsg);
+            return outPutGeom;
+        }
+        return null;
+
+    }
+
+    /**
+     * Transform the coordinates of a geometry, the geometry is updated. The coordinates of the large geometries are
+     * transformed by several threads.
+     * @param geometry Geometry to update
+     * @param coordinateOperation Operation from the CRS of the geometry to the target CRS
+     */
+    public static void transform(Geometry geometry, CoordinateOperation coordinateOperation) {
+        if (PARALLEL_THREAD_COUNT > 1 && geometry.getNumPoints() >= PARALLEL_THRESHOLD) {
+            transformInParallel(geometry, coordinateOperation);
+        } else {
+            geometry.apply(new CRSTransformFilter(coordinateOperation));
+        }
+    }
+
+    /**
+     * Split the coordinate sequences of the geometry into ranges transformed by the thread pool.
+     */
+    private static void transformInParallel(Geometry geometry, CoordinateOperation coordinateOperation) {
+        final List<CoordinateSequence> sequences = new ArrayList<CoordinateSequence>();
+        geometry.apply(new GeometryComponentFilter() {
+            @Override
+            public void filter(Geometry component) {
+                if (component instanceof LineString) {
+                    sequences.add(((LineString) component).getCoordinateSequence());
+                } else if (component instanceof Point) {
+                    sequences.add(((Point) component).getCoordinateSequence());
                 }
-                EPSGTuple epsg = new EPSGTuple(inputSRID, codeEpsg);
-                CoordinateOperation op = copPool.get(epsg);
-                if (op != null) {
-                    Geometry outPutGeom = (Geometry) geom.clone();
-                    outPutGeom.apply(new CRSTransformFilter(op));
-                    outPutGeom.setSRID(codeEpsg);
-                    return outPutGeom;
-                } else {
-                    if (inputCRS instanceof GeodeticCRS && targetCRS instanceof GeodeticCRS) {
-                        List<CoordinateOperation> ops = CoordinateOperationFactory
-                                .createCoordinateOperations((GeodeticCRS) inputCRS, (GeodeticCRS) targetCRS);
-                        if (!ops.isEmpty()) {
-                            op = ops.get(0);
-                            Geometry outPutGeom = (Geometry) geom.clone();
-                            outPutGeom.apply(new CRSTransformFilter(op));
-                            copPool.put(epsg, op);
-                            outPutGeom.setSRID(codeEpsg);
-                            return outPutGeom;
-                        }
-                    } else {
-                        throw new SQLException("The transformation from "
-                                + inputCRS + " to " + codeEpsg + " is not yet supported.");
-                    }
+            }
+        });
+        List<Future<?>> tasks = new ArrayList<Future<?>>();
+        ExecutorService executor = getExecutor();
+        try {
+            for (CoordinateSequence sequence : sequences) {
+                for (int start = 0; start < sequence.size(); start += PARALLEL_CHUNK_SIZE) {
+                    tasks.add(executor.submit(new TransformRange(coordinateOperation, sequence, start,
+                            Math.min(sequence.size(), start + PARALLEL_CHUNK_SIZE))));
                 }
             }
-        } catch (CRSException ex) {
-            throw new SQLException("Cannot create the CRS", ex);
+            for (Future<?> task : tasks) {
+                task.get();
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("The transformation has been interrupted", ex);
+        } catch (ExecutionException ex) {
+            if (ex.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) ex.getCause();
+            }
+            throw new RuntimeException(ex.getCause());
         } finally {
-            srr.setConnection(null);
+            for (Future<?> task : tasks) {
+                task.cancel(false);
+            }
         }
-        return null;
+        geometry.geometryChanged();
+    }
 
+    private static synchronized ExecutorService getExecutor() {
+        if (executor == null) {
+            executor = Executors.newFixedThreadPool(PARALLEL_THREAD_COUNT, new ThreadFactory() {
+                private final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = defaultFactory.newThread(r);
+                    thread.setName("ST_Transform-" + thread.getName());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return executor;
+    }
+
+    /**
+     * Transform a range of a coordinate sequence
+     */
+    private static class TransformRange implements Runnable {
+        private final CRSTransformFilter filter;
+        private final CoordinateSequence sequence;
+        private final int start;
+        private final int end;
+
+        private TransformRange(CoordinateOperation coordinateOperation, CoordinateSequence sequence, int start,
+                               int end) {
+            this.filter = new CRSTransformFilter(coordinateOperation);
+            this.sequence = sequence;
+            this.start = start;
+            this.end = end;
+        }
+
+        @Override
+        public void run() {
+            for (int i = start; i < end; i++) {
+                filter.filter(sequence, i);
+            }
+        }
     }
 
-  
     /**
-     * This method is used to apply a {@link CoordinateOperation} to a geometry.
-     * The transformation loops on each coordinate. 
+     * This filter is used to apply a {@link CoordinateOperation} to a geometry.
+     * The coordinates are updated in place, the same buffer is given to the
+     * operation for all the coordinates. A filter must be used by one thread.
      */
-    public static class CRSTransformFilter implements CoordinateFilter{
+    public static class CRSTransformFilter implements CoordinateSequenceFilter {
         private final CoordinateOperation coordinateOperation;
+        private final double[] xyz = new double[3];
 
-      
         public CRSTransformFilter(final CoordinateOperation coordinateOperation){
             this.coordinateOperation=coordinateOperation;            
         }
-       
+
         @Override
-        public void filter(Coordinate coord) {
+        public void filter(CoordinateSequence seq, int i) {
+            boolean hasZ = seq.getDimension() > 2;
+            xyz[0] = seq.getOrdinate(i, CoordinateSequence.X);
+            xyz[1] = seq.getOrdinate(i, CoordinateSequence.Y);
+            xyz[2] = hasZ ? seq.getOrdinate(i, CoordinateSequence.Z) : 0;
+            if (Double.isNaN(xyz[2])) {
+                xyz[2] = 0;
+            }
             try {
-                if (Double.isNaN(coord.z)) {
-                    coord.z = 0;
-                }
-                double[] xyz = coordinateOperation
-                        .transform(new double[]{coord.x, coord.y, coord.z});
-                coord.x = xyz[0];
-                coord.y = xyz[1];
-                if (xyz.length > 2) {
-                    coord.z = xyz[2];
-                } else {
-                    coord.z = Double.NaN;
+                // The operation may update the buffer or return a new array
+                double[] result = coordinateOperation.transform(xyz);
+                seq.setOrdinate(i, CoordinateSequence.X, result[0]);
+                seq.setOrdinate(i, CoordinateSequence.Y, result[1]);
+                if (hasZ) {
+                    seq.setOrdinate(i, CoordinateSequence.Z, result.length > 2 ? result[2] : Double.NaN);
                 }
             } catch (IllegalCoordinateException ice) {
-                throw new RuntimeException("Cannot transform the coordinate" + coord.toString(), ice);
+                throw new RuntimeException("Cannot transform the coordinate" + seq.getCoordinate(i).toString(), ice);
             }
-
         }
-        
-    
-    }
 
-    /**
-     * A simple cache to manage {@link CoordinateOperation}
-     */
-    public static class CopCache extends LinkedHashMap<EPSGTuple, CoordinateOperation> {
-
-        private final int limit;
-
-        public CopCache(int limit) {
-            super(16, 0.75f, true);
-            this.limit = limit;
+        @Override
+        public boolean isDone() {
+            return false;
         }
 
         @Override
-        protected boolean removeEldestEntry(Map.Entry<EPSGTuple, CoordinateOperation> eldest) {
-            return size() > limit;
+        public boolean isGeometryChanged() {
+            return true;
         }
     }
 }
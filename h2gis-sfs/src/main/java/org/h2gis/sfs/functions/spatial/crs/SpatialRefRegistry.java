@@ -54,29 +54,14 @@ public class SpatialRefRegistry implements Registry {
     public Map<String, String> getParameters(String code) throws RegistryException {
         try {
             PreparedStatement prepStmt = connection.prepareStatement("SELECT proj4text, auth_name FROM SPATIAL_REF_SYS where srid=?");
-            prepStmt.setInt(1, Integer.valueOf(code));
-            ResultSet rs = prepStmt.executeQuery();
-            if (rs.next()) {
-                String proj4Text = rs.getString(1);
-                String[] tokens = regex.split(proj4Text);
-                Map<String, String> v = new HashMap<String, String>();
-                for (String token : tokens) {
-                    String[] keyValue = token.split("=");
-                    if (keyValue.length == 2) {
-                        String key = formatKey(keyValue[0]);
-                        ProjKeyParameters.checkUnsupported(key);
-                        v.put(key, keyValue[1]);
-                    } else {
-                        String key = formatKey(token);
-                        ProjKeyParameters.checkUnsupported(key);
-                        v.put(key, null);
-                    }
-                }
-                if (!v.containsKey(ProjKeyParameters.title)) {
-                    v.put(ProjKeyParameters.title, rs.getString(2) + ":" + code);
+            try {
+                prepStmt.setInt(1, Integer.valueOf(code));
+                ResultSet rs = prepStmt.executeQuery();
+                if (rs.next()) {
+                    return parseProj4Text(rs.getString(1), rs.getString(2), code);
                 }
+            } finally {
                 prepStmt.close();
-                return v;
             }
         } catch (SQLException ex) {
             throw new RegistryException("Cannot obtain the CRS parameters", ex);
@@ -84,6 +69,35 @@ public class SpatialRefRegistry implements Registry {
         return null;
     }
 
+    /**
+     * Read the parameters of a proj4 definition
+     *
+     * @param proj4Text proj4 definition of the CRS
+     * @param authName Authority name, used in the title if the definition does not have one
+     * @param code CRS code
+     * @return The CRS parameters
+     */
+    static Map<String, String> parseProj4Text(String proj4Text, String authName, String code) {
+        String[] tokens = regex.split(proj4Text);
+        Map<String, String> v = new HashMap<String, String>();
+        for (String token : tokens) {
+            String[] keyValue = token.split("=");
+            if (keyValue.length == 2) {
+                String key = formatKey(keyValue[0]);
+                ProjKeyParameters.checkUnsupported(key);
+                v.put(key, keyValue[1]);
+            } else {
+                String key = formatKey(token);
+                ProjKeyParameters.checkUnsupported(key);
+                v.put(key, null);
+            }
+        }
+        if (!v.containsKey(ProjKeyParameters.title)) {
+            v.put(ProjKeyParameters.title, authName + ":" + code);
+        }
+        return v;
+    }
+
     /**
      * Remove + char if exists
      *
@@ -0,0 +1,80 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.sfs.functions.spatial.crs;
+
+import org.h2.api.Trigger;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * This trigger removes the cached CRS of a database from the {@link CRSCache} when its SPATIAL_REF_SYS table is
+ * updated.
+ */
+public class SpatialRefSysTrigger implements Trigger {
+    public static final String TRIGGER_NAME = "SPATIAL_REF_SYS_CRS_CACHE";
+    private Object databaseKey;
+
+    /**
+     * Create the trigger on the SPATIAL_REF_SYS table.
+     * @param connection Active connection
+     * @throws SQLException
+     */
+    public static void register(Connection connection) throws SQLException {
+        Statement st = connection.createStatement();
+        try {
+            st.execute("CREATE TRIGGER IF NOT EXISTS PUBLIC." + TRIGGER_NAME + " AFTER INSERT, UPDATE, DELETE" +
+                    " ON PUBLIC.SPATIAL_REF_SYS CALL \"" + SpatialRefSysTrigger.class.getName() + "\"");
+        } finally {
+            st.close();
+        }
+    }
+
+    @Override
+    public void init(Connection conn, String schemaName, String triggerName, String tableName, boolean before,
+                     int type) throws SQLException {
+        databaseKey = CRSCache.getDatabaseKey(conn);
+        CRSCache.getInstance().invalidate(databaseKey);
+    }
+
+    @Override
+    public void fire(Connection conn, Object[] oldRow, Object[] newRow) throws SQLException {
+        CRSCache.getInstance().invalidate(databaseKey);
+    }
+
+    @Override
+    public void close() throws SQLException {
+        invalidate();
+    }
+
+    @Override
+    public void remove() throws SQLException {
+        invalidate();
+    }
+
+    private void invalidate() {
+        if (databaseKey != null) {
+            CRSCache.getInstance().invalidate(databaseKey);
+            databaseKey = null;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.sfs.functions.spatial.predicates;
+
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.Point;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometryFactory;
+import org.h2.value.Value;
+import org.h2.value.ValueGeometry;
+import org.h2.value.ValueNull;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the prepared geometries used by the spatial predicates.
+ *
+ * A geometry is prepared the second time it is given to the cache, then a geometry used as the argument of a
+ * predicate for many rows, a constant or the current row of the outer table of a join, is evaluated with the
+ * indexes of its {@link PreparedGeometry}. The geometries are identified by their WKB, the H2 value that is
+ * given for every row is found without comparing the bytes.
+ *
+ * The prepared geometries are shared by all the sessions and are read without locking. A geometry given for the
+ * first time is only recorded in a small set of candidates split by hash code, then the geometries given once
+ * (ex: the rows of the inner table of a join) do not evict the prepared geometries. When the cache is full, the
+ * least recently used geometry is removed.
+ */
+public final class PreparedGeometryCache {
+    /** Default maximum number of geometries kept in the cache */
+    public static final int DEFAULT_MAXIMUM_SIZE = 64;
+    /** Number of independent sets of candidates, a power of two */
+    private static final int CANDIDATE_STRIPES = 16;
+    private static final PreparedGeometryCache INSTANCE = new PreparedGeometryCache(DEFAULT_MAXIMUM_SIZE);
+    private final ConcurrentMap<ValueGeometry, CachedGeometry> geometries =
+            new ConcurrentHashMap<ValueGeometry, CachedGeometry>();
+    // Incremented when a geometry is prepared, the least recently used geometry has the lowest use stamp
+    private final AtomicLong useClock = new AtomicLong();
+    private volatile Candidates[] candidates;
+    private volatile int maximumSize;
+
+    /**
+     * @param maximumSize Maximum number of geometries kept in the cache
+     */
+    public PreparedGeometryCache(int maximumSize) {
+        setMaximumSize(maximumSize);
+    }
+
+    /**
+     * @return The cache used by the spatial predicates
+     */
+    public static PreparedGeometryCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return Maximum number of geometries kept in the cache
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * Change the size of the cache, the cached entries are removed.
+     * @param maximumSize Maximum number of geometries kept in the cache
+     */
+    public synchronized void setMaximumSize(int maximumSize) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("The cache size must be greater than 0");
+        }
+        this.maximumSize = maximumSize;
+        Candidates[] newCandidates = new Candidates[CANDIDATE_STRIPES];
+        for (int i = 0; i < newCandidates.length; i++) {
+            newCandidates[i] = new Candidates(Math.max(1, maximumSize / CANDIDATE_STRIPES));
+        }
+        candidates = newCandidates;
+        geometries.clear();
+    }
+
+    /**
+     * Remove all the cached entries.
+     */
+    public synchronized void clear() {
+        for (Candidates stripe : candidates) {
+            stripe.clear();
+        }
+        geometries.clear();
+    }
+
+    /**
+     * @param value Geometry value
+     * @return The prepared geometry if this geometry has recently been given to the cache, null on the first call
+     * or if the geometry is a point or is empty
+     */
+    public PreparedGeometry getPrepared(ValueGeometry value) {
+        Geometry geometry = value.getGeometryNoCopy();
+        if (geometry instanceof Point || geometry.isEmpty()) {
+            // Nothing to index
+            return null;
+        }
+        CachedGeometry cached = geometries.get(value);
+        if (cached != null) {
+            long stamp = useClock.get();
+            if (cached.lastUse != stamp) {
+                cached.lastUse = stamp;
+            }
+            return cached.prepared;
+        }
+        int hash = value.hashCode();
+        Candidates[] stripes = candidates;
+        if (!stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)].remove(value, hash)) {
+            // First call
+            return null;
+        }
+        PreparedGeometry prepared = PreparedGeometryFactory.prepare(geometry);
+        cached = geometries.putIfAbsent(value, new CachedGeometry(prepared, useClock.incrementAndGet()));
+        if (cached != null) {
+            // Prepared by another thread
+            return cached.prepared;
+        }
+        if (geometries.size() > maximumSize) {
+            evict();
+        }
+        return prepared;
+    }
+
+    /**
+     * Remove the least recently used geometries until the cache size is reached.
+     */
+    private synchronized void evict() {
+        while (geometries.size() > maximumSize) {
+            Map.Entry<ValueGeometry, CachedGeometry> eldest = null;
+            for (Map.Entry<ValueGeometry, CachedGeometry> entry : geometries.entrySet()) {
+                if (eldest == null || entry.getValue().lastUse < eldest.getValue().lastUse) {
+                    eldest = entry;
+                }
+            }
+            if (eldest == null) {
+                return;
+            }
+            geometries.remove(eldest.getKey(), eldest.getValue());
+        }
+    }
+
+    /**
+     * @param value Function argument
+     * @return The geometry value, null if the value is NULL
+     */
+    public static ValueGeometry toGeometryValue(Value value) {
+        if (value == null || value == ValueNull.INSTANCE) {
+            return null;
+        }
+        if (value instanceof ValueGeometry) {
+            return (ValueGeometry) value;
+        }
+        return (ValueGeometry) value.convertTo(Value.GEOMETRY);
+    }
+
+    /**
+     * Prepared geometry and its last use stamp
+     */
+    private static class CachedGeometry {
+        private final PreparedGeometry prepared;
+        private volatile long lastUse;
+
+        private CachedGeometry(PreparedGeometry prepared, long lastUse) {
+            this.prepared = prepared;
+            this.lastUse = lastUse;
+        }
+    }
+
+    /**
+     * Geometries given once, the oldest candidate is replaced by a new one.
+     */
+    private static class Candidates {
+        private final ValueGeometry[] values;
+        private int next = 0;
+
+        private Candidates(int size) {
+            values = new ValueGeometry[size];
+        }
+
+        /**
+         * @param value Geometry value
+         * @param hash Hash code of the value
+         * @return True if the value was a candidate, false if the value is added to the candidates
+         */
+        private synchronized boolean remove(ValueGeometry value, int hash) {
+            for (int i = 0; i < values.length; i++) {
+                ValueGeometry candidate = values[i];
+                if (candidate != null && candidate.hashCode() == hash && candidate.equals(value)) {
+                    values[i] = null;
+                    return true;
+                }
+            }
+            values[next] = value;
+            next = (next + 1) % values.length;
+            return false;
+        }
+
+        private synchronized void clear() {
+            for (int i = 0; i < values.length; i++) {
+                values[i] = null;
+            }
+        }
+    }
+}
@@ -21,6 +21,9 @@
 package org.h2gis.sfs.functions.spatial.predicates;
 
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import org.h2.value.Value;
+import org.h2.value.ValueGeometry;
 import org.h2gis.api.DeterministicScalarFunction;
 
 /**
@@ -39,7 +42,7 @@ public class ST_Contains extends DeterministicScalarFunction {
 
     @Override
     public String getJavaStaticMethod() {
-        return "isContains";
+        return "contains";
     }
 
     /**
@@ -48,12 +51,28 @@ public class ST_Contains extends DeterministicScalarFunction {
      * @return True only if no points of testGeometry lie outside of surface
      */
     public static Boolean isContains(Geometry surface,Geometry testGeometry) {
-        if(surface==null) {
+        if(surface==null || testGeometry==null) {
             return null;
         }
-        if(testGeometry==null) {
-            return false;
-        }
         return surface.contains(testGeometry);
     }
+
+    /**
+     * Evaluate the predicate, a surface given for several rows is prepared.
+     * @param surface Surface Geometry.
+     * @param testGeometry Geometry instance
+     * @return True only if no points of testGeometry lie outside of surface
+     */
+    public static Boolean contains(Value surface, Value testGeometry) {
+        ValueGeometry a = PreparedGeometryCache.toGeometryValue(surface);
+        ValueGeometry b = PreparedGeometryCache.toGeometryValue(testGeometry);
+        if(a==null || b==null) {
+            return null;
+        }
+        PreparedGeometry prepared = PreparedGeometryCache.getInstance().getPrepared(a);
+        if(prepared != null) {
+            return prepared.contains(b.getGeometryNoCopy());
+        }
+        return a.getGeometryNoCopy().contains(b.getGeometryNoCopy());
+    }
 }
@@ -21,6 +21,9 @@
 package org.h2gis.sfs.functions.spatial.predicates;
 
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import org.h2.value.Value;
+import org.h2.value.ValueGeometry;
 import org.h2gis.api.DeterministicScalarFunction;
 
 /**
@@ -39,7 +42,7 @@ public class ST_Disjoint extends DeterministicScalarFunction {
 
     @Override
     public String getJavaStaticMethod() {
-        return "geomDisjoint";
+        return "disjoint";
     }
 
     /**
@@ -55,4 +58,29 @@ public class ST_Disjoint extends DeterministicScalarFunction {
         }
         return a.disjoint(b);
     }
+
+    /**
+     * Evaluate the predicate, a geometry given for several rows is prepared.
+     *
+     * @param a Geometry Geometry.
+     * @param b Geometry instance
+     * @return true if the two Geometries are disjoint
+     */
+    public static Boolean disjoint(Value a, Value b) {
+        ValueGeometry geomA = PreparedGeometryCache.toGeometryValue(a);
+        ValueGeometry geomB = PreparedGeometryCache.toGeometryValue(b);
+        if(geomA==null || geomB==null) {
+            return null;
+        }
+        PreparedGeometryCache cache = PreparedGeometryCache.getInstance();
+        PreparedGeometry prepared = cache.getPrepared(geomA);
+        if(prepared != null) {
+            return prepared.disjoint(geomB.getGeometryNoCopy());
+        }
+        prepared = cache.getPrepared(geomB);
+        if(prepared != null) {
+            return prepared.disjoint(geomA.getGeometryNoCopy());
+        }
+        return geomA.getGeometryNoCopy().disjoint(geomB.getGeometryNoCopy());
+    }
 }
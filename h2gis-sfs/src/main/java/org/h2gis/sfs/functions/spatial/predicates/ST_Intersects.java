@@ -21,6 +21,9 @@
 package org.h2gis.sfs.functions.spatial.predicates;
 
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import org.h2.value.Value;
+import org.h2.value.ValueGeometry;
 import org.h2gis.api.DeterministicScalarFunction;
 
 /**
@@ -38,7 +41,7 @@ public class ST_Intersects extends DeterministicScalarFunction {
 
     @Override
     public String getJavaStaticMethod() {
-        return "isIntersects";
+        return "intersects";
     }
 
     /**
@@ -47,12 +50,33 @@ public class ST_Intersects extends DeterministicScalarFunction {
      * @return true if the geometry A intersects the geometry B
      */
     public static Boolean isIntersects(Geometry surface,Geometry testGeometry) {
-        if(surface==null) {
+        if(surface==null || testGeometry==null) {
             return null;
         }
-        if(testGeometry==null) {
-            return false;
-        }
         return surface.intersects(testGeometry);
     }
+
+    /**
+     * Evaluate the predicate, a geometry given for several rows is prepared.
+     * @param surface Surface Geometry.
+     * @param testGeometry Geometry instance
+     * @return true if the geometry A intersects the geometry B
+     */
+    public static Boolean intersects(Value surface, Value testGeometry) {
+        ValueGeometry a = PreparedGeometryCache.toGeometryValue(surface);
+        ValueGeometry b = PreparedGeometryCache.toGeometryValue(testGeometry);
+        if(a==null || b==null) {
+            return null;
+        }
+        PreparedGeometryCache cache = PreparedGeometryCache.getInstance();
+        PreparedGeometry prepared = cache.getPrepared(a);
+        if(prepared != null) {
+            return prepared.intersects(b.getGeometryNoCopy());
+        }
+        prepared = cache.getPrepared(b);
+        if(prepared != null) {
+            return prepared.intersects(a.getGeometryNoCopy());
+        }
+        return a.getGeometryNoCopy().intersects(b.getGeometryNoCopy());
+    }
 }
@@ -21,6 +21,9 @@
 package org.h2gis.sfs.functions.spatial.predicates;
 
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
+import org.h2.value.Value;
+import org.h2.value.ValueGeometry;
 import org.h2gis.api.DeterministicScalarFunction;
 
 /**
@@ -38,7 +41,7 @@ public class ST_Within extends DeterministicScalarFunction {
 
     @Override
     public String getJavaStaticMethod() {
-        return "isWithin";
+        return "within";
     }
 
     /**
@@ -52,4 +55,24 @@ public class ST_Within extends DeterministicScalarFunction {
         }
         return a.within(b);
     }
+
+    /**
+     * Evaluate the predicate, a geometry B given for several rows is prepared.
+     * @param a Surface Geometry.
+     * @param b Geometry instance
+     * @return true if the geometry A is within the geometry B
+     */
+    public static Boolean within(Value a, Value b) {
+        ValueGeometry geomA = PreparedGeometryCache.toGeometryValue(a);
+        ValueGeometry geomB = PreparedGeometryCache.toGeometryValue(b);
+        if(geomA==null || geomB==null) {
+            return null;
+        }
+        // A is within B if B contains A
+        PreparedGeometry prepared = PreparedGeometryCache.getInstance().getPrepared(geomB);
+        if(prepared != null) {
+            return prepared.contains(geomA.getGeometryNoCopy());
+        }
+        return geomA.getGeometryNoCopy().within(geomB.getGeometryNoCopy());
+    }
 }
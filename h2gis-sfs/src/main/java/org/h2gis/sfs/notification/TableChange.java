@@ -0,0 +1,95 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+
+package org.h2gis.sfs.notification;
+
+import com.vividsolutions.jts.geom.Envelope;
+
+/**
+ * Modifications of a table made by a transaction, notified by {@link TableChangeNotifier}.
+ */
+public final class TableChange {
+    private final long id;
+    private final String schemaName;
+    private final String tableName;
+    private final String triggerName;
+    private final long changeCount;
+    private final Envelope envelope;
+
+    TableChange(long id, String schemaName, String tableName, String triggerName, long changeCount,
+                Envelope envelope) {
+        this.id = id;
+        this.schemaName = schemaName;
+        this.tableName = tableName;
+        this.triggerName = triggerName;
+        this.changeCount = changeCount;
+        this.envelope = envelope;
+    }
+
+    /**
+     * @return Identifier of the notification, the identifiers are increasing
+     */
+    public long getId() {
+        return id;
+    }
+
+    /**
+     * @return Schema of the modified table
+     */
+    public String getSchemaName() {
+        return schemaName;
+    }
+
+    /**
+     * @return Name of the modified table
+     */
+    public String getTableName() {
+        return tableName;
+    }
+
+    /**
+     * @return Name of the trigger that recorded the modifications
+     */
+    public String getTriggerName() {
+        return triggerName;
+    }
+
+    /**
+     * @return Number of modified rows, or number of statements if the trigger is not fired for each row
+     */
+    public long getChangeCount() {
+        return changeCount;
+    }
+
+    /**
+     * @return Envelope of the modified geometries, before and after the modifications. Null if the modified rows
+     * do not contain geometries.
+     */
+    public Envelope getEnvelope() {
+        return envelope == null ? null : new Envelope(envelope);
+    }
+
+    @Override
+    public String toString() {
+        return "TableChange{id=" + id + ", table=" + schemaName + "." + tableName + ", trigger=" + triggerName +
+                ", changeCount=" + changeCount + ", envelope=" + envelope + "}";
+    }
+}
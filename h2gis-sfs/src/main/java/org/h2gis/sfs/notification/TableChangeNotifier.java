@@ -0,0 +1,369 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+
+package org.h2gis.sfs.notification;
+
+import com.vividsolutions.jts.geom.Envelope;
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.engine.SessionInterface;
+import org.h2.jdbc.JdbcConnection;
+import org.h2.mvstore.db.TransactionStore.Transaction;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Collect the modifications of the tables of a database and notify them to the listeners.
+ *
+ * The modifications recorded by a session are coalesced by table and by transaction: the number of modified rows is
+ * counted and the envelope of the modified geometries is expanded. The coalesced change is published when the
+ * session starts another transaction, or when a flush finds that the session has no uncommitted changes anymore.
+ * A flush is done shortly after each modification, and before the changes are read.
+ *
+ * The published changes are kept in a ring buffer of {@link #CAPACITY} entries, the oldest changes are overwritten
+ * when the readers do not poll fast enough. The identifiers of the changes are consecutive, then a reader detects
+ * the lost changes by a gap in the identifiers.
+ */
+public final class TableChangeNotifier {
+    /** Number of published changes kept in memory */
+    public static final int CAPACITY = 4096;
+    /** Delay between a modification and the publication of the changes of finished transactions */
+    private static final long FLUSH_DELAY = 50;
+    private static final Map<Database, TableChangeNotifier> NOTIFIERS = new WeakHashMap<Database, TableChangeNotifier>();
+    private static ScheduledExecutorService scheduler;
+    private final AtomicReferenceArray<TableChange> ring = new AtomicReferenceArray<TableChange>(CAPACITY);
+    /** Identifier of the next published change */
+    private final AtomicLong nextId = new AtomicLong(1);
+    private final List<TableChangeListener> listeners = new CopyOnWriteArrayList<TableChangeListener>();
+    private final ConcurrentMap<Session, SessionChanges> pending = new ConcurrentHashMap<Session, SessionChanges>();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+    private final Runnable flushTask = new Runnable() {
+        @Override
+        public void run() {
+            flushScheduled.set(false);
+            flush();
+            if (!pending.isEmpty()) {
+                // Wait for the end of the running transactions
+                scheduleFlush();
+            }
+        }
+    };
+
+    private TableChangeNotifier() {
+    }
+
+    /**
+     * @param connection Active connection on an embedded H2 database
+     * @return The notifier of the database
+     * @throws SQLException If the connection is not an embedded H2 connection
+     */
+    public static TableChangeNotifier getInstance(Connection connection) throws SQLException {
+        return getInstance(getSession(connection).getDatabase());
+    }
+
+    private static TableChangeNotifier getInstance(Database database) {
+        synchronized (NOTIFIERS) {
+            TableChangeNotifier notifier = NOTIFIERS.get(database);
+            if (notifier == null) {
+                notifier = new TableChangeNotifier();
+                NOTIFIERS.put(database, notifier);
+            }
+            return notifier;
+        }
+    }
+
+    /**
+     * Record the modification of a row, or of a set of rows.
+     * @param connection Connection that modifies the table
+     * @param schemaName Schema of the table
+     * @param tableName Name of the table
+     * @param triggerName Name of the trigger that records the modification
+     * @param envelope Envelope of the modified geometries, null if there is no geometry
+     * @throws SQLException If the connection is not an embedded H2 connection
+     */
+    public static void record(Connection connection, String schemaName, String tableName, String triggerName,
+                              Envelope envelope) throws SQLException {
+        Session session = getSession(connection);
+        getInstance(session.getDatabase()).record(session, new ChangeKey(schemaName, tableName, triggerName),
+                envelope);
+    }
+
+    private void record(Session session, ChangeKey key, Envelope envelope) {
+        Object transaction = getTransaction(session);
+        while (true) {
+            SessionChanges changes = pending.get(session);
+            if (changes == null) {
+                changes = new SessionChanges(transaction);
+                SessionChanges previous = pending.putIfAbsent(session, changes);
+                if (previous != null) {
+                    changes = previous;
+                }
+            }
+            List<TableChange> published = null;
+            synchronized (changes) {
+                if (changes.removed) {
+                    // Published and removed by a flush, retry with new changes
+                    continue;
+                }
+                if (changes.transaction != transaction) {
+                    // The previous transaction is finished
+                    published = changes.publish(this);
+                    changes.transaction = transaction;
+                }
+                changes.add(key, envelope);
+            }
+            notifyListeners(published);
+            break;
+        }
+        scheduleFlush();
+    }
+
+    /**
+     * Publish the changes of the finished transactions.
+     */
+    public void flush() {
+        for (Map.Entry<Session, SessionChanges> entry : pending.entrySet()) {
+            Session session = entry.getKey();
+            SessionChanges changes = entry.getValue();
+            List<TableChange> published = null;
+            synchronized (changes) {
+                if (!changes.removed && changes.isFinished(session)) {
+                    published = changes.publish(this);
+                    changes.removed = true;
+                    pending.remove(session, changes);
+                }
+            }
+            notifyListeners(published);
+        }
+    }
+
+    /**
+     * @param fromId Identifier of the first returned change
+     * @return The published changes that are still in the ring buffer, whose identifier is greater than or equal to
+     * fromId
+     */
+    public List<TableChange> getChanges(long fromId) {
+        long end = nextId.get();
+        long id = Math.max(fromId, Math.max(1, end - CAPACITY));
+        List<TableChange> changes = new ArrayList<TableChange>((int) Math.max(0, end - id));
+        for (; id < end; id++) {
+            TableChange change = ring.get((int) (id % CAPACITY));
+            if (change == null || change.getId() < id) {
+                // This change is not written yet
+                break;
+            }
+            if (change.getId() == id) {
+                changes.add(change);
+            }
+            // Else the change has been overwritten by a more recent one
+        }
+        return changes;
+    }
+
+    /**
+     * @return Identifier of the last published change, 0 if no change has been published
+     */
+    public long getLastId() {
+        return nextId.get() - 1;
+    }
+
+    /**
+     * @param listener Listener called for each published change
+     */
+    public void addListener(TableChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    /**
+     * @param listener Listener to remove
+     */
+    public void removeListener(TableChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    private TableChange publish(ChangeKey key, long changeCount, Envelope envelope) {
+        long id = nextId.getAndIncrement();
+        TableChange change = new TableChange(id, key.schemaName, key.tableName, key.triggerName, changeCount,
+                envelope);
+        ring.set((int) (id % CAPACITY), change);
+        return change;
+    }
+
+    private void notifyListeners(List<TableChange> changes) {
+        if (changes == null) {
+            return;
+        }
+        for (TableChange change : changes) {
+            for (TableChangeListener listener : listeners) {
+                try {
+                    listener.tableChanged(change);
+                } catch (RuntimeException ex) {
+                    // Ignore exception to not interfere with the other listeners and the database
+                }
+            }
+        }
+    }
+
+    private void scheduleFlush() {
+        if (flushScheduled.compareAndSet(false, true)) {
+            getScheduler().schedule(flushTask, FLUSH_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private static synchronized ScheduledExecutorService getScheduler() {
+        if (scheduler == null) {
+            scheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+                private final ThreadFactory defaultFactory = Executors.defaultThreadFactory();
+
+                @Override
+                public Thread newThread(Runnable r) {
+                    Thread thread = defaultFactory.newThread(r);
+                    thread.setName("TableChangeNotifier-" + thread.getName());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return scheduler;
+    }
+
+    /**
+     * @return The running transaction of the session, null if the transactions cannot be distinguished
+     */
+    private static Object getTransaction(Session session) {
+        if (session.getDatabase().getMvStore() != null) {
+            return session.getTransaction();
+        }
+        return null;
+    }
+
+    private static Session getSession(Connection connection) throws SQLException {
+        if (connection.isWrapperFor(JdbcConnection.class)) {
+            SessionInterface session = connection.unwrap(JdbcConnection.class).getSession();
+            if (session instanceof Session) {
+                return (Session) session;
+            }
+        }
+        throw new SQLException("The table changes are only available on an embedded H2 database");
+    }
+
+    /**
+     * Modifications of a session that are not published yet
+     */
+    private static class SessionChanges {
+        private Object transaction;
+        private Map<ChangeKey, PendingChange> changes = new HashMap<ChangeKey, PendingChange>();
+        /** True when this object has been removed from the pending changes */
+        private boolean removed = false;
+
+        private SessionChanges(Object transaction) {
+            this.transaction = transaction;
+        }
+
+        /**
+         * @return True if the transaction that recorded the changes is committed or rolled back
+         */
+        private boolean isFinished(Session session) {
+            if (session.isClosed()) {
+                return true;
+            }
+            if (transaction instanceof Transaction) {
+                // A read only transaction may follow, then the session is not checked
+                return ((Transaction) transaction).getStatus() == Transaction.STATUS_CLOSED;
+            }
+            return !session.containsUncommitted();
+        }
+
+        private void add(ChangeKey key, Envelope envelope) {
+            PendingChange change = changes.get(key);
+            if (change == null) {
+                change = new PendingChange();
+                changes.put(key, change);
+            }
+            change.changeCount++;
+            if (envelope != null) {
+                if (change.envelope == null) {
+                    change.envelope = new Envelope(envelope);
+                } else {
+                    change.envelope.expandToInclude(envelope);
+                }
+            }
+        }
+
+        private List<TableChange> publish(TableChangeNotifier notifier) {
+            List<TableChange> published = new ArrayList<TableChange>(changes.size());
+            for (Map.Entry<ChangeKey, PendingChange> entry : changes.entrySet()) {
+                published.add(notifier.publish(entry.getKey(), entry.getValue().changeCount,
+                        entry.getValue().envelope));
+            }
+            changes = new HashMap<ChangeKey, PendingChange>();
+            return published;
+        }
+    }
+
+    private static class PendingChange {
+        private long changeCount = 0;
+        private Envelope envelope;
+    }
+
+    private static class ChangeKey {
+        private final String schemaName;
+        private final String tableName;
+        private final String triggerName;
+
+        private ChangeKey(String schemaName, String tableName, String triggerName) {
+            this.schemaName = schemaName;
+            this.tableName = tableName;
+            this.triggerName = triggerName;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof ChangeKey)) {
+                return false;
+            }
+            ChangeKey other = (ChangeKey) o;
+            return schemaName.equals(other.schemaName) && tableName.equals(other.tableName) &&
+                    triggerName.equals(other.triggerName);
+        }
+
+        @Override
+        public int hashCode() {
+            return (schemaName.hashCode() * 31 + tableName.hashCode()) * 31 + triggerName.hashCode();
+        }
+    }
+}
@@ -0,0 +1,90 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software; 
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+
+package org.h2gis.sfs.notification;
+
+import com.vividsolutions.jts.geom.Envelope;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import org.h2.tools.SimpleResultSet;
+import org.h2gis.api.AbstractFunction;
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.sfs.TableFunctionUtil;
+
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/**
+ * Table function that returns the table changes published by {@link TableChangeNotifier}. The tables are tracked by
+ * {@link org.h2gis.sfs.UpdateTrigger}.
+ */
+public class TableChanges extends AbstractFunction implements ScalarFunction {
+    private static final GeometryFactory GEOMETRY_FACTORY = new GeometryFactory();
+
+    public TableChanges() {
+        addProperty(PROP_REMARKS, "Return the modifications of the tables that have an UpdateTrigger.\n" +
+                "TABLE_CHANGES(fromId) returns the modifications whose ID is greater than or equal to fromId.\n" +
+                "THE_GEOM is the envelope of the modified geometries.");
+        addProperty(PROP_NAME, "TABLE_CHANGES");
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "getTableChanges";
+    }
+
+    /**
+     * @param connection Active connection
+     * @return All the table changes kept in memory
+     * @throws SQLException
+     */
+    public static ResultSet getTableChanges(Connection connection) throws SQLException {
+        return getTableChanges(connection, 0);
+    }
+
+    /**
+     * @param connection Active connection
+     * @param fromId Identifier of the first returned change
+     * @return The table changes kept in memory, whose ID is greater than or equal to fromId
+     * @throws SQLException
+     */
+    public static ResultSet getTableChanges(Connection connection, long fromId) throws SQLException {
+        SimpleResultSet rs = new SimpleResultSet();
+        rs.addColumn("ID", Types.BIGINT, 19, 0);
+        rs.addColumn("SCHEMA_NAME", Types.VARCHAR, Integer.MAX_VALUE, 0);
+        rs.addColumn("TABLE_NAME", Types.VARCHAR, Integer.MAX_VALUE, 0);
+        rs.addColumn("TRIGGER_NAME", Types.VARCHAR, Integer.MAX_VALUE, 0);
+        rs.addColumn("CHANGE_COUNT", Types.BIGINT, 19, 0);
+        rs.addColumn("THE_GEOM", Types.JAVA_OBJECT, "GEOMETRY", 0, 0);
+        if (TableFunctionUtil.isColumnListConnection(connection)) {
+            return rs;
+        }
+        TableChangeNotifier notifier = TableChangeNotifier.getInstance(connection);
+        notifier.flush();
+        for (TableChange change : notifier.getChanges(fromId)) {
+            Envelope envelope = change.getEnvelope();
+            rs.addRow(change.getId(), change.getSchemaName(), change.getTableName(), change.getTriggerName(),
+                    change.getChangeCount(), envelope == null ? null : GEOMETRY_FACTORY.toGeometry(envelope));
+        }
+        return rs;
+    }
+}
@@ -0,0 +1,350 @@
+/**
+ * H2GIS is a library that brings spatial support to the H2 Database Engine
+ * <http://www.h2database.com>. H2GIS is developed by CNRS
+ * <http://www.cnrs.fr/>.
+ *
+ * This code is part of the H2GIS project. H2GIS is free software;
+ * you can redistribute it and/or modify it under the terms of the GNU
+ * Lesser General Public License as published by the Free Software Foundation;
+ * version 3.0 of the License.
+ *
+ * H2GIS is distributed in the hope that it will be useful, but
+ * WITHOUT ANY WARRANTY; without even the implied warranty of MERCHANTABILITY or
+ * FITNESS FOR A PARTICULAR PURPOSE. See the GNU Lesser General Public License
+ * for more details <http://www.gnu.org/licenses/>.
+ *
+ *
+ * For more information, please consult: <http://www.h2gis.org/>
+ * or contact directly: info_at_h2gis.org
+ */
+
+package org.h2gis.sfs.type;
+
+import org.h2.engine.Database;
+import org.h2.engine.Session;
+import org.h2.engine.SessionInterface;
+import org.h2.jdbc.JdbcConnection;
+import org.h2.schema.Schema;
+import org.h2.table.Table;
+import org.h2.tools.SimpleResultSet;
+import org.h2gis.api.AbstractFunction;
+import org.h2gis.api.ScalarFunction;
+import org.h2gis.sfs.TableFunctionUtil;
+import org.h2gis.sfs.functions.spatial.properties.ColumnSRID;
+import org.h2gis.utilities.SFSUtilities;
+import org.h2gis.utilities.TableLocation;
+
+import java.lang.reflect.Field;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Table function that returns the content of the GEOMETRY_COLUMNS view.
+ *
+ * The geometry columns and their constraints are read in two queries on the INFORMATION_SCHEMA, then they are kept
+ * in a catalog until the structure of the database is modified. The DDL statements update the rows of the internal
+ * SYS table of H2, its modification id is used as the version of the catalog. The temporary tables are not stored in
+ * the SYS table, the number of tables is also compared. The SRID of a column without SRID constraint is read from
+ * its first row, it is kept until the table data is modified.
+ */
+public class GeometryColumns extends AbstractFunction implements ScalarFunction {
+    private static final String SRID_FUNC = "ST_SRID";
+    private static final Map<Database, Catalog> CATALOGS = new WeakHashMap<Database, Catalog>();
+
+    public GeometryColumns() {
+        addProperty(PROP_REMARKS, "Return the geometry columns of the database, used by the GEOMETRY_COLUMNS view.");
+        addProperty(PROP_NAME, "_GeometryColumns");
+    }
+
+    @Override
+    public String getJavaStaticMethod() {
+        return "getGeometryColumns";
+    }
+
+    /**
+     * @param connection Active connection
+     * @return The geometry columns, with the columns of the GEOMETRY_COLUMNS view
+     * @throws SQLException
+     */
+    public static ResultSet getGeometryColumns(Connection connection) throws SQLException {
+        SimpleResultSet rs = new SimpleResultSet();
+        rs.addColumn("F_TABLE_CATALOG", Types.VARCHAR, Integer.MAX_VALUE, 0);
+        rs.addColumn("F_TABLE_SCHEMA", Types.VARCHAR, Integer.MAX_VALUE, 0);
+        rs.addColumn("F_TABLE_NAME", Types.VARCHAR, Integer.MAX_VALUE, 0);
+        rs.addColumn("F_GEOMETRY_COLUMN", Types.VARCHAR, Integer.MAX_VALUE, 0);
+        rs.addColumn("STORAGE_TYPE", Types.INTEGER, 10, 0);
+        rs.addColumn("GEOMETRY_TYPE", Types.INTEGER, 10, 0);
+        rs.addColumn("COORD_DIMENSION", Types.INTEGER, 10, 0);
+        rs.addColumn("SRID", Types.INTEGER, 10, 0);
+        rs.addColumn("TYPE", Types.VARCHAR, Integer.MAX_VALUE, 0);
+        if (TableFunctionUtil.isColumnListConnection(connection)) {
+            return rs;
+        }
+        Session session = getSession(connection);
+        if (session == null || !session.getLocalTempTables().isEmpty()) {
+            // The local temporary tables are only visible to their session, they cannot be shared
+            for (GeometryColumn column : readColumns(connection)) {
+                rs.addRow(column.getRow(connection, null, false));
+            }
+            return rs;
+        }
+        Catalog catalog;
+        synchronized (CATALOGS) {
+            catalog = CATALOGS.get(session.getDatabase());
+            if (catalog == null) {
+                catalog = new Catalog();
+                CATALOGS.put(session.getDatabase(), catalog);
+            }
+        }
+        for (Object[] row : catalog.getRows(connection, session)) {
+            rs.addRow(row);
+        }
+        return rs;
+    }
+
+    /**
+     * Read the geometry columns and the table constraints from the INFORMATION_SCHEMA.
+     * @param connection Active connection
+     * @return The geometry columns
+     */
+    private static List<GeometryColumn> readColumns(Connection connection) throws SQLException {
+        List<GeometryColumn> columns = new ArrayList<GeometryColumn>();
+        Statement st = connection.createStatement();
+        try {
+            // The creation of a temporary table does not change the modification id of the INFORMATION_SCHEMA
+            // tables, the non deterministic condition prevents H2 from returning the result of the previous call.
+            ResultSet rs = st.executeQuery("SELECT TABLE_CATALOG, TABLE_SCHEMA, TABLE_NAME, COLUMN_NAME, " +
+                    "CHECK_CONSTRAINT, REMARKS, NUMERIC_PRECISION FROM INFORMATION_SCHEMA.COLUMNS " +
+                    "WHERE TYPE_NAME = 'GEOMETRY' AND RAND() >= 0");
+            try {
+                while (rs.next()) {
+                    columns.add(new GeometryColumn(new TableLocation(rs.getString(1), rs.getString(2),
+                            rs.getString(3)), rs.getString(4), nullToEmpty(rs.getString(5)),
+                            nullToEmpty(rs.getString(6)), rs.getInt(7)));
+                }
+            } finally {
+                rs.close();
+            }
+            if (columns.isEmpty()) {
+                return columns;
+            }
+            // Merge the table constraints of each table
+            Map<TableLocation, StringBuilder> tableConstraints = new HashMap<TableLocation, StringBuilder>();
+            rs = st.executeQuery("SELECT TABLE_CATALOG, TABLE_SCHEMA, TABLE_NAME, CHECK_EXPRESSION " +
+                    "FROM INFORMATION_SCHEMA.CONSTRAINTS WHERE CHECK_EXPRESSION IS NOT NULL AND RAND() >= 0");
+            try {
+                while (rs.next()) {
+                    TableLocation location = new TableLocation(rs.getString(1), rs.getString(2), rs.getString(3));
+                    StringBuilder constraint = tableConstraints.get(location);
+                    if (constraint == null) {
+                        constraint = new StringBuilder();
+                        tableConstraints.put(location, constraint);
+                    }
+                    constraint.append(rs.getString(4));
+                }
+            } finally {
+                rs.close();
+            }
+            for (GeometryColumn column : columns) {
+                StringBuilder constraint = tableConstraints.get(column.location);
+                column.parseConstraint(constraint == null ? "" : constraint.toString());
+            }
+        } finally {
+            st.close();
+        }
+        return columns;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value == null ? "" : value;
+    }
+
+    /**
+     * @return The session of the connection, null if it is not an embedded H2 connection
+     */
+    private static Session getSession(Connection connection) throws SQLException {
+        if (connection.isWrapperFor(JdbcConnection.class)) {
+            SessionInterface session = connection.unwrap(JdbcConnection.class).getSession();
+            if (session instanceof Session) {
+                return (Session) session;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @return An identifier that changes when the structure of the database is modified, null if it is not available
+     */
+    private static long[] getSchemaVersion(Database database) {
+        Table meta;
+        try {
+            Field field = Database.class.getDeclaredField("meta");
+            field.setAccessible(true);
+            meta = (Table) field.get(database);
+        } catch (NoSuchFieldException ex) {
+            return null;
+        } catch (IllegalAccessException ex) {
+            return null;
+        }
+        if (meta == null) {
+            return null;
+        }
+        return new long[]{meta.getMaxDataModificationId(), database.getModificationMetaId(),
+                database.getAllTablesAndViews(false).size()};
+    }
+
+    /**
+     * @return True if a session of the database contains changes that are not committed
+     */
+    private static boolean hasUncommittedChanges(Database database) {
+        for (Session session : database.getSessions(false)) {
+            if (session.containsUncommitted()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Geometry columns of a database
+     */
+    private static class Catalog {
+        private long[] version;
+        private List<GeometryColumn> columns;
+
+        private synchronized List<Object[]> getRows(Connection connection, Session session) throws SQLException {
+            Database database = session.getDatabase();
+            long[] currentVersion = getSchemaVersion(database);
+            if (columns == null || currentVersion == null || !Arrays.equals(currentVersion, version)) {
+                List<GeometryColumn> newColumns = readColumns(connection);
+                if (columns != null) {
+                    // Keep the SRID read from the data of the tables, it is still valid if the table is not modified
+                    Map<String, GeometryColumn> oldColumns = new HashMap<String, GeometryColumn>(columns.size());
+                    for (GeometryColumn column : columns) {
+                        oldColumns.put(column.getKey(), column);
+                    }
+                    for (GeometryColumn column : newColumns) {
+                        GeometryColumn oldColumn = oldColumns.get(column.getKey());
+                        if (oldColumn != null) {
+                            column.dataSRID = oldColumn.dataSRID;
+                            column.dataModificationId = oldColumn.dataModificationId;
+                        }
+                    }
+                }
+                columns = newColumns;
+                version = currentVersion;
+            }
+            // The first rows of the tables may change on commit
+            boolean cacheDataSRID = !hasUncommittedChanges(database);
+            List<Object[]> rows = new ArrayList<Object[]>(columns.size());
+            for (GeometryColumn column : columns) {
+                rows.add(column.getRow(connection, session, cacheDataSRID));
+            }
+            return rows;
+        }
+    }
+
+    /**
+     * Properties of a geometry column
+     */
+    private static class GeometryColumn {
+        private final TableLocation location;
+        private final String name;
+        private final int geometryType;
+        private final String columnConstraint;
+        private int dimension = 2;
+        private int constraintSRID = 0;
+        private int dataSRID = 0;
+        private long dataModificationId = Long.MIN_VALUE;
+
+        private GeometryColumn(TableLocation location, String name, String checkConstraint, String remarks,
+                               int numericPrecision) {
+            this.location = location;
+            this.name = name;
+            this.columnConstraint = checkConstraint;
+            this.geometryType = GeometryTypeFromConstraint.geometryTypeFromConstraint(checkConstraint + remarks,
+                    numericPrecision);
+        }
+
+        private String getKey() {
+            return location + "." + TableLocation.quoteIdentifier(name);
+        }
+
+        /**
+         * @param tableConstraint Constraints of the table
+         */
+        private void parseConstraint(String tableConstraint) {
+            String constraint = columnConstraint + tableConstraint;
+            dimension = DimensionFromConstraint.dimensionFromConstraint(constraint, name);
+            if (constraint.toUpperCase().contains(SRID_FUNC)) {
+                constraintSRID = ColumnSRID.getSRIDFromConstraint(constraint, name);
+            }
+        }
+
+        /**
+         * @param session Session used to find the table, null to not use the cached SRID
+         * @param cacheDataSRID True to keep the SRID read from the first row
+         * @return The row of the GEOMETRY_COLUMNS view
+         */
+        private Object[] getRow(Connection connection, Session session, boolean cacheDataSRID) {
+            int srid = constraintSRID > 0 ? constraintSRID : getDataSRID(connection, session, cacheDataSRID);
+            return new Object[]{location.getCatalog(), location.getSchema(), location.getTable(), name, 1,
+                    geometryType, dimension, srid, SFSUtilities.getGeometryTypeNameFromCode(geometryType)};
+        }
+
+        private int getDataSRID(Connection connection, Session session, boolean cacheDataSRID) {
+            Table table = null;
+            if (session != null) {
+                Schema schema = session.getDatabase().findSchema(location.getSchema());
+                table = schema == null ? null : schema.findTableOrView(session, location.getTable());
+            }
+            long modificationId = table == null ? Long.MIN_VALUE : table.getMaxDataModificationId();
+            if (modificationId != Long.MIN_VALUE && modificationId == dataModificationId) {
+                return dataSRID;
+            }
+            int srid = readDataSRID(connection);
+            if (cacheDataSRID && modificationId != Long.MIN_VALUE &&
+                    modificationId == table.getMaxDataModificationId()) {
+                dataSRID = srid;
+                dataModificationId = modificationId;
+            } else {
+                dataModificationId = Long.MIN_VALUE;
+            }
+            return srid;
+        }
+
+        /**
+         * @return The SRID of the first geometry of the column, 0 if it cannot be found
+         */
+        private int readDataSRID(Connection connection) {
+            try {
+                Statement st = connection.createStatement();
+                try {
+                    ResultSet rs = st.executeQuery("SELECT ST_SRID(" + TableLocation.quoteIdentifier(name) +
+                            ") FROM " + location + " LIMIT 1");
+                    try {
+                        if (rs.next()) {
+                            return Math.max(0, rs.getInt(1));
+                        }
+                        return 0;
+                    } finally {
+                        rs.close();
+                    }
+                } finally {
+                    st.close();
+                }
+            } catch (SQLException ex) {
+                return 0;
+            }
+        }
+    }
+}
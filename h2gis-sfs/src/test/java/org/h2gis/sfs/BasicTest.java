@@ -25,6 +25,9 @@ import com.vividsolutions.jts.geom.GeometryFactory;
 import org.h2.value.DataType;
 import org.h2.value.Value;
 import org.h2gis.sfs.UpdateTrigger;
+import org.h2gis.sfs.notification.TableChange;
+import org.h2gis.sfs.notification.TableChangeListener;
+import org.h2gis.sfs.notification.TableChangeNotifier;
 import org.h2gis.sfs.unitTest.SpatialDBFactory;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -36,9 +39,11 @@ import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 
 import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
 import com.vividsolutions.jts.io.ParseException;
 import com.vividsolutions.jts.io.WKTReader;
@@ -100,6 +105,66 @@ public class BasicTest {
                }
         }
 
+        @Test
+        public void testUpdateTriggerCoalesceTransaction() throws Exception {
+            // Use another database, the identifiers of the triggers are shared by the sessions
+            Connection triggerConnection = SpatialDBFactory.createSpatialDataBase("UpdateTriggerCoalesceTest");
+            Statement st = triggerConnection.createStatement();
+            final List<TableChange> received = new CopyOnWriteArrayList<TableChange>();
+            TableChangeListener listener = new TableChangeListener() {
+                @Override
+                public void tableChanged(TableChange change) {
+                    received.add(change);
+                }
+            };
+            TableChangeNotifier notifier = TableChangeNotifier.getInstance(triggerConnection);
+            notifier.addListener(listener);
+            try {
+                st.execute("drop trigger if exists rowtrigger");
+                st.execute("DROP TABLE IF EXISTS test_rows");
+                st.execute("create table test_rows(id int, the_geom geometry)");
+                st.execute("create trigger rowtrigger AFTER INSERT, UPDATE, DELETE ON test_rows FOR EACH ROW CALL \""+UpdateTrigger.class.getName()+"\"");
+                long lastId = notifier.getLastId();
+                triggerConnection.setAutoCommit(false);
+                try {
+                    st.execute("insert into test_rows values(1, 'POINT(1 2)')");
+                    st.execute("insert into test_rows values(2, 'POINT(5 5)'), (3, 'POINT(1 1)')");
+                    st.execute("update test_rows set the_geom = 'POINT(-1 0)' where id = 3");
+                    triggerConnection.commit();
+                } finally {
+                    triggerConnection.setAutoCommit(true);
+                }
+                // The transaction is notified once, with the envelope of the old and new geometries
+                ResultSet rs = st.executeQuery("select * from TABLE_CHANGES(" + (lastId + 1) + ")");
+                try {
+                    assertTrue(rs.next());
+                    assertEquals("TEST_ROWS", rs.getString("TABLE_NAME"));
+                    assertEquals("ROWTRIGGER", rs.getString("TRIGGER_NAME"));
+                    assertEquals(4, rs.getLong("CHANGE_COUNT"));
+                    assertEquals(new Envelope(-1, 5, 0, 5), ((Geometry) rs.getObject("THE_GEOM")).getEnvelopeInternal());
+                    assertFalse(rs.next());
+                } finally {
+                    rs.close();
+                }
+                assertEquals(1, received.size());
+                assertEquals(lastId + 1, received.get(0).getId());
+                // Each statement is a transaction in auto commit mode
+                st.execute("delete from test_rows where id = 1");
+                st.execute("delete from test_rows where id = 2");
+                notifier.flush();
+                List<TableChange> changes = notifier.getChanges(lastId + 2);
+                assertEquals(2, changes.size());
+                assertEquals(new Envelope(1, 1, 2, 2), changes.get(0).getEnvelope());
+                assertEquals(new Envelope(5, 5, 5, 5), changes.get(1).getEnvelope());
+                assertEquals(3, received.size());
+            } finally {
+                notifier.removeListener(listener);
+                st.execute("drop trigger if exists rowtrigger");
+                st.execute("DROP TABLE IF EXISTS test_rows");
+                triggerConnection.close();
+            }
+        }
+
         /**
          * Test if H2 recognize the Geometry class used by h2spatial
          */
@@ -20,6 +20,10 @@
 
 package org.h2gis.sfs;
 
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.GeometryFactory;
+import org.h2gis.sfs.functions.spatial.crs.ST_Transform;
 import org.h2gis.sfs.unitTest.SpatialDBFactory;
 import org.h2gis.utilities.SFSUtilities;
 import org.junit.*;
@@ -32,6 +36,7 @@ import org.h2.jdbc.JdbcSQLException;
 
 import static org.h2gis.unitTest.GeometryAsserts.assertGeometryBarelyEquals;
 import static org.h2gis.unitTest.GeometryAsserts.assertGeometryEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -172,7 +177,55 @@ public class CRSFunctionTest {
         }
     }
     
-        
+    @Test
+    public void testST_TransformAfterSpatialRefSysUpdate() throws Exception {
+        st.execute("INSERT INTO SPATIAL_REF_SYS(SRID, AUTH_NAME, AUTH_SRID, SRTEXT, PROJ4TEXT) " +
+                "SELECT 999999, AUTH_NAME, 999999, SRTEXT, PROJ4TEXT FROM SPATIAL_REF_SYS WHERE SRID = 2154");
+        try {
+            checkProjectedGeom("POINT(2.114551393 50.345609791)", 4326, 999999,
+                    "POINT(636890.7403226076 7027895.263553156)");
+            // The cached CRS must be replaced by the new definition
+            st.execute("UPDATE SPATIAL_REF_SYS SET PROJ4TEXT = (SELECT PROJ4TEXT FROM SPATIAL_REF_SYS " +
+                    "WHERE SRID = 3857) WHERE SRID = 999999");
+            final ResultSet rs = st.executeQuery("SELECT ST_TRANSFORM(THE_GEOM, 999999), ST_TRANSFORM(THE_GEOM, 3857)" +
+                    " FROM (SELECT ST_GeomFromText('POINT(2.114551393 50.345609791)', 4326) THE_GEOM)");
+            try {
+                assertTrue(rs.next());
+                final Geometry geom = (Geometry) rs.getObject(1);
+                final Geometry expected = (Geometry) rs.getObject(2);
+                assertEquals(999999, geom.getSRID());
+                assertTrue(geom.equalsExact(expected, 10E-7));
+            } finally {
+                rs.close();
+            }
+        } finally {
+            st.execute("DELETE FROM SPATIAL_REF_SYS WHERE SRID = 999999");
+        }
+    }
+
+    @Test
+    public void testST_TransformLargeGeometry() throws Exception {
+        // Large geometries are transformed by several threads
+        GeometryFactory factory = new GeometryFactory();
+        Coordinate[] coordinates = new Coordinate[150000];
+        for (int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = new Coordinate(2 + i * 1e-5, 47 + i * 1e-5);
+        }
+        Geometry line = factory.createLineString(coordinates);
+        line.setSRID(4326);
+        Geometry result = ST_Transform.ST_Transform(connection, line, 2154);
+        assertEquals(2154, result.getSRID());
+        assertEquals(coordinates.length, result.getNumPoints());
+        for (int i = 0; i < coordinates.length; i += 14999) {
+            Geometry point = factory.createPoint(coordinates[i]);
+            point.setSRID(4326);
+            Coordinate expected = ST_Transform.ST_Transform(connection, point, 2154).getCoordinate();
+            assertTrue(expected.equals2D(result.getCoordinates()[i]));
+        }
+        // The input geometry is not modified
+        assertTrue(coordinates[0].equals2D(line.getCoordinate()));
+    }
+
     private void checkProjectedGeom(String inputGeom, int inProj, int outProj, String expectedGeom) throws SQLException {
         check(compute(inputGeom, inProj, outProj), expectedGeom, outProj);
     }
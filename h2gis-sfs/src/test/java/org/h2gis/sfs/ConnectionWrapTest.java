@@ -20,6 +20,7 @@
 
 package org.h2gis.sfs;
 
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.io.WKTReader;
 import org.h2gis.sfs.unitTest.SpatialDBFactory;
 import org.junit.AfterClass;
@@ -27,6 +28,7 @@ import org.junit.BeforeClass;
 import org.junit.Test;
 import org.h2gis.utilities.SFSUtilities;
 import org.h2gis.utilities.SpatialResultSet;
+import org.h2gis.utilities.jts_utils.GeometryMetaData;
 import java.sql.Connection;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -34,6 +36,7 @@ import java.sql.Statement;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -94,4 +97,41 @@ public class ConnectionWrapTest {
         assertFalse(rs.next());
         stat.execute("DROP TABLE AREA");
     }
+
+    @Test
+    public void testGeometryEnvelope() throws Exception {
+        Statement stat = connection.createStatement();
+        stat.execute("DROP TABLE IF EXISTS AREA");
+        stat.execute("create table area(idarea int primary key, the_geom GEOMETRY)");
+        stat.execute("insert into area values(1, ST_GeomFromText('POLYGON ((-10 109, 90 109, 90 9, -10 9, -10 109), " +
+                "(0 20, 10 20, 10 30, 0 20))', 4326))");
+        stat.execute("insert into area values(2, 'MULTILINESTRING ((90 109 5, 190 109 6), (200 -5 1, 210 0 2))')");
+        stat.execute("insert into area values(3, NULL)");
+        stat.execute("insert into area values(4, 'GEOMETRYCOLLECTION (LINESTRING EMPTY, POINT (1 2))')");
+        SpatialResultSet rs = stat.executeQuery("select idarea, the_geom from area order by idarea")
+                .unwrap(SpatialResultSet.class);
+        assertTrue(rs.next());
+        assertEquals(new Envelope(-10, 90, 9, 109), rs.getEnvelope());
+        assertEquals(rs.getGeometry().getEnvelopeInternal(), rs.getEnvelope("the_geom"));
+        GeometryMetaData metaData = rs.getGeometryMetaData(2);
+        assertEquals(3, metaData.geometryType);
+        assertEquals(4326, metaData.SRID);
+        assertEquals(2, metaData.dimension);
+        assertTrue(rs.next());
+        assertEquals(new Envelope(90, 210, -5, 109), rs.getEnvelope(2));
+        metaData = rs.getGeometryMetaData("the_geom");
+        assertEquals(5, metaData.geometryType);
+        assertEquals(3, metaData.dimension);
+        assertTrue(rs.next());
+        assertNull(rs.getEnvelope(2));
+        assertNull(rs.getGeometryMetaData(2));
+        assertTrue(rs.next());
+        assertEquals(new Envelope(1, 1, 2, 2), rs.getEnvelope(2));
+        assertFalse(rs.next());
+        rs.close();
+        ResultSet resultSet = stat.executeQuery("select idarea, the_geom from area");
+        assertEquals(new Envelope(-10, 210, -5, 109), SFSUtilities.getResultSetEnvelope(resultSet));
+        resultSet.close();
+        stat.execute("DROP TABLE AREA");
+    }
 }
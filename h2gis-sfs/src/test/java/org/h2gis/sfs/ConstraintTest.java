@@ -216,6 +216,47 @@ public class ConstraintTest {
         rs.close();
     }
 
+    /**
+     * The cached content of GEOMETRY_COLUMNS must follow the modifications of the tables
+     * @throws SQLException
+     */
+    @Test
+    public void testGeometryColumnsUpdate() throws SQLException {
+        Statement st = connection.createStatement();
+        st.execute("drop table IF EXISTS T_SRID");
+        st.execute("create table T_SRID (the_geom GEOMETRY)");
+        assertEquals(0, getGeometryColumnsSRID(st, "T_SRID", "THE_GEOM"));
+        // SRID read from the data
+        st.execute("insert into T_SRID values(ST_GeomFromText('POINT(1 1)', 4326))");
+        assertEquals(4326, getGeometryColumnsSRID(st, "T_SRID", "THE_GEOM"));
+        st.execute("delete from T_SRID");
+        st.execute("insert into T_SRID values(ST_GeomFromText('POINT(1 1)', 2154))");
+        assertEquals(2154, getGeometryColumnsSRID(st, "T_SRID", "THE_GEOM"));
+        st.execute("alter table T_SRID alter column the_geom rename to geom");
+        assertEquals(-1, getGeometryColumnsSRID(st, "T_SRID", "THE_GEOM"));
+        assertEquals(2154, getGeometryColumnsSRID(st, "T_SRID", "GEOM"));
+        st.execute("drop table T_SRID");
+        assertEquals(-1, getGeometryColumnsSRID(st, "T_SRID", "GEOM"));
+        // Local temporary tables are only visible to their session
+        st.execute("create local temporary table T_SRID (the_geom GEOMETRY CHECK ST_SRID(the_geom) = 27572)");
+        assertEquals(27572, getGeometryColumnsSRID(st, "T_SRID", "THE_GEOM"));
+        st.execute("drop table T_SRID");
+        assertEquals(-1, getGeometryColumnsSRID(st, "T_SRID", "THE_GEOM"));
+    }
+
+    /**
+     * @return The SRID of the column in GEOMETRY_COLUMNS, -1 if the column is not found
+     */
+    private static int getGeometryColumnsSRID(Statement st, String tableName, String columnName) throws SQLException {
+        ResultSet rs = st.executeQuery("SELECT SRID FROM GEOMETRY_COLUMNS WHERE F_TABLE_NAME = '" + tableName +
+                "' AND F_GEOMETRY_COLUMN = '" + columnName + "'");
+        try {
+            return rs.next() ? rs.getInt(1) : -1;
+        } finally {
+            rs.close();
+        }
+    }
+
     /**
      * Check constraint pass
      * @throws SQLException
@@ -20,11 +20,14 @@
 
 package org.h2gis.sfs;
 
+import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.geom.prep.PreparedGeometry;
 import org.h2gis.sfs.CreateSpatialExtension;
 import org.h2.jdbc.JdbcSQLException;
 import org.h2.value.ValueGeometry;
 import org.h2gis.sfs.functions.spatial.convert.ST_GeomFromText;
 import org.h2gis.sfs.functions.spatial.convert.ST_PointFromText;
+import org.h2gis.sfs.functions.spatial.predicates.PreparedGeometryCache;
 import org.h2gis.sfs.unitTest.SpatialDBFactory;
 import org.h2gis.utilities.GeometryTypeCodes;
 import org.junit.AfterClass;
@@ -104,6 +107,34 @@ public class SpatialFunctionTest {
         rs.close();
     }
 
+    @Test
+    public void test_ST_UnionAgg() throws Exception {
+        Statement st = connection.createStatement();
+        ResultSet rs = st.executeQuery("SELECT ST_Area(ST_UnionAgg(footprint)) FROM buildings GROUP BY SUBSTRING(address,4)");
+        assertTrue(rs.next());
+        assertEquals(16, rs.getDouble(1), 1e-8);
+        rs.close();
+        rs = st.executeQuery("SELECT ST_UnionAgg(footprint) FROM buildings WHERE 1 = 0");
+        assertTrue(rs.next());
+        assertNull(rs.getObject(1));
+        rs.close();
+    }
+
+    @Test
+    public void test_ST_UnionAggGrid() throws Exception {
+        // More geometries than the aggregate buffer, the partial unions are merged
+        Statement st = connection.createStatement();
+        ResultSet rs = st.executeQuery("SELECT ST_UnionAgg(ST_GeomFromText('POLYGON((' || X || ' ' || Y || ', ' || " +
+                "(X + 1) || ' ' || Y || ', ' || (X + 1) || ' ' || (Y + 1) || ', ' || X || ' ' || (Y + 1) || ', ' || " +
+                "X || ' ' || Y || '))', 2154)) FROM (SELECT MOD(X, 100) X, X / 100 Y FROM SYSTEM_RANGE(0, 9999))");
+        assertTrue(rs.next());
+        Geometry union = (Geometry) rs.getObject(1);
+        assertEquals("Polygon", union.getGeometryType());
+        assertEquals(10000, union.getArea(), 1e-8);
+        assertEquals(2154, union.getSRID());
+        rs.close();
+    }
+
     @Test
     public void test_ST_AccumArea() throws Exception {
         Statement st = connection.createStatement();
@@ -621,4 +652,57 @@ public class SpatialFunctionTest {
         assertFalse(rs.next());
         rs.close();
     }
+
+    @Test
+    public void testPredicatesRepeatedGeometry() throws SQLException {
+        Statement st = connection.createStatement();
+        st.execute("DROP TABLE IF EXISTS GRID_POINTS");
+        st.execute("CREATE TABLE GRID_POINTS AS SELECT ST_GeomFromText('POINT(' || MOD(X, 21) || ' ' || (X / 21) || ')') " +
+                "THE_GEOM FROM SYSTEM_RANGE(0, 440)");
+        // The polygon is prepared after the first rows
+        String polygon = "'POLYGON((0 0, 10 0, 10 10, 0 10, 0 0), (4 4, 6 4, 6 6, 4 6, 4 4))'::GEOMETRY";
+        ResultSet rs = st.executeQuery("SELECT COUNT(CASEWHEN(ST_Intersects(" + polygon + ", THE_GEOM), 1, NULL)), " +
+                "COUNT(CASEWHEN(ST_Intersects(THE_GEOM, " + polygon + "), 1, NULL)), " +
+                "COUNT(CASEWHEN(ST_Contains(" + polygon + ", THE_GEOM), 1, NULL)), " +
+                "COUNT(CASEWHEN(ST_Within(THE_GEOM, " + polygon + "), 1, NULL)), " +
+                "COUNT(CASEWHEN(ST_Disjoint(THE_GEOM, " + polygon + "), 1, NULL)) FROM GRID_POINTS");
+        try {
+            assertTrue(rs.next());
+            assertEquals(120, rs.getInt(1));
+            assertEquals(120, rs.getInt(2));
+            assertEquals(72, rs.getInt(3));
+            assertEquals(72, rs.getInt(4));
+            assertEquals(321, rs.getInt(5));
+        } finally {
+            rs.close();
+        }
+        // Null and WKT arguments
+        rs = st.executeQuery("SELECT ST_Intersects(NULL, 'POINT(1 1)'), ST_Intersects('POINT(1 1)', NULL), " +
+                "ST_Contains('POLYGON((0 0, 2 0, 2 2, 0 2, 0 0))', 'POINT(1 1)')");
+        try {
+            assertTrue(rs.next());
+            assertNull(rs.getObject(1));
+            assertNull(rs.getObject(2));
+            assertTrue(rs.getBoolean(3));
+        } finally {
+            rs.close();
+        }
+        st.execute("DROP TABLE GRID_POINTS");
+    }
+
+    @Test
+    public void testPreparedGeometryCacheFirstUse() throws Exception {
+        PreparedGeometryCache cache = new PreparedGeometryCache(16);
+        ValueGeometry repeated = ValueGeometry.get("POLYGON((0 0, 10 0, 10 10, 0 10, 0 0))");
+        assertNull(cache.getPrepared(repeated));
+        PreparedGeometry prepared = cache.getPrepared(repeated);
+        assertNotNull(prepared);
+        // Geometries given once are not prepared and do not evict the prepared geometries
+        for (int i = 0; i < 100; i++) {
+            assertNull(cache.getPrepared(ValueGeometry.get("POLYGON((0 0, " + (i + 1) + " 0, 0 1, 0 0))")));
+        }
+        assertSame(prepared, cache.getPrepared(ValueGeometry.get("POLYGON((0 0, 10 0, 10 10, 0 10, 0 0))")));
+        cache.clear();
+        assertNull(cache.getPrepared(repeated));
+    }
 }
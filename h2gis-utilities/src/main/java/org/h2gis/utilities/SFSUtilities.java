@@ -22,9 +22,11 @@ package org.h2gis.utilities;
 
 import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import org.h2gis.utilities.jts_utils.GeometryMetaData;
 import org.h2gis.utilities.wrapper.ConnectionWrapper;
 import org.h2gis.utilities.wrapper.DataSourceWrapper;
 import javax.sql.DataSource;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
@@ -167,7 +169,16 @@ public class SFSUtilities {
             }
             geometryField = geometryFields.get(0);
         }
-        ResultSet rs = connection.createStatement().executeQuery("SELECT ST_Extent("+TableLocation.quoteIdentifier(geometryField)+") ext FROM "+location);
+        ResultSet rs;
+        if(JDBCUtilities.isH2DataBase(connection.getMetaData()) && hasFunction(connection, "ST_TABLEEXTENT")) {
+            // Use the spatial index and the cached envelopes of H2GIS
+            PreparedStatement st = connection.prepareStatement("SELECT ST_TableExtent(?, ?) ext");
+            st.setString(1, location.toString());
+            st.setString(2, TableLocation.quoteIdentifier(geometryField));
+            rs = st.executeQuery();
+        } else {
+            rs = connection.createStatement().executeQuery("SELECT ST_Extent("+TableLocation.quoteIdentifier(geometryField)+") ext FROM "+location);
+        }
         if(rs.next()) {
             // Todo under postgis it is a BOX type
             return ((Geometry)rs.getObject(1)).getEnvelopeInternal();
@@ -175,6 +186,21 @@ public class SFSUtilities {
         throw new SQLException("Unable to get the table extent it may be empty");
     }
 
+    /**
+     * @param connection Active connection
+     * @param functionName Function name
+     * @return True if the function is defined in the database
+     * @throws SQLException
+     */
+    private static boolean hasFunction(Connection connection, String functionName) throws SQLException {
+        ResultSet rs = connection.getMetaData().getProcedures(null, null, functionName);
+        try {
+            return rs.next();
+        } finally {
+            rs.close();
+        }
+    }
+
     /**
      * Find geometry fields name of a table.
      * @param connection Active connection
@@ -360,12 +386,40 @@ public class SFSUtilities {
      */
     public static Envelope getResultSetEnvelope(ResultSet resultSet, String fieldName) throws SQLException {
         Envelope aggregatedEnvelope = null;
+        int fieldIndex = resultSet.findColumn(fieldName);
+        boolean readWKB = true;
         while (resultSet.next()) {
-            Geometry geom = (Geometry) resultSet.getObject(fieldName);
+            Envelope envelope = null;
+            if (readWKB) {
+                // Read the envelope from the WKB instead of building the geometry
+                try {
+                    byte[] bytes = resultSet.getBytes(fieldIndex);
+                    if (bytes == null) {
+                        continue;
+                    } else if (GeometryMetaData.isWKB(bytes)) {
+                        envelope = GeometryMetaData.getEnvelopeFromWKB(bytes);
+                    } else {
+                        // The driver serializes the geometry objects, read them directly
+                        readWKB = false;
+                    }
+                } catch (ClassCastException ex) {
+                    // The values are not converted to bytes, as in a SimpleResultSet of JTS geometries
+                    readWKB = false;
+                } catch (IOException ex) {
+                    throw new SQLException(ex);
+                }
+            }
+            if (envelope == null) {
+                Geometry geometry = (Geometry) resultSet.getObject(fieldIndex);
+                if (geometry == null) {
+                    continue;
+                }
+                envelope = geometry.getEnvelopeInternal();
+            }
             if (aggregatedEnvelope != null) {
-                aggregatedEnvelope.expandToInclude(geom.getEnvelopeInternal());
+                aggregatedEnvelope.expandToInclude(envelope);
             } else {
-                aggregatedEnvelope = geom.getEnvelopeInternal();
+                aggregatedEnvelope = envelope;
             }
         }
         return aggregatedEnvelope;
@@ -20,7 +20,9 @@
 
 package org.h2gis.utilities;
 
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import org.h2gis.utilities.jts_utils.GeometryMetaData;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -56,6 +58,49 @@ public interface SpatialResultSet extends ResultSet {
      */
     Geometry getGeometry() throws SQLException;
 
+    /**
+     * Retrieves the envelope of the Geometry value of the specified column. The envelope is read from the WKB
+     * value when the driver provides it, without building the Geometry.
+     * @param columnIndex Column index [1-n]
+     * @return Envelope of the Geometry or null
+     * @throws SQLException If the specified column is not a Geometry.
+     */
+    Envelope getEnvelope(int columnIndex) throws SQLException;
+
+    /**
+     * Retrieves the envelope of the Geometry value of the specified column. The envelope is read from the WKB
+     * value when the driver provides it, without building the Geometry.
+     * @param columnLabel Column label
+     * @return Envelope of the Geometry or null
+     * @throws SQLException If the specified column is not a Geometry.
+     */
+    Envelope getEnvelope(String columnLabel) throws SQLException;
+
+    /**
+     * Retrieves the envelope of the Geometry value of the first geometry column.
+     * @return Envelope of the Geometry or null
+     * @throws SQLException If there is no Geometry columns.
+     */
+    Envelope getEnvelope() throws SQLException;
+
+    /**
+     * Retrieves the type, the dimension and the SRID of the Geometry value of the specified column. They are read
+     * from the WKB header when the driver provides it, without building the Geometry.
+     * @param columnIndex Column index [1-n]
+     * @return Geometry MetaData or null
+     * @throws SQLException If the specified column is not a Geometry.
+     */
+    GeometryMetaData getGeometryMetaData(int columnIndex) throws SQLException;
+
+    /**
+     * Retrieves the type, the dimension and the SRID of the Geometry value of the specified column. They are read
+     * from the WKB header when the driver provides it, without building the Geometry.
+     * @param columnLabel Column label
+     * @return Geometry MetaData or null
+     * @throws SQLException If the specified column is not a Geometry.
+     */
+    GeometryMetaData getGeometryMetaData(String columnLabel) throws SQLException;
+
     /**
      * Update the geometry value
      * @param columnIndex Field index
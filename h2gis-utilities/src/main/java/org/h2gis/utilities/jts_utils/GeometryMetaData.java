@@ -20,12 +20,16 @@
 
 package org.h2gis.utilities.jts_utils;
 
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.io.ByteArrayInStream;
 import com.vividsolutions.jts.io.ByteOrderDataInStream;
 import com.vividsolutions.jts.io.ByteOrderValues;
 import com.vividsolutions.jts.io.WKBConstants;
 
 import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 /**
  * Extract Geometry MetaData from WKB.
@@ -80,4 +84,91 @@ public class GeometryMetaData {
         }
         return new GeometryMetaData(inputDimension, hasSRID, hasZ, geometryType, SRID);
     }
+
+    /**
+     * @param bytes Bytes of a value
+     * @return True if the bytes start with a WKB byte order, then may be a WKB Geometry
+     */
+    public static boolean isWKB(byte[] bytes) {
+        return bytes != null && bytes.length >= 5 && (bytes[0] == WKBConstants.wkbNDR || bytes[0] == WKBConstants.wkbXDR);
+    }
+
+    /**
+     * Compute the envelope of a WKB Geometry by reading its coordinates, without building the Geometry.
+     * Only the shell of the polygons is read, the holes are skipped.
+     * @param bytes WKB Bytes
+     * @return The envelope of the Geometry, a null envelope if the Geometry is empty
+     * @throws IOException If the WKB is invalid
+     */
+    public static Envelope getEnvelopeFromWKB(byte[] bytes) throws IOException {
+        Envelope envelope = new Envelope();
+        try {
+            readEnvelope(ByteBuffer.wrap(bytes), envelope);
+        } catch (BufferUnderflowException ex) {
+            throw new IOException("Unexpected end of WKB", ex);
+        } catch (IllegalArgumentException ex) {
+            // The position of skipped coordinates is out of the bytes
+            throw new IOException("Unexpected end of WKB", ex);
+        }
+        return envelope;
+    }
+
+    private static void readEnvelope(ByteBuffer buffer, Envelope envelope) throws IOException {
+        // always set byte order, since it may change from geometry to geometry
+        buffer.order(buffer.get() == WKBConstants.wkbNDR ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN);
+        int typeInt = buffer.getInt();
+        int dimension = 2;
+        if ((typeInt & 0x80000000) != 0) {
+            dimension++;
+        }
+        if ((typeInt & 0x40000000) != 0) {
+            dimension++;
+        }
+        if ((typeInt & 0x20000000) != 0) {
+            // Skip the SRID
+            buffer.getInt();
+        }
+        switch (typeInt & 0xff) {
+            case WKBConstants.wkbPoint:
+                readCoordinates(buffer, 1, dimension, envelope);
+                break;
+            case WKBConstants.wkbLineString:
+                readCoordinates(buffer, buffer.getInt(), dimension, envelope);
+                break;
+            case WKBConstants.wkbPolygon:
+                int ringCount = buffer.getInt();
+                for (int i = 0; i < ringCount; i++) {
+                    int pointCount = buffer.getInt();
+                    if (i == 0) {
+                        readCoordinates(buffer, pointCount, dimension, envelope);
+                    } else {
+                        buffer.position(buffer.position() + pointCount * dimension * 8);
+                    }
+                }
+                break;
+            case WKBConstants.wkbMultiPoint:
+            case WKBConstants.wkbMultiLineString:
+            case WKBConstants.wkbMultiPolygon:
+            case WKBConstants.wkbGeometryCollection:
+                int geometryCount = buffer.getInt();
+                for (int i = 0; i < geometryCount; i++) {
+                    readEnvelope(buffer, envelope);
+                }
+                break;
+            default:
+                throw new IOException("Unknown WKB type " + (typeInt & 0xff));
+        }
+    }
+
+    private static void readCoordinates(ByteBuffer buffer, int pointCount, int dimension, Envelope envelope) {
+        for (int i = 0; i < pointCount; i++) {
+            double x = buffer.getDouble();
+            double y = buffer.getDouble();
+            // An empty point has NaN coordinates
+            if (!Double.isNaN(x)) {
+                envelope.expandToInclude(x, y);
+            }
+            buffer.position(buffer.position() + (dimension - 2) * 8);
+        }
+    }
 }
@@ -20,10 +20,15 @@
 
 package org.h2gis.utilities.wrapper;
 
+import com.vividsolutions.jts.geom.Coordinate;
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.geom.Geometry;
+import com.vividsolutions.jts.io.WKBWriter;
 import org.h2gis.utilities.SpatialResultSet;
 import org.h2gis.utilities.SpatialResultSetMetaData;
+import org.h2gis.utilities.jts_utils.GeometryMetaData;
 
+import java.io.IOException;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 
@@ -75,6 +80,57 @@ public class SpatialResultSetImpl extends ResultSetWrapper implements SpatialRes
         return getGeometry(getFirstGeometryFieldIndex());
     }
 
+    @Override
+    public Envelope getEnvelope(int columnIndex) throws SQLException {
+        byte[] bytes = getBytes(columnIndex);
+        if (bytes == null) {
+            return null;
+        }
+        if (GeometryMetaData.isWKB(bytes)) {
+            try {
+                return GeometryMetaData.getEnvelopeFromWKB(bytes);
+            } catch (IOException ex) {
+                throw new SQLException(ex);
+            }
+        }
+        // The driver does not return WKB
+        return getGeometry(columnIndex).getEnvelopeInternal();
+    }
+
+    @Override
+    public Envelope getEnvelope(String columnLabel) throws SQLException {
+        return getEnvelope(findColumn(columnLabel));
+    }
+
+    @Override
+    public Envelope getEnvelope() throws SQLException {
+        return getEnvelope(getFirstGeometryFieldIndex());
+    }
+
+    @Override
+    public GeometryMetaData getGeometryMetaData(int columnIndex) throws SQLException {
+        byte[] bytes = getBytes(columnIndex);
+        if (bytes == null) {
+            return null;
+        }
+        if (!GeometryMetaData.isWKB(bytes)) {
+            // The driver does not return WKB
+            Geometry geometry = getGeometry(columnIndex);
+            Coordinate coordinate = geometry.getCoordinate();
+            bytes = new WKBWriter(coordinate == null || Double.isNaN(coordinate.z) ? 2 : 3, true).write(geometry);
+        }
+        try {
+            return GeometryMetaData.getMetaDataFromWKB(bytes);
+        } catch (IOException ex) {
+            throw new SQLException(ex);
+        }
+    }
+
+    @Override
+    public GeometryMetaData getGeometryMetaData(String columnLabel) throws SQLException {
+        return getGeometryMetaData(findColumn(columnLabel));
+    }
+
     @Override
     public void updateGeometry(int columnIndex, Geometry geometry) throws SQLException {
         updateObject(columnIndex, geometry);
@@ -20,8 +20,12 @@
 
 package org.h2gis.utilities;
 
+import com.vividsolutions.jts.geom.Envelope;
 import com.vividsolutions.jts.io.ParseException;
 import com.vividsolutions.jts.io.WKTReader;
+import java.sql.SQLException;
+import java.sql.Types;
+import org.h2.tools.SimpleResultSet;
 import org.junit.Test;
 import static junit.framework.Assert.assertEquals;
 
@@ -43,4 +47,28 @@ public class SFSUtilitiesTest {
         assertEquals(GeometryTypeCodes.MULTIPOLYGON, SFSUtilities.getGeometryTypeFromGeometry(wktReader.read("MULTIPOLYGON(((1 1, 1 2, 2 2, 2 1, 1 1)))")));
         assertEquals(GeometryTypeCodes.GEOMCOLLECTION, SFSUtilities.getGeometryTypeFromGeometry(wktReader.read("GEOMETRYCOLLECTION(POINT(1 1))")));
     }
+
+    @Test
+    public void testResultSetEnvelopeOfGeometryObjects() throws ParseException, SQLException {
+        assertEquals(new Envelope(-1, 3, 2, 5), SFSUtilities.getResultSetEnvelope(
+                createGeometryResultSet(new SimpleResultSet()), "THE_GEOM"));
+        // A result set that casts the values instead of converting them
+        SimpleResultSet castingResultSet = new SimpleResultSet() {
+            @Override
+            public byte[] getBytes(int columnIndex) throws SQLException {
+                return (byte[]) getObject(columnIndex);
+            }
+        };
+        assertEquals(new Envelope(-1, 3, 2, 5), SFSUtilities.getResultSetEnvelope(
+                createGeometryResultSet(castingResultSet), "THE_GEOM"));
+    }
+
+    private static SimpleResultSet createGeometryResultSet(SimpleResultSet rs) throws ParseException {
+        WKTReader wktReader = new WKTReader();
+        rs.addColumn("THE_GEOM", Types.JAVA_OBJECT, "GEOMETRY", 0, 0);
+        rs.addRow(wktReader.read("POINT(1 2)"));
+        rs.addRow((Object) null);
+        rs.addRow(wktReader.read("LINESTRING(-1 5, 3 4)"));
+        return rs;
+    }
 }